@@ -173,6 +173,59 @@ def preprocess_fingerprint(
         raise
 
 
+def preprocess_tensor(
+    segmentation_input, recognition_input, segmentation_model, recognition_shape, segmentation_shape
+):
+    """Finish preprocessing of a fingerprint the caller has already decoded, resized and
+    enhanced (see the backend's FingerprintPreprocessor).
+
+    segmentation_input: uint8 bytes at segmentation_shape, CLAHE already applied
+    recognition_input: uint8 bytes at recognition_shape, plain grayscale
+    """
+    seg_h, seg_w = int(segmentation_shape[0]), int(segmentation_shape[1])
+    rec_h, rec_w = int(recognition_shape[0]), int(recognition_shape[1])
+
+    img_for_segmentation = np.frombuffer(segmentation_input, dtype=np.uint8)
+    if img_for_segmentation.size != seg_h * seg_w:
+        raise ValueError(
+            f"Segmentation input has {img_for_segmentation.size} pixels, expected {seg_h}x{seg_w}"
+        )
+    img = np.frombuffer(recognition_input, dtype=np.uint8)
+    if img.size != rec_h * rec_w:
+        raise ValueError(f"Recognition input has {img.size} pixels, expected {rec_h}x{rec_w}")
+
+    img_for_segmentation = img_for_segmentation.reshape(seg_h, seg_w)
+    img = img.reshape(rec_h, rec_w)
+
+    # Prepare for segmentation model
+    img_for_segmentation = (
+        np.expand_dims(np.expand_dims(img_for_segmentation, axis=-1), axis=0) / 255.0
+    )
+    segmentation_output = segmentation_model.predict(img_for_segmentation, verbose=0)
+
+    # Process mask (same rules as preprocess_fingerprint)
+    if isinstance(segmentation_output, list) and len(segmentation_output) > 0:
+        mask = segmentation_output[0]
+    else:
+        mask = np.ones(img.shape, dtype=np.uint8)
+
+    mask = (mask > 0.5).astype(np.uint8)
+    if len(mask.shape) == 3:
+        mask_2d = mask[:, :, 0]
+    else:
+        mask_2d = mask
+
+    # The image is already at recognition resolution, so the mask is resized to it directly.
+    # This differs slightly from preprocess_fingerprint (mask applied at full size, then
+    # resized); the backend enrols through this endpoint too, so templates and probes match.
+    mask_resized = cv2.resize(mask_2d, (rec_w, rec_h))
+    img = img * mask_resized
+
+    img = img / 255.0
+    img = np.expand_dims(img, axis=-1)
+    return img
+
+
 def create_embedding_model(recognition_model):
     """Create embedding extractor model"""
     feature_extractor = recognition_model.get_layer("functional")
@@ -526,29 +579,6 @@ def api_register_fingerprint():
             employee_dir = os.path.join(dataset_dir, employee_id)
             os.makedirs(employee_dir, exist_ok=True)
 
-            # Xóa tất cả các file vân tay cũ liên quan đến fingerprint_id (nếu có)
-            if fingerprint_id:
-                try:
-                    # Tìm và xóa cơ sở dữ liệu cũ
-                    embeddings_dbs = load_embeddings_db()
-                    fingerprint_embeddings_db = embeddings_dbs.get(
-                        "fingerprint_embeddings", {}
-                    )
-
-                    if fingerprint_id in fingerprint_embeddings_db:
-                        print(
-                            f"Removing existing fingerprint ID {fingerprint_id} from database"
-                        )
-                        del fingerprint_embeddings_db[fingerprint_id]
-
-                        # Lưu lại cơ sở dữ liệu
-                        script_dir = os.path.dirname(os.path.abspath(__file__))
-                        db_dir = os.path.join(script_dir, "fingerprint_adapting_models")
-                        fp_db_path = os.path.join(db_dir, "fingerprint_embeddings.npy")
-                        np.save(fp_db_path, fingerprint_embeddings_db)
-                except Exception as e:
-                    print(f"Error removing existing fingerprint from database: {e}")
-
             for i, file in enumerate(files):
                 # Nếu có fingerprint_id được cung cấp, sử dụng cho file đầu tiên
                 # Nếu không, tạo UUID mới
@@ -601,54 +631,11 @@ def api_register_fingerprint():
                 # Tạo embedding
                 embedding = embedding_model.predict(processed_img, verbose=0)[0]
 
-                # Lưu vào database
-                embeddings_dbs = load_embeddings_db()
-                fingerprint_embeddings_db = embeddings_dbs.get(
-                    "fingerprint_embeddings", {}
-                )
-
-                # Lưu theo fingerprint_id
-                fingerprint_embeddings_db[registered_fingerprint_id] = {
-                    "employee_id": employee_id,
-                    "embedding": embedding,
-                }
-
-                # Lưu database
-                script_dir = os.path.dirname(os.path.abspath(__file__))
-                db_dir = os.path.join(script_dir, "fingerprint_adapting_models")
-                fp_db_path = os.path.join(db_dir, "fingerprint_embeddings.npy")
-                np.save(fp_db_path, fingerprint_embeddings_db)
-
-                # Cập nhật database employee_embeddings (phương pháp cũ)
-                employee_embeddings_db = embeddings_dbs.get("employee_embeddings", {})
-
-                if employee_id in employee_embeddings_db:
-                    # Tính trung bình với embedding cũ
-                    old_emb = employee_embeddings_db[employee_id]
-                    employee_embeddings_db[employee_id] = (old_emb + embedding) / 2
-                else:
-                    employee_embeddings_db[employee_id] = embedding
-
-                # Lưu database employee
-                db_path = os.path.join(db_dir, "employee_embeddings.npy")
-                np.save(db_path, employee_embeddings_db)
-
+                # Embedding được trả về cho backend, nơi lưu trữ template (không ghi lại file .npy)
                 print(
-                    f"Successfully saved fingerprint with ID {registered_fingerprint_id}"
+                    f"Successfully computed embedding for fingerprint ID {registered_fingerprint_id}"
                 )
 
-                # Kiểm tra database sau khi lưu
-                check_db = load_embeddings_db()
-                check_fp_db = check_db.get("fingerprint_embeddings", {})
-                if registered_fingerprint_id in check_fp_db:
-                    print(
-                        f"Verified: Fingerprint ID {registered_fingerprint_id} exists in database"
-                    )
-                else:
-                    print(
-                        f"WARNING: Fingerprint ID {registered_fingerprint_id} NOT found in database after saving"
-                    )
-
                 success = True
             except Exception as e:
                 print(f"Error processing fingerprint: {e}", file=sys.stderr)
@@ -664,6 +651,7 @@ def api_register_fingerprint():
                             "message": "Fingerprint registered successfully",
                             "employeeId": employee_id,
                             "fingerprint_id": registered_fingerprint_id,  # Trả về fingerprint ID đã đăng ký
+                            "embedding": convert_to_serializable(embedding),
                         }
                     ),
                     200,
@@ -700,6 +688,344 @@ def api_register_fingerprint():
         return jsonify({"error": str(e)}), 500
 
 
+@app.route("/api/register/batch", methods=["POST"])
+def api_register_batch():
+    """API endpoint to register many fingerprints, possibly of several employees, in one model call"""
+    try:
+        files = request.files.getlist("files")
+        if not files:
+            return jsonify({"error": "No files part"}), 400
+
+        fingerprint_ids = request.form.getlist("fingerprint_id")
+        employee_ids = request.form.getlist("employee_id")
+        positions = request.form.getlist("position")
+        segmentation_model_path = request.form.get("segmentation_model_path")
+        recognition_model_path = request.form.get("recognition_model_path")
+
+        if not segmentation_model_path or not recognition_model_path:
+            return jsonify({"error": "Missing model path parameters"}), 400
+
+        if not (len(fingerprint_ids) == len(employee_ids) == len(positions) == len(files)):
+            return (
+                jsonify(
+                    {"error": "fingerprint_id, employee_id and position must be given for every file"}
+                ),
+                400,
+            )
+
+        recognition_model, segmentation_model, recognition_shape, segmentation_shape = (
+            load_models(
+                segmentation_model_path_name=segmentation_model_path,
+                recognition_model_path_name=recognition_model_path,
+            )
+        )
+
+        if recognition_model is None or segmentation_model is None:
+            return jsonify({"error": "Failed to load models"}), 500
+
+        embedding_model = create_embedding_model(recognition_model)
+
+        script_dir = os.path.dirname(os.path.abspath(__file__))
+        dataset_dir = os.path.join(script_dir, "fingerprint_adapting_dataset")
+
+        # Lưu từng ảnh vào thư mục dữ liệu, tiền xử lý, rồi chạy mô hình một lần cho cả lô
+        errors = [None] * len(files)
+        processed = []
+        processed_indexes = []
+        for index, file in enumerate(files):
+            try:
+                employee_dir = os.path.join(dataset_dir, secure_filename(employee_ids[index]))
+                os.makedirs(employee_dir, exist_ok=True)
+                filename = secure_filename(
+                    f"{employee_ids[index]}_{positions[index]}_{fingerprint_ids[index]}.bmp"
+                )
+                filepath = os.path.join(employee_dir, filename)
+                file.save(filepath)
+                processed.append(
+                    preprocess_fingerprint(
+                        filepath, segmentation_model, recognition_shape, segmentation_shape
+                    )
+                )
+                processed_indexes.append(index)
+            except Exception as e:
+                errors[index] = str(e)
+
+        embeddings = [None] * len(files)
+        if processed:
+            batch_embeddings = embedding_model.predict(
+                np.stack(processed, axis=0), batch_size=len(processed), verbose=0
+            )
+            for index, embedding in zip(processed_indexes, batch_embeddings):
+                embeddings[index] = convert_to_serializable(embedding)
+
+        results = [
+            {
+                "fingerprint_id": fingerprint_ids[index],
+                "employee_id": employee_ids[index],
+                "embedding": embeddings[index],
+                "error": errors[index],
+            }
+            for index in range(len(files))
+        ]
+        return jsonify({"results": results}), 200
+
+    except Exception as e:
+        print(f"Error in batch register API: {e}", file=sys.stderr)
+        import traceback
+
+        traceback.print_exc()
+        return jsonify({"error": str(e)}), 500
+
+
+@app.route("/api/embed", methods=["POST"])
+def api_embed():
+    """API endpoint to compute the embedding of a probe fingerprint image"""
+    try:
+        if "file" not in request.files:
+            return jsonify({"error": "No file part"}), 400
+
+        file = request.files["file"]
+        if file.filename == "":
+            return jsonify({"error": "No selected file"}), 400
+
+        segmentation_model_path = request.form.get("segmentation_model_path")
+        recognition_model_path = request.form.get("recognition_model_path")
+
+        if not segmentation_model_path or not recognition_model_path:
+            return jsonify({"error": "Missing model path parameters"}), 400
+
+        filename = secure_filename(file.filename)
+        temp_dir = tempfile.mkdtemp()
+        filepath = os.path.join(temp_dir, filename)
+        file.save(filepath)
+
+        try:
+            recognition_model, segmentation_model, recognition_shape, segmentation_shape = (
+                load_models(
+                    segmentation_model_path_name=segmentation_model_path,
+                    recognition_model_path_name=recognition_model_path,
+                )
+            )
+
+            if recognition_model is None or segmentation_model is None:
+                return jsonify({"error": "Failed to load models"}), 500
+
+            embedding_model = create_embedding_model(recognition_model)
+
+            processed_img = preprocess_fingerprint(
+                filepath, segmentation_model, recognition_shape, segmentation_shape
+            )
+            processed_img = np.expand_dims(processed_img, axis=0)
+            embedding = embedding_model.predict(processed_img, verbose=0)[0]
+
+            return jsonify({"embedding": convert_to_serializable(embedding)}), 200
+        finally:
+            try:
+                os.remove(filepath)
+                os.rmdir(temp_dir)
+            except Exception as e:
+                print(f"Warning: Failed to remove temporary file: {e}")
+
+    except Exception as e:
+        print(f"Error in embed API: {e}", file=sys.stderr)
+        import traceback
+
+        traceback.print_exc()
+        return jsonify({"error": str(e)}), 500
+
+
+@app.route("/api/embed/batch", methods=["POST"])
+def api_embed_batch():
+    """API endpoint to compute embeddings for several probe images in one model call"""
+    try:
+        files = request.files.getlist("files")
+        if not files:
+            return jsonify({"error": "No files part"}), 400
+
+        segmentation_model_path = request.form.get("segmentation_model_path")
+        recognition_model_path = request.form.get("recognition_model_path")
+
+        if not segmentation_model_path or not recognition_model_path:
+            return jsonify({"error": "Missing model path parameters"}), 400
+
+        temp_dir = tempfile.mkdtemp()
+        filepaths = []
+        for index, file in enumerate(files):
+            filepath = os.path.join(temp_dir, f"{index}_{secure_filename(file.filename or 'probe')}")
+            file.save(filepath)
+            filepaths.append(filepath)
+
+        try:
+            recognition_model, segmentation_model, recognition_shape, segmentation_shape = (
+                load_models(
+                    segmentation_model_path_name=segmentation_model_path,
+                    recognition_model_path_name=recognition_model_path,
+                )
+            )
+
+            if recognition_model is None or segmentation_model is None:
+                return jsonify({"error": "Failed to load models"}), 500
+
+            embedding_model = create_embedding_model(recognition_model)
+
+            # Preprocess each image, then run the embedding model once for the whole batch
+            errors = [None] * len(filepaths)
+            processed = []
+            processed_indexes = []
+            for index, filepath in enumerate(filepaths):
+                try:
+                    processed.append(
+                        preprocess_fingerprint(
+                            filepath, segmentation_model, recognition_shape, segmentation_shape
+                        )
+                    )
+                    processed_indexes.append(index)
+                except Exception as e:
+                    errors[index] = str(e)
+
+            embeddings = [None] * len(filepaths)
+            if processed:
+                batch_embeddings = embedding_model.predict(
+                    np.stack(processed, axis=0), batch_size=len(processed), verbose=0
+                )
+                for index, embedding in zip(processed_indexes, batch_embeddings):
+                    embeddings[index] = convert_to_serializable(embedding)
+
+            return jsonify({"embeddings": embeddings, "errors": errors}), 200
+        finally:
+            for filepath in filepaths:
+                try:
+                    os.remove(filepath)
+                except Exception as e:
+                    print(f"Warning: Failed to remove temporary file: {e}")
+            try:
+                os.rmdir(temp_dir)
+            except Exception as e:
+                print(f"Warning: Failed to remove temporary directory: {e}")
+
+    except Exception as e:
+        print(f"Error in batch embed API: {e}", file=sys.stderr)
+        import traceback
+
+        traceback.print_exc()
+        return jsonify({"error": str(e)}), 500
+
+
+@app.route("/api/model/shapes", methods=["GET"])
+def api_model_shapes():
+    """API endpoint returning the input (height, width) of a model pair"""
+    try:
+        segmentation_model_path = request.args.get("segmentation_model_path")
+        recognition_model_path = request.args.get("recognition_model_path")
+
+        if not segmentation_model_path or not recognition_model_path:
+            return jsonify({"error": "Missing model path parameters"}), 400
+
+        recognition_model, segmentation_model, recognition_shape, segmentation_shape = load_models(
+            segmentation_model_path_name=segmentation_model_path,
+            recognition_model_path_name=recognition_model_path,
+        )
+        if recognition_model is None or segmentation_model is None:
+            return jsonify({"error": "Failed to load models"}), 500
+
+        return jsonify({
+            "segmentation_shape": [int(segmentation_shape[0]), int(segmentation_shape[1])],
+            "recognition_shape": [int(recognition_shape[0]), int(recognition_shape[1])],
+        }), 200
+
+    except Exception as e:
+        print(f"Error in model shapes API: {e}", file=sys.stderr)
+        return jsonify({"error": str(e)}), 500
+
+
+@app.route("/api/embed/tensor", methods=["POST"])
+def api_embed_tensor():
+    """API endpoint to compute embeddings from inputs already preprocessed by the caller.
+
+    Expects parallel lists of raw uint8 parts "segmentation_inputs" and
+    "recognition_inputs"; one request may carry a whole batch.
+    """
+    try:
+        segmentation_inputs = request.files.getlist("segmentation_inputs")
+        recognition_inputs = request.files.getlist("recognition_inputs")
+        if not segmentation_inputs or len(segmentation_inputs) != len(recognition_inputs):
+            return jsonify({"error": "Mismatched or missing input parts"}), 400
+
+        segmentation_model_path = request.form.get("segmentation_model_path")
+        recognition_model_path = request.form.get("recognition_model_path")
+
+        if not segmentation_model_path or not recognition_model_path:
+            return jsonify({"error": "Missing model path parameters"}), 400
+
+        recognition_model, segmentation_model, recognition_shape, segmentation_shape = load_models(
+            segmentation_model_path_name=segmentation_model_path,
+            recognition_model_path_name=recognition_model_path,
+        )
+        if recognition_model is None or segmentation_model is None:
+            return jsonify({"error": "Failed to load models"}), 500
+
+        embedding_model = create_embedding_model(recognition_model)
+
+        errors = [None] * len(segmentation_inputs)
+        processed = []
+        processed_indexes = []
+        for index, (segmentation_input, recognition_input) in enumerate(
+            zip(segmentation_inputs, recognition_inputs)
+        ):
+            try:
+                processed.append(
+                    preprocess_tensor(
+                        segmentation_input.read(),
+                        recognition_input.read(),
+                        segmentation_model,
+                        recognition_shape,
+                        segmentation_shape,
+                    )
+                )
+                processed_indexes.append(index)
+            except Exception as e:
+                errors[index] = str(e)
+
+        embeddings = [None] * len(segmentation_inputs)
+        if processed:
+            batch_embeddings = embedding_model.predict(
+                np.stack(processed, axis=0), batch_size=len(processed), verbose=0
+            )
+            for index, embedding in zip(processed_indexes, batch_embeddings):
+                embeddings[index] = convert_to_serializable(embedding)
+
+        return jsonify({"embeddings": embeddings, "errors": errors}), 200
+
+    except Exception as e:
+        print(f"Error in tensor embed API: {e}", file=sys.stderr)
+        import traceback
+
+        traceback.print_exc()
+        return jsonify({"error": str(e)}), 500
+
+
+@app.route("/api/embeddings", methods=["GET"])
+def api_export_embeddings():
+    """API endpoint to export stored fingerprint embeddings (used to backfill the backend gallery)"""
+    try:
+        embeddings_dbs = load_embeddings_db()
+        fingerprint_embeddings_db = embeddings_dbs.get("fingerprint_embeddings", {})
+
+        result = {
+            fingerprint_id: {
+                "employee_id": fp_data["employee_id"],
+                "embedding": fp_data["embedding"],
+            }
+            for fingerprint_id, fp_data in fingerprint_embeddings_db.items()
+        }
+
+        return jsonify(convert_to_serializable(result)), 200
+
+    except Exception as e:
+        print(f"Error in export embeddings API: {e}", file=sys.stderr)
+        return jsonify({"error": str(e)}), 500
+
+
 @app.route("/health", methods=["GET"])
 def health_check():
     """Health check endpoint"""
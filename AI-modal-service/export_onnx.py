@@ -0,0 +1,67 @@
+#!/usr/bin/env python
+# coding: utf-8
+"""Export a segmentation/recognition model pair to ONNX for the backend's local
+inference engine (fingerprint.inference.engine=local).
+
+The recognition model is exported as its embedding sub-model, the same one
+create_embedding_model builds for the API. Output layout matches what the backend
+expects under fingerprint.onnx.model-dir:
+
+    <output_dir>/segmentation/<seg_path_name>.onnx
+    <output_dir>/recognition/<rec_path_name>.onnx
+
+Requires tf2onnx (pip install tf2onnx).
+"""
+
+import argparse
+import os
+import sys
+
+import tensorflow as tf
+import tf2onnx
+
+from app import create_embedding_model, load_models
+
+
+def export_model(model, output_path, opset):
+    """Export one Keras model with a dynamic batch dimension"""
+    os.makedirs(os.path.dirname(output_path), exist_ok=True)
+    input_signature = [
+        tf.TensorSpec((None,) + tuple(model.input_shape[1:]), tf.float32, name="input")
+    ]
+    tf2onnx.convert.from_keras(
+        model, input_signature=input_signature, opset=opset, output_path=output_path
+    )
+    print(f"Exported {output_path}")
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Export fingerprint models to ONNX")
+    parser.add_argument("--seg-path-name", required=True, help="Segmentation model path name")
+    parser.add_argument("--rec-path-name", required=True, help="Recognition model path name")
+    parser.add_argument("--output-dir", default="onnx_models", help="Directory to write the ONNX files to")
+    parser.add_argument("--opset", type=int, default=13, help="ONNX opset version")
+    args = parser.parse_args()
+
+    recognition_model, segmentation_model, _, _ = load_models(
+        segmentation_model_path_name=args.seg_path_name,
+        recognition_model_path_name=args.rec_path_name,
+    )
+    if recognition_model is None or segmentation_model is None:
+        print("Failed to load models. Please check model paths and formats.", file=sys.stderr)
+        sys.exit(1)
+
+    export_model(
+        segmentation_model,
+        os.path.join(args.output_dir, "segmentation", f"{args.seg_path_name}.onnx"),
+        args.opset,
+    )
+    export_model(
+        create_embedding_model(recognition_model),
+        os.path.join(args.output_dir, "recognition", f"{args.rec_path_name}.onnx"),
+        args.opset,
+    )
+
+
+if __name__ == "__main__":
+    main()
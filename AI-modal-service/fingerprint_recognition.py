@@ -9,6 +9,7 @@ import cv2
 import sys
 import argparse
 import json
+import struct
 from tensorflow.keras.models import load_model
 from tensorflow.keras.metrics import Metric
 
@@ -193,20 +194,29 @@ def enroll_employees(employee_data_paths, embedding_model, segmentation_model, r
 
     return embeddings_db
 
+_embeddings_cache = {"mtime": None, "db": None}
+
 def load_embeddings_db():
-    """Load embeddings database from file"""
+    """Load embeddings database from file, reusing the cached copy until the file changes"""
     script_dir = os.path.dirname(os.path.abspath(__file__))
     db_path = os.path.join(script_dir, "fingerprint_adapting_models/employee_embeddings.npy")
 
     if os.path.exists(db_path):
-        embeddings_db = np.load(db_path, allow_pickle=True).item()
-        return embeddings_db
+        mtime = os.path.getmtime(db_path)
+        if _embeddings_cache["mtime"] != mtime:
+            _embeddings_cache["db"] = np.load(db_path, allow_pickle=True).item()
+            _embeddings_cache["mtime"] = mtime
+        return _embeddings_cache["db"]
     else:
         print(f"Embeddings database not found at {db_path}", file=sys.stderr)
         return None
 
 def recognize_employee(image_path, embedding_model, segmentation_model, recognition_shape, segmentation_shape, threshold=1.0):
-    """Recognize employee from fingerprint"""
+    """Recognize employee from fingerprint.
+
+    The result is returned to the caller only; it is never written to a shared file,
+    so concurrent recognitions cannot read each other's result.
+    """
     try:
         # Load embeddings database
         embeddings_db = load_embeddings_db()
@@ -238,29 +248,11 @@ def recognize_employee(image_path, embedding_model, segmentation_model, recognit
         else:
             result = {"similarity": {"employee_id": None, "confidence": float(best_similarity)}}
             
-        # Save result to JSON file
-        script_dir = os.path.dirname(os.path.abspath(__file__))
-        result_path = os.path.join(script_dir, "reports", "recognition_result.json")
-        
-        with open(result_path, 'w') as f:
-            json.dump(result, f)
-            
-        print(f"Recognition result saved to {result_path}")
-        
         return result
 
     except Exception as e:
         print(f"Error during recognition: {e}", file=sys.stderr)
-        error_result = {"error": str(e)}
-        
-        # Save error result to JSON file
-        script_dir = os.path.dirname(os.path.abspath(__file__))
-        result_path = os.path.join(script_dir, "reports", "recognition_result.json")
-        
-        with open(result_path, 'w') as f:
-            json.dump(error_result, f)
-            
-        return error_result
+        return {"error": str(e)}
 
 def update_model(
     segmentation_model_path_name,
@@ -291,6 +283,86 @@ def update_model(
         print(f"An error occurred during model update: {e}", file=sys.stderr)
         return False
 
+def read_frame(stream):
+    """Read one length-prefixed frame, or None at end of stream"""
+    header = stream.read(4)
+    if len(header) < 4:
+        return None
+    (length,) = struct.unpack(">I", header)
+    payload = stream.read(length)
+    if len(payload) < length:
+        return None
+    return json.loads(payload.decode("utf-8"))
+
+def write_frame(stream, message):
+    """Write one length-prefixed JSON frame"""
+    data = json.dumps(message).encode("utf-8")
+    stream.write(struct.pack(">I", len(data)) + data)
+    stream.flush()
+
+def serve():
+    """Persistent worker loop used by the biometrics service worker pool.
+
+    Requests and responses are JSON documents framed by a 4-byte big-endian length on
+    stdin/stdout. Models are loaded once per (segmentation, recognition) pair and kept
+    in memory, so each request only pays for preprocessing and inference.
+    """
+    requests_in = sys.stdin.buffer
+    responses_out = sys.stdout.buffer
+    # Keep the framed channel clean: anything printed by the pipeline goes to stderr
+    sys.stdout = sys.stderr
+
+    loaded_models = {}
+
+    def get_models(seg_path_name, rec_path_name):
+        key = (seg_path_name, rec_path_name)
+        if key not in loaded_models:
+            recognition_model, segmentation_model, recognition_shape, segmentation_shape = load_models(
+                segmentation_model_path_name=seg_path_name,
+                recognition_model_path_name=rec_path_name,
+            )
+            if recognition_model is None or segmentation_model is None:
+                raise ValueError("Failed to load models. Please check model paths and formats.")
+            loaded_models[key] = (
+                create_embedding_model(recognition_model),
+                segmentation_model,
+                recognition_shape,
+                segmentation_shape,
+            )
+        return loaded_models[key]
+
+    while True:
+        request = read_frame(requests_in)
+        if request is None:
+            break
+
+        try:
+            op = request.get("op")
+            if op == "ping":
+                response = {"ok": True, "result": {"loaded_models": len(loaded_models)}}
+            elif op == "recognize":
+                embedding_model, segmentation_model, recognition_shape, segmentation_shape = get_models(
+                    request["seg_path_name"], request["rec_path_name"]
+                )
+                result = recognize_employee(
+                    request["image_path"], embedding_model, segmentation_model, recognition_shape, segmentation_shape
+                )
+                response = {"ok": "error" not in result, "result": result}
+            elif op == "update_model":
+                success = update_model(
+                    segmentation_model_path_name=request["seg_path_name"],
+                    recognition_model_path_name=request["rec_path_name"],
+                )
+                response = {"ok": success, "result": {"updated": success}}
+            else:
+                response = {"ok": False, "error": f"Unknown operation: {op}"}
+        except Exception as e:
+            print(f"Worker request failed: {e}", file=sys.stderr)
+            response = {"ok": False, "error": str(e)}
+
+        response["id"] = request.get("id")
+        write_frame(responses_out, response)
+
 def main():
     """Main function to handle command line arguments"""
     parser = argparse.ArgumentParser(description='Fingerprint Recognition System')
@@ -300,9 +372,15 @@ def main():
     parser.add_argument('--recognize', type=str, help='Recognize employee from fingerprint image')
     parser.add_argument('--seg-path-name', type=str, help='Segmentation model path name')
     parser.add_argument('--rec-path-name', type=str, help='Recognition model path name')
+    parser.add_argument('--result-file', type=str, help='Write the recognition result to this per-request file')
+    parser.add_argument('--serve', action='store_true', help='Run as a persistent worker speaking framed JSON on stdin/stdout')
 
     args = parser.parse_args()
 
+    if args.serve:
+        serve()
+        sys.exit(0)
+
     # Load models
     recognition_model, segmentation_model, recognition_shape, segmentation_shape = load_models(
         segmentation_model_path_name=args.seg_path_name,
@@ -335,6 +413,9 @@ def main():
             sys.exit(1)
 
         result = recognize_employee(args.recognize, embedding_model, segmentation_model, recognition_shape, segmentation_shape)
+        if args.result_file:
+            with open(args.result_file, 'w') as f:
+                json.dump(result, f)
         print(json.dumps(result))
         sys.exit(0)
 
@@ -247,6 +247,9 @@ export function RegisterFingerprint() {
             <p>Vị Trí: {fingerprintPosition.replace('_', ' ')}</p>
             <p>Chất Lượng: {(registrationResult.quality * 100).toFixed(2)}%</p>
             <p>Ngày Đăng Ký: {new Date(registrationResult.capturedAt).toLocaleString()}</p>
+            {registrationResult.jobId && (
+              <p>Trạng Thái: Đang xử lý ({registrationResult.status})</p>
+            )}
           </div>
         </div>
       ) : null}
@@ -4,14 +4,27 @@ import com.example.fingerprint_backend.model.access.AccessLog;
 import com.example.fingerprint_backend.model.auth.Employee;
 import com.example.fingerprint_backend.repository.access.AccessLogRepository;
 import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.service.AccessLogPartitionManager;
+import com.example.fingerprint_backend.service.AccessLogQueryService;
+import com.example.fingerprint_backend.service.EmployeeAccessRollupService;
+import com.example.fingerprint_backend.service.journal.AccessJournal;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/access-log")
@@ -20,10 +33,70 @@ public class AccessLogController {
 
     private final AccessLogRepository accessLogRepository;
     private final EmployeeRepository employeeRepository;
+    private final AccessJournal accessJournal;
+    private final AccessLogQueryService accessLogQueryService;
+    private final AccessLogPartitionManager accessLogPartitionManager;
+    private final EmployeeAccessRollupService employeeAccessRollupService;
 
     @GetMapping
-    public List<AccessLog> getAllAccessLogs() {
-        return accessLogRepository.findAll();
+    public ResponseEntity<?> getAccessLogs(
+            @RequestParam(required = false) String employeeId,
+            @RequestParam(required = false) String areaId,
+            @RequestParam(required = false) String accessType,
+            @RequestParam(required = false) Boolean authorized,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String after) {
+        return page(employeeId, areaId, accessType, authorized, start, end, size, after);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAccessLogs(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String employeeId,
+            @RequestParam(required = false) String areaId,
+            @RequestParam(required = false) String accessType,
+            @RequestParam(required = false) Boolean authorized,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        MediaType mediaType = switch (format) {
+            case "csv" -> new MediaType("text", "csv", StandardCharsets.UTF_8);
+            case "ndjson" -> MediaType.APPLICATION_NDJSON;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        };
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        StreamingResponseBody body = out -> {
+            if (!gzip) {
+                accessLogQueryService.export(format, employeeId, areaId, accessType, authorized, start, end, out);
+                return;
+            }
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+            accessLogQueryService.export(format, employeeId, areaId, accessType, authorized, start, end, compressed);
+            compressed.finish();
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("access-log." + format).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/journal")
+    public ResponseEntity<Map<String, Object>> getJournalStatistics() {
+        return ResponseEntity.ok(accessJournal.getStatistics());
+    }
+
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> getPartitionStatistics() {
+        return ResponseEntity.ok(accessLogPartitionManager.getStatistics());
     }
 
     @GetMapping("/{id}")
@@ -34,25 +107,41 @@ public class AccessLogController {
     }
 
     @GetMapping("/employee/{employeeId}")
-    public List<AccessLog> getAccessLogsByEmployee(@PathVariable String employeeId) {
-        return accessLogRepository.findByEmployeeId(employeeId);
+    public ResponseEntity<?> getAccessLogsByEmployee(
+            @PathVariable String employeeId,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String after) {
+        return page(employeeId, null, null, null, null, null, size, after);
     }
 
     @GetMapping("/area/{areaId}")
-    public List<AccessLog> getAccessLogsByArea(@PathVariable String areaId) {
-        return accessLogRepository.findByAreaId(areaId);
+    public ResponseEntity<?> getAccessLogsByArea(
+            @PathVariable String areaId,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String after) {
+        return page(null, areaId, null, null, null, null, size, after);
     }
 
     @GetMapping("/timestamp")
-    public List<AccessLog> getAccessLogsByTimeStamp(
+    public ResponseEntity<?> getAccessLogsByTimeStamp(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
-        return accessLogRepository.findByTimestampBetween(start, end);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String after) {
+        return page(null, null, null, null, start, end, size, after);
     }
 
     @PostMapping
     public AccessLog createAccessLog(@RequestBody AccessLog accessLog) {
-        return accessLogRepository.save(accessLog);
+        if (accessLog.getTimestamp() == null) {
+            accessLog.setTimestamp(LocalDateTime.now());
+        }
+        AccessLog saved = accessLogRepository.save(accessLog);
+        employeeAccessRollupService.record(
+                saved.getEmployee() == null ? null : saved.getEmployee().getId(),
+                saved.getArea() == null ? null : saved.getArea().getId(),
+                saved.isAuthorized(), saved.getTimestamp());
+        return saved;
     }
 
     @GetMapping("/by-employee/{employeeId}")
@@ -68,7 +157,7 @@ public class AccessLogController {
             return ResponseEntity.notFound().build();
         }
 
-        List<AccessLog> accessLogs = accessLogRepository.findByEmployeeIdAndTimestampBetween(
+        List<AccessLog> accessLogs = accessLogQueryService.findByEmployee(
                 employeeId,
                 startDate,
                 endDate,
@@ -77,4 +166,14 @@ public class AccessLogController {
         );
         return ResponseEntity.ok(accessLogs);
     }
+
+    private ResponseEntity<?> page(String employeeId, String areaId, String accessType, Boolean authorized,
+                                   LocalDateTime start, LocalDateTime end, Integer size, String after) {
+        try {
+            return ResponseEntity.ok(accessLogQueryService.page(
+                    employeeId, areaId, accessType, authorized, start, end, size, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 }
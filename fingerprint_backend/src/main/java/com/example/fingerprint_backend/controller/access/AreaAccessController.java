@@ -6,6 +6,7 @@ import com.example.fingerprint_backend.model.auth.Employee;
 import com.example.fingerprint_backend.repository.access.AreaRepository;
 import com.example.fingerprint_backend.repository.access.AreaAccessRepository;
 import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.service.AreaAccessIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -30,11 +31,25 @@ public class AreaAccessController {
         @Autowired
         private AreaRepository areaRepository;
 
+        @Autowired
+        private AreaAccessIndex areaAccessIndex;
+
         @GetMapping("/by-employee/{employeeId}")
         public ResponseEntity<List<AreaAccess>> getAccessByEmployee(@PathVariable String employeeId) {
                 return ResponseEntity.ok(areaAccessRepository.findByEmployeeId(employeeId));
         }
 
+        @GetMapping("/matrix/statistics")
+        public ResponseEntity<Map<String, Object>> getMatrixStatistics() {
+                return ResponseEntity.ok(areaAccessIndex.getStatistics());
+        }
+
+        @PostMapping("/matrix/reconcile")
+        public ResponseEntity<Map<String, Object>> reconcileMatrix() {
+                areaAccessIndex.reconcile();
+                return ResponseEntity.ok(areaAccessIndex.getStatistics());
+        }
+
         @PostMapping("/grant")
         public ResponseEntity<Map<String, Object>> grantAccess(
                         @RequestParam String employeeId,
@@ -61,6 +76,7 @@ public class AreaAccessController {
                                 .build();
 
                 AreaAccess savedAccess = areaAccessRepository.save(accessPermission);
+                areaAccessIndex.grant(area.getId(), employee.getId());
 
                 Map<String, Object> response = new HashMap<>();
                 response.put("message", "Access granted successfully");
@@ -91,6 +107,7 @@ public class AreaAccessController {
                                                 .build();
                                 areaAccessRepository.save(accessPermission);
                         }
+                        areaAccessIndex.grant(area.getId(), employee.getId());
                 }
 
                 Map<String, Object> response = new HashMap<>();
@@ -103,12 +120,12 @@ public class AreaAccessController {
 
         @DeleteMapping("/revoke/{accessId}")
         public ResponseEntity<Map<String, Object>> revokeAccess(@PathVariable String accessId) {
-                if (!areaAccessRepository.existsById(accessId)) {
-                        throw new ResponseStatusException(
-                                        HttpStatus.NOT_FOUND, "Access permission not found with id: " + accessId);
-                }
+                AreaAccess access = areaAccessRepository.findById(accessId)
+                                .orElseThrow(() -> new ResponseStatusException(
+                                                HttpStatus.NOT_FOUND, "Access permission not found with id: " + accessId));
 
                 areaAccessRepository.deleteById(accessId);
+                areaAccessIndex.revoke(access.getArea().getId(), access.getEmployee().getId());
 
                 Map<String, Object> response = new HashMap<>();
                 response.put("message", "Access permission revoked successfully");
@@ -139,6 +156,7 @@ public class AreaAccessController {
                 }
 
                 int deletedCount = areaAccessRepository.deleteByEmployeeIdAndAreaId(employeeId, areaId);
+                areaAccessIndex.revoke(areaId, employeeId);
 
                 Map<String, Object> response = new HashMap<>();
                 response.put("message", "Access permissions revoked successfully");
@@ -7,13 +7,18 @@ import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintS
 import com.example.fingerprint_backend.repository.access.AccessLogRepository;
 import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
 import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.service.EmployeeAccessRollupService;
+import com.example.fingerprint_backend.service.gallery.FingerprintSampleEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -24,6 +29,8 @@ public class EmployeeController {
     private final FingerprintSampleRepository fingerprintSampleRepository;
     private final EmployeeRepository employeeRepository;
     private final AccessLogRepository accessLogRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EmployeeAccessRollupService employeeAccessRollupService;
 
 
     @GetMapping
@@ -59,6 +66,7 @@ public class EmployeeController {
             return ResponseEntity.notFound().build();
         }
         employeeRepository.deleteById(id);
+        eventPublisher.publishEvent(FingerprintSampleEvent.employeeDeleted(id));
         return ResponseEntity.noContent().build();
     }
 
@@ -76,8 +84,15 @@ public class EmployeeController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
 
-        List<EmployeeStatistics> statistics = employeeRepository.getEmployeeStatisticsByDateRange(startDate, endDate);
+        List<EmployeeStatistics> statistics = employeeAccessRollupService.getStatistics(startDate, endDate);
         return ResponseEntity.ok(statistics);
     }
 
+    @PostMapping("/statistics/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildEmployeeStatistics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(employeeAccessRollupService.rebuild(from, to));
+    }
+
 }
@@ -5,12 +5,19 @@ import com.example.fingerprint_backend.model.biometrics.recognition.Recognition;
 import com.example.fingerprint_backend.repository.access.AreaRepository;
 import com.example.fingerprint_backend.repository.biometrics.recognition.RecognitionRepository;
 import com.example.fingerprint_backend.service.FingerprintRecognitionService;
+import com.example.fingerprint_backend.service.InferenceClient;
+import com.example.fingerprint_backend.service.RecognitionResultCache;
+import com.example.fingerprint_backend.service.onnx.OnnxEmbeddingEngine;
+import com.example.fingerprint_backend.service.gallery.EmbeddingGallery;
+import com.example.fingerprint_backend.service.gallery.QuantizationReport;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,6 +29,10 @@ public class FingerprintRecognitionController {
     private final FingerprintRecognitionService recognitionService;
     private final AreaRepository areaRepository;
     private final RecognitionRepository recognitionRepository;
+    private final EmbeddingGallery embeddingGallery;
+    private final InferenceClient inferenceClient;
+    private final OnnxEmbeddingEngine onnxEmbeddingEngine;
+    private final RecognitionResultCache recognitionResultCache;
 
     @PostMapping("/recognize")
     public ResponseEntity<?> recognizeFingerprint(
@@ -55,6 +66,83 @@ public class FingerprintRecognitionController {
         }
     }
 
+    @PostMapping("/verify")
+    public ResponseEntity<?> verifyFingerprint(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("segmentationModelId") String segmentationModelId,
+            @RequestParam("recognitionModelId") String recognitionModelId,
+            @RequestParam(value = "employeeId", required = false) String employeeId,
+            @RequestParam(value = "fingerprintId", required = false) String fingerprintId,
+            @RequestParam(value = "areaId", required = false) String areaId,
+            @RequestParam(value = "accessType", required = false, defaultValue = "ENTRY") String accessType) {
+        if ((employeeId == null || employeeId.isEmpty()) && (fingerprintId == null || fingerprintId.isEmpty())) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Either employeeId or fingerprintId is required"));
+        }
+        try {
+            Area area = null;
+            if (areaId != null && !areaId.isEmpty()) {
+                Optional<Area> areaOpt = areaRepository.findById(areaId);
+                if (areaOpt.isPresent()) {
+                    area = areaOpt.get();
+                }
+            }
+
+            Map<String, Object> result = recognitionService.processVerification(
+                    file,
+                    segmentationModelId,
+                    recognitionModelId,
+                    employeeId == null || employeeId.isEmpty() ? null : employeeId,
+                    fingerprintId == null || fingerprintId.isEmpty() ? null : fingerprintId,
+                    area,
+                    accessType);
+
+            return ResponseEntity.ok(result);
+
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of("error", e.getReason()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "An unexpected error occurred: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/gallery")
+    public ResponseEntity<Map<String, Object>> getGalleryStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("size", embeddingGallery.size());
+        response.put("dimension", embeddingGallery.dimension());
+        response.put("vectorized", embeddingGallery.isVectorized());
+        response.put("indexEnabled", embeddingGallery.isIndexEnabled());
+        response.put("quantization", embeddingGallery.getQuantizationReport());
+        response.put("unscoredTemplates", embeddingGallery.unscoredTemplates());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/gallery/train-quantizer")
+    public ResponseEntity<?> trainGalleryQuantizer() {
+        QuantizationReport report = embeddingGallery.trainQuantizer();
+        if (report == null) {
+            return ResponseEntity.ok(Map.of("message", "Quantization is disabled or the gallery is empty"));
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    @GetMapping("/inference-client")
+    public ResponseEntity<Map<String, Object>> getInferenceClientMetrics() {
+        return ResponseEntity.ok(inferenceClient.getMetrics());
+    }
+
+    @GetMapping("/inference-engine")
+    public ResponseEntity<Map<String, Object>> getInferenceEngineStatus() {
+        return ResponseEntity.ok(onnxEmbeddingEngine.getStatus());
+    }
+
+    @GetMapping("/result-cache")
+    public ResponseEntity<Map<String, Object>> getResultCacheMetrics() {
+        return ResponseEntity.ok(recognitionResultCache.getMetrics());
+    }
+
     @GetMapping("/by-recognition-model/{modelId}")
     public ResponseEntity<List<Recognition>> getRecognitionsByRecognitionModel(@PathVariable String modelId) {
         List<Recognition> recognitions = recognitionRepository.findByFingerprintRecognitionModelId(modelId);
@@ -1,18 +1,31 @@
 package com.example.fingerprint_backend.controller.biometrics.fingerprint;
 
 import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.EnrollmentJob;
 import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
 import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.EnrollmentJobRepository;
 import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.service.EnrollmentQueue;
+import com.example.fingerprint_backend.service.FingerprintBulkRegistrationService;
 import com.example.fingerprint_backend.service.FingerprintRegistrationService;
+import com.example.fingerprint_backend.service.FingerprintSampleListingService;
+import com.example.fingerprint_backend.service.blob.FingerprintImageService;
+import com.example.fingerprint_backend.service.gallery.FingerprintSampleEvent;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,20 +41,77 @@ public class FingerprintSampleController {
     @Autowired
     private FingerprintRegistrationService registrationService;
 
+    @Autowired
+    private FingerprintBulkRegistrationService bulkRegistrationService;
+
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private EnrollmentJobRepository enrollmentJobRepository;
+
+    @Autowired
+    private EnrollmentQueue enrollmentQueue;
+
+    @Autowired
+    private FingerprintImageService fingerprintImageService;
+
+    @Autowired
+    private FingerprintSampleListingService listingService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @GetMapping
     public List<FingerprintSample> getAllFingerprintSamples() {
         return fingerprintSampleRepository.findAll();
     }
 
+    @GetMapping("/summaries")
+    public ResponseEntity<?> getFingerprintSampleSummaries(
+            @RequestParam(required = false) String employeeId,
+            @RequestParam(required = false) String recognitionModelId,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String after) {
+        try {
+            return ResponseEntity.ok(listingService.page(employeeId, recognitionModelId, active, size, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/summaries/stream")
+    public ResponseEntity<StreamingResponseBody> streamFingerprintSampleSummaries(
+            @RequestParam(required = false) String employeeId,
+            @RequestParam(required = false) String recognitionModelId,
+            @RequestParam(required = false) Boolean active) {
+        StreamingResponseBody body = out -> listingService.stream(employeeId, recognitionModelId, active, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<FingerprintSample> getFingerprintSampleById(@PathVariable String id) {
         Optional<FingerprintSample> fingerprintSample = fingerprintSampleRepository.findById(id);
         return fingerprintSample.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{id}/image")
+    public void getFingerprintImage(@PathVariable String id, HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        FingerprintSample sample = fingerprintSampleRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Fingerprint sample not found with id: " + id));
+        if (sample.getImageHash() == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No image stored for fingerprint sample: " + id);
+        }
+        try {
+            fingerprintImageService.stream(sample, request, response);
+        } catch (NoSuchFileException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
     @GetMapping("/by-recognition-model/{modelId}")
     public ResponseEntity<List<FingerprintSample>> getFingerprintsByRecognitionModel(@PathVariable String modelId) {
         List<FingerprintSample> samples = fingerprintSampleRepository.findByFingerprintRecognitionModelId(modelId);
@@ -72,6 +142,29 @@ public class FingerprintSampleController {
                 throw new ResponseStatusException(
                         HttpStatus.BAD_REQUEST, "Maximum number of samples reached for employee: " + employeeId);
             }
+
+            if (enrollmentQueue.isAsync()) {
+                if (!enrollmentQueue.hasCapacity()) {
+                    return ResponseEntity
+                            .status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .body(Map.of("error", "Enrollment queue is full, retry later"));
+                }
+                FingerprintRegistrationService.QueuedEnrollment queued = registrationService.enqueueFingerprint(
+                        employeeId, file, position, segmentationModelId, recognitionModelId);
+                EnrollmentJob job = queued.job();
+                enrollmentQueue.dispatch(job.getId());
+
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                        "message", "Fingerprint stored, embedding queued",
+                        "employeeId", employeeId,
+                        "quality", queued.sample().getQuality(),
+                        "capturedAt", queued.sample().getCapturedAt(),
+                        "fingerprintId", job.getFingerprintId(),
+                        "jobId", job.getId(),
+                        "status", job.getStatus(),
+                        "statusUrl", "/api/fingerprint-sample/enrollment-jobs/" + job.getId()));
+            }
+
             FingerprintSample registeredSample = registrationService.registerFingerprint(
                     employeeId, file, position, segmentationModelId, recognitionModelId);
 
@@ -88,6 +181,64 @@ public class FingerprintSampleController {
         }
     }
 
+    @PostMapping("/register/bulk")
+    public ResponseEntity<?> registerFingerprints(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("employeeIds") List<String> employeeIds,
+            @RequestParam("positions") List<String> positions,
+            @RequestParam("segmentationModelId") String segmentationModelId,
+            @RequestParam("recognitionModelId") String recognitionModelId) {
+        try {
+            List<Map<String, Object>> results = bulkRegistrationService.registerFingerprints(
+                    files, employeeIds, positions, segmentationModelId, recognitionModelId);
+
+            Map<String, Long> counts = new HashMap<>();
+            for (Map<String, Object> result : results) {
+                counts.merge((String) result.get("status"), 1L, Long::sum);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Bulk fingerprint registration processed");
+            response.put("total", results.size());
+            response.put("counts", counts);
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/register/{employeeId}/bulk")
+    public ResponseEntity<?> registerEmployeeFingerprints(
+            @PathVariable String employeeId,
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("positions") List<String> positions,
+            @RequestParam("segmentationModelId") String segmentationModelId,
+            @RequestParam("recognitionModelId") String recognitionModelId) {
+        return registerFingerprints(files, List.of(employeeId), positions, segmentationModelId, recognitionModelId);
+    }
+
+    @GetMapping("/enrollment-jobs/{jobId}")
+    public ResponseEntity<EnrollmentJob> getEnrollmentJob(@PathVariable String jobId) {
+        return enrollmentJobRepository.findById(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/enrollment-jobs/employee/{employeeId}")
+    public ResponseEntity<List<EnrollmentJob>> getEnrollmentJobsByEmployee(@PathVariable String employeeId) {
+        return ResponseEntity.ok(enrollmentJobRepository.findByEmployeeIdOrderByCreatedAtDesc(employeeId));
+    }
+
+    @GetMapping("/enrollment-jobs/statistics")
+    public ResponseEntity<Map<String, Object>> getEnrollmentStatistics() {
+        return ResponseEntity.ok(enrollmentQueue.getStatistics());
+    }
+
     @GetMapping("/employee/{employeeId}")
     public ResponseEntity<List<FingerprintSample>> getFingerprintSamplesByEmployeeId(
             @PathVariable String employeeId,
@@ -124,6 +275,7 @@ public class FingerprintSampleController {
 
         fingerprint.setActive(false);
         fingerprintSampleRepository.save(fingerprint);
+        eventPublisher.publishEvent(FingerprintSampleEvent.disabled(fingerprintId, employeeId));
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Fingerprint disabled successfully");
@@ -150,6 +302,7 @@ public class FingerprintSampleController {
 
         fingerprint.setActive(true);
         fingerprintSampleRepository.save(fingerprint);
+        eventPublisher.publishEvent(FingerprintSampleEvent.enabled(fingerprint));
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Fingerprint enabled successfully");
@@ -166,6 +319,7 @@ public class FingerprintSampleController {
 
         for (FingerprintSample sample : activeSamples) {
             fingerprintSampleRepository.updateActiveStatus(sample.getId(), false);
+            eventPublisher.publishEvent(FingerprintSampleEvent.disabled(sample.getId(), employeeId));
         }
 
         int updatedCount = fingerprintSampleRepository.deactivateAllForEmployee(employeeId);
@@ -188,6 +342,7 @@ public class FingerprintSampleController {
         int updatedCount = 0;
         for (FingerprintSample sample : inactiveSamples) {
             fingerprintSampleRepository.updateActiveStatus(sample.getId(), true);
+            eventPublisher.publishEvent(FingerprintSampleEvent.enabled(sample));
             updatedCount++;
         }
 
@@ -210,6 +365,7 @@ public class FingerprintSampleController {
 
         for (FingerprintSample sample : samples) {
             fingerprintSampleRepository.delete(sample);
+            eventPublisher.publishEvent(FingerprintSampleEvent.deleted(sample.getId(), employeeId));
         }
 
         Map<String, Object> response = new HashMap<>();
@@ -233,6 +389,7 @@ public class FingerprintSampleController {
         String employeeName = fingerprint.getEmployee().getFullName();
 
         fingerprintSampleRepository.deleteById(fingerprintId);
+        eventPublisher.publishEvent(FingerprintSampleEvent.deleted(fingerprintId, employeeId));
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Fingerprint deleted successfully");
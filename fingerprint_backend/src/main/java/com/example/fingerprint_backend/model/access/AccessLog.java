@@ -17,6 +17,11 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(name = "access_log", indexes = {
+        @Index(name = "idx_access_log_employee_timestamp", columnList = "employee_id, timestamp, id"),
+        @Index(name = "idx_access_log_area_timestamp", columnList = "area_id, timestamp, id"),
+        @Index(name = "idx_access_log_timestamp", columnList = "timestamp, id")
+})
 public class AccessLog {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -31,6 +36,7 @@ public class AccessLog {
     @JoinColumn(name = "employee_id")
     private Employee employee;
 
+    @Column(nullable = false)
     private LocalDateTime timestamp;
     private boolean authorized;
     private String accessType;
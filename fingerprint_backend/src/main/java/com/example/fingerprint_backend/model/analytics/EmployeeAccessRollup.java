@@ -0,0 +1,29 @@
+package com.example.fingerprint_backend.model.analytics;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Access counters of one employee in one area on one day, kept up to date as access
+ * logs are written (see {@code EmployeeAccessRollupService}).
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+// Covers the date range reads of the statistics endpoint without touching the table rows
+@Table(name = "employee_access_rollup", indexes = @Index(name = "idx_employee_access_rollup_date",
+        columnList = "bucket_date, employee_id, access_count, authorized_count, first_access, last_access"))
+public class EmployeeAccessRollup {
+    @EmbeddedId
+    private EmployeeAccessRollupId id;
+
+    private long accessCount;
+    private long authorizedCount;
+    private LocalDateTime firstAccess;
+    private LocalDateTime lastAccess;
+}
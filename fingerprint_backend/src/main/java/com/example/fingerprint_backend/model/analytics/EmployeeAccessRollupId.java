@@ -0,0 +1,26 @@
+package com.example.fingerprint_backend.model.analytics;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmployeeAccessRollupId implements Serializable {
+    @Column(name = "bucket_date")
+    private LocalDate bucketDate;
+
+    @Column(name = "employee_id")
+    private String employeeId;
+
+    // Empty for access logs without an area
+    @Column(name = "area_id")
+    private String areaId;
+}
@@ -13,6 +13,8 @@ public class EmployeeStatistics {
     private String employeeId;
     private String fullName;
     private long totalAccesses;
+    private long authorizedAccesses;
+    private long deniedAccesses;
     private LocalDateTime firstAccessTime;
     private LocalDateTime lastAccessTime;
 }
\ No newline at end of file
@@ -1,14 +1,20 @@
 package com.example.fingerprint_backend.model.base;
 
+import com.example.fingerprint_backend.service.ModelChangeListener;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "model")
+@EntityListeners(ModelChangeListener.class)
 @Inheritance(strategy = InheritanceType.JOINED)
 @Data
 @NoArgsConstructor
@@ -0,0 +1,52 @@
+package com.example.fingerprint_backend.model.biometrics.fingerprint;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Background embedding of an enrolled {@link FingerprintSample}. The sample is referenced
+ * by id only, so deleting a sample never conflicts with its job; the job then fails.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_enrollment_job_status_next_attempt", columnList = "status, nextAttemptAt"),
+        @Index(name = "idx_enrollment_job_employee", columnList = "employeeId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EnrollmentJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    private String fingerprintId;
+    private String employeeId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Status status;
+
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime nextAttemptAt;
+}
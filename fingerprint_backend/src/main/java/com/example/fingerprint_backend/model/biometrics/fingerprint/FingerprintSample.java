@@ -11,6 +11,13 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_fingerprint_sample_image_hash", columnList = "imageHash"),
+        @Index(name = "idx_fingerprint_sample_captured", columnList = "capturedAt, id"),
+        @Index(name = "idx_fingerprint_sample_employee_captured", columnList = "employee_id, capturedAt, id"),
+        @Index(name = "idx_fingerprint_sample_employee_active_captured", columnList = "employee_id, active, capturedAt, id"),
+        @Index(name = "idx_fingerprint_sample_recognition_captured", columnList = "recognition_model_id, capturedAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,9 +29,18 @@ public class FingerprintSample {
 
     private String image;
 
+    // Image bytes live in the ImageBlobStore under this SHA-256; see FingerprintImageService
+    @Column(length = 64)
+    private String imageHash;
+    private Long imageSize;
+    @Column(length = 16)
+    private String imageFormat;
+
+    // Float32 little-endian embedding produced by the recognition model at registration
+    @JsonIgnore
     @Lob
-    @Column(columnDefinition = "LONGBLOB")
-    private byte[] imageData;
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] embedding;
 
     private String position;
     private LocalDateTime capturedAt;
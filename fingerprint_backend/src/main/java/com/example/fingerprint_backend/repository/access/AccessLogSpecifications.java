@@ -0,0 +1,84 @@
+package com.example.fingerprint_backend.repository.access;
+
+import com.example.fingerprint_backend.model.access.AccessLog;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access log filters as {@link Specification}s. A query is built from only the filters
+ * that are present, so the SQL sent to MySQL carries plain column predicates that can
+ * use the {@code (employee_id, timestamp)} and {@code (area_id, timestamp)} indexes and
+ * prune partitions, instead of {@code (:x IS NULL OR ...)} terms.
+ */
+public final class AccessLogSpecifications {
+
+    private AccessLogSpecifications() {
+    }
+
+    public static Specification<AccessLog> employeeIs(String employeeId) {
+        return (root, query, cb) -> cb.equal(root.get("employee").get("id"), employeeId);
+    }
+
+    public static Specification<AccessLog> areaIs(String areaId) {
+        return (root, query, cb) -> cb.equal(root.get("area").get("id"), areaId);
+    }
+
+    public static Specification<AccessLog> accessTypeIs(String accessType) {
+        return (root, query, cb) -> cb.equal(root.get("accessType"), accessType);
+    }
+
+    public static Specification<AccessLog> authorizedIs(boolean authorized) {
+        return (root, query, cb) -> cb.equal(root.get("authorized"), authorized);
+    }
+
+    public static Specification<AccessLog> from(LocalDateTime start) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), start);
+    }
+
+    public static Specification<AccessLog> until(LocalDateTime end) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("timestamp"), end);
+    }
+
+    /**
+     * Rows that come after {@code (timestamp, id)} in newest-first order. The extra
+     * {@code timestamp <= ?} term is implied by the other two but lets MySQL prune
+     * partitions and start the index range scan at the cursor.
+     */
+    public static Specification<AccessLog> before(LocalDateTime timestamp, String id) {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("timestamp"), timestamp),
+                cb.or(
+                        cb.lessThan(root.get("timestamp"), timestamp),
+                        cb.and(cb.equal(root.get("timestamp"), timestamp), cb.lessThan(root.get("id"), id))));
+    }
+
+    /**
+     * Combines the filters that are set; {@code null} arguments add nothing to the query.
+     */
+    public static Specification<AccessLog> matching(String employeeId, String areaId, String accessType,
+                                                    Boolean authorized, LocalDateTime start, LocalDateTime end) {
+        List<Specification<AccessLog>> specifications = new ArrayList<>();
+        if (employeeId != null) {
+            specifications.add(employeeIs(employeeId));
+        }
+        if (areaId != null) {
+            specifications.add(areaIs(areaId));
+        }
+        if (accessType != null) {
+            specifications.add(accessTypeIs(accessType));
+        }
+        if (authorized != null) {
+            specifications.add(authorizedIs(authorized));
+        }
+        if (start != null) {
+            specifications.add(from(start));
+        }
+        if (end != null) {
+            specifications.add(until(end));
+        }
+        return Specification.allOf(specifications);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.fingerprint_backend.repository.access;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class AccessLogSummary {
+    private String id;
+    private LocalDateTime timestamp;
+    private boolean authorized;
+    private String accessType;
+    private String areaId;
+    private String employeeId;
+}
@@ -22,6 +22,9 @@ public interface AreaAccessRepository extends JpaRepository<AreaAccess, String>
 
     boolean existsByEmployeeAndArea(Employee employee, Area area);
 
+    @Query("SELECT a.area.id AS areaId, a.employee.id AS employeeId FROM AreaAccess a")
+    List<AreaAccessView> findAllAccessPairs();
+
     @Transactional
     @Modifying
     @Query("DELETE FROM AreaAccess e WHERE e.employee.id = ?1 AND e.area.id = ?2")
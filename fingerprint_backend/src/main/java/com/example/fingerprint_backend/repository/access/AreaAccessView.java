@@ -0,0 +1,7 @@
+package com.example.fingerprint_backend.repository.access;
+
+public interface AreaAccessView {
+    String getAreaId();
+
+    String getEmployeeId();
+}
@@ -0,0 +1,71 @@
+package com.example.fingerprint_backend.repository.biometrics.fingerprint;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.EnrollmentJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EnrollmentJobRepository extends JpaRepository<EnrollmentJob, String> {
+
+    List<EnrollmentJob> findByEmployeeIdOrderByCreatedAtDesc(String employeeId);
+
+    long countByStatus(EnrollmentJob.Status status);
+
+    long countByStatusIn(Collection<EnrollmentJob.Status> statuses);
+
+    @Query("SELECT j.id FROM EnrollmentJob j WHERE j.status = 'PENDING' AND j.nextAttemptAt <= :now " +
+            "ORDER BY j.nextAttemptAt")
+    List<String> findReadyIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT j.fingerprintId FROM EnrollmentJob j WHERE j.status IN :statuses")
+    List<String> findFingerprintIdsByStatusIn(@Param("statuses") Collection<EnrollmentJob.Status> statuses);
+
+    // Only one worker wins the PENDING -> RUNNING transition for a job
+    @Modifying
+    @Transactional
+    @Query("UPDATE EnrollmentJob j SET j.status = 'RUNNING', j.attempts = j.attempts + 1, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.status = 'PENDING'")
+    int claim(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EnrollmentJob j SET j.status = 'SUCCEEDED', j.lastError = null, j.updatedAt = :now " +
+            "WHERE j.id = :id")
+    int markSucceeded(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EnrollmentJob j SET j.status = 'PENDING', j.lastError = :error, j.updatedAt = :now, " +
+            "j.nextAttemptAt = :nextAttemptAt WHERE j.id = :id")
+    int markRetry(@Param("id") String id, @Param("error") String error, @Param("now") LocalDateTime now,
+                  @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    // Hands a claimed job back without counting the attempt, for a sample that is not ready yet
+    @Modifying
+    @Transactional
+    @Query("UPDATE EnrollmentJob j SET j.status = 'PENDING', j.attempts = j.attempts - 1, j.lastError = :reason, " +
+            "j.updatedAt = :now, j.nextAttemptAt = :nextAttemptAt WHERE j.id = :id")
+    int defer(@Param("id") String id, @Param("reason") String reason, @Param("now") LocalDateTime now,
+              @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EnrollmentJob j SET j.status = 'FAILED', j.lastError = :error, j.updatedAt = :now " +
+            "WHERE j.id = :id")
+    int markFailed(@Param("id") String id, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    // Jobs left RUNNING by a previous process never finished; run them again
+    @Modifying
+    @Transactional
+    @Query("UPDATE EnrollmentJob j SET j.status = 'PENDING', j.nextAttemptAt = :now WHERE j.status = 'RUNNING'")
+    int requeueRunning(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,9 @@
+package com.example.fingerprint_backend.repository.biometrics.fingerprint;
+
+public interface FingerprintEmbeddingView {
+    String getId();
+
+    String getEmployeeId();
+
+    byte[] getEmbedding();
+}
@@ -9,6 +9,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +21,8 @@ public interface FingerprintSampleRepository extends JpaRepository<FingerprintSa
 
     boolean existsByIdAndEmployeeId(String id, String employeeId);
 
+    boolean existsByIdAndActiveTrue(String id);
+
     // Active status queries
     List<FingerprintSample> findByEmployeeIdAndActiveTrue(String employeeId);
 
@@ -26,6 +30,11 @@ public interface FingerprintSampleRepository extends JpaRepository<FingerprintSa
 
     int countByEmployeeIdAndActiveTrue(String employeeId);
 
+    // Rows of [employeeId, sample count]; employees without samples are absent
+    @Query("SELECT f.employee.id, COUNT(f) FROM FingerprintSample f WHERE f.employee.id IN :employeeIds " +
+            "GROUP BY f.employee.id")
+    List<Object[]> countByEmployeeIds(@Param("employeeIds") Collection<String> employeeIds);
+
     // Position related queries
     List<FingerprintSample> findByEmployeeIdAndPositionAndActiveTrue(String employeeId, String position);
 
@@ -42,6 +51,39 @@ public interface FingerprintSampleRepository extends JpaRepository<FingerprintSa
     @Query("SELECT AVG(f.quality) FROM FingerprintSample f WHERE f.fingerprintSegmentationModel.id = :modelId")
     float findAverageQualityByFingerprintSegmentationModelId(@Param("modelId") String modelId);
 
+    // Rows without a capture time would fall outside every keyset page
+    @Modifying
+    @Transactional
+    @Query("UPDATE FingerprintSample f SET f.capturedAt = :capturedAt WHERE f.capturedAt IS NULL")
+    int backfillCapturedAt(@Param("capturedAt") LocalDateTime capturedAt);
+
+    // Gallery loading
+    @Query("SELECT f.id AS id, f.employee.id AS employeeId, f.embedding AS embedding FROM FingerprintSample f " +
+            "WHERE f.active = true AND f.embedding IS NOT NULL")
+    List<FingerprintEmbeddingView> findActiveEmbeddings();
+
+    @Query("SELECT COUNT(f) FROM FingerprintSample f WHERE f.active = true AND f.embedding IS NOT NULL")
+    long countActiveEmbeddings();
+
+    @Query("SELECT DISTINCT f.imageHash FROM FingerprintSample f WHERE f.imageHash IS NOT NULL")
+    List<String> findAllImageHashes();
+
+    @Query("SELECT f.id FROM FingerprintSample f WHERE f.embedding IS NULL")
+    List<String> findIdsWithoutEmbedding();
+
+    @Query("SELECT f.id, f.employee.id FROM FingerprintSample f WHERE f.embedding IS NOT NULL")
+    List<Object[]> findIdsWithEmbedding();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FingerprintSample f SET f.embedding = :embedding WHERE f.id = :id")
+    int updateEmbedding(@Param("id") String id, @Param("embedding") byte[] embedding);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FingerprintSample f SET f.embedding = :embedding WHERE f.id = :id AND f.active = true")
+    int updateEmbeddingIfActive(@Param("id") String id, @Param("embedding") byte[] embedding);
+
     // Update operations
     @Modifying
     @Transactional
@@ -0,0 +1,63 @@
+package com.example.fingerprint_backend.repository.biometrics.fingerprint;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fingerprint sample listing filters as {@link Specification}s. Only the filters that
+ * are present become predicates, so MySQL sees plain column terms and can seek on the
+ * {@code (employee_id, active, capturedAt, id)} and {@code *_captured} indexes instead
+ * of evaluating {@code (:active IS NULL OR ...)} row by row.
+ */
+public final class FingerprintSampleSpecifications {
+
+    private FingerprintSampleSpecifications() {
+    }
+
+    public static Specification<FingerprintSample> employeeIs(String employeeId) {
+        return (root, query, cb) -> cb.equal(root.get("employee").get("id"), employeeId);
+    }
+
+    public static Specification<FingerprintSample> recognitionModelIs(String modelId) {
+        return (root, query, cb) -> cb.equal(root.get("fingerprintRecognitionModel").get("id"), modelId);
+    }
+
+    public static Specification<FingerprintSample> activeIs(boolean active) {
+        return (root, query, cb) -> cb.equal(root.get("active"), active);
+    }
+
+    /**
+     * Rows that come after {@code (capturedAt, id)} in oldest-first order. The extra
+     * {@code capturedAt >= ?} term is implied by the other two but starts the index
+     * range scan at the cursor.
+     */
+    public static Specification<FingerprintSample> after(LocalDateTime capturedAt, String id) {
+        return (root, query, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(root.get("capturedAt"), capturedAt),
+                cb.or(
+                        cb.greaterThan(root.get("capturedAt"), capturedAt),
+                        cb.and(cb.equal(root.get("capturedAt"), capturedAt), cb.greaterThan(root.get("id"), id))));
+    }
+
+    /**
+     * Combines the filters that are set; {@code null} arguments add nothing to the query.
+     */
+    public static Specification<FingerprintSample> matching(String employeeId, String recognitionModelId,
+                                                            Boolean active) {
+        List<Specification<FingerprintSample>> specifications = new ArrayList<>();
+        if (employeeId != null) {
+            specifications.add(employeeIs(employeeId));
+        }
+        if (recognitionModelId != null) {
+            specifications.add(recognitionModelIs(recognitionModelId));
+        }
+        if (active != null) {
+            specifications.add(activeIs(active));
+        }
+        return Specification.allOf(specifications);
+    }
+}
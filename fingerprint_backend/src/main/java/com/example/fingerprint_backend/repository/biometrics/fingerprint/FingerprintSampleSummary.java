@@ -0,0 +1,17 @@
+package com.example.fingerprint_backend.repository.biometrics.fingerprint;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class FingerprintSampleSummary {
+    private String id;
+    private String employeeId;
+    private String position;
+    private Double quality;
+    private Boolean active;
+    private LocalDateTime capturedAt;
+}
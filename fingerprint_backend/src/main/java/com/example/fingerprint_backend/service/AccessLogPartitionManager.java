@@ -0,0 +1,221 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.repository.access.AccessLogRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps {@code access_log} range-partitioned by calendar month on MySQL, so that time
+ * bounded queries only touch the months they cover and old months can be dropped as a
+ * whole instead of deleted row by row.
+ *
+ * Partitioning is an opt-in migration ({@code fingerprint.access-log.partitioning.enabled}).
+ * The entities keep their foreign keys, so unpartitioned deployments are unaffected.
+ * On the first start with it enabled against an unpartitioned table the foreign keys to
+ * and from {@code access_log} are dropped (MySQL does not support them on partitioned
+ * tables), the primary key is widened to {@code (id, timestamp)} and the table is
+ * partitioned from the month of its oldest row. This runs while the context starts,
+ * before the web server accepts requests, and a failure aborts startup. Afterwards the
+ * schema update tries to add those foreign keys again on every start; MySQL rejects
+ * them and Hibernate logs a warning for each.
+ *
+ * The daily maintenance adds months ahead of the current one by splitting the empty
+ * {@code p_future} partition and, when a retention is configured, drops expired months
+ * together with their recognitions. Other databases are left alone.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccessLogPartitionManager {
+
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter BOUNDARY = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${fingerprint.access-log.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${fingerprint.access-log.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 keeps every month
+    @Value("${fingerprint.access-log.retention-months:0}")
+    private int retentionMonths;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AccessLogRepository accessLogRepository;
+
+    private volatile Boolean mySql;
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled || !isMySql()) {
+            return;
+        }
+        if (!isPartitioned()) {
+            try {
+                partition();
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Failed to partition access_log; fix the cause or set "
+                        + "fingerprint.access-log.partitioning.enabled=false", e);
+            }
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${fingerprint.access-log.partitioning.cron:0 0 1 * * *}")
+    public void maintain() {
+        if (!enabled || !isMySql() || !isPartitioned()) {
+            return;
+        }
+        try {
+            addMonths(YearMonth.now().plusMonths(monthsAhead));
+            if (retentionMonths > 0) {
+                dropMonthsBefore(YearMonth.now().minusMonths(retentionMonths));
+            }
+        } catch (Exception e) {
+            System.err.println("Access log partition maintenance failed: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        boolean partitioned = isMySql() && isPartitioned();
+        statistics.put("partitioned", partitioned);
+        statistics.put("retentionMonths", retentionMonths);
+        if (partitioned) {
+            List<Map<String, Object>> partitions = jdbcTemplate.query(
+                    "SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS FROM information_schema.PARTITIONS "
+                            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'access_log' "
+                            + "ORDER BY PARTITION_ORDINAL_POSITION",
+                    (rs, rowNum) -> {
+                        Map<String, Object> partition = new HashMap<>();
+                        partition.put("name", rs.getString(1));
+                        partition.put("lessThan", rs.getString(2));
+                        partition.put("estimatedRows", rs.getLong(3));
+                        return partition;
+                    });
+            statistics.put("partitions", partitions);
+        }
+        return statistics;
+    }
+
+    private void partition() {
+        int backfilled = accessLogRepository.backfillTimestamp(LocalDateTime.now());
+        if (backfilled > 0) {
+            System.out.println("Set timestamp on " + backfilled + " access logs without one");
+        }
+
+        List<String[]> foreignKeys = jdbcTemplate.query(
+                "SELECT TABLE_NAME, CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS "
+                        + "WHERE CONSTRAINT_SCHEMA = DATABASE() "
+                        + "AND (TABLE_NAME = 'access_log' OR REFERENCED_TABLE_NAME = 'access_log')",
+                (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)});
+        for (String[] foreignKey : foreignKeys) {
+            jdbcTemplate.execute("ALTER TABLE `" + foreignKey[0] + "` DROP FOREIGN KEY `" + foreignKey[1] + "`");
+        }
+
+        // Every unique key of a partitioned table has to contain the partitioning column
+        jdbcTemplate.execute("ALTER TABLE access_log DROP PRIMARY KEY, ADD PRIMARY KEY (id, `timestamp`)");
+
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(`timestamp`) FROM access_log", Timestamp.class);
+        YearMonth first = oldest == null ? YearMonth.now() : YearMonth.from(oldest.toLocalDateTime());
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = first; !month.isAfter(YearMonth.now().plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            definitions.add(definition(month));
+        }
+        definitions.add("PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE access_log PARTITION BY RANGE COLUMNS(`timestamp`) ("
+                + String.join(", ", definitions) + ")");
+        System.out.println("Partitioned access_log into " + (definitions.size() - 1) + " months from " + first);
+    }
+
+    private void addMonths(YearMonth until) {
+        YearMonth last = lastMonth();
+        if (last == null || !last.isBefore(until)) {
+            return;
+        }
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(until); month = month.plusMonths(1)) {
+            definitions.add(definition(month));
+        }
+        definitions.add("PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE access_log REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                + String.join(", ", definitions) + ")");
+    }
+
+    private void dropMonthsBefore(YearMonth cutoff) {
+        for (String name : partitionNames()) {
+            YearMonth month = month(name);
+            if (month == null || !month.isBefore(cutoff)) {
+                continue;
+            }
+            jdbcTemplate.update("DELETE r FROM recognition r JOIN access_log PARTITION (" + name + ") al "
+                    + "ON al.id = r.access_log_id");
+            jdbcTemplate.execute("ALTER TABLE access_log DROP PARTITION " + name);
+            System.out.println("Dropped access log partition " + name);
+        }
+    }
+
+    private YearMonth lastMonth() {
+        YearMonth last = null;
+        for (String name : partitionNames()) {
+            YearMonth month = month(name);
+            if (month != null && (last == null || month.isAfter(last))) {
+                last = month;
+            }
+        }
+        return last;
+    }
+
+    private List<String> partitionNames() {
+        return jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() "
+                        + "AND TABLE_NAME = 'access_log' AND PARTITION_NAME IS NOT NULL "
+                        + "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class);
+    }
+
+    private boolean isPartitioned() {
+        Integer partitions = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() "
+                        + "AND TABLE_NAME = 'access_log' AND PARTITION_NAME IS NOT NULL",
+                Integer.class);
+        return partitions != null && partitions > 0;
+    }
+
+    private boolean isMySql() {
+        if (mySql == null) {
+            String product = jdbcTemplate.execute((Connection connection) ->
+                    connection.getMetaData().getDatabaseProductName());
+            mySql = product != null && (product.contains("MySQL") || product.contains("MariaDB"));
+        }
+        return mySql;
+    }
+
+    // Partition pYYYYMM holds the rows before the first day of the following month
+    private static String definition(YearMonth month) {
+        return "PARTITION " + month.format(PARTITION_NAME) + " VALUES LESS THAN ('"
+                + month.plusMonths(1).atDay(1).atStartOfDay().format(BOUNDARY) + "')";
+    }
+
+    private static YearMonth month(String partitionName) {
+        if (partitionName == null || !partitionName.matches("p\\d{6}")) {
+            return null;
+        }
+        return YearMonth.parse(partitionName.substring(1), DateTimeFormatter.ofPattern("yyyyMM"));
+    }
+}
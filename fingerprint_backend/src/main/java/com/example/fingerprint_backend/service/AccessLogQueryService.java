@@ -0,0 +1,252 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.access.AccessLog;
+import com.example.fingerprint_backend.model.access.Area;
+import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.repository.access.AccessLogRepository;
+import com.example.fingerprint_backend.repository.access.AccessLogSummary;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.example.fingerprint_backend.repository.access.AccessLogSpecifications.before;
+import static com.example.fingerprint_backend.repository.access.AccessLogSpecifications.matching;
+
+/**
+ * Access log queries. Pages are newest first and seek past the last {@code (timestamp, id)}
+ * returned instead of using an offset, so each page is a bounded range scan on the
+ * {@code (employee_id, timestamp)}, {@code (area_id, timestamp)} or {@code (timestamp)}
+ * index within the partitions that overlap the requested time range. Exports stream the
+ * whole match through a single server-side cursor.
+ */
+@Service
+@RequiredArgsConstructor
+public class AccessLogQueryService {
+
+    private static final String[] EXPORT_COLUMNS = {
+            "id", "timestamp", "authorized", "accessType", "areaId", "areaName", "employeeId", "employeeName"};
+
+    @Value("${fingerprint.access-log.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${fingerprint.access-log.max-page-size:1000}")
+    private int maxPageSize;
+
+    // Integer.MIN_VALUE makes MySQL Connector/J stream rows one at a time instead of buffering the result
+    @Value("${fingerprint.access-log.export-fetch-size:-2147483648}")
+    private int exportFetchSize;
+
+    private final AccessLogRepository accessLogRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * One page of summaries after the cursor, with the cursor of the next page
+     * ({@code null} on the last page).
+     */
+    public Map<String, Object> page(String employeeId, String areaId, String accessType, Boolean authorized,
+                                    LocalDateTime start, LocalDateTime end, Integer size, String after) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        Specification<AccessLog> specification = matching(employeeId, areaId, accessType, authorized, start, end);
+        Key key = decode(after);
+        if (key != null) {
+            specification = specification.and(before(key.timestamp, key.id));
+        }
+        List<AccessLogSummary> items = fetch(specification, pageSize);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", items);
+        response.put("size", items.size());
+        response.put("nextCursor", items.size() < pageSize ? null : encode(items.get(items.size() - 1)));
+        return response;
+    }
+
+    /**
+     * Full access log entities of one employee within a time range, newest first.
+     */
+    public List<AccessLog> findByEmployee(String employeeId, LocalDateTime start, LocalDateTime end,
+                                          String accessType, String areaId) {
+        return accessLogRepository.findAll(matching(employeeId, areaId, accessType, null, start, end),
+                Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id")));
+    }
+
+    /**
+     * Writes every access log matching the filters to {@code out}, oldest first, as
+     * {@code csv} or {@code ndjson}. Rows come from a forward-only cursor and are written
+     * as they are read, without entities or a result list, so memory use stays the same
+     * whatever the number of rows.
+     */
+    @Transactional(readOnly = true)
+    public void export(String format, String employeeId, String areaId, String accessType, Boolean authorized,
+                       LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<AccessLog> root = query.from(AccessLog.class);
+        Join<AccessLog, Area> area = root.join("area", JoinType.LEFT);
+        Join<AccessLog, Employee> employee = root.join("employee", JoinType.LEFT);
+        query.multiselect(
+                root.get("id"),
+                root.get("timestamp"),
+                root.get("authorized"),
+                root.get("accessType"),
+                area.get("id"),
+                area.get("name"),
+                employee.get("id"),
+                employee.get("fullName"));
+        Predicate predicate = matching(employeeId, areaId, accessType, authorized, start, end).toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get("timestamp")), cb.asc(root.get("id")));
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try (Stream<Tuple> rows = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, exportFetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()) {
+            if ("ndjson".equals(format)) {
+                writeNdjson(rows.iterator(), writer);
+            } else {
+                writeCsv(rows.iterator(), writer);
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeCsv(Iterator<Tuple> rows, Writer writer) throws IOException {
+        writer.write(String.join(",", EXPORT_COLUMNS));
+        writer.write("\r\n");
+        while (rows.hasNext()) {
+            Tuple row = rows.next();
+            for (int i = 0; i < EXPORT_COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = exportValue(row.get(i));
+                if (value != null) {
+                    writer.write(csvField(value));
+                }
+            }
+            writer.write("\r\n");
+        }
+    }
+
+    private void writeNdjson(Iterator<Tuple> rows, Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // One object per line, without the space Jackson puts between root values
+        generator.setRootValueSeparator(null);
+        while (rows.hasNext()) {
+            Tuple row = rows.next();
+            generator.writeStartObject();
+            for (int i = 0; i < EXPORT_COLUMNS.length; i++) {
+                Object value = row.get(i);
+                if (value instanceof Boolean flag) {
+                    generator.writeBooleanField(EXPORT_COLUMNS[i], flag);
+                } else {
+                    generator.writeStringField(EXPORT_COLUMNS[i], exportValue(value));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    private static String exportValue(Object value) {
+        if (value instanceof LocalDateTime timestamp) {
+            return timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+        return value == null ? null : value.toString();
+    }
+
+    // RFC 4180: quote fields containing a separator, quote or line break
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // Selects the summary columns only; area and employee ids come from the foreign key columns
+    private List<AccessLogSummary> fetch(Specification<AccessLog> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AccessLogSummary> query = cb.createQuery(AccessLogSummary.class);
+        Root<AccessLog> root = query.from(AccessLog.class);
+        query.select(cb.construct(AccessLogSummary.class,
+                root.get("id"),
+                root.get("timestamp"),
+                root.get("authorized"),
+                root.get("accessType"),
+                root.get("area").get("id"),
+                root.get("employee").get("id")));
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.desc(root.get("timestamp")), cb.desc(root.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    // The cursor is opaque to clients: base64url of "timestamp|id"
+    private static String encode(AccessLogSummary last) {
+        String raw = last.getTimestamp() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Key decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new Key(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static final class Key {
+        private final LocalDateTime timestamp;
+        private final String id;
+
+        private Key(LocalDateTime timestamp, String id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.repository.access.AreaAccessRepository;
+import com.example.fingerprint_backend.repository.access.AreaAccessView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory employee × area authorisation matrix, so access decisions on the door
+ * path never touch the database.
+ *
+ * Employees and areas get dense indices on first sight. Each employee has a
+ * {@code long[]} bitset over area indices and each area one over employee indices;
+ * the second backs the authorised-employee filter used by identification. The whole
+ * matrix is an immutable {@link Matrix} behind a volatile reference: readers take the
+ * current snapshot without locking, and {@code AreaAccessController} grants and
+ * revokes build a copy that shares every row except the two that changed. A periodic
+ * reconciliation rebuilds the matrix from the database to pick up changes made
+ * outside the controller.
+ */
+@Component
+@RequiredArgsConstructor
+public class AreaAccessIndex {
+
+    private final AreaAccessRepository areaAccessRepository;
+
+    private volatile Matrix matrix = Matrix.EMPTY;
+    private final AtomicLong version = new AtomicLong();
+    private final Object writeLock = new Object();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        // A grant racing the initial load makes rebuild() back off; try again
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (rebuild()) {
+                Matrix current = matrix;
+                System.out.println("Loaded " + current.grantCount() + " area access grants for "
+                        + current.areaIds.length + " areas");
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fingerprint.access.reconcile-interval-ms:300000}",
+            initialDelayString = "${fingerprint.access.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            Matrix before = matrix;
+            if (rebuild() && !matrix.sameGrants(before)) {
+                System.out.println("Area access matrix reconciled with the database: "
+                        + matrix.grantCount() + " grants, was " + before.grantCount());
+            }
+        } catch (Exception e) {
+            System.err.println("Area access reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    public void grant(String areaId, String employeeId) {
+        synchronized (writeLock) {
+            matrix = matrix.with(areaId, employeeId, true);
+            version.incrementAndGet();
+        }
+    }
+
+    public void revoke(String areaId, String employeeId) {
+        synchronized (writeLock) {
+            matrix = matrix.with(areaId, employeeId, false);
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Whether the employee may enter the area: two hash lookups and a bit test.
+     */
+    public boolean isAllowed(String employeeId, String areaId) {
+        if (employeeId == null || areaId == null) {
+            return false;
+        }
+        return matrix.isAllowed(employeeId, areaId);
+    }
+
+    /**
+     * The employees allowed into the area, as a read-only view of the current
+     * snapshot; empty if nobody is.
+     */
+    public Set<String> employeeIdsFor(String areaId) {
+        return matrix.employeeIdsFor(areaId);
+    }
+
+    /**
+     * Changes on every grant, revoke or reload.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Matrix current = matrix;
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("employees", current.employeeIds.length);
+        statistics.put("areas", current.areaIds.length);
+        statistics.put("grants", current.grantCount());
+        statistics.put("version", version.get());
+        return statistics;
+    }
+
+    /**
+     * Loads all grants and swaps them in, unless a grant or revoke happened while
+     * loading; that change is already in the database and the next run picks it up.
+     */
+    private boolean rebuild() {
+        long startVersion = version.get();
+        List<AreaAccessView> pairs = areaAccessRepository.findAllAccessPairs();
+        Matrix loaded = Matrix.EMPTY.withAll(pairs);
+        synchronized (writeLock) {
+            if (version.get() != startVersion) {
+                return false;
+            }
+            matrix = loaded;
+            version.incrementAndGet();
+            return true;
+        }
+    }
+
+    private static final class Matrix {
+
+        private static final Matrix EMPTY = new Matrix(Map.of(), new String[0], Map.of(), new String[0],
+                new long[0][], new long[0][], new int[0]);
+
+        private final Map<String, Integer> employeeIndex;
+        private final String[] employeeIds;
+        private final Map<String, Integer> areaIndex;
+        private final String[] areaIds;
+        // Bits over area indices, one row per employee index
+        private final long[][] areasByEmployee;
+        // Bits over employee indices, one row per area index
+        private final long[][] employeesByArea;
+        private final int[] employeeCountByArea;
+
+        private Matrix(Map<String, Integer> employeeIndex, String[] employeeIds,
+                       Map<String, Integer> areaIndex, String[] areaIds,
+                       long[][] areasByEmployee, long[][] employeesByArea, int[] employeeCountByArea) {
+            this.employeeIndex = employeeIndex;
+            this.employeeIds = employeeIds;
+            this.areaIndex = areaIndex;
+            this.areaIds = areaIds;
+            this.areasByEmployee = areasByEmployee;
+            this.employeesByArea = employeesByArea;
+            this.employeeCountByArea = employeeCountByArea;
+        }
+
+        boolean isAllowed(String employeeId, String areaId) {
+            Integer employee = employeeIndex.get(employeeId);
+            Integer area = areaIndex.get(areaId);
+            return employee != null && area != null && test(areasByEmployee[employee], area);
+        }
+
+        Set<String> employeeIdsFor(String areaId) {
+            Integer area = areaIndex.get(areaId);
+            if (area == null || employeeCountByArea[area] == 0) {
+                return Set.of();
+            }
+            return new EmployeeSet(this, employeesByArea[area], employeeCountByArea[area]);
+        }
+
+        int grantCount() {
+            int count = 0;
+            for (int employees : employeeCountByArea) {
+                count += employees;
+            }
+            return count;
+        }
+
+        boolean sameGrants(Matrix other) {
+            if (grantCount() != other.grantCount()) {
+                return false;
+            }
+            for (int area = 0; area < areaIds.length; area++) {
+                long[] row = employeesByArea[area];
+                for (int word = 0; word < row.length; word++) {
+                    long bits = row[word];
+                    while (bits != 0) {
+                        int employee = (word << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        if (!other.isAllowed(employeeIds[employee], areaIds[area])) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Copy with one cell changed. Only the employee's row, the area's row and the
+         * outer arrays are copied; all other rows are shared with this snapshot.
+         */
+        Matrix with(String areaId, String employeeId, boolean allowed) {
+            Integer existingEmployee = employeeIndex.get(employeeId);
+            Integer existingArea = areaIndex.get(areaId);
+            if (!allowed && (existingEmployee == null || existingArea == null)) {
+                return this;
+            }
+            if (existingEmployee != null && existingArea != null
+                    && test(areasByEmployee[existingEmployee], existingArea) == allowed) {
+                return this;
+            }
+
+            Map<String, Integer> nextEmployeeIndex = employeeIndex;
+            String[] nextEmployeeIds = employeeIds;
+            long[][] nextAreasByEmployee = areasByEmployee.clone();
+            int employee;
+            if (existingEmployee == null) {
+                employee = employeeIds.length;
+                nextEmployeeIndex = new HashMap<>(employeeIndex);
+                nextEmployeeIndex.put(employeeId, employee);
+                nextEmployeeIds = Arrays.copyOf(employeeIds, employee + 1);
+                nextEmployeeIds[employee] = employeeId;
+                nextAreasByEmployee = Arrays.copyOf(areasByEmployee, employee + 1);
+                nextAreasByEmployee[employee] = new long[0];
+            } else {
+                employee = existingEmployee;
+            }
+
+            Map<String, Integer> nextAreaIndex = areaIndex;
+            String[] nextAreaIds = areaIds;
+            long[][] nextEmployeesByArea = employeesByArea.clone();
+            int[] nextEmployeeCountByArea = employeeCountByArea.clone();
+            int area;
+            if (existingArea == null) {
+                area = areaIds.length;
+                nextAreaIndex = new HashMap<>(areaIndex);
+                nextAreaIndex.put(areaId, area);
+                nextAreaIds = Arrays.copyOf(areaIds, area + 1);
+                nextAreaIds[area] = areaId;
+                nextEmployeesByArea = Arrays.copyOf(employeesByArea, area + 1);
+                nextEmployeesByArea[area] = new long[0];
+                nextEmployeeCountByArea = Arrays.copyOf(employeeCountByArea, area + 1);
+            } else {
+                area = existingArea;
+            }
+
+            nextAreasByEmployee[employee] = assign(nextAreasByEmployee[employee], area, allowed);
+            nextEmployeesByArea[area] = assign(nextEmployeesByArea[area], employee, allowed);
+            nextEmployeeCountByArea[area] += allowed ? 1 : -1;
+
+            return new Matrix(nextEmployeeIndex, nextEmployeeIds, nextAreaIndex, nextAreaIds,
+                    nextAreasByEmployee, nextEmployeesByArea, nextEmployeeCountByArea);
+        }
+
+        /**
+         * Builds a fresh matrix from the full grant list in one pass.
+         */
+        Matrix withAll(List<AreaAccessView> pairs) {
+            Map<String, Integer> nextEmployeeIndex = new HashMap<>();
+            Map<String, Integer> nextAreaIndex = new HashMap<>();
+            for (AreaAccessView pair : pairs) {
+                nextEmployeeIndex.putIfAbsent(pair.getEmployeeId(), nextEmployeeIndex.size());
+                nextAreaIndex.putIfAbsent(pair.getAreaId(), nextAreaIndex.size());
+            }
+            String[] nextEmployeeIds = new String[nextEmployeeIndex.size()];
+            nextEmployeeIndex.forEach((id, index) -> nextEmployeeIds[index] = id);
+            String[] nextAreaIds = new String[nextAreaIndex.size()];
+            nextAreaIndex.forEach((id, index) -> nextAreaIds[index] = id);
+
+            long[][] nextAreasByEmployee = new long[nextEmployeeIds.length][words(nextAreaIds.length)];
+            long[][] nextEmployeesByArea = new long[nextAreaIds.length][words(nextEmployeeIds.length)];
+            int[] nextEmployeeCountByArea = new int[nextAreaIds.length];
+            for (AreaAccessView pair : pairs) {
+                int employee = nextEmployeeIndex.get(pair.getEmployeeId());
+                int area = nextAreaIndex.get(pair.getAreaId());
+                if (test(nextAreasByEmployee[employee], area)) {
+                    continue;
+                }
+                nextAreasByEmployee[employee][area >>> 6] |= 1L << area;
+                nextEmployeesByArea[area][employee >>> 6] |= 1L << employee;
+                nextEmployeeCountByArea[area]++;
+            }
+            return new Matrix(nextEmployeeIndex, nextEmployeeIds, nextAreaIndex, nextAreaIds,
+                    nextAreasByEmployee, nextEmployeesByArea, nextEmployeeCountByArea);
+        }
+
+        private static boolean test(long[] bits, int index) {
+            int word = index >>> 6;
+            return word < bits.length && (bits[word] & (1L << index)) != 0;
+        }
+
+        // Copy of the row with one bit set or cleared, grown if the index is past its end
+        private static long[] assign(long[] bits, int index, boolean value) {
+            long[] copy = Arrays.copyOf(bits, Math.max(bits.length, (index >>> 6) + 1));
+            if (value) {
+                copy[index >>> 6] |= 1L << index;
+            } else {
+                copy[index >>> 6] &= ~(1L << index);
+            }
+            return copy;
+        }
+
+        private static int words(int bits) {
+            return (bits + 63) >>> 6;
+        }
+    }
+
+    /**
+     * Employee ids of one area row; membership is a bit test.
+     */
+    private static final class EmployeeSet extends AbstractSet<String> {
+        private final Matrix matrix;
+        private final long[] bits;
+        private final int size;
+
+        private EmployeeSet(Matrix matrix, long[] bits, int size) {
+            this.matrix = matrix;
+            this.bits = bits;
+            this.size = size;
+        }
+
+        @Override
+        public boolean contains(Object employeeId) {
+            Integer employee = matrix.employeeIndex.get(employeeId);
+            return employee != null && Matrix.test(bits, employee);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                private int word = 0;
+                private long current = bits.length > 0 ? bits[0] : 0;
+
+                @Override
+                public boolean hasNext() {
+                    while (current == 0 && word + 1 < bits.length) {
+                        current = bits[++word];
+                    }
+                    return current != 0;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int employee = (word << 6) + Long.numberOfTrailingZeros(current);
+                    current &= current - 1;
+                    return matrix.employeeIds[employee];
+                }
+            };
+        }
+    }
+}
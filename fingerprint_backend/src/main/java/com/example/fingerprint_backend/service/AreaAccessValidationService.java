@@ -8,34 +8,24 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class AreaAccessValidationService {
 
     private final AreaAccessRepository areaAccessRepository;
+    private final AreaAccessIndex areaAccessIndex;
 
     public boolean validateAccess(Employee employee, Area area) {
         if (employee == null || area == null) {
             return false;
         }
 
-        return areaAccessRepository.existsByEmployeeAndArea(employee, area);
+        return areaAccessIndex.isAllowed(employee.getId(), area.getId());
     }
 
     public boolean validateAccessById(String employeeId, String areaId) {
-        if (employeeId == null || areaId == null) {
-            return false;
-        }
-
-        // Find employee access permissions for the area
-        Optional<AreaAccess> accessPermission =
-                areaAccessRepository.findByEmployeeAndArea(
-                        Employee.builder().id(employeeId).build(),
-                        Area.builder().id(areaId).build());
-
-        return accessPermission.isPresent();
+        return areaAccessIndex.isAllowed(employeeId, areaId);
     }
 
     public List<AreaAccess> getEmployeeAccessAreas(Employee employee) {
@@ -0,0 +1,277 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.service.gallery.EmbeddingCodec;
+import com.example.fingerprint_backend.service.preprocess.PreprocessedFingerprint;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent probe embedding requests into batched calls to the AI
+ * service's {@code /api/embed/batch}, so the model runs at batch size N instead of 1
+ * during traffic peaks.
+ *
+ * A collector thread takes the first waiting request, then keeps collecting for at
+ * most {@code max-wait-ms} or until {@code max-size} requests are queued. The batch is
+ * split by model pair and each group is sent on a small sender pool; results are
+ * fanned back out to the waiting callers. When the pool's queue is full the group
+ * fails at once instead of piling up behind the AI service.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmbeddingBatchDispatcher {
+
+    @Value("${fingerprint.batch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${fingerprint.batch.max-size:32}")
+    private int maxBatchSize;
+
+    @Value("${fingerprint.batch.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    @Value("${fingerprint.batch.max-in-flight:2}")
+    private int maxInFlight;
+
+    @Value("${fingerprint.batch.request-timeout-ms:10000}")
+    private long requestTimeoutMs;
+
+    private final InferenceClient inferenceClient;
+
+    private final LinkedBlockingQueue<PendingEmbedding> queue = new LinkedBlockingQueue<>();
+    private ThreadPoolExecutor senders;
+    private Thread collector;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        int senderCount = Math.max(1, maxInFlight);
+        AtomicInteger threadIndex = new AtomicInteger();
+        senders = new ThreadPoolExecutor(senderCount, senderCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(senderCount * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "embedding-batch-sender-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        collector = new Thread(this::collectLoop, "embedding-batch-collector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (collector != null) {
+            collector.interrupt();
+        }
+        if (senders != null) {
+            senders.shutdown();
+        }
+        PendingEmbedding pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("Embedding dispatcher stopped"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the image for the next batch and waits for its embedding.
+     */
+    public float[] embed(byte[] image, String filename, String segmentationModelPath, String recognitionModelPath)
+            throws Exception {
+        return await(new PendingEmbedding(image, filename, null, segmentationModelPath, recognitionModelPath));
+    }
+
+    /**
+     * Same as {@link #embed(byte[], String, String, String)} for a probe already
+     * preprocessed on this side.
+     */
+    public float[] embed(PreprocessedFingerprint tensor, String segmentationModelPath, String recognitionModelPath)
+            throws Exception {
+        return await(new PendingEmbedding(null, null, tensor, segmentationModelPath, recognitionModelPath));
+    }
+
+    private float[] await(PendingEmbedding pending) throws Exception {
+        queue.add(pending);
+        try {
+            return pending.result.get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new Exception("Failed to compute embedding: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            pending.result.cancel(false);
+            throw new Exception("Timed out waiting for batched embedding after " + requestTimeoutMs + " ms");
+        }
+    }
+
+    private void collectLoop() {
+        while (running) {
+            try {
+                List<PendingEmbedding> batch = new ArrayList<>();
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    PendingEmbedding next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                Map<String, List<PendingEmbedding>> byModel = new LinkedHashMap<>();
+                for (PendingEmbedding pending : batch) {
+                    if (!pending.result.isDone()) {
+                        byModel.computeIfAbsent(pending.modelKey(), key -> new ArrayList<>()).add(pending);
+                    }
+                }
+                for (List<PendingEmbedding> group : byModel.values()) {
+                    try {
+                        senders.execute(() -> send(group));
+                    } catch (RejectedExecutionException e) {
+                        fail(group, new Exception("Embedding batch capacity exhausted, try again later"));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<PendingEmbedding> waiting) {
+        // Callers that gave up while the group waited for a sender are not sent
+        List<PendingEmbedding> group = new ArrayList<>(waiting.size());
+        for (PendingEmbedding pending : waiting) {
+            if (!pending.result.isDone()) {
+                group.add(pending);
+            }
+        }
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            boolean preprocessed = group.get(0).tensor != null;
+            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+            for (PendingEmbedding pending : group) {
+                if (preprocessed) {
+                    addTensorParts(body, pending.tensor);
+                    continue;
+                }
+                body.add("files", new ByteArrayResource(pending.image) {
+                    @Override
+                    public String getFilename() {
+                        return pending.filename;
+                    }
+                });
+            }
+            body.add("segmentation_model_path", group.get(0).segmentationModelPath);
+            body.add("recognition_model_path", group.get(0).recognitionModelPath);
+
+            ResponseEntity<String> response = inferenceClient.postMultipart(
+                    InferenceClient.Stage.RECOGNITION,
+                    preprocessed ? "/api/embed/tensor" : "/api/embed/batch",
+                    body);
+
+            JsonNode rootNode = new ObjectMapper().readTree(response.getBody());
+            if (!response.getStatusCode().is2xxSuccessful() || rootNode.has("error")) {
+                throw new Exception(rootNode.has("error") ? rootNode.get("error").asText() : response.getBody());
+            }
+
+            JsonNode embeddings = rootNode.get("embeddings");
+            JsonNode errors = rootNode.get("errors");
+            for (int i = 0; i < group.size(); i++) {
+                float[] embedding = EmbeddingCodec.fromJson(embeddings.get(i));
+                if (embedding != null) {
+                    group.get(i).result.complete(embedding);
+                } else {
+                    JsonNode error = errors == null ? null : errors.get(i);
+                    String message = error == null || error.isNull() ? "No embedding returned" : error.asText();
+                    group.get(i).result.completeExceptionally(new Exception(message));
+                }
+            }
+        } catch (Exception e) {
+            fail(group, e);
+        }
+    }
+
+    private static void fail(List<PendingEmbedding> group, Exception e) {
+        for (PendingEmbedding pending : group) {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Adds one preprocessed probe as the raw uint8 parts {@code /api/embed/tensor} expects.
+     */
+    static void addTensorParts(MultiValueMap<String, Object> body, PreprocessedFingerprint tensor) {
+        body.add("segmentation_inputs", new ByteArrayResource(tensor.getSegmentationInput()) {
+            @Override
+            public String getFilename() {
+                return "segmentation.u8";
+            }
+        });
+        body.add("recognition_inputs", new ByteArrayResource(tensor.getRecognitionInput()) {
+            @Override
+            public String getFilename() {
+                return "recognition.u8";
+            }
+        });
+    }
+
+    private static final class PendingEmbedding {
+        private final byte[] image;
+        private final String filename;
+        private final PreprocessedFingerprint tensor;
+        private final String segmentationModelPath;
+        private final String recognitionModelPath;
+        private final CompletableFuture<float[]> result = new CompletableFuture<>();
+
+        private PendingEmbedding(byte[] image, String filename, PreprocessedFingerprint tensor,
+                                 String segmentationModelPath, String recognitionModelPath) {
+            this.image = image;
+            this.filename = filename;
+            this.tensor = tensor;
+            this.segmentationModelPath = segmentationModelPath;
+            this.recognitionModelPath = recognitionModelPath;
+        }
+
+        // Raw images and preprocessed probes go to different endpoints, so never share a batch
+        private String modelKey() {
+            return segmentationModelPath + '\n' + recognitionModelPath + (tensor != null ? "\ntensor" : "");
+        }
+    }
+}
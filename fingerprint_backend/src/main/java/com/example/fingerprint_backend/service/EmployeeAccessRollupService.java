@@ -0,0 +1,291 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.analytics.EmployeeAccessRollup;
+import com.example.fingerprint_backend.model.analytics.EmployeeAccessRollupId;
+import com.example.fingerprint_backend.model.analytics.EmployeeStatistics;
+import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.service.journal.AccessJournalEntry;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per employee, area and day access counters behind {@code /api/employee/statistics}.
+ *
+ * Every access log written through the recognition flow, the journal or the access
+ * log API adds itself to its day's bucket with an upsert, so a statistics request
+ * sums at most one row per employee, area and day instead of joining every employee
+ * to every access log. Whole days of the requested range come from the buckets; the
+ * partial first and last day are aggregated from {@code access_log} directly, which
+ * keeps arbitrary {@code startDate}/{@code endDate} exact. {@link #rebuild} recomputes
+ * buckets from the access log history month by month, and runs on startup when the
+ * rollup table is still empty.
+ */
+@Service
+@RequiredArgsConstructor
+public class EmployeeAccessRollupService {
+
+    private static final String UPSERT = "INSERT INTO employee_access_rollup "
+            + "(bucket_date, employee_id, area_id, access_count, authorized_count, first_access, last_access) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE access_count = access_count + VALUES(access_count), "
+            + "authorized_count = authorized_count + VALUES(authorized_count), "
+            + "first_access = LEAST(first_access, VALUES(first_access)), "
+            + "last_access = GREATEST(last_access, VALUES(last_access))";
+
+    private static final String ROLLUP_TOTALS = "SELECT employee_id, SUM(access_count), SUM(authorized_count), "
+            + "MIN(first_access), MAX(last_access) FROM employee_access_rollup "
+            + "WHERE bucket_date >= ? AND bucket_date < ? GROUP BY employee_id";
+
+    private static final String ACCESS_LOG_TOTALS = "SELECT employee_id, COUNT(*), "
+            + "SUM(CASE WHEN authorized THEN 1 ELSE 0 END), MIN(`timestamp`), MAX(`timestamp`) FROM access_log "
+            + "WHERE employee_id IS NOT NULL AND `timestamp` >= ? AND `timestamp` %s ? GROUP BY employee_id";
+
+    // Bounds for open ended ranges, well outside any stored access
+    private static final LocalDate MIN_DATE = LocalDate.of(1970, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 1, 1);
+
+    @Value("${fingerprint.access-rollup.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final EmployeeRepository employeeRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            Long buckets = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM employee_access_rollup", Long.class);
+            if (buckets != null && buckets == 0) {
+                rebuild(null, null);
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to backfill employee access rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds one access log to its bucket, in the transaction that saves the log.
+     * Accesses without an identified employee are not counted.
+     */
+    @Transactional
+    public void record(String employeeId, String areaId, boolean authorized, LocalDateTime timestamp) {
+        if (employeeId == null || timestamp == null) {
+            return;
+        }
+        entityManager.createNativeQuery(UPSERT)
+                .unwrap(NativeQuery.class)
+                // Only this table changes: no flush of unrelated entities, no eviction of cached regions
+                .addSynchronizedEntityClass(EmployeeAccessRollup.class)
+                .setParameter(1, timestamp.toLocalDate())
+                .setParameter(2, employeeId)
+                .setParameter(3, areaId == null ? "" : areaId)
+                .setParameter(4, 1L)
+                .setParameter(5, authorized ? 1L : 0L)
+                .setParameter(6, timestamp)
+                .setParameter(7, timestamp)
+                .executeUpdate();
+    }
+
+    /**
+     * Adds a batch of journaled access logs. Must run in the transaction that inserts
+     * them and before the insert: logs already in {@code access_log} (a replayed
+     * journal, or an entry that was also written directly) were counted before.
+     */
+    public void recordJournaled(List<AccessJournalEntry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (AccessJournalEntry entry : entries) {
+            if (entry.getEmployeeId() != null) {
+                ids.add(entry.getAccessLogId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM access_log WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")",
+                String.class, ids.toArray()));
+
+        Map<EmployeeAccessRollupId, EmployeeAccessRollup> buckets = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (AccessJournalEntry entry : entries) {
+            if (entry.getEmployeeId() == null || existing.contains(entry.getAccessLogId())
+                    || !seen.add(entry.getAccessLogId())) {
+                continue;
+            }
+            EmployeeAccessRollupId id = new EmployeeAccessRollupId(entry.getTimestamp().toLocalDate(),
+                    entry.getEmployeeId(), entry.getAreaId() == null ? "" : entry.getAreaId());
+            EmployeeAccessRollup bucket = buckets.computeIfAbsent(id, key ->
+                    new EmployeeAccessRollup(key, 0, 0, entry.getTimestamp(), entry.getTimestamp()));
+            bucket.setAccessCount(bucket.getAccessCount() + 1);
+            bucket.setAuthorizedCount(bucket.getAuthorizedCount() + (entry.isAuthorized() ? 1 : 0));
+            if (entry.getTimestamp().isBefore(bucket.getFirstAccess())) {
+                bucket.setFirstAccess(entry.getTimestamp());
+            }
+            if (entry.getTimestamp().isAfter(bucket.getLastAccess())) {
+                bucket.setLastAccess(entry.getTimestamp());
+            }
+        }
+
+        if (buckets.isEmpty()) {
+            return;
+        }
+        // Same row order in every batch, so concurrent upserts do not deadlock
+        List<EmployeeAccessRollup> rows = new ArrayList<>(buckets.values());
+        rows.sort(Comparator.comparing((EmployeeAccessRollup row) -> row.getId().getAreaId())
+                .thenComparing(row -> row.getId().getBucketDate())
+                .thenComparing(row -> row.getId().getEmployeeId()));
+        jdbcTemplate.batchUpdate(UPSERT, rows, rows.size(), (statement, row) -> {
+            statement.setDate(1, Date.valueOf(row.getId().getBucketDate()));
+            statement.setString(2, row.getId().getEmployeeId());
+            statement.setString(3, row.getId().getAreaId());
+            statement.setLong(4, row.getAccessCount());
+            statement.setLong(5, row.getAuthorizedCount());
+            statement.setTimestamp(6, Timestamp.valueOf(row.getFirstAccess()));
+            statement.setTimestamp(7, Timestamp.valueOf(row.getLastAccess()));
+        });
+    }
+
+    /**
+     * Recomputes the buckets of the days from {@code from} to {@code to} (both inclusive,
+     * {@code null} for the oldest or newest access log) from {@code access_log}, one
+     * transaction per month.
+     */
+    public Map<String, Object> rebuild(LocalDate from, LocalDate to) {
+        Map<String, Object> result = new HashMap<>();
+        if (from == null || to == null) {
+            Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(`timestamp`) FROM access_log", Timestamp.class);
+            Timestamp newest = jdbcTemplate.queryForObject("SELECT MAX(`timestamp`) FROM access_log", Timestamp.class);
+            if (oldest == null || newest == null) {
+                result.put("months", 0);
+                result.put("buckets", 0);
+                return result;
+            }
+            from = from != null ? from : oldest.toLocalDateTime().toLocalDate();
+            to = to != null ? to : newest.toLocalDateTime().toLocalDate();
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int months = 0;
+        long buckets = 0;
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            LocalDate start = month.atDay(1).isBefore(from) ? from : month.atDay(1);
+            LocalDate end = month.atEndOfMonth().isAfter(to) ? to.plusDays(1) : month.atEndOfMonth().plusDays(1);
+            Integer inserted = transaction.execute(status -> {
+                jdbcTemplate.update("DELETE FROM employee_access_rollup WHERE bucket_date >= ? AND bucket_date < ?",
+                        Date.valueOf(start), Date.valueOf(end));
+                return jdbcTemplate.update("INSERT INTO employee_access_rollup "
+                                + "(bucket_date, employee_id, area_id, access_count, authorized_count, first_access, last_access) "
+                                + "SELECT CAST(`timestamp` AS DATE), employee_id, COALESCE(area_id, ''), COUNT(*), "
+                                + "SUM(CASE WHEN authorized THEN 1 ELSE 0 END), MIN(`timestamp`), MAX(`timestamp`) "
+                                + "FROM access_log WHERE employee_id IS NOT NULL AND `timestamp` >= ? AND `timestamp` < ? "
+                                + "GROUP BY CAST(`timestamp` AS DATE), employee_id, COALESCE(area_id, '')",
+                        Timestamp.valueOf(start.atStartOfDay()), Timestamp.valueOf(end.atStartOfDay()));
+            });
+            months++;
+            buckets += inserted == null ? 0 : inserted;
+        }
+        System.out.println("Rebuilt " + buckets + " employee access rollups from " + from + " to " + to);
+        result.put("from", from);
+        result.put("to", to);
+        result.put("months", months);
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    /**
+     * Access statistics of every employee with accesses between {@code startDate} and
+     * {@code endDate} (both inclusive, either may be {@code null}); without any bound
+     * employees that never accessed are listed too.
+     */
+    @Transactional(readOnly = true)
+    public List<EmployeeStatistics> getStatistics(LocalDateTime startDate, LocalDateTime endDate) {
+        Map<String, EmployeeStatistics> totals = new HashMap<>();
+
+        // Whole days inside the range come from the rollup
+        LocalDate firstDay = startDate == null ? MIN_DATE
+                : startDate.equals(startDate.toLocalDate().atStartOfDay()) ? startDate.toLocalDate()
+                : startDate.toLocalDate().plusDays(1);
+        LocalDate endDay = endDate == null ? MAX_DATE : endDate.toLocalDate();
+
+        if (firstDay.isBefore(endDay)) {
+            jdbcTemplate.query(ROLLUP_TOTALS, rs -> {
+                add(totals, rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getTimestamp(4), rs.getTimestamp(5));
+            }, Date.valueOf(firstDay), Date.valueOf(endDay));
+            if (startDate != null && startDate.isBefore(firstDay.atStartOfDay())) {
+                addAccessLogs(totals, startDate, firstDay.atStartOfDay(), false);
+            }
+            if (endDate != null) {
+                addAccessLogs(totals, endDay.atStartOfDay(), endDate, true);
+            }
+        } else {
+            // Range within a single day
+            addAccessLogs(totals, startDate, endDate, true);
+        }
+
+        boolean includeIdle = startDate == null && endDate == null;
+        List<EmployeeStatistics> statistics = new ArrayList<>();
+        for (Employee employee : employeeRepository.findAllEmployees()) {
+            EmployeeStatistics total = totals.get(employee.getId());
+            if (total == null && includeIdle) {
+                total = new EmployeeStatistics(employee.getId(), null, 0, 0, 0, null, null);
+            }
+            if (total != null) {
+                total.setFullName(employee.getFullName());
+                statistics.add(total);
+            }
+        }
+        return statistics;
+    }
+
+    private void addAccessLogs(Map<String, EmployeeStatistics> totals, LocalDateTime start, LocalDateTime end,
+                               boolean endInclusive) {
+        jdbcTemplate.query(String.format(ACCESS_LOG_TOTALS, endInclusive ? "<=" : "<"), rs -> {
+            add(totals, rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getTimestamp(4), rs.getTimestamp(5));
+        }, Timestamp.valueOf(start), Timestamp.valueOf(end));
+    }
+
+    private static void add(Map<String, EmployeeStatistics> totals, String employeeId, long accesses,
+                            long authorized, Timestamp first, Timestamp last) {
+        EmployeeStatistics total = totals.computeIfAbsent(employeeId, id ->
+                new EmployeeStatistics(id, null, 0, 0, 0, null, null));
+        total.setTotalAccesses(total.getTotalAccesses() + accesses);
+        total.setAuthorizedAccesses(total.getAuthorizedAccesses() + authorized);
+        total.setDeniedAccesses(total.getTotalAccesses() - total.getAuthorizedAccesses());
+        if (first != null && (total.getFirstAccessTime() == null
+                || first.toLocalDateTime().isBefore(total.getFirstAccessTime()))) {
+            total.setFirstAccessTime(first.toLocalDateTime());
+        }
+        if (last != null && (total.getLastAccessTime() == null
+                || last.toLocalDateTime().isAfter(total.getLastAccessTime()))) {
+            total.setLastAccessTime(last.toLocalDateTime());
+        }
+    }
+}
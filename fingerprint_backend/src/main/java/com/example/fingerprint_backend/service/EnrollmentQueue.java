@@ -0,0 +1,245 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.EnrollmentJob;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.EnrollmentJobRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.service.gallery.EmbeddingCodec;
+import com.example.fingerprint_backend.service.gallery.FingerprintSampleEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes enrolment embeddings in the background from persisted {@link EnrollmentJob}s.
+ *
+ * The database table is the queue: a job is dispatched to the worker pool right after
+ * the enrolment commits, and a poller picks up anything the pool could not take, jobs
+ * whose retry is due and jobs left behind by a restart. Workers claim a job with a
+ * conditional update, so a job runs once even if it is dispatched twice. Registration
+ * calls go through the {@link InferenceClient.Stage#REGISTRATION} bulkhead, and the
+ * pool is small, so a bulk onboarding cannot starve recognition.
+ */
+@Component
+@RequiredArgsConstructor
+public class EnrollmentQueue {
+
+    @Value("${fingerprint.enrollment.async:true}")
+    private boolean async;
+
+    @Value("${fingerprint.enrollment.workers:2}")
+    private int workerCount;
+
+    // Maximum pending + running jobs; further enrolments are rejected until the backlog drains
+    @Value("${fingerprint.enrollment.capacity:1000}")
+    private long capacity;
+
+    @Value("${fingerprint.enrollment.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${fingerprint.enrollment.retry-backoff-ms:2000}")
+    private long retryBackoffMs;
+
+    @Value("${fingerprint.enrollment.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    private final EnrollmentJobRepository enrollmentJobRepository;
+    private final FingerprintSampleRepository fingerprintSampleRepository;
+    private final FingerprintRegistrationService registrationService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Job ids handed to the pool and not finished yet, so the poller does not resubmit them
+    private final Set<String> dispatched = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger retried = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger deferred = new AtomicInteger();
+    private ThreadPoolExecutor workers;
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, workerCount * 4)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "enrollment-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    // Runs after FingerprintImageService has moved legacy images into the blob store
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!async) {
+            return;
+        }
+        int requeued = enrollmentJobRepository.requeueRunning(LocalDateTime.now());
+        if (requeued > 0) {
+            System.out.println("Requeued " + requeued + " interrupted enrollment jobs");
+        }
+        poll();
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public boolean hasCapacity() {
+        return enrollmentJobRepository.countByStatusIn(
+                List.of(EnrollmentJob.Status.PENDING, EnrollmentJob.Status.RUNNING)) < capacity;
+    }
+
+    /**
+     * Hands a committed job to the worker pool. If the pool is full the job stays
+     * pending and the poller runs it later.
+     */
+    public void dispatch(String jobId) {
+        if (workers == null || !dispatched.add(jobId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    process(jobId);
+                } finally {
+                    dispatched.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dispatched.remove(jobId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fingerprint.enrollment.poll-interval-ms:5000}")
+    public void poll() {
+        if (workers == null) {
+            return;
+        }
+        int free = workers.getQueue().remainingCapacity();
+        if (free == 0) {
+            return;
+        }
+        List<String> readyIds = enrollmentJobRepository.findReadyIds(LocalDateTime.now(), PageRequest.of(0, free));
+        for (String jobId : readyIds) {
+            dispatch(jobId);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("async", async);
+        statistics.put("capacity", capacity);
+        for (EnrollmentJob.Status status : EnrollmentJob.Status.values()) {
+            statistics.put(status.name().toLowerCase(), enrollmentJobRepository.countByStatus(status));
+        }
+        statistics.put("dispatched", dispatched.size());
+        statistics.put("succeededSinceStart", succeeded.get());
+        statistics.put("retriedSinceStart", retried.get());
+        statistics.put("failedSinceStart", failed.get());
+        statistics.put("deferredSinceStart", deferred.get());
+        return statistics;
+    }
+
+    private void process(String jobId) {
+        if (enrollmentJobRepository.claim(jobId, LocalDateTime.now()) == 0) {
+            return;
+        }
+        EnrollmentJob job = enrollmentJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        Optional<FingerprintSample> sampleOpt = fingerprintSampleRepository.findById(job.getFingerprintId());
+        if (sampleOpt.isEmpty()) {
+            enrollmentJobRepository.markFailed(jobId, "Fingerprint sample was deleted", LocalDateTime.now());
+            failed.incrementAndGet();
+            return;
+        }
+        FingerprintSample sample = sampleOpt.get();
+
+        // Image still in the legacy column until the startup migration reaches it; not an attempt
+        if (sample.getImageHash() == null) {
+            LocalDateTime now = LocalDateTime.now();
+            enrollmentJobRepository.defer(jobId, "Image not yet moved to the blob store", now,
+                    now.plusNanos(retryBackoffMs * 1_000_000));
+            deferred.incrementAndGet();
+            return;
+        }
+
+        try {
+            float[] embedding = registrationService.computeEmbedding(sample);
+            if (embedding == null) {
+                throw new Exception("AI service returned no embedding");
+            }
+            // Active is re-checked in the update itself: the sample may have been disabled
+            // or deleted while the embedding was being computed
+            byte[] encoded = EmbeddingCodec.toBytes(embedding);
+            if (fingerprintSampleRepository.updateEmbeddingIfActive(sample.getId(), encoded) == 1) {
+                eventPublisher.publishEvent(FingerprintSampleEvent.registered(
+                        sample.getId(), job.getEmployeeId(), embedding));
+            } else if (fingerprintSampleRepository.updateEmbedding(sample.getId(), encoded) == 0) {
+                enrollmentJobRepository.markFailed(jobId, "Fingerprint sample was deleted", LocalDateTime.now());
+                failed.incrementAndGet();
+                return;
+            }
+            enrollmentJobRepository.markSucceeded(jobId, LocalDateTime.now());
+            succeeded.incrementAndGet();
+        } catch (Exception e) {
+            String error = truncate(e.getMessage());
+            LocalDateTime now = LocalDateTime.now();
+            if (job.getAttempts() >= maxAttempts) {
+                enrollmentJobRepository.markFailed(jobId, error, now);
+                failed.incrementAndGet();
+                System.err.println("Enrollment job " + jobId + " failed after " + job.getAttempts()
+                        + " attempts: " + error);
+            } else {
+                enrollmentJobRepository.markRetry(jobId, error, now, now.plusNanos(backoffMs(job.getAttempts()) * 1_000_000));
+                retried.incrementAndGet();
+            }
+        }
+    }
+
+    // Exponential backoff: base, 2 x base, 4 x base, ... capped at max-backoff-ms
+    private long backoffMs(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(retryBackoffMs << shift, maxBackoffMs);
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "Unknown error";
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
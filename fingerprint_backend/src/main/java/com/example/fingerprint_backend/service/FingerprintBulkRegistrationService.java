@@ -0,0 +1,365 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.EnrollmentJob;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintRecognitionModel;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSegmentationModel;
+import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.EnrollmentJobRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintRecognitionModelRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSegmentationModelRepository;
+import com.example.fingerprint_backend.service.blob.FingerprintImageService;
+import com.example.fingerprint_backend.service.gallery.EmbeddingCodec;
+import com.example.fingerprint_backend.service.gallery.FingerprintSampleEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registers many fingerprints, of one or several employees, from a single request.
+ *
+ * Sample limits are checked once per employee, the accepted samples are inserted in
+ * one JDBC batch, and their embeddings come from {@code /api/register/batch} (or the
+ * {@link PreprocessedEmbeddingService} pipeline when probes are preprocessed in the
+ * backend), one model call per chunk. Chunks are sent in parallel, never more at once
+ * than the registration bulkhead admits, and no transaction is held open during
+ * inference. Items whose embedding fails become pending jobs that {@link EnrollmentQueue}
+ * retries on its next poll when asynchronous enrolment is on; otherwise their samples
+ * are deleted again, so they do not count against the employee's limit. Every item gets
+ * its own result entry, in request order.
+ */
+@Service
+@RequiredArgsConstructor
+public class FingerprintBulkRegistrationService {
+
+    public static final String REGISTERED = "REGISTERED";
+    public static final String QUEUED = "QUEUED";
+    public static final String REJECTED = "REJECTED";
+    public static final String FAILED = "FAILED";
+
+    @Value("${fingerprint.enrollment.bulk.max-items:1000}")
+    private int maxItems;
+
+    @Value("${fingerprint.enrollment.bulk.chunk-size:64}")
+    private int chunkSize;
+
+    @Value("${fingerprint.enrollment.bulk.parallel-chunks:4}")
+    private int parallelChunks;
+
+    @Value("${fingerprint.inference.registration.max-concurrent:8}")
+    private int registrationMaxConcurrent;
+
+    private final EmployeeRepository employeeRepository;
+    private final FingerprintSampleRepository fingerprintSampleRepository;
+    private final FingerprintSegmentationModelRepository segmentationModelRepository;
+    private final FingerprintRecognitionModelRepository recognitionModelRepository;
+    private final EnrollmentJobRepository enrollmentJobRepository;
+    private final EnrollmentQueue enrollmentQueue;
+    private final InferenceClient inferenceClient;
+    private final PreprocessedEmbeddingService preprocessedEmbeddingService;
+    private final FingerprintImageService fingerprintImageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+
+    // Shared by every bulk request, so together they stay within the registration bulkhead
+    private ExecutorService chunkSenders;
+
+    @PostConstruct
+    public void start() {
+        int threads = Math.max(1, Math.min(parallelChunks, registrationMaxConcurrent));
+        AtomicInteger threadIndex = new AtomicInteger();
+        chunkSenders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-registration-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        chunkSenders.shutdownNow();
+    }
+
+    /**
+     * @param employeeIds one id per file, or a single id used for every file
+     * @param positions   one finger position per file
+     */
+    public List<Map<String, Object>> registerFingerprints(
+            List<MultipartFile> files,
+            List<String> employeeIds,
+            List<String> positions,
+            String segmentationModelId,
+            String recognitionModelId) throws Exception {
+
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("No files provided");
+        }
+        if (files.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " fingerprints can be registered per request");
+        }
+        if (employeeIds.size() != files.size() && employeeIds.size() != 1) {
+            throw new IllegalArgumentException("Number of employee ids must be 1 or match number of files");
+        }
+        if (positions.size() != files.size()) {
+            throw new IllegalArgumentException("Number of positions must match number of files");
+        }
+
+        FingerprintSegmentationModel segmentationModel = segmentationModelRepository.findById(segmentationModelId)
+                .orElseThrow(() -> new Exception("Segmentation model with ID " + segmentationModelId + " not found"));
+        FingerprintRecognitionModel recognitionModel = recognitionModelRepository.findById(recognitionModelId)
+                .orElseThrow(() -> new Exception("Recognition model with ID " + recognitionModelId + " not found"));
+
+        // Kiểm tra giới hạn số mẫu một lần cho mỗi nhân viên
+        List<String> distinctEmployeeIds = new ArrayList<>(new LinkedHashSet<>(employeeIds));
+        Map<String, Employee> employees = employeeRepository.findAllById(distinctEmployeeIds).stream()
+                .collect(Collectors.toMap(Employee::getId, Function.identity()));
+        Map<String, Long> sampleCounts = new HashMap<>();
+        for (Object[] row : fingerprintSampleRepository.countByEmployeeIds(distinctEmployeeIds)) {
+            sampleCounts.put((String) row[0], (Long) row[1]);
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(files.size());
+        List<FingerprintSample> accepted = new ArrayList<>();
+        List<Map<String, Object>> acceptedResults = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            String employeeId = employeeIds.size() == 1 ? employeeIds.get(0) : employeeIds.get(i);
+            String position = positions.get(i);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            result.put("employeeId", employeeId);
+            result.put("position", position);
+            results.add(result);
+
+            Employee employee = employees.get(employeeId);
+            if (employee == null) {
+                reject(result, "Employee with ID " + employeeId + " not found");
+                continue;
+            }
+            long count = sampleCounts.getOrDefault(employeeId, 0L);
+            if (count >= employee.getMaxNumberSamples()) {
+                reject(result, "Maximum number of samples reached for employee: " + employeeId);
+                continue;
+            }
+            if (file.isEmpty()) {
+                reject(result, "Empty file");
+                continue;
+            }
+            sampleCounts.put(employeeId, count + 1);
+
+            FingerprintSample sample = FingerprintSample.builder()
+                    .employee(employee)
+                    .image(file.getOriginalFilename())
+                    .position(position)
+                    .capturedAt(LocalDateTime.now())
+                    .fingerprintSegmentationModel(segmentationModel)
+                    .fingerprintRecognitionModel(recognitionModel)
+                    .quality(1.0)
+                    .active(true)
+                    .build();
+            fingerprintImageService.store(sample, file);
+            accepted.add(sample);
+            acceptedResults.add(result);
+        }
+
+        if (accepted.isEmpty()) {
+            return results;
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<FingerprintSample> saved = transaction.execute(status -> fingerprintSampleRepository.saveAll(accepted));
+        for (int i = 0; i < saved.size(); i++) {
+            acceptedResults.get(i).put("fingerprintId", saved.get(i).getId());
+        }
+
+        // Tính embedding theo từng lô song song, ngoài transaction
+        List<List<FingerprintSample>> chunks = new ArrayList<>();
+        List<Map<String, float[]>> chunkEmbeddings = new ArrayList<>();
+        List<Map<String, String>> chunkErrors = new ArrayList<>();
+        List<Future<?>> pending = new ArrayList<>();
+        for (int from = 0; from < saved.size(); from += chunkSize) {
+            List<FingerprintSample> chunk = saved.subList(from, Math.min(from + chunkSize, saved.size()));
+            Map<String, float[]> chunkEmbedding = new HashMap<>();
+            Map<String, String> chunkError = new HashMap<>();
+            chunks.add(chunk);
+            chunkEmbeddings.add(chunkEmbedding);
+            chunkErrors.add(chunkError);
+            pending.add(chunkSenders.submit(() -> embedChunk(chunk, segmentationModel.getPathName(),
+                    recognitionModel.getPathName(), chunkEmbedding, chunkError)));
+        }
+        Map<String, float[]> embeddings = new HashMap<>();
+        Map<String, String> errors = new HashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                pending.get(i).get();
+                embeddings.putAll(chunkEmbeddings.get(i));
+                errors.putAll(chunkErrors.get(i));
+            } catch (ExecutionException e) {
+                for (FingerprintSample sample : chunks.get(i)) {
+                    errors.put(sample.getId(), "Failed to register fingerprint: " + e.getCause().getMessage());
+                }
+            }
+        }
+
+        List<EnrollmentJob> jobs = transaction.execute(status -> storeEmbeddings(saved, embeddings, errors));
+
+        Map<String, EnrollmentJob> jobsByFingerprintId = jobs.stream()
+                .collect(Collectors.toMap(EnrollmentJob::getFingerprintId, Function.identity()));
+        for (int i = 0; i < saved.size(); i++) {
+            String fingerprintId = saved.get(i).getId();
+            Map<String, Object> result = acceptedResults.get(i);
+            if (embeddings.containsKey(fingerprintId)) {
+                result.put("status", REGISTERED);
+                continue;
+            }
+            result.put("error", errors.get(fingerprintId));
+            EnrollmentJob job = jobsByFingerprintId.get(fingerprintId);
+            if (job != null) {
+                result.put("status", QUEUED);
+                result.put("jobId", job.getId());
+            } else {
+                // The sample was deleted again (see storeEmbeddings)
+                result.put("status", FAILED);
+                result.remove("fingerprintId");
+            }
+        }
+        return results;
+    }
+
+    private void embedChunk(List<FingerprintSample> chunk, String segmentationModelPath, String recognitionModelPath,
+                            Map<String, float[]> embeddings, Map<String, String> errors) {
+        try {
+            // Cùng pipeline tiền xử lý với nhận dạng
+            if (preprocessedEmbeddingService.isEnabled()) {
+                Map<String, byte[]> images = new LinkedHashMap<>();
+                for (FingerprintSample sample : chunk) {
+                    images.put(sample.getId(), fingerprintImageService.asResource(sample).getContentAsByteArray());
+                }
+                preprocessedEmbeddingService.embedAll(images, segmentationModelPath, recognitionModelPath,
+                        InferenceClient.Stage.REGISTRATION, embeddings, errors);
+                return;
+            }
+
+            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+            for (FingerprintSample sample : chunk) {
+                body.add("files", fingerprintImageService.asResource(sample));
+                body.add("fingerprint_id", sample.getId());
+                body.add("employee_id", sample.getEmployee().getId());
+                body.add("position", sample.getPosition());
+            }
+            body.add("segmentation_model_path", segmentationModelPath);
+            body.add("recognition_model_path", recognitionModelPath);
+
+            ResponseEntity<String> response = inferenceClient.postMultipart(
+                    InferenceClient.Stage.REGISTRATION,
+                    "/api/register/batch",
+                    body);
+
+            JsonNode rootNode = new ObjectMapper().readTree(response.getBody());
+            if (!response.getStatusCode().is2xxSuccessful() || rootNode.has("error")) {
+                throw new Exception(rootNode.has("error") ? rootNode.get("error").asText() : response.getBody());
+            }
+
+            JsonNode items = rootNode.get("results");
+            for (int i = 0; i < chunk.size(); i++) {
+                String fingerprintId = chunk.get(i).getId();
+                JsonNode item = items == null ? null : items.get(i);
+                float[] embedding = item == null ? null : EmbeddingCodec.fromJson(item.get("embedding"));
+                if (embedding != null) {
+                    embeddings.put(fingerprintId, embedding);
+                } else {
+                    JsonNode error = item == null ? null : item.get("error");
+                    errors.put(fingerprintId, error == null || error.isNull() ? "No embedding returned" : error.asText());
+                }
+            }
+        } catch (Exception e) {
+            for (FingerprintSample sample : chunk) {
+                errors.put(sample.getId(), "Failed to register fingerprint: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the embeddings as one batch of updates and creates retry jobs for the rest,
+     * or deletes the rest when nothing would retry them. Runs inside a transaction, so
+     * gallery events are applied after commit.
+     */
+    private List<EnrollmentJob> storeEmbeddings(List<FingerprintSample> saved, Map<String, float[]> embeddings,
+                                                Map<String, String> errors) {
+        List<String> embeddedIds = new ArrayList<>(embeddings.keySet());
+        for (FingerprintSample sample : fingerprintSampleRepository.findAllById(embeddedIds)) {
+            float[] embedding = embeddings.get(sample.getId());
+            sample.setEmbedding(EmbeddingCodec.toBytes(embedding));
+            eventPublisher.publishEvent(FingerprintSampleEvent.registered(
+                    sample.getId(), sample.getEmployee().getId(), embedding));
+        }
+
+        if (!enrollmentQueue.isAsync()) {
+            // Một mẫu không có embedding sẽ không bao giờ được nhận dạng nhưng vẫn chiếm hạn mức
+            List<String> failedIds = new ArrayList<>();
+            for (FingerprintSample sample : saved) {
+                if (!embeddings.containsKey(sample.getId())) {
+                    failedIds.add(sample.getId());
+                }
+            }
+            fingerprintSampleRepository.deleteAll(fingerprintSampleRepository.findAllById(failedIds));
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<EnrollmentJob> jobs = new ArrayList<>();
+        for (FingerprintSample sample : saved) {
+            if (embeddings.containsKey(sample.getId())) {
+                continue;
+            }
+            jobs.add(EnrollmentJob.builder()
+                    .fingerprintId(sample.getId())
+                    .employeeId(sample.getEmployee().getId())
+                    .status(EnrollmentJob.Status.PENDING)
+                    .attempts(1)
+                    .lastError(truncate(errors.get(sample.getId())))
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .nextAttemptAt(now)
+                    .build());
+        }
+        return enrollmentJobRepository.saveAll(jobs);
+    }
+
+    private static void reject(Map<String, Object> result, String error) {
+        result.put("status", REJECTED);
+        result.put("error", error);
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -2,68 +2,200 @@ package com.example.fingerprint_backend.service;
 
 import com.example.fingerprint_backend.model.access.AccessLog;
 import com.example.fingerprint_backend.model.access.Area;
-import com.example.fingerprint_backend.model.access.AreaAccess;
 import com.example.fingerprint_backend.model.auth.Employee;
 import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSegmentationModel;
 import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintRecognitionModel;
-import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
 import com.example.fingerprint_backend.model.biometrics.recognition.Recognition;
 import com.example.fingerprint_backend.model.biometrics.recognition.RecognitionResult;
 import com.example.fingerprint_backend.repository.access.AccessLogRepository;
-import com.example.fingerprint_backend.repository.access.AreaAccessRepository;
 import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
 import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSegmentationModelRepository;
 import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintRecognitionModelRepository;
-import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
 import com.example.fingerprint_backend.repository.biometrics.recognition.RecognitionRepository;
+import com.example.fingerprint_backend.service.gallery.EmbeddingCodec;
+import com.example.fingerprint_backend.service.gallery.EmbeddingGallery;
+import com.example.fingerprint_backend.service.gallery.GalleryMatch;
+import com.example.fingerprint_backend.service.journal.AccessJournal;
+import com.example.fingerprint_backend.service.journal.AccessJournalEntry;
+import com.example.fingerprint_backend.service.onnx.OnnxEmbeddingEngine;
+import com.example.fingerprint_backend.service.preprocess.FingerprintPreprocessor;
+import com.example.fingerprint_backend.service.preprocess.PreprocessedFingerprint;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class FingerprintRecognitionService {
 
-    @Value("${fingerprint.api.url:http://localhost:5000}")
-    private String fingerprintApiUrl;
+    @Value("${fingerprint.gallery.top-k:1}")
+    private int galleryTopK;
+
+    // Chỉ so khớp với nhân viên được cấp quyền vào khu vực
+    @Value("${fingerprint.gallery.area-prefilter:false}")
+    private boolean areaPrefilter;
+
+    @Value("${fingerprint.verify.latency-budget-ms:300}")
+    private long verifyLatencyBudgetMs;
 
     private final EmployeeRepository employeeRepository;
     private final FingerprintSegmentationModelRepository segmentationModelRepository;
     private final FingerprintRecognitionModelRepository recognitionModelRepository;
     private final RecognitionRepository recognitionRepository;
     private final AccessLogRepository accessLogRepository;
-    private final AreaAccessRepository areaAccessRepository;
-    private final FingerprintSampleRepository fingerprintSampleRepository;
-
-    @Autowired
-    private final RestTemplate restTemplate;
+    private final EmbeddingGallery embeddingGallery;
+    private final AreaAccessIndex areaAccessIndex;
+    private final EmbeddingBatchDispatcher embeddingBatchDispatcher;
+    private final FingerprintPreprocessor fingerprintPreprocessor;
+    private final PreprocessedEmbeddingService preprocessedEmbeddingService;
+    private final OnnxEmbeddingEngine onnxEmbeddingEngine;
+    private final RecognitionResultCache recognitionResultCache;
+
+    private final InferenceClient inferenceClient;
+    private final PlatformTransactionManager transactionManager;
+    private final AccessJournal accessJournal;
+    private final EmployeeAccessRollupService employeeAccessRollupService;
+    private final EntityManager entityManager;
 
     public RecognitionResult recognizeFingerprint(
             MultipartFile fingerprintImage,
             String segmentationModelId,
             String recognitionModelId) throws Exception {
+        return recognizeFingerprint(fingerprintImage, segmentationModelId, recognitionModelId, null);
+    }
+
+    /**
+     * Identifies the fingerprint. When {@code areaId} is given, only employees with
+     * access to that area are considered and an unmatched probe yields a non-match.
+     */
+    public RecognitionResult recognizeFingerprint(
+            MultipartFile fingerprintImage,
+            String segmentationModelId,
+            String recognitionModelId,
+            String areaId) throws Exception {
+
+        if (!recognitionResultCache.isEnabled()) {
+            return identify(fingerprintImage, segmentationModelId, recognitionModelId, areaId);
+        }
+
+        // Ảnh gửi lại y hệt (thử lại, chạm hai lần) dùng lại kết quả đã tính
+        String cacheKey = recognitionResultCache.key(fingerprintImage.getBytes(), segmentationModelId,
+                recognitionModelId, areaId);
+        RecognitionResult cached = recognitionResultCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        RecognitionResult result = identify(fingerprintImage, segmentationModelId, recognitionModelId, areaId);
+        recognitionResultCache.put(cacheKey, result);
+        return result;
+    }
+
+    private RecognitionResult identify(
+            MultipartFile fingerprintImage,
+            String segmentationModelId,
+            String recognitionModelId,
+            String areaId) throws Exception {
+
+        float[] probe = computeEmbedding(fingerprintImage, segmentationModelId, recognitionModelId, null);
+
+        if (areaId != null) {
+            List<GalleryMatch> matches = embeddingGallery.search(probe, galleryTopK,
+                    areaAccessIndex.employeeIdsFor(areaId));
+            if (matches.isEmpty()) {
+                return new RecognitionResult(null, 0.0, null);
+            }
+            GalleryMatch best = matches.get(0);
+            return new RecognitionResult(best.getEmployeeId(), best.getConfidence(), best.getFingerprintId());
+        }
+
+        List<GalleryMatch> matches = embeddingGallery.search(probe, galleryTopK);
+        if (matches.isEmpty()) {
+            throw new Exception("Recognition error: Embeddings database is empty");
+        }
+
+        GalleryMatch best = matches.get(0);
+        String employeeId = best.getEmployeeId();
+        double confidence = best.getConfidence();
+        String fingerprintId = best.getFingerprintId();
+
+        System.out.println("Successfully recognized: employeeId=" + employeeId + ", confidence=" + confidence
+                + " fingerId=" + fingerprintId);
+
+        return new RecognitionResult(employeeId, confidence, fingerprintId);
+    }
+
+    /**
+     * 1:1 verification: compares the probe only with the given fingerprint sample, or
+     * with every active sample of the given employee when no fingerprint ID is supplied.
+     */
+    public RecognitionResult verifyFingerprint(
+            MultipartFile fingerprintImage,
+            String segmentationModelId,
+            String recognitionModelId,
+            String employeeId,
+            String fingerprintId) throws Exception {
+        return verifyFingerprint(fingerprintImage, segmentationModelId, recognitionModelId, employeeId, fingerprintId,
+                null);
+    }
+
+    /**
+     * As above; the AI service call, or the local engine's wait for a session, gets only
+     * the time left until {@code deadline} ({@link System#nanoTime()}), and fails once it
+     * has passed.
+     */
+    public RecognitionResult verifyFingerprint(
+            MultipartFile fingerprintImage,
+            String segmentationModelId,
+            String recognitionModelId,
+            String employeeId,
+            String fingerprintId,
+            Long deadline) throws Exception {
+
+        if (employeeId == null && fingerprintId == null) {
+            throw new Exception("Verification requires an employee ID or a fingerprint ID");
+        }
+
+        float[] probe = computeEmbedding(fingerprintImage, segmentationModelId, recognitionModelId, deadline);
+
+        GalleryMatch match = fingerprintId != null
+                ? embeddingGallery.verifyTemplate(probe, fingerprintId)
+                : embeddingGallery.verifyEmployee(probe, employeeId);
+        if (match == null || (employeeId != null && !employeeId.equals(match.getEmployeeId()))) {
+            return new RecognitionResult(null, 0.0, null);
+        }
+        return new RecognitionResult(match.getEmployeeId(), match.getConfidence(), match.getFingerprintId());
+    }
+
+    // A deadline skips micro-batching, whose queueing it cannot bound
+    private float[] computeEmbedding(
+            MultipartFile fingerprintImage,
+            String segmentationModelId,
+            String recognitionModelId,
+            Long deadline) throws Exception {
 
         Optional<FingerprintSegmentationModel> segModelOpt = segmentationModelRepository.findById(segmentationModelId);
         FingerprintSegmentationModel segmentationModel = segModelOpt
@@ -79,10 +211,30 @@ public class FingerprintRecognitionService {
         try {
             byte[] fileBytes = fingerprintImage.getBytes();
 
-            // Chuẩn bị yêu cầu HTTP
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+            // Suy luận cục bộ bằng ONNX Runtime, không cần gọi dịch vụ AI
+            if (onnxEmbeddingEngine.isEnabled()) {
+                return onnxEmbeddingEngine.embed(fileBytes, segmentationModelPath, recognitionModelPath,
+                        remaining(deadline));
+            }
+
+            // Tiền xử lý ảnh phía Java, chỉ gửi dữ liệu đã thu nhỏ đến máy chủ mô hình
+            if (fingerprintPreprocessor.isEnabled()) {
+                PreprocessedFingerprint tensor = preprocessedEmbeddingService.preprocess(fileBytes,
+                        segmentationModelPath, recognitionModelPath);
+                if (embeddingBatchDispatcher.isEnabled() && deadline == null) {
+                    return embeddingBatchDispatcher.embed(tensor, segmentationModelPath, recognitionModelPath);
+                }
+                return preprocessedEmbeddingService.embed(tensor, segmentationModelPath, recognitionModelPath,
+                        InferenceClient.Stage.RECOGNITION, remaining(deadline));
+            }
+
+            // Gom các yêu cầu đồng thời thành một lô khi bật micro-batching
+            if (embeddingBatchDispatcher.isEnabled() && deadline == null) {
+                return embeddingBatchDispatcher.embed(fileBytes, fingerprintImage.getOriginalFilename(),
+                        segmentationModelPath, recognitionModelPath);
+            }
 
+            // Chuẩn bị yêu cầu HTTP
             MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
             body.add("file", new ByteArrayResource(fileBytes) {
                 @Override
@@ -93,48 +245,29 @@ public class FingerprintRecognitionService {
             body.add("segmentation_model_path", segmentationModelPath);
             body.add("recognition_model_path", recognitionModelPath);
 
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
-            // Gửi yêu cầu đến API
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    fingerprintApiUrl + "/api/recognize",
-                    requestEntity,
-                    String.class);
+            // Gửi yêu cầu đến API để lấy embedding của vân tay cần nhận dạng
+            ResponseEntity<String> response = inferenceClient.postMultipart(
+                    InferenceClient.Stage.RECOGNITION,
+                    "/api/embed",
+                    body,
+                    remaining(deadline));
 
-            if (response.getStatusCode().is2xxSuccessful()) {
-                ObjectMapper mapper = new ObjectMapper();
-                JsonNode rootNode = mapper.readTree(response.getBody());
-
-                if (rootNode.has("error")) {
-                    throw new Exception("Recognition error: " + rootNode.get("error").asText());
-                }
-
-                JsonNode similarityNode = rootNode.get("similarity");
-
-                String employeeId = null;
-                double confidence = 0.0;
-                String fingerprintId = null;
-
-                if (similarityNode != null) {
-                    JsonNode employeeIdNode = similarityNode.get("employee_id");
-                    if (employeeIdNode != null && !employeeIdNode.isNull()) {
-                        employeeId = employeeIdNode.asText();
-                    }
-                    JsonNode fingerIdNode = similarityNode.get("fingerprint_id");
-                    if (fingerIdNode != null && !fingerIdNode.isNull()) {
-                        fingerprintId = fingerIdNode.asText();
-                    }
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new Exception("Failed to recognize fingerprint: " + response.getBody());
+            }
 
-                    confidence = similarityNode.get("confidence").asDouble();
-                }
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode rootNode = mapper.readTree(response.getBody());
 
-                System.out.println("Successfully recognized: employeeId=" + employeeId + ", confidence=" + confidence
-                        + " fingerId=" + fingerprintId);
+            if (rootNode.has("error")) {
+                throw new Exception("Recognition error: " + rootNode.get("error").asText());
+            }
 
-                return new RecognitionResult(employeeId, confidence, fingerprintId);
-            } else {
-                throw new Exception("Failed to recognize fingerprint: " + response.getBody());
+            float[] probe = EmbeddingCodec.fromJson(rootNode.get("embedding"));
+            if (probe == null) {
+                throw new Exception("Recognition error: No embedding returned for fingerprint");
             }
+            return probe;
         } catch (IOException e) {
             System.err.println("Error in fingerprint recognition process: " + e.getMessage());
             e.printStackTrace();
@@ -142,7 +275,12 @@ public class FingerprintRecognitionService {
         }
     }
 
-    @Transactional
+    /**
+     * Identifies the probe and records the attempt. Inference runs before the
+     * transaction opens, so no connection is held while waiting for the model; the
+     * transaction itself reads at most the matched employee (a second-level cache hit
+     * once warm) and writes the access log and recognition rows.
+     */
     public Map<String, Object> processRecognition(
             MultipartFile fingerprintImage,
             String segmentationModelId,
@@ -150,22 +288,85 @@ public class FingerprintRecognitionService {
             Area area,
             String accessType) throws Exception {
 
-        Map<String, Object> response = new HashMap<>();
-
         RecognitionResult result = recognizeFingerprint(
                 fingerprintImage,
                 segmentationModelId,
-                recognitionModelId);
+                recognitionModelId,
+                areaPrefilter && area != null ? area.getId() : null);
 
         if (result == null) {
             throw new Exception("Fingerprint recognition failed");
         }
 
-        AccessLog accessLog = createAccessLog(
-                result.getEmployeeId(),
+        return recordAndRespond(result, area, accessType, segmentationModelId, recognitionModelId);
+    }
+
+    public Map<String, Object> processVerification(
+            MultipartFile fingerprintImage,
+            String segmentationModelId,
+            String recognitionModelId,
+            String employeeId,
+            String fingerprintId,
+            Area area,
+            String accessType) throws Exception {
+
+        long startedAt = System.nanoTime();
+        Long deadline = verifyLatencyBudgetMs > 0 ? startedAt + verifyLatencyBudgetMs * 1_000_000 : null;
+        RecognitionResult result;
+        try {
+            result = verifyFingerprint(
+                    fingerprintImage,
+                    segmentationModelId,
+                    recognitionModelId,
+                    employeeId,
+                    fingerprintId,
+                    deadline);
+        } catch (Exception e) {
+            if (deadline != null && System.nanoTime() - deadline >= 0) {
+                throw overBudget(e);
+            }
+            throw e;
+        }
+        long latencyMs = (System.nanoTime() - startedAt) / 1_000_000;
+        if (deadline != null && latencyMs > verifyLatencyBudgetMs) {
+            throw overBudget(null);
+        }
+
+        Map<String, Object> response = recordAndRespond(
+                result, area, accessType, segmentationModelId, recognitionModelId);
+        response.put("mode", "VERIFY");
+        response.put("latencyMs", latencyMs);
+        return response;
+    }
+
+    // Fails the verification instead of opening the door late; nothing is recorded
+    private ResponseStatusException overBudget(Exception cause) {
+        return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                "Verification exceeded the " + verifyLatencyBudgetMs + " ms latency budget", cause);
+    }
+
+    private static Duration remaining(Long deadline) {
+        return deadline == null ? null : Duration.ofNanos(deadline - System.nanoTime());
+    }
+
+    private Map<String, Object> buildAccessResponse(
+            RecognitionResult result,
+            Area area,
+            String accessType,
+            String segmentationModelId,
+            String recognitionModelId) {
+
+        Map<String, Object> response = new HashMap<>();
+
+        // Only an exact match identifies the employee; loaded once for the log, the
+        // recognition row and the response
+        boolean identified = result.isMatch() && result.getConfidence() >= 1.00;
+        Employee employee = identified ? findEmployee(result.getEmployeeId()) : null;
+
+        AccessLog accessLog = recordAccess(
+                employee,
                 area,
                 accessType,
-                result.isMatch(),
                 result.getConfidence(),
                 segmentationModelId,
                 recognitionModelId);
@@ -175,31 +376,15 @@ public class FingerprintRecognitionService {
         response.put("accessLog", accessLog);
         response.put("authorized", accessLog.isAuthorized());
 
-        if (result.isMatch() && result.getConfidence() >= 1.00) {
-            List<AreaAccess> areaAccessList = areaAccessRepository.findByEmployeeId(result.getEmployeeId());
-            var isAccessable = false;
-            for (AreaAccess areaAccess : areaAccessList) {
-                if (areaAccess.getArea().getId().equals(area.getId())) {
-                    isAccessable = true;
-                    break;
-                }
-            }
-            Boolean isActive = false;
-            FingerprintSample fingerprintSample = fingerprintSampleRepository.findById(result.getFingerprintId())
-                    .orElseThrow(() -> new Exception("Fingerprint sample not found with id: " + result.getFingerprintId()));
-            if(fingerprintSample.isActive()){
-                isActive = true;
-            }
-            response.put("active", isActive);
+        if (identified) {
+            boolean isAccessable = area != null && areaAccessIndex.isAllowed(result.getEmployeeId(), area.getId());
+            // Gallery chỉ chứa mẫu đang active, không cần truy vấn lại DB
+            response.put("active", embeddingGallery.contains(result.getFingerprintId()));
             response.put("accessable", isAccessable);
             response.put("employeeId", result.getEmployeeId());
-
-            Optional<Employee> employee = employeeRepository.findById(result.getEmployeeId());
-            if (employee.isPresent()) {
-                response.put("employee", employee.get());
-            } else {
-                response.put("employee", null);
-            }
+            response.put("employee", employee == null ? null : new Employee(employee.getId(), employee.getFullName(),
+                    employee.getPhoneNumber(), employee.getPhoto(), employee.getAddress(),
+                    employee.getMaxNumberSamples()));
         } else {
             // If confidence is less than 1.00, set employee to null
             response.put("employee", null);
@@ -218,66 +403,101 @@ public class FingerprintRecognitionService {
             String segmentationModelId,
             String recognitionModelId) {
 
+        Employee employee = null;
+        // Only set employee and authorize if confidence is exactly 1.0
+        if (isMatched && confidence >= 1.0 && employeeId != null) {
+            employee = findEmployee(employeeId);
+        }
+        return recordAccess(employee, area, accessType, confidence, segmentationModelId, recognitionModelId);
+    }
+
+    /**
+     * Writes the access records and builds the door response. With the access journal
+     * on, the door path opens no database transaction at all.
+     */
+    private Map<String, Object> recordAndRespond(
+            RecognitionResult result,
+            Area area,
+            String accessType,
+            String segmentationModelId,
+            String recognitionModelId) {
+
+        if (accessJournal.isEnabled()) {
+            return buildAccessResponse(result, area, accessType, segmentationModelId, recognitionModelId);
+        }
+        return new TransactionTemplate(transactionManager).execute(status ->
+                buildAccessResponse(result, area, accessType, segmentationModelId, recognitionModelId));
+    }
+
+    /**
+     * Inserts the access log and its recognition record, or hands both to the access
+     * journal when write-behind is enabled. The models were already resolved for
+     * inference, so they are referenced by id without another lookup.
+     */
+    private AccessLog recordAccess(
+            Employee employee,
+            Area area,
+            String accessType,
+            double confidence,
+            String segmentationModelId,
+            String recognitionModelId) {
+
         LocalDateTime now = LocalDateTime.now();
 
         AccessLog accessLog = AccessLog.builder()
                 .area(area)
+                .employee(employee)
+                .authorized(employee != null && determineAuthorization(employee, area))
                 .timestamp(now)
                 .accessType(accessType)
                 .build();
 
-        // Only set employee and authorize if confidence is exactly 1.0
-        if (isMatched && confidence >= 1.0 && employeeId != null) {
-            Optional<Employee> employeeOpt = employeeRepository.findById(employeeId);
-
-            if (employeeOpt.isPresent()) {
-                Employee employee = employeeOpt.get();
-                accessLog.setEmployee(employee);
-
-                boolean authorized = determineAuthorization(employee, area);
-                accessLog.setAuthorized(authorized);
-            } else {
-                accessLog.setAuthorized(false);
-                accessLog.setEmployee(null);
-            }
-        } else {
-            accessLog.setAuthorized(false);
-            accessLog.setEmployee(null);
+        if (accessJournal.isEnabled()) {
+            // Trả kết quả cho cửa ngay khi đã ghi xuống journal, DB được cập nhật sau
+            accessLog.setId(UUID.randomUUID().toString());
+            accessJournal.submit(new AccessJournalEntry(
+                    accessLog.getId(),
+                    UUID.randomUUID().toString(),
+                    area == null ? null : area.getId(),
+                    employee == null ? null : employee.getId(),
+                    accessType,
+                    accessLog.isAuthorized(),
+                    now,
+                    (float) confidence,
+                    confidence == 1.0 && employee != null ? employee.getId() : null,
+                    segmentationModelId,
+                    recognitionModelId));
+            return accessLog;
         }
 
         AccessLog savedAccessLog = accessLogRepository.save(accessLog);
+        employeeAccessRollupService.record(employee == null ? null : employee.getId(),
+                area == null ? null : area.getId(), savedAccessLog.isAuthorized(), now);
+
+        Recognition recognition = Recognition.builder()
+                // Only create recognition record with an employee if confidence is exactly 1.0
+                .employee(confidence == 1.0 ? employee : null)
+                .accessLog(savedAccessLog) // Link to access log
+                .fingerprintSegmentationModel(segmentationModelRepository.getReferenceById(segmentationModelId))
+                .fingerprintRecognitionModel(recognitionModelRepository.getReferenceById(recognitionModelId))
+                .timestamp(now)
+                .confidence((float) confidence)
+                .build();
 
-        try {
-            FingerprintSegmentationModel segmentationModel = segmentationModelRepository.findById(segmentationModelId)
-                    .orElseThrow(() -> new Exception("Segmentation model not found"));
-
-            FingerprintRecognitionModel recognitionModel = recognitionModelRepository.findById(recognitionModelId)
-                    .orElseThrow(() -> new Exception("Recognition model not found"));
-
-            Employee employee = null;
-            // Only create recognition record if confidence is exactly 1.0
-            if (isMatched && confidence == 1.0 && employeeId != null) {
-                employee = employeeRepository.findById(employeeId).orElse(null);
-            }
-
-            Recognition recognition = Recognition.builder()
-                    .employee(employee)
-                    .accessLog(savedAccessLog) // Link to access log
-                    .fingerprintSegmentationModel(segmentationModel)
-                    .fingerprintRecognitionModel(recognitionModel)
-                    .timestamp(now)
-                    .confidence((float) confidence)
-                    .build();
-
-            recognitionRepository.save(recognition);
-
-        } catch (Exception e) {
-            System.err.println("Failed to create recognition record: " + e.getMessage());
-        }
+        recognitionRepository.save(recognition);
 
         return savedAccessLog;
     }
 
+    /**
+     * Loads the employee by primary key so the second-level cache can answer;
+     * {@code EmployeeRepository.findById} is a constructor query and always hits the
+     * database. The entity carries credentials, so responses get a copy without them.
+     */
+    private Employee findEmployee(String employeeId) {
+        return entityManager.find(Employee.class, employeeId);
+    }
+
     private boolean determineAuthorization(Employee employee, Area area) {
         if (area == null) {
             return true;
@@ -1,29 +1,30 @@
 package com.example.fingerprint_backend.service;
 
 import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.EnrollmentJob;
 import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
 import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSegmentationModel;
 import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintRecognitionModel;
 import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.EnrollmentJobRepository;
 import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
 import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSegmentationModelRepository;
 import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintRecognitionModelRepository;
+import com.example.fingerprint_backend.service.blob.FingerprintImageService;
+import com.example.fingerprint_backend.service.gallery.EmbeddingCodec;
+import com.example.fingerprint_backend.service.gallery.FingerprintSampleEvent;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.HttpEntity;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -35,17 +36,20 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class FingerprintRegistrationService {
 
-    @Value("${fingerprint.api.url:http://localhost:5000}")
-    private String fingerprintApiUrl;
-
     private final EmployeeRepository employeeRepository;
     private final FingerprintSampleRepository fingerprintSampleRepository;
     private final FingerprintSegmentationModelRepository segmentationModelRepository;
     private final FingerprintRecognitionModelRepository recognitionModelRepository;
+    private final EnrollmentJobRepository enrollmentJobRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Autowired
-    private final RestTemplate restTemplate;
+    private final InferenceClient inferenceClient;
+    private final PreprocessedEmbeddingService preprocessedEmbeddingService;
+    private final FingerprintImageService fingerprintImageService;
 
+    /**
+     * Registers synchronously: the caller waits for the AI service to embed the sample.
+     */
     @Transactional
     public FingerprintSample registerFingerprint(
             String employeeId,
@@ -54,6 +58,97 @@ public class FingerprintRegistrationService {
             String segmentationModelId,
             String recognitionModelId) throws Exception {
 
+        FingerprintSample savedSample = saveSample(employeeId, file, position, segmentationModelId, recognitionModelId);
+
+        // Lưu embedding để phục vụ nhận dạng 1:N ngay trong backend
+        float[] embedding = computeEmbedding(savedSample);
+        if (embedding != null) {
+            savedSample.setEmbedding(EmbeddingCodec.toBytes(embedding));
+            savedSample = fingerprintSampleRepository.save(savedSample);
+            eventPublisher.publishEvent(FingerprintSampleEvent.registered(savedSample.getId(), employeeId, embedding));
+        }
+
+        return savedSample;
+    }
+
+    /**
+     * A sample stored by {@link #enqueueFingerprint} and the job that will embed it.
+     */
+    public record QueuedEnrollment(FingerprintSample sample, EnrollmentJob job) {
+    }
+
+    /**
+     * Stores the sample together with a pending {@link EnrollmentJob} in one transaction
+     * and returns both; {@link EnrollmentQueue} computes the embedding afterwards.
+     */
+    @Transactional
+    public QueuedEnrollment enqueueFingerprint(
+            String employeeId,
+            MultipartFile file,
+            String position,
+            String segmentationModelId,
+            String recognitionModelId) throws Exception {
+
+        FingerprintSample savedSample = saveSample(employeeId, file, position, segmentationModelId, recognitionModelId);
+
+        LocalDateTime now = LocalDateTime.now();
+        EnrollmentJob job = EnrollmentJob.builder()
+                .fingerprintId(savedSample.getId())
+                .employeeId(employeeId)
+                .status(EnrollmentJob.Status.PENDING)
+                .attempts(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .nextAttemptAt(now)
+                .build();
+        return new QueuedEnrollment(savedSample, enrollmentJobRepository.save(job));
+    }
+
+    /**
+     * Sends the stored image to the AI service's {@code /api/register} and returns the
+     * embedding it produced, or {@code null} if it returned none. When probes are
+     * preprocessed in the backend the sample goes through the same
+     * {@link PreprocessedEmbeddingService} pipeline instead.
+     */
+    public float[] computeEmbedding(FingerprintSample sample) throws Exception {
+        // Cùng pipeline tiền xử lý với nhận dạng, để mẫu và ảnh dò so khớp được
+        if (preprocessedEmbeddingService.isEnabled()) {
+            return preprocessedEmbeddingService.embed(
+                    fingerprintImageService.asResource(sample).getContentAsByteArray(),
+                    sample.getFingerprintSegmentationModel().getPathName(),
+                    sample.getFingerprintRecognitionModel().getPathName(),
+                    InferenceClient.Stage.REGISTRATION);
+        }
+
+        // Gửi yêu cầu đăng ký vân tay đến API
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", fingerprintImageService.asResource(sample));
+        body.add("fingerprint_id", sample.getId());
+        body.add("employee_id", sample.getEmployee().getId());
+        body.add("position", sample.getPosition());
+        body.add("segmentation_model_path", sample.getFingerprintSegmentationModel().getPathName());
+        body.add("recognition_model_path", sample.getFingerprintRecognitionModel().getPathName());
+
+        ResponseEntity<String> response = inferenceClient.postMultipart(
+                InferenceClient.Stage.REGISTRATION,
+                "/api/register",
+                body);
+
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new Exception("Failed to register fingerprint: " + response.getBody());
+        }
+
+        JsonNode rootNode = new ObjectMapper().readTree(response.getBody());
+        return EmbeddingCodec.fromJson(rootNode.get("embedding"));
+    }
+
+    private FingerprintSample saveSample(
+            String employeeId,
+            MultipartFile file,
+            String position,
+            String segmentationModelId,
+            String recognitionModelId) throws Exception {
+
         Optional<Employee> employeeOpt = employeeRepository.findById(employeeId);
         Employee employee = employeeOpt
                 .orElseThrow(() -> new Exception("Employee with ID " + employeeId + " not found"));
@@ -66,17 +161,11 @@ public class FingerprintRegistrationService {
         FingerprintRecognitionModel recognitionModel = recModelOpt
                 .orElseThrow(() -> new Exception("Recognition model with ID " + recognitionModelId + " not found"));
 
-        String segmentationModelPath = segmentationModel.getPathName();
-        String recognitionModelPath = recognitionModel.getPathName();
-
         try {
-            byte[] fileBytes = file.getBytes();
-
             // Lưu mẫu vân tay vào cơ sở dữ liệu
             FingerprintSample sample = FingerprintSample.builder()
                     .employee(employee)
                     .image(file.getOriginalFilename())
-                    .imageData(fileBytes)
                     .position(position)
                     .capturedAt(LocalDateTime.now())
                     .fingerprintSegmentationModel(segmentationModel)
@@ -84,41 +173,12 @@ public class FingerprintRegistrationService {
                     .quality(1.0)
                     .active(true)
                     .build();
+            fingerprintImageService.store(sample, file);
 
-            FingerprintSample savedSample = fingerprintSampleRepository.save(sample);
-
-            // Gửi yêu cầu đăng ký vân tay đến API
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", new ByteArrayResource(fileBytes) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
-                }
-            });
-            body.add("fingerprint_id", sample.getId());
-            body.add("employee_id", employeeId);
-            body.add("position", position);
-            body.add("segmentation_model_path", segmentationModelPath);
-            body.add("recognition_model_path", recognitionModelPath);
-
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    fingerprintApiUrl + "/api/register",
-                    requestEntity,
-                    String.class);
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                return savedSample;
-            } else {
-                throw new Exception("Failed to register fingerprint: " + response.getBody());
-            }
+            return fingerprintSampleRepository.save(sample);
 
         } catch (IOException e) {
             throw new Exception("Failed to save fingerprint image: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
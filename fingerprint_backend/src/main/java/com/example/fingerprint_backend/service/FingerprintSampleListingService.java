@@ -0,0 +1,185 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleSummary;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleSpecifications.after;
+import static com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleSpecifications.matching;
+
+/**
+ * Metadata-only listings of fingerprint samples, paged by seeking past the last
+ * {@code (capturedAt, id)} seen instead of by offset. Each page is a range scan on
+ * one of the {@code *_captured} indexes of {@code fingerprint_sample}, so page 1000
+ * costs the same as page 1, and no image, embedding or employee row is loaded. Filters
+ * become predicates only when they are set (see {@code FingerprintSampleSpecifications}).
+ */
+@Service
+@RequiredArgsConstructor
+public class FingerprintSampleListingService {
+
+    // Sorts before every real capture time, so the first page starts at the beginning
+    private static final LocalDateTime START = LocalDateTime.of(1000, 1, 1, 0, 0);
+
+    @Value("${fingerprint.listing.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${fingerprint.listing.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${fingerprint.listing.stream-chunk-size:1000}")
+    private int streamChunkSize;
+
+    private final FingerprintSampleRepository fingerprintSampleRepository;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCaptureTimes() {
+        int updated = fingerprintSampleRepository.backfillCapturedAt(LocalDateTime.now());
+        if (updated > 0) {
+            System.out.println("Set capture time on " + updated + " fingerprint samples without one");
+        }
+    }
+
+    /**
+     * One page of summaries after the cursor, with the cursor of the next page
+     * ({@code null} on the last page).
+     */
+    public Map<String, Object> page(String employeeId, String recognitionModelId, Boolean active,
+                                    Integer size, String after) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        Key key = decode(after);
+        List<FingerprintSampleSummary> items = fetch(employeeId, recognitionModelId, active, key, pageSize);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", items);
+        response.put("size", items.size());
+        response.put("nextCursor", items.size() < pageSize ? null : encode(items.get(items.size() - 1)));
+        return response;
+    }
+
+    /**
+     * Writes every matching summary as one JSON array, a chunk at a time, flushing after
+     * each chunk. Memory use is bounded by the chunk size, not by the number of samples.
+     */
+    public void stream(String employeeId, String recognitionModelId, Boolean active, OutputStream out)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            Key key = new Key(START, "");
+            while (true) {
+                List<FingerprintSampleSummary> chunk = fetch(employeeId, recognitionModelId, active, key, streamChunkSize);
+                for (FingerprintSampleSummary summary : chunk) {
+                    generator.writeStartObject();
+                    generator.writeStringField("id", summary.getId());
+                    generator.writeStringField("employeeId", summary.getEmployeeId());
+                    generator.writeStringField("position", summary.getPosition());
+                    // Written field by field: ObjectMapper.writeValue would flush after every value
+                    generator.writeFieldName("quality");
+                    if (summary.getQuality() == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(summary.getQuality());
+                    }
+                    generator.writeFieldName("active");
+                    if (summary.getActive() == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeBoolean(summary.getActive());
+                    }
+                    // Same ISO form the paged listing gets from the ObjectMapper
+                    generator.writeStringField("capturedAt", summary.getCapturedAt() == null
+                            ? null : summary.getCapturedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                    generator.writeEndObject();
+                }
+                generator.flush();
+                if (chunk.size() < streamChunkSize) {
+                    break;
+                }
+                FingerprintSampleSummary last = chunk.get(chunk.size() - 1);
+                key = new Key(last.getCapturedAt(), last.getId());
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // Selects the summary columns only; the employee id comes from the foreign key column
+    private List<FingerprintSampleSummary> fetch(String employeeId, String recognitionModelId, Boolean active,
+                                                 Key key, int limit) {
+        Specification<FingerprintSample> specification = matching(employeeId, recognitionModelId, active)
+                .and(after(key.capturedAt, key.id));
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FingerprintSampleSummary> query = cb.createQuery(FingerprintSampleSummary.class);
+        Root<FingerprintSample> root = query.from(FingerprintSample.class);
+        query.select(cb.construct(FingerprintSampleSummary.class,
+                root.get("id"),
+                root.get("employee").get("id"),
+                root.get("position"),
+                root.get("quality"),
+                root.get("active"),
+                root.get("capturedAt")));
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get("capturedAt")), cb.asc(root.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    // The cursor is opaque to clients: base64url of "capturedAt|id"
+    private static String encode(FingerprintSampleSummary last) {
+        String raw = last.getCapturedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Key decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new Key(START, "");
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new Key(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static final class Key {
+        private final LocalDateTime capturedAt;
+        private final String id;
+
+        private Key(LocalDateTime capturedAt, String id) {
+            this.capturedAt = capturedAt;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.fingerprint_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP client for the AI service. All calls share one bounded, keep-alive connection
+ * pool, and recognition and registration each run behind their own bulkhead and read
+ * timeout, so a slow model server cannot tie up every request thread. A caller with
+ * its own deadline can pass a shorter timeout for a single call.
+ *
+ * The classic pooling client speaks HTTP/1.1 only: each pooled connection carries one
+ * request at a time, there is no multiplexing, and {@code pool.max-total} and
+ * {@code pool.max-per-route} therefore bound how many inference calls can be in flight.
+ * Keep them at least as large as the sum of the bulkhead limits.
+ */
+@Component
+public class InferenceClient {
+
+    public enum Stage {
+        RECOGNITION,
+        REGISTRATION,
+        MAINTENANCE
+    }
+
+    @Value("${fingerprint.api.url:http://localhost:5000}")
+    private String fingerprintApiUrl;
+
+    @Value("${fingerprint.inference.pool.max-total:64}")
+    private int poolMaxTotal;
+
+    @Value("${fingerprint.inference.pool.max-per-route:64}")
+    private int poolMaxPerRoute;
+
+    @Value("${fingerprint.inference.pool.idle-evict-seconds:30}")
+    private long idleEvictSeconds;
+
+    @Value("${fingerprint.inference.connect-timeout-ms:1000}")
+    private long connectTimeoutMs;
+
+    @Value("${fingerprint.inference.pool-wait-timeout-ms:500}")
+    private long poolWaitTimeoutMs;
+
+    @Value("${fingerprint.inference.recognition.read-timeout-ms:5000}")
+    private long recognitionReadTimeoutMs;
+
+    @Value("${fingerprint.inference.registration.read-timeout-ms:30000}")
+    private long registrationReadTimeoutMs;
+
+    @Value("${fingerprint.inference.maintenance.read-timeout-ms:120000}")
+    private long maintenanceReadTimeoutMs;
+
+    @Value("${fingerprint.inference.recognition.max-concurrent:32}")
+    private int recognitionMaxConcurrent;
+
+    @Value("${fingerprint.inference.registration.max-concurrent:8}")
+    private int registrationMaxConcurrent;
+
+    @Value("${fingerprint.inference.bulkhead-wait-ms:200}")
+    private long bulkheadWaitMs;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private final Map<Stage, RestTemplate> restTemplates = new HashMap<>();
+    private final Map<Stage, Semaphore> bulkheads = new HashMap<>();
+    private final Map<Stage, AtomicLong> rejected = new HashMap<>();
+    private final Map<Stage, AtomicLong> failures = new HashMap<>();
+    // Per-call timeout, read by the request factory on the calling thread
+    private final ThreadLocal<Timeout> callTimeout = new ThreadLocal<>();
+
+    @PostConstruct
+    public void start() {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(poolMaxTotal)
+                .setMaxConnPerRoute(poolMaxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .evictExpiredConnections()
+                .build();
+
+        restTemplates.put(Stage.RECOGNITION, restTemplate(recognitionReadTimeoutMs));
+        restTemplates.put(Stage.REGISTRATION, restTemplate(registrationReadTimeoutMs));
+        restTemplates.put(Stage.MAINTENANCE, restTemplate(maintenanceReadTimeoutMs));
+        bulkheads.put(Stage.RECOGNITION, new Semaphore(recognitionMaxConcurrent));
+        bulkheads.put(Stage.REGISTRATION, new Semaphore(registrationMaxConcurrent));
+        bulkheads.put(Stage.MAINTENANCE, new Semaphore(1));
+        for (Stage stage : Stage.values()) {
+            rejected.put(stage, new AtomicLong());
+            failures.put(stage, new AtomicLong());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        httpClient.close();
+    }
+
+    public ResponseEntity<String> postMultipart(Stage stage, String path, MultiValueMap<String, Object> body)
+            throws Exception {
+        return postMultipart(stage, path, body, null);
+    }
+
+    /**
+     * As {@link #postMultipart(Stage, String, MultiValueMap)}; when {@code timeout} is
+     * given, the bulkhead wait, the pool wait and the response together get at most
+     * that long.
+     */
+    public ResponseEntity<String> postMultipart(Stage stage, String path, MultiValueMap<String, Object> body,
+                                                Duration timeout) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+        return execute(stage, timeout, () -> restTemplates.get(stage).postForEntity(
+                fingerprintApiUrl + path, requestEntity, String.class));
+    }
+
+    public String get(Stage stage, String path) throws Exception {
+        return execute(stage, null, () -> restTemplates.get(stage).getForObject(fingerprintApiUrl + path, String.class));
+    }
+
+    /**
+     * Pool and bulkhead saturation, for monitoring.
+     */
+    public Map<String, Object> getMetrics() {
+        PoolStats stats = connectionManager.getTotalStats();
+        Map<String, Object> pool = new HashMap<>();
+        pool.put("leased", stats.getLeased());
+        pool.put("available", stats.getAvailable());
+        pool.put("pending", stats.getPending());
+        pool.put("max", stats.getMax());
+        pool.put("saturation", stats.getMax() == 0 ? 0.0 : (double) stats.getLeased() / stats.getMax());
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("pool", pool);
+        for (Stage stage : Stage.values()) {
+            Semaphore bulkhead = bulkheads.get(stage);
+            Map<String, Object> stageMetrics = new HashMap<>();
+            stageMetrics.put("availablePermits", bulkhead.availablePermits());
+            stageMetrics.put("waiting", bulkhead.getQueueLength());
+            stageMetrics.put("rejected", rejected.get(stage).get());
+            stageMetrics.put("failures", failures.get(stage).get());
+            metrics.put(stage.name().toLowerCase(), stageMetrics);
+        }
+        return metrics;
+    }
+
+    private <T> T execute(Stage stage, Duration timeout, Call<T> call) throws Exception {
+        if (timeout != null && timeout.toMillis() <= 0) {
+            throw new Exception("No time left for the AI service " + stage.name().toLowerCase() + " call");
+        }
+        long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+        long waitMs = timeout == null ? bulkheadWaitMs : Math.min(bulkheadWaitMs, timeout.toMillis());
+        Semaphore bulkhead = bulkheads.get(stage);
+        if (!bulkhead.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+            rejected.get(stage).incrementAndGet();
+            throw new Exception("AI service " + stage.name().toLowerCase() + " capacity exhausted, try again later");
+        }
+        try {
+            if (timeout != null) {
+                long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMs <= 0) {
+                    throw new Exception("No time left for the AI service " + stage.name().toLowerCase() + " call");
+                }
+                callTimeout.set(Timeout.ofMilliseconds(remainingMs));
+            }
+            return call.run();
+        } catch (Exception e) {
+            failures.get(stage).incrementAndGet();
+            throw e;
+        } finally {
+            callTimeout.remove();
+            bulkhead.release();
+        }
+    }
+
+    private RestTemplate restTemplate(long readTimeoutMs) {
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+                Timeout timeout = callTimeout.get();
+                if (timeout == null) {
+                    return null;
+                }
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(
+                                Math.min(poolWaitTimeoutMs, timeout.toMilliseconds())))
+                        .setResponseTimeout(Timeout.ofMilliseconds(
+                                Math.min(readTimeoutMs, timeout.toMilliseconds())))
+                        .build());
+                return context;
+            }
+        };
+        factory.setConnectionRequestTimeout(Duration.ofMillis(poolWaitTimeoutMs));
+        factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return new RestTemplate(factory);
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T run() throws Exception;
+    }
+}
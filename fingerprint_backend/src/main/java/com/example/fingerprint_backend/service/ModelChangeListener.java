@@ -0,0 +1,27 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.base.Model;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Expires cached recognition results when a segmentation or recognition model entity
+ * is updated (e.g. promoted to a new file) or deleted.
+ */
+@Component
+public class ModelChangeListener {
+
+    private final RecognitionResultCache recognitionResultCache;
+
+    public ModelChangeListener(@Lazy RecognitionResultCache recognitionResultCache) {
+        this.recognitionResultCache = recognitionResultCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onModelChanged(Model model) {
+        recognitionResultCache.onModelChanged();
+    }
+}
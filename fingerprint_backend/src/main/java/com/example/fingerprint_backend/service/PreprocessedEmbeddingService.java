@@ -0,0 +1,152 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.service.gallery.EmbeddingCodec;
+import com.example.fingerprint_backend.service.onnx.OnnxEmbeddingEngine;
+import com.example.fingerprint_backend.service.preprocess.FingerprintPreprocessor;
+import com.example.fingerprint_backend.service.preprocess.ModelInputShapes;
+import com.example.fingerprint_backend.service.preprocess.PreprocessedFingerprint;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embeds images through the backend pipeline: {@link FingerprintPreprocessor}, then
+ * local ONNX inference or the AI service's {@code /api/embed/tensor}.
+ *
+ * The Java resize and CLAHE, and the mask applied at recognition resolution, do not
+ * reproduce the AI service's {@code preprocess_fingerprint} bit for bit, so a probe
+ * embedded here only matches templates embedded here. Enrolment therefore uses this
+ * pipeline whenever recognition does, and {@link #pipeline()} names the pipeline so
+ * templates from the other one can be re-embedded when the setting changes.
+ */
+@Service
+@RequiredArgsConstructor
+public class PreprocessedEmbeddingService {
+
+    public static final String BACKEND_PIPELINE = "backend";
+    public static final String AI_SERVICE_PIPELINE = "ai-service";
+
+    private final FingerprintPreprocessor fingerprintPreprocessor;
+    private final ModelInputShapes modelInputShapes;
+    private final OnnxEmbeddingEngine onnxEmbeddingEngine;
+    private final InferenceClient inferenceClient;
+
+    public boolean isEnabled() {
+        return onnxEmbeddingEngine.isEnabled() || fingerprintPreprocessor.isEnabled();
+    }
+
+    public String pipeline() {
+        return isEnabled() ? BACKEND_PIPELINE : AI_SERVICE_PIPELINE;
+    }
+
+    public PreprocessedFingerprint preprocess(byte[] image, String segmentationModelPath,
+                                              String recognitionModelPath) throws Exception {
+        return fingerprintPreprocessor.preprocess(image,
+                modelInputShapes.resolve(segmentationModelPath, recognitionModelPath));
+    }
+
+    public float[] embed(byte[] image, String segmentationModelPath, String recognitionModelPath,
+                         InferenceClient.Stage stage) throws Exception {
+        if (onnxEmbeddingEngine.isEnabled()) {
+            return onnxEmbeddingEngine.embed(image, segmentationModelPath, recognitionModelPath);
+        }
+        return embed(preprocess(image, segmentationModelPath, recognitionModelPath),
+                segmentationModelPath, recognitionModelPath, stage);
+    }
+
+    public float[] embed(PreprocessedFingerprint tensor, String segmentationModelPath, String recognitionModelPath,
+                         InferenceClient.Stage stage) throws Exception {
+        return embed(tensor, segmentationModelPath, recognitionModelPath, stage, null);
+    }
+
+    /**
+     * As above, with at most {@code timeout} for the AI service call when it is given.
+     */
+    public float[] embed(PreprocessedFingerprint tensor, String segmentationModelPath, String recognitionModelPath,
+                         InferenceClient.Stage stage, Duration timeout) throws Exception {
+        JsonNode rootNode = postTensors(List.of(tensor), segmentationModelPath, recognitionModelPath, stage, timeout);
+        float[] embedding = EmbeddingCodec.fromJson(rootNode.path("embeddings").get(0));
+        if (embedding == null) {
+            JsonNode error = rootNode.path("errors").get(0);
+            throw new Exception("Embedding error: "
+                    + (error == null || error.isNull() ? "No embedding returned for fingerprint" : error.asText()));
+        }
+        return embedding;
+    }
+
+    /**
+     * Embeds several images in one model call (one ONNX run each when inference is
+     * local). Results and per-image errors are keyed like {@code images}.
+     */
+    public void embedAll(Map<String, byte[]> images, String segmentationModelPath, String recognitionModelPath,
+                         InferenceClient.Stage stage, Map<String, float[]> embeddings, Map<String, String> errors)
+            throws Exception {
+        if (onnxEmbeddingEngine.isEnabled()) {
+            for (Map.Entry<String, byte[]> image : images.entrySet()) {
+                try {
+                    embeddings.put(image.getKey(),
+                            onnxEmbeddingEngine.embed(image.getValue(), segmentationModelPath, recognitionModelPath));
+                } catch (Exception e) {
+                    errors.put(image.getKey(), e.getMessage());
+                }
+            }
+            return;
+        }
+
+        // An image that cannot be preprocessed fails on its own; the rest are still posted
+        List<String> keys = new ArrayList<>(images.size());
+        List<PreprocessedFingerprint> tensors = new ArrayList<>(images.size());
+        for (Map.Entry<String, byte[]> image : images.entrySet()) {
+            try {
+                tensors.add(preprocess(image.getValue(), segmentationModelPath, recognitionModelPath));
+                keys.add(image.getKey());
+            } catch (Exception e) {
+                errors.put(image.getKey(), e.getMessage());
+            }
+        }
+        if (tensors.isEmpty()) {
+            return;
+        }
+        JsonNode rootNode = postTensors(tensors, segmentationModelPath, recognitionModelPath, stage, null);
+        JsonNode results = rootNode.path("embeddings");
+        JsonNode failures = rootNode.path("errors");
+        for (int i = 0; i < keys.size(); i++) {
+            float[] embedding = EmbeddingCodec.fromJson(results.get(i));
+            if (embedding != null) {
+                embeddings.put(keys.get(i), embedding);
+            } else {
+                JsonNode error = failures.get(i);
+                errors.put(keys.get(i), error == null || error.isNull() ? "No embedding returned" : error.asText());
+            }
+        }
+    }
+
+    private JsonNode postTensors(List<PreprocessedFingerprint> tensors, String segmentationModelPath,
+                                 String recognitionModelPath, InferenceClient.Stage stage, Duration timeout)
+            throws Exception {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        for (PreprocessedFingerprint tensor : tensors) {
+            EmbeddingBatchDispatcher.addTensorParts(body, tensor);
+        }
+        body.add("segmentation_model_path", segmentationModelPath);
+        body.add("recognition_model_path", recognitionModelPath);
+
+        ResponseEntity<String> response = inferenceClient.postMultipart(stage, "/api/embed/tensor", body, timeout);
+
+        JsonNode rootNode = new ObjectMapper().readTree(response.getBody());
+        if (!response.getStatusCode().is2xxSuccessful() || rootNode.has("error")) {
+            throw new Exception("Embedding error: "
+                    + (rootNode.has("error") ? rootNode.get("error").asText() : response.getBody()));
+        }
+        return rootNode;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.biometrics.recognition.RecognitionResult;
+import com.example.fingerprint_backend.service.gallery.EmbeddingGallery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of identification results for byte-identical probe images, so a
+ * retried or double-tapped scan skips inference and search.
+ *
+ * The key holds the SHA-256 of the image, both model IDs, the area and the versions
+ * of everything the result depends on: the gallery, the area access index (for area
+ * scoped searches) and the model entities. Any change moves lookups to a new key, so
+ * stale entries are never served and simply age out of the LRU.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecognitionResultCache {
+
+    @Value("${fingerprint.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fingerprint.result-cache.max-entries:1024}")
+    private int maxEntries;
+
+    @Value("${fingerprint.result-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final EmbeddingGallery embeddingGallery;
+    private final AreaAccessIndex areaAccessIndex;
+
+    private final AtomicLong modelGeneration = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Map<String, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the lookup key. Call before computing the result, so a result computed
+     * while the gallery changes is filed under the older version.
+     */
+    public String key(byte[] image, String segmentationModelId, String recognitionModelId, String areaId) {
+        return sha256(image)
+                + '|' + segmentationModelId
+                + '|' + recognitionModelId
+                + '|' + (areaId == null ? "" : areaId)
+                + '|' + embeddingGallery.version()
+                + '|' + (areaId == null ? 0 : areaAccessIndex.version())
+                + '|' + modelGeneration.get();
+    }
+
+    public RecognitionResult get(String key) {
+        synchronized (entries) {
+            CachedResult cached = entries.get(key);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return cached.result;
+            }
+            if (cached != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, RecognitionResult result) {
+        synchronized (entries) {
+            entries.put(key, new CachedResult(result, System.currentTimeMillis() + ttlSeconds * 1000));
+        }
+    }
+
+    /**
+     * Called when a model entity is updated or deleted.
+     */
+    public void onModelChanged() {
+        modelGeneration.incrementAndGet();
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> metrics = new HashMap<>();
+        synchronized (entries) {
+            metrics.put("size", entries.size());
+        }
+        metrics.put("enabled", enabled);
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("evictions", evictions.get());
+        metrics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        metrics.put("galleryVersion", embeddingGallery.version());
+        return metrics;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class CachedResult {
+        private final RecognitionResult result;
+        private final long expiresAt;
+
+        private CachedResult(RecognitionResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.fingerprint_backend.service.blob;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fingerprint image payloads, kept in {@link ImageBlobStore} and referenced from
+ * {@link FingerprintSample} by hash, size and format only.
+ *
+ * Blobs are written before the sample row commits, so a rolled-back registration can
+ * leave an unreferenced blob behind; the periodic sweep removes those once they are
+ * older than the grace period. On startup, images still held in the legacy
+ * {@code image_data} column are moved into the store.
+ */
+@Service
+@RequiredArgsConstructor
+public class FingerprintImageService {
+
+    private static final int MIGRATION_BATCH_SIZE = 100;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Value("${fingerprint.blob.migrate-legacy:true}")
+    private boolean migrateLegacy;
+
+    @Value("${fingerprint.blob.orphan-grace-minutes:60}")
+    private long orphanGraceMinutes;
+
+    private final ImageBlobStore imageBlobStore;
+    private final FingerprintSampleRepository fingerprintSampleRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Streams the upload into the blob store and records the result on the sample.
+     */
+    public void store(FingerprintSample sample, MultipartFile file) throws IOException {
+        StoredBlob blob;
+        try (InputStream content = file.getInputStream()) {
+            blob = imageBlobStore.put(content);
+        }
+        apply(sample, blob, file.getOriginalFilename());
+    }
+
+    /**
+     * The image as an upload part for the AI service, read from disk as it is sent.
+     */
+    public Resource asResource(FingerprintSample sample) {
+        String filename = sample.getImage();
+        return new FileSystemResource(imageBlobStore.path(sample.getImageHash())) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+    /**
+     * Writes the image to the response. On Tomcat the file is handed to the connector's
+     * sendfile, otherwise it is copied with {@link ImageBlobStore#transferTo}; the bytes
+     * never pass through a heap buffer of the image's size.
+     */
+    public void stream(FingerprintSample sample, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        String hash = sample.getImageHash();
+        if (!imageBlobStore.exists(hash)) {
+            throw new NoSuchFileException("Image of fingerprint " + sample.getId() + " is not stored");
+        }
+        Path path = imageBlobStore.path(hash);
+        long size = Files.size(path);
+
+        String etag = "\"" + hash + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=86400");
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(contentType(sample.getImageFormat()));
+        response.setContentLengthLong(size);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        imageBlobStore.transferTo(hash, Channels.newChannel(response.getOutputStream()));
+    }
+
+    public static String contentType(String format) {
+        if (format == null) {
+            return "application/octet-stream";
+        }
+        return switch (format) {
+            case "bmp" -> "image/bmp";
+            case "png" -> "image/png";
+            case "jpeg" -> "image/jpeg";
+            case "tiff" -> "image/tiff";
+            default -> "application/octet-stream";
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${fingerprint.blob.sweep-interval-ms:3600000}",
+            initialDelayString = "${fingerprint.blob.sweep-interval-ms:3600000}")
+    public void sweepOrphans() {
+        try {
+            Set<String> referenced = new HashSet<>(fingerprintSampleRepository.findAllImageHashes());
+            Instant cutoff = Instant.now().minusSeconds(orphanGraceMinutes * 60);
+            List<String> orphans = new ArrayList<>();
+            imageBlobStore.forEach((hash, modifiedAt) -> {
+                if (modifiedAt.isBefore(cutoff) && !referenced.contains(hash)) {
+                    orphans.add(hash);
+                }
+            });
+            // A blob stored again since the walk has a fresh time and is kept
+            int removed = 0;
+            for (String hash : orphans) {
+                if (imageBlobStore.deleteIfOlderThan(hash, cutoff)) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                System.out.println("Removed " + removed + " unreferenced fingerprint image blobs");
+            }
+        } catch (Exception e) {
+            System.err.println("Fingerprint image sweep failed: " + e.getMessage());
+        }
+    }
+
+    // Ahead of the other startup listeners, so enrolment recovery and re-embedding find the images in the store
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrateLegacyImages() {
+        if (!migrateLegacy || !legacyColumnExists()) {
+            return;
+        }
+        int migrated = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, image, image_data FROM fingerprint_sample "
+                            + "WHERE image_hash IS NULL AND image_data IS NOT NULL LIMIT " + MIGRATION_BATCH_SIZE,
+                    (rs, rowNum) -> new Object[]{rs.getString(1), rs.getString(2), rs.getBytes(3)});
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                try {
+                    StoredBlob blob = imageBlobStore.put((byte[]) row[2]);
+                    String format = detectFormat(blob.getHash(), (String) row[1]);
+                    updates.add(new Object[]{blob.getHash(), blob.getSize(), format, row[0]});
+                } catch (IOException e) {
+                    System.err.println("Failed to migrate image of fingerprint " + row[0] + ": " + e.getMessage());
+                    return;
+                }
+            }
+            jdbcTemplate.batchUpdate("UPDATE fingerprint_sample SET image_hash = ?, image_size = ?, image_format = ?, "
+                    + "image_data = NULL WHERE id = ?", updates);
+            migrated += updates.size();
+        }
+        if (migrated > 0) {
+            System.out.println("Moved " + migrated + " fingerprint images into the blob store");
+        }
+    }
+
+    private void apply(FingerprintSample sample, StoredBlob blob, String filename) throws IOException {
+        sample.setImageHash(blob.getHash());
+        sample.setImageSize(blob.getSize());
+        sample.setImageFormat(detectFormat(blob.getHash(), filename));
+    }
+
+    /**
+     * Format from the file signature, falling back to the file name extension.
+     */
+    private String detectFormat(String hash, String filename) throws IOException {
+        byte[] header = new byte[4];
+        int read;
+        try (InputStream in = Files.newInputStream(imageBlobStore.path(hash))) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        if (read >= 2 && header[0] == 'B' && header[1] == 'M') {
+            return "bmp";
+        }
+        if (read >= 4 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "png";
+        }
+        if (read >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8) {
+            return "jpeg";
+        }
+        if (read >= 4 && ((header[0] == 'I' && header[1] == 'I' && header[2] == 42 && header[3] == 0)
+                || (header[0] == 'M' && header[1] == 'M' && header[2] == 0 && header[3] == 42))) {
+            return "tiff";
+        }
+        if (filename != null && filename.lastIndexOf('.') >= 0) {
+            return filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
+        }
+        return null;
+    }
+
+    private boolean legacyColumnExists() {
+        Boolean exists = jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String table : new String[]{"fingerprint_sample", "FINGERPRINT_SAMPLE"}) {
+                try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, null)) {
+                    while (columns.next()) {
+                        if ("image_data".equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.fingerprint_backend.service.blob;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for fingerprint images on local disk.
+ *
+ * A blob is named by the SHA-256 of its bytes and sharded two levels deep by the
+ * first hex digits ({@code ab/cd/abcd...}), so identical images are stored once and
+ * no directory grows past a few thousand entries. Writes go to a temp file that is
+ * moved into place once complete, so a blob path always holds the full content.
+ * Storing content that is already present refreshes the blob's modification time,
+ * which is what the orphan sweep's grace period is measured from.
+ */
+@Component
+public class ImageBlobStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${fingerprint.blob.path:./blob_store}")
+    private String blobPath;
+
+    @Value("${fingerprint.blob.fsync:true}")
+    private boolean fsync;
+
+    private Path root;
+    private Path tempDirectory;
+    // Orders the dedupe check and touch in put against deleteIfOlderThan
+    private final Object modificationLock = new Object();
+
+    @PostConstruct
+    public void open() throws IOException {
+        root = Paths.get(blobPath);
+        tempDirectory = root.resolve("tmp");
+        Files.createDirectories(tempDirectory);
+        // Leftovers of writes interrupted by a crash
+        try (Stream<Path> leftovers = Files.list(tempDirectory)) {
+            for (Path leftover : (Iterable<Path>) leftovers::iterator) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * Streams the content into the store and returns its hash. The content is never
+     * held in memory as a whole.
+     */
+    public StoredBlob put(InputStream content) throws IOException {
+        Path temp = Files.createTempFile(tempDirectory, "blob", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DigestOutputStream out = new DigestOutputStream(file, digest)) {
+                size = content.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = path(hash);
+            if (fsync && !Files.exists(target)) {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            synchronized (modificationLock) {
+                if (Files.exists(target)) {
+                    // Already stored: the caller is about to reference it, keep the sweep away
+                    touch(target);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        touch(target);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+            return new StoredBlob(hash, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public StoredBlob put(byte[] content) throws IOException {
+        return put(new ByteArrayInputStream(content));
+    }
+
+    public boolean exists(String hash) {
+        return hash != null && Files.isRegularFile(path(hash));
+    }
+
+    public long size(String hash) throws IOException {
+        return Files.size(path(hash));
+    }
+
+    /**
+     * Location of the blob; callers that only forward the bytes should prefer
+     * {@link #transferTo} or read the file as a stream.
+     */
+    public Path path(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid blob hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    public byte[] read(String hash) throws IOException {
+        return Files.readAllBytes(path(hash));
+    }
+
+    /**
+     * Copies the blob to the target channel with {@link FileChannel#transferTo}, which
+     * lets the kernel move the bytes without passing them through the Java heap when
+     * the target supports it.
+     */
+    public long transferTo(String hash, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(hash), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return size;
+        }
+    }
+
+    public boolean delete(String hash) throws IOException {
+        return Files.deleteIfExists(path(hash));
+    }
+
+    /**
+     * Deletes the blob unless it was modified, or stored again, at or after the cutoff.
+     */
+    public boolean deleteIfOlderThan(String hash, Instant cutoff) throws IOException {
+        Path file = path(hash);
+        synchronized (modificationLock) {
+            if (!Files.exists(file) || !Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                return false;
+            }
+            return Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Visits every stored blob with its last-modified time.
+     */
+    public void forEach(BiConsumer<String, Instant> visitor) throws IOException {
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!HASH.matcher(name).matches() || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                visitor.accept(name, Files.getLastModifiedTime(file).toInstant());
+            }
+        }
+    }
+
+    private static void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
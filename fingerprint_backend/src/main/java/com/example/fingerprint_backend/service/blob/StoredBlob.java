@@ -0,0 +1,14 @@
+package com.example.fingerprint_backend.service.blob;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Hash and size of a blob written to {@link ImageBlobStore}.
+ */
+@Data
+@AllArgsConstructor
+public class StoredBlob {
+    private final String hash;
+    private final long size;
+}
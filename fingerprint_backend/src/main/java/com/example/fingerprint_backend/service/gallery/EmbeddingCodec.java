@@ -0,0 +1,39 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts embeddings between the float32 little-endian column format stored on
+ * {@code FingerprintSample.embedding} and the JSON arrays returned by the AI service.
+ */
+public final class EmbeddingCodec {
+
+    private EmbeddingCodec() {
+    }
+
+    public static byte[] toBytes(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    public static float[] fromBytes(byte[] bytes) {
+        float[] embedding = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+    public static float[] fromJson(JsonNode node) {
+        if (node == null || !node.isArray() || node.isEmpty()) {
+            return null;
+        }
+        float[] embedding = new float[node.size()];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = (float) node.get(i).asDouble();
+        }
+        return embedding;
+    }
+}
@@ -0,0 +1,893 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory 1:N gallery of active fingerprint embeddings.
+ *
+ * Embeddings are packed row by row into one direct (off-heap) buffer with their
+ * L2 norms precomputed, so scoring a probe is a single pass of dot products over
+ * contiguous memory. Removal swaps the last row into the freed slot to keep the
+ * matrix dense.
+ *
+ * Large galleries can additionally be served by an {@link HnswIndex}: the graph
+ * proposes {@code efSearch} candidates and every candidate is rescored against the
+ * matrix, so reported confidences are always exact cosine similarities. Once
+ * quantized the graph is built over the same codes, so it holds no float vectors
+ * either.
+ *
+ * With quantization enabled only the compressed int8 or product quantized codes are
+ * kept in memory: the scan runs over the codes and only the best
+ * {@code rescoreCandidates} are rescored at full precision, reading the embeddings
+ * from the memory-mapped {@link TemplateStore}. The quantizer is trained by
+ * {@link #trainQuantizer()} from a sample of the store, outside the gallery lock,
+ * and swapped in once every template has been encoded.
+ */
+@Component
+public class EmbeddingGallery {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_TRAINING_SAMPLES = 20000;
+    private static final int RECALL_PROBES = 200;
+    private static final int RECALL_K = 10;
+    // Walk employee posting lists while the allowed set is under 1/8 of the gallery
+    private static final int POSTING_SCAN_FACTOR = 8;
+
+    @Value("${fingerprint.gallery.hnsw.enabled:false}")
+    private boolean hnswEnabled = false;
+
+    @Value("${fingerprint.gallery.hnsw.m:16}")
+    private int hnswM = 16;
+
+    @Value("${fingerprint.gallery.hnsw.ef-construction:200}")
+    private int hnswEfConstruction = 200;
+
+    @Value("${fingerprint.gallery.hnsw.ef-search:64}")
+    private int hnswEfSearch = 64;
+
+    // Below this size an exact scan is cheaper than walking the graph
+    @Value("${fingerprint.gallery.hnsw.min-size:20000}")
+    private int hnswMinSize = 20000;
+
+    @Value("${fingerprint.gallery.hnsw.max-deleted-ratio:0.3}")
+    private double hnswMaxDeletedRatio = 0.3;
+
+    // none, int8 or pq
+    @Value("${fingerprint.gallery.quantization:none}")
+    private String quantization = "none";
+
+    @Value("${fingerprint.gallery.pq.subspaces:32}")
+    private int pqSubspaces = 32;
+
+    @Value("${fingerprint.gallery.rescore-candidates:32}")
+    private int rescoreCandidates = 32;
+
+    private static final int ENCODE_CHUNK = 1024;
+
+    private final TemplateStore templateStore;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object trainingLock = new Object();
+    // Bumped on every change that can alter search results
+    private final AtomicLong version = new AtomicLong();
+    // Rescores skipped because the template was missing from the store, and which templates
+    private final AtomicLong unscoredTemplates = new AtomicLong();
+    private final Set<String> unscoredIds = ConcurrentHashMap.newKeySet();
+
+    private int dimension;
+    private int size;
+    private ByteBuffer matrix;
+    private float[] norms = new float[0];
+    private String[] fingerprintIds = new String[0];
+    private String[] employeeIds = new String[0];
+    private final Map<String, Integer> slotByFingerprintId = new HashMap<>();
+    private final Map<String, Set<String>> fingerprintIdsByEmployeeId = new HashMap<>();
+    private HnswIndex index;
+    private TemplateQuantizer quantizer;
+    private byte[] codes = new byte[0];
+    private QuantizationReport quantizationReport;
+    // Templates put or removed while a quantizer is being trained, re-encoded when it is swapped in
+    private Set<String> changedDuringTraining;
+    // Templates put or removed while the graph is rebuilt, replayed into it when it is swapped in
+    private Set<String> changedDuringRebuild;
+    private final AtomicBoolean indexRebuilding = new AtomicBoolean();
+
+    public EmbeddingGallery(TemplateStore templateStore) {
+        this.templateStore = templateStore;
+    }
+
+    public void put(String fingerprintId, String employeeId, float[] embedding) {
+        lock.writeLock().lock();
+        try {
+            if (dimension == 0) {
+                allocate(embedding.length, INITIAL_CAPACITY);
+            } else if (embedding.length != dimension) {
+                throw new IllegalArgumentException("Embedding dimension " + embedding.length
+                        + " does not match gallery dimension " + dimension);
+            }
+
+            Integer slot = slotByFingerprintId.get(fingerprintId);
+            if (slot == null) {
+                if (size == norms.length) {
+                    allocate(dimension, norms.length * 2);
+                }
+                slot = size++;
+                slotByFingerprintId.put(fingerprintId, slot);
+            }
+
+            if (matrix != null) {
+                int offset = slot * rowBytes();
+                for (int i = 0; i < dimension; i++) {
+                    matrix.putFloat(offset + i * Float.BYTES, embedding[i]);
+                }
+            }
+            norms[slot] = SimilarityKernel.norm(embedding);
+            fingerprintIds[slot] = fingerprintId;
+            if (employeeIds[slot] != null && !employeeIds[slot].equals(employeeId)) {
+                unlinkEmployee(employeeIds[slot], fingerprintId);
+            }
+            employeeIds[slot] = employeeId;
+            fingerprintIdsByEmployeeId.computeIfAbsent(employeeId, key -> new LinkedHashSet<>()).add(fingerprintId);
+            if (quantizer != null) {
+                quantizer.encode(SimilarityKernel.normalize(embedding), codes, slot * quantizer.codeBytes());
+            }
+            if (changedDuringTraining != null) {
+                changedDuringTraining.add(fingerprintId);
+            }
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(fingerprintId);
+            }
+
+            if (hnswEnabled) {
+                if (index == null) {
+                    index = new HnswIndex(hnswM, hnswEfConstruction, quantizer);
+                }
+                if (quantizer != null) {
+                    index.addEncoded(fingerprintId, employeeId, codes, slot * quantizer.codeBytes());
+                } else {
+                    index.add(fingerprintId, employeeId, embedding);
+                }
+            }
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the template. Once tombstones make up more than {@code max-deleted-ratio}
+     * of the graph, this call also rebuilds it, outside the gallery lock: searches keep
+     * using the tombstoned graph until the new one is swapped in.
+     */
+    public boolean remove(String fingerprintId) {
+        boolean rebuild;
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByFingerprintId.remove(fingerprintId);
+            if (slot == null) {
+                return false;
+            }
+            unlinkEmployee(employeeIds[slot], fingerprintId);
+
+            int last = --size;
+            if (slot != last) {
+                if (matrix != null) {
+                    matrix.put(slot * rowBytes(), matrix, last * rowBytes(), rowBytes());
+                }
+                norms[slot] = norms[last];
+                fingerprintIds[slot] = fingerprintIds[last];
+                employeeIds[slot] = employeeIds[last];
+                slotByFingerprintId.put(fingerprintIds[slot], slot);
+                if (quantizer != null) {
+                    int codeBytes = quantizer.codeBytes();
+                    System.arraycopy(codes, last * codeBytes, codes, slot * codeBytes, codeBytes);
+                }
+            }
+            fingerprintIds[last] = null;
+            employeeIds[last] = null;
+            if (changedDuringTraining != null) {
+                changedDuringTraining.add(fingerprintId);
+            }
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(fingerprintId);
+            }
+
+            rebuild = false;
+            if (index != null) {
+                index.remove(fingerprintId);
+                rebuild = index.deletedRatio() > hnswMaxDeletedRatio;
+            }
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // Not when called from trainQuantizer's swap, which still holds the lock
+        if (rebuild && !lock.isWriteLockedByCurrentThread()) {
+            rebuildIndex();
+        }
+        return true;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            dimension = 0;
+            size = 0;
+            matrix = null;
+            norms = new float[0];
+            fingerprintIds = new String[0];
+            employeeIds = new String[0];
+            slotByFingerprintId.clear();
+            fingerprintIdsByEmployeeId.clear();
+            index = null;
+            quantizer = null;
+            codes = new byte[0];
+            quantizationReport = null;
+            unscoredTemplates.set(0);
+            unscoredIds.clear();
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the {@code k} best matches by cosine similarity, best first.
+     */
+    public List<GalleryMatch> search(float[] probe, int k) {
+        lock.readLock().lock();
+        try {
+            if (size == 0 || k <= 0) {
+                return List.of();
+            }
+            if (probe.length != dimension) {
+                throw new IllegalArgumentException("Probe dimension " + probe.length
+                        + " does not match gallery dimension " + dimension);
+            }
+
+            return collect(probe, Math.min(k, size), null).toMatches();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Like {@link #search(float[], int)} but only scores templates of the given employees.
+     * Small candidate sets are scored straight from the employee posting lists; larger
+     * ones fall back to a filtered scan or graph search.
+     */
+    public List<GalleryMatch> search(float[] probe, int k, Set<String> allowedEmployeeIds) {
+        lock.readLock().lock();
+        try {
+            if (size == 0 || k <= 0 || allowedEmployeeIds.isEmpty()) {
+                return List.of();
+            }
+            if (probe.length != dimension) {
+                throw new IllegalArgumentException("Probe dimension " + probe.length
+                        + " does not match gallery dimension " + dimension);
+            }
+
+            if (allowedEmployeeIds.size() * POSTING_SCAN_FACTOR > size) {
+                return collect(probe, Math.min(k, size), allowedEmployeeIds).toMatches();
+            }
+            List<Integer> slots = new ArrayList<>();
+            for (String employeeId : allowedEmployeeIds) {
+                Set<String> ids = fingerprintIdsByEmployeeId.get(employeeId);
+                if (ids == null) {
+                    continue;
+                }
+                for (String fingerprintId : ids) {
+                    slots.add(slotByFingerprintId.get(fingerprintId));
+                }
+            }
+            TopK top = new TopK(Math.min(k, size));
+            scoreSlots(probe, slots, top);
+            return top.toMatches();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 1:1 verification against the employee's active templates, read through the
+     * employee posting list. Returns the best of them, or null if the employee has none.
+     */
+    public GalleryMatch verifyEmployee(float[] probe, String employeeId) {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = fingerprintIdsByEmployeeId.get(employeeId);
+            if (ids == null || probe.length != dimension) {
+                return null;
+            }
+            List<Integer> slots = new ArrayList<>(ids.size());
+            for (String fingerprintId : ids) {
+                slots.add(slotByFingerprintId.get(fingerprintId));
+            }
+            TopK top = new TopK(1);
+            scoreSlots(probe, slots, top);
+            return top.found == 0 ? null : top.toMatches().get(0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 1:1 verification against a single active template, or null if it is not in the gallery.
+     */
+    public GalleryMatch verifyTemplate(float[] probe, String fingerprintId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotByFingerprintId.get(fingerprintId);
+            if (slot == null || probe.length != dimension) {
+                return null;
+            }
+            TopK top = new TopK(1);
+            scoreSlots(probe, List.of(slot), top);
+            return top.found == 0 ? null : top.toMatches().get(0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Trains the configured quantizer on a sample of the template store and re-encodes
+     * every template. Training and encoding run on a snapshot outside the gallery lock,
+     * so searches carry on meanwhile; the write lock is only taken to swap the new codes
+     * in, re-encoding the templates that changed in between. Once quantized the float
+     * matrix is released and full-precision rescoring reads the template store.
+     */
+    public QuantizationReport trainQuantizer() {
+        if ("none".equalsIgnoreCase(quantization)) {
+            return null;
+        }
+        synchronized (trainingLock) {
+            List<float[]> training = new ArrayList<>();
+            for (float[] embedding : templateStore.sample(MAX_TRAINING_SAMPLES)) {
+                if (embedding != null) {
+                    training.add(SimilarityKernel.normalize(embedding));
+                }
+            }
+            if (training.isEmpty()) {
+                return null;
+            }
+            int trainedDimension = training.get(0).length;
+            TemplateQuantizer trained = "pq".equalsIgnoreCase(quantization)
+                    ? ProductQuantizer.train(training, trainedDimension, pqSubspaces)
+                    : ScalarQuantizer.train(training, trainedDimension);
+            QuantizationReport report = measureRecall(trained, training, trainedDimension);
+
+            List<String> snapshot;
+            List<String> snapshotEmployeeIds;
+            lock.writeLock().lock();
+            try {
+                if (dimension != 0 && dimension != trainedDimension) {
+                    throw new IllegalStateException("Template store dimension " + trainedDimension
+                            + " does not match gallery dimension " + dimension);
+                }
+                snapshot = new ArrayList<>(size);
+                snapshotEmployeeIds = new ArrayList<>(size);
+                for (int slot = 0; slot < size; slot++) {
+                    snapshot.add(fingerprintIds[slot]);
+                    snapshotEmployeeIds.add(employeeIds[slot]);
+                }
+                changedDuringTraining = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            int codeBytes = trained.codeBytes();
+            byte[] encoded = new byte[snapshot.size() * codeBytes];
+            boolean[] present = new boolean[snapshot.size()];
+            HnswIndex rebuilt = null;
+            try {
+                for (int start = 0; start < snapshot.size(); start += ENCODE_CHUNK) {
+                    List<String> chunk = snapshot.subList(start, Math.min(snapshot.size(), start + ENCODE_CHUNK));
+                    List<float[]> embeddings = templateStore.read(chunk);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (embeddings.get(i) != null) {
+                            trained.encode(SimilarityKernel.normalize(embeddings.get(i)), encoded, (start + i) * codeBytes);
+                            present[start + i] = true;
+                        }
+                    }
+                }
+                // The graph over the new codes is built here too, off the lock
+                if (hnswEnabled) {
+                    rebuilt = new HnswIndex(hnswM, hnswEfConstruction, trained);
+                    for (int i = 0; i < snapshot.size(); i++) {
+                        if (present[i]) {
+                            rebuilt.addEncoded(snapshot.get(i), snapshotEmployeeIds.get(i), encoded, i * codeBytes);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    changedDuringTraining = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                byte[] swapped = new byte[Math.max(norms.length, INITIAL_CAPACITY) * codeBytes];
+                boolean[] filled = new boolean[size];
+                for (int i = 0; i < snapshot.size(); i++) {
+                    Integer slot = slotByFingerprintId.get(snapshot.get(i));
+                    if (slot != null && present[i] && !changedDuringTraining.contains(snapshot.get(i))) {
+                        System.arraycopy(encoded, i * codeBytes, swapped, slot * codeBytes, codeBytes);
+                        filled[slot] = true;
+                    }
+                }
+                List<String> missing = new ArrayList<>();
+                for (int slot = 0; slot < size; slot++) {
+                    if (filled[slot]) {
+                        continue;
+                    }
+                    float[] embedding = fullPrecision(slot);
+                    if (embedding == null) {
+                        missing.add(fingerprintIds[slot]);
+                    } else {
+                        trained.encode(SimilarityKernel.normalize(embedding), swapped, slot * codeBytes);
+                        if (rebuilt != null) {
+                            rebuilt.addEncoded(fingerprintIds[slot], employeeIds[slot], swapped, slot * codeBytes);
+                        }
+                    }
+                }
+                if (rebuilt != null) {
+                    for (String fingerprintId : changedDuringTraining) {
+                        if (!slotByFingerprintId.containsKey(fingerprintId)) {
+                            rebuilt.remove(fingerprintId);
+                        }
+                    }
+                    index = rebuilt;
+                }
+
+                quantizer = trained;
+                codes = swapped;
+                if (dimension == 0) {
+                    allocate(trainedDimension, INITIAL_CAPACITY);
+                } else if (matrix != null) {
+                    // Rescoring reads the template store from now on
+                    matrix = null;
+                }
+                // Not in the template store, so they can no longer be scored; the next reload reseeds the store
+                for (String fingerprintId : missing) {
+                    System.err.println("Template " + fingerprintId + " is missing from the template store, dropped from gallery");
+                    remove(fingerprintId);
+                }
+                quantizationReport = report;
+                version.incrementAndGet();
+                return report;
+            } finally {
+                changedDuringTraining = null;
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public QuantizationReport getQuantizationReport() {
+        lock.readLock().lock();
+        try {
+            return quantizationReport;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes whenever a template is added, replaced or removed, or the quantizer is
+     * retrained; results computed under one version are stale under any other.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Times since the last reload a candidate was left out because its template was
+     * missing from the template store.
+     */
+    public long unscoredTemplates() {
+        return unscoredTemplates.get();
+    }
+
+    public boolean isIndexEnabled() {
+        return hnswEnabled;
+    }
+
+    public boolean isVectorized() {
+        return SimilarityKernel.VECTORIZED;
+    }
+
+    public boolean contains(String fingerprintId) {
+        lock.readLock().lock();
+        try {
+            return slotByFingerprintId.containsKey(fingerprintId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Fingerprint ids of the employee's templates currently in the gallery.
+     */
+    public List<String> fingerprintIdsOf(String employeeId) {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = fingerprintIdsByEmployeeId.get(employeeId);
+            return ids == null ? List.of() : List.copyOf(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Best {@code k} templates, optionally restricted to the given employees: graph
+     * candidates or the best compressed codes are rescored at full precision, without
+     * either the matrix is scanned exactly.
+     */
+    private TopK collect(float[] probe, int k, Set<String> allowedEmployeeIds) {
+        TopK top = new TopK(k);
+        if (index != null && size >= hnswMinSize) {
+            List<Integer> slots = new ArrayList<>();
+            for (String candidate : index.search(probe, Math.max(hnswEfSearch, k),
+                    allowedEmployeeIds == null ? null : allowedEmployeeIds::contains)) {
+                Integer slot = slotByFingerprintId.get(candidate);
+                if (slot != null) {
+                    slots.add(slot);
+                }
+            }
+            scoreSlots(probe, slots, top);
+        } else if (quantizer != null) {
+            TopK candidates = compressedCandidates(probe, Math.max(rescoreCandidates, k), allowedEmployeeIds);
+            List<Integer> slots = new ArrayList<>(candidates.found);
+            for (int i = 0; i < candidates.found; i++) {
+                slots.add(candidates.slots[i]);
+            }
+            scoreSlots(probe, slots, top);
+        } else {
+            float probeNorm = SimilarityKernel.norm(probe);
+            for (int slot = 0; slot < size; slot++) {
+                if (allowedEmployeeIds == null || allowedEmployeeIds.contains(employeeIds[slot])) {
+                    top.offer(slot, score(probe, probeNorm, slot));
+                }
+            }
+        }
+        return top;
+    }
+
+    private TopK compressedCandidates(float[] probe, int limit, Set<String> allowedEmployeeIds) {
+        float[] prepared = quantizer.prepare(SimilarityKernel.normalize(probe));
+        int codeBytes = quantizer.codeBytes();
+        TopK candidates = new TopK(Math.min(limit, size));
+        for (int slot = 0; slot < size; slot++) {
+            if (allowedEmployeeIds == null || allowedEmployeeIds.contains(employeeIds[slot])) {
+                candidates.offer(slot, quantizer.score(prepared, codes, slot * codeBytes));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Offers the slots with their exact cosine similarity: from the matrix, or from the
+     * template store once quantized. A template missing from the store is not offered,
+     * since its compressed score does not bound the true similarity; the store is marked
+     * for a reseed so the next reload restores it.
+     */
+    private void scoreSlots(float[] probe, List<Integer> slots, TopK top) {
+        float probeNorm = SimilarityKernel.norm(probe);
+        if (matrix != null) {
+            for (int slot : slots) {
+                top.offer(slot, score(probe, probeNorm, slot));
+            }
+            return;
+        }
+
+        String[] ids = new String[slots.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = fingerprintIds[slots.get(i)];
+        }
+        float[] dots = new float[ids.length];
+        templateStore.dot(probe, ids, ids.length, dots);
+        for (int i = 0; i < ids.length; i++) {
+            int slot = slots.get(i);
+            if (Float.isNaN(dots[i])) {
+                unscoredTemplates.incrementAndGet();
+                if (unscoredIds.add(ids[i])) {
+                    System.err.println("Template " + ids[i] + " is missing from the template store, left out of results");
+                    templateStore.markReseedRequired();
+                }
+            } else {
+                float denominator = probeNorm * norms[slot];
+                top.offer(slot, denominator == 0f ? 0f : dots[i] / denominator);
+            }
+        }
+    }
+
+    /**
+     * Recall of the compressed scan with rescoring against an exact scan, measured over
+     * the unit-normalised training sample with sample templates as probes.
+     */
+    private QuantizationReport measureRecall(TemplateQuantizer trained, List<float[]> sample, int sampleDimension) {
+        int n = sample.size();
+        int codeBytes = trained.codeBytes();
+        byte[] sampleCodes = new byte[n * codeBytes];
+        for (int i = 0; i < n; i++) {
+            trained.encode(sample.get(i), sampleCodes, i * codeBytes);
+        }
+
+        int k = Math.min(RECALL_K, n);
+        int probes = Math.min(RECALL_PROBES, n);
+        int stride = Math.max(1, n / probes);
+        int depth = Math.min(Math.max(rescoreCandidates, k), n);
+        long hits = 0;
+        long candidateHits = 0;
+        int measured = 0;
+
+        for (int p = 0; p < n && measured < probes; p += stride, measured++) {
+            float[] probe = sample.get(p);
+            TopK exact = new TopK(k);
+            for (int i = 0; i < n; i++) {
+                exact.offer(i, SimilarityKernel.dot(probe, sample.get(i)));
+            }
+            float[] prepared = trained.prepare(probe);
+            TopK candidates = new TopK(depth);
+            for (int i = 0; i < n; i++) {
+                candidates.offer(i, trained.score(prepared, sampleCodes, i * codeBytes));
+            }
+            TopK rescored = new TopK(k);
+            for (int i = 0; i < candidates.found; i++) {
+                rescored.offer(candidates.slots[i], SimilarityKernel.dot(probe, sample.get(candidates.slots[i])));
+            }
+            for (int i = 0; i < exact.found; i++) {
+                int expected = exact.slots[i];
+                if (rescored.containsSlot(expected)) {
+                    hits++;
+                }
+                if (candidates.containsSlot(expected)) {
+                    candidateHits++;
+                }
+            }
+        }
+
+        double total = (double) measured * k;
+        return new QuantizationReport(
+                trained.name(),
+                n,
+                codeBytes,
+                (double) sampleDimension * Float.BYTES / codeBytes,
+                measured,
+                total == 0 ? 1.0 : hits / total,
+                total == 0 ? 1.0 : candidateHits / total,
+                LocalDateTime.now());
+    }
+
+    private float score(float[] probe, float probeNorm, int slot) {
+        float denominator = probeNorm * norms[slot];
+        return denominator == 0f ? 0f : SimilarityKernel.dot(probe, matrix, slot * rowBytes()) / denominator;
+    }
+
+    // Full-precision embedding of a slot, from the matrix or the template store (null if missing there)
+    private float[] fullPrecision(int slot) {
+        if (matrix == null) {
+            return templateStore.read(List.of(fingerprintIds[slot])).get(0);
+        }
+        float[] embedding = new float[dimension];
+        int offset = slot * rowBytes();
+        for (int i = 0; i < dimension; i++) {
+            embedding[i] = matrix.getFloat(offset + i * Float.BYTES);
+        }
+        return embedding;
+    }
+
+    private void unlinkEmployee(String employeeId, String fingerprintId) {
+        Set<String> ids = fingerprintIdsByEmployeeId.get(employeeId);
+        if (ids != null && ids.remove(fingerprintId) && ids.isEmpty()) {
+            fingerprintIdsByEmployeeId.remove(employeeId);
+        }
+    }
+
+    /**
+     * Builds a graph without tombstones from a snapshot of the live templates and swaps
+     * it in, replaying the templates put or removed meanwhile. Only one rebuild runs at a
+     * time; a rebuild overtaken by a retrain or a clear is discarded.
+     */
+    private void rebuildIndex() {
+        if (!indexRebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            HnswIndex previous;
+            TemplateQuantizer snapshotQuantizer;
+            List<String> snapshot;
+            List<String> snapshotEmployeeIds;
+            byte[] snapshotCodes = null;
+            lock.writeLock().lock();
+            try {
+                previous = index;
+                snapshotQuantizer = quantizer;
+                if (previous == null) {
+                    return;
+                }
+                snapshot = new ArrayList<>(size);
+                snapshotEmployeeIds = new ArrayList<>(size);
+                for (int slot = 0; slot < size; slot++) {
+                    snapshot.add(fingerprintIds[slot]);
+                    snapshotEmployeeIds.add(employeeIds[slot]);
+                }
+                if (quantizer != null) {
+                    snapshotCodes = Arrays.copyOf(codes, size * quantizer.codeBytes());
+                }
+                changedDuringRebuild = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Quantized graphs take the copied codes, float graphs read the template store
+            HnswIndex rebuilt = new HnswIndex(hnswM, hnswEfConstruction, snapshotQuantizer);
+            Set<String> unread = new HashSet<>();
+            if (snapshotQuantizer != null) {
+                int codeBytes = snapshotQuantizer.codeBytes();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    rebuilt.addEncoded(snapshot.get(i), snapshotEmployeeIds.get(i), snapshotCodes, i * codeBytes);
+                }
+            } else {
+                for (int start = 0; start < snapshot.size(); start += ENCODE_CHUNK) {
+                    List<String> chunk = snapshot.subList(start, Math.min(snapshot.size(), start + ENCODE_CHUNK));
+                    List<float[]> embeddings = templateStore.read(chunk);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (embeddings.get(i) == null) {
+                            unread.add(chunk.get(i));
+                        } else {
+                            rebuilt.add(chunk.get(i), snapshotEmployeeIds.get(start + i), embeddings.get(i));
+                        }
+                    }
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (index != previous || quantizer != snapshotQuantizer) {
+                    return;
+                }
+                unread.addAll(changedDuringRebuild);
+                for (String fingerprintId : unread) {
+                    Integer slot = slotByFingerprintId.get(fingerprintId);
+                    if (slot == null) {
+                        rebuilt.remove(fingerprintId);
+                    } else if (quantizer != null) {
+                        rebuilt.addEncoded(fingerprintId, employeeIds[slot], codes, slot * quantizer.codeBytes());
+                    } else {
+                        float[] embedding = fullPrecision(slot);
+                        if (embedding != null) {
+                            rebuilt.add(fingerprintId, employeeIds[slot], embedding);
+                        }
+                    }
+                }
+                index = rebuilt;
+                version.incrementAndGet();
+            } finally {
+                changedDuringRebuild = null;
+                lock.writeLock().unlock();
+            }
+        } finally {
+            indexRebuilding.set(false);
+        }
+    }
+
+    private int rowBytes() {
+        return dimension * Float.BYTES;
+    }
+
+    private void allocate(int newDimension, int capacity) {
+        // Quantized galleries keep only the codes
+        ByteBuffer grown = null;
+        if (quantizer == null) {
+            grown = ByteBuffer.allocateDirect(capacity * newDimension * Float.BYTES).order(ByteOrder.nativeOrder());
+            if (matrix != null) {
+                grown.put(0, matrix, 0, size * rowBytes());
+            }
+        }
+        float[] grownNorms = new float[capacity];
+        String[] grownFingerprintIds = new String[capacity];
+        String[] grownEmployeeIds = new String[capacity];
+        System.arraycopy(norms, 0, grownNorms, 0, size);
+        System.arraycopy(fingerprintIds, 0, grownFingerprintIds, 0, size);
+        System.arraycopy(employeeIds, 0, grownEmployeeIds, 0, size);
+
+        if (quantizer != null && codes.length < capacity * quantizer.codeBytes()) {
+            byte[] grownCodes = new byte[capacity * quantizer.codeBytes()];
+            System.arraycopy(codes, 0, grownCodes, 0, size * quantizer.codeBytes());
+            codes = grownCodes;
+        }
+
+        dimension = newDimension;
+        matrix = grown;
+        norms = grownNorms;
+        fingerprintIds = grownFingerprintIds;
+        employeeIds = grownEmployeeIds;
+    }
+
+    /**
+     * Fixed-size best-first insertion list; k is small so this beats a heap.
+     */
+    private final class TopK {
+        private final int[] slots;
+        private final float[] scores;
+        private int found;
+
+        TopK(int limit) {
+            this.slots = new int[limit];
+            this.scores = new float[limit];
+        }
+
+        void offer(int slot, float score) {
+            int limit = slots.length;
+            if (found < limit) {
+                found++;
+            } else if (score <= scores[limit - 1]) {
+                return;
+            }
+            int i = found - 1;
+            while (i > 0 && scores[i - 1] < score) {
+                scores[i] = scores[i - 1];
+                slots[i] = slots[i - 1];
+                i--;
+            }
+            scores[i] = score;
+            slots[i] = slot;
+        }
+
+        boolean containsSlot(int slot) {
+            for (int i = 0; i < found; i++) {
+                if (slots[i] == slot) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<GalleryMatch> toMatches() {
+            List<GalleryMatch> matches = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                matches.add(new GalleryMatch(fingerprintIds[slots[i]], employeeIds[slots[i]], scores[i]));
+            }
+            return matches;
+        }
+    }
+}
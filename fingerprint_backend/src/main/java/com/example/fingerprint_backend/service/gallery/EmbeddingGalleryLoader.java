@@ -0,0 +1,178 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.EnrollmentJob;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.EnrollmentJobRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintEmbeddingView;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.service.EnrollmentQueue;
+import com.example.fingerprint_backend.service.InferenceClient;
+import com.example.fingerprint_backend.service.PreprocessedEmbeddingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fills the {@link EmbeddingGallery} once the application is up. Templates are read
+ * from the memory-mapped {@link TemplateStore}; when its live count disagrees with the
+ * database, or a store write failed since the last start, the store is reseeded from
+ * the database first. Samples registered before
+ * embeddings were persisted in the backend are backfilled from the AI service.
+ *
+ * Templates embedded by one preprocessing pipeline do not match probes from the other
+ * (see {@link PreprocessedEmbeddingService}), so when the pipeline changes every stored
+ * embedding is queued on the {@link EnrollmentQueue} to be computed again. The new
+ * pipeline is recorded only once the jobs are queued, and samples that already have a
+ * pending job are skipped, so a start cut short in between queues the rest on the next
+ * one. With asynchronous enrolment off nothing would run those jobs, so startup is
+ * aborted instead.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmbeddingGalleryLoader {
+
+    // Records which pipeline embedded the stored templates
+    private static final String PIPELINE_MARKER = "preprocess-pipeline";
+
+    @Value("${fingerprint.gallery.backfill-enabled:true}")
+    private boolean backfillEnabled;
+
+    @Value("${fingerprint.store.path:./template_store}")
+    private String storePath;
+
+    private final FingerprintSampleRepository fingerprintSampleRepository;
+    private final EmbeddingGallery embeddingGallery;
+    private final TemplateStore templateStore;
+    private final InferenceClient inferenceClient;
+    private final PreprocessedEmbeddingService preprocessedEmbeddingService;
+    private final EnrollmentJobRepository enrollmentJobRepository;
+    private final EnrollmentQueue enrollmentQueue;
+
+    // Runs after FingerprintImageService has moved legacy images into the blob store
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (backfillEnabled) {
+            try {
+                backfillMissingEmbeddings();
+            } catch (Exception e) {
+                System.err.println("Failed to backfill fingerprint embeddings: " + e.getMessage());
+            }
+        }
+        try {
+            reembedIfPipelineChanged();
+        } catch (IOException e) {
+            System.err.println("Failed to record the preprocessing pipeline: " + e.getMessage());
+        }
+        reload();
+    }
+
+    public void reload() {
+        long expected = fingerprintSampleRepository.countActiveEmbeddings();
+        if (templateStore.isReseedRequired() || templateStore.size() != expected) {
+            try {
+                reseedTemplateStore();
+            } catch (IOException e) {
+                System.err.println("Failed to reseed template store: " + e.getMessage());
+            }
+        }
+
+        embeddingGallery.clear();
+        // Trained from the store before loading, so a quantized gallery never holds the float matrix
+        QuantizationReport report = embeddingGallery.trainQuantizer();
+        if (report != null) {
+            System.out.println("Trained " + report.getMode() + " templates: " + report.getBytesPerTemplate()
+                    + " bytes each, recall@10=" + report.getRecallAt10());
+        }
+        templateStore.forEachLive(embeddingGallery::put);
+        System.out.println("Loaded " + embeddingGallery.size() + " fingerprint embeddings into gallery"
+                + (SimilarityKernel.VECTORIZED ? " (vectorized)" : ""));
+    }
+
+    // A store without the marker predates backend enrolment, so the AI service embedded it
+    private void reembedIfPipelineChanged() throws IOException {
+        Path marker = Paths.get(storePath, PIPELINE_MARKER);
+        String pipeline = preprocessedEmbeddingService.pipeline();
+        String previous = Files.exists(marker)
+                ? Files.readString(marker).trim()
+                : PreprocessedEmbeddingService.AI_SERVICE_PIPELINE;
+        if (!pipeline.equals(previous)) {
+            List<Object[]> embedded = fingerprintSampleRepository.findIdsWithEmbedding();
+            if (!embedded.isEmpty() && !enrollmentQueue.isAsync()) {
+                throw new IllegalStateException("Preprocessing pipeline changed from " + previous + " to " + pipeline
+                        + ", but re-embedding " + embedded.size() + " templates needs fingerprint.enrollment.async=true;"
+                        + " enable it or revert fingerprint.preprocess.java-enabled and fingerprint.inference.engine");
+            }
+            Set<String> queued = new HashSet<>(enrollmentJobRepository.findFingerprintIdsByStatusIn(
+                    List.of(EnrollmentJob.Status.PENDING, EnrollmentJob.Status.RUNNING)));
+            LocalDateTime now = LocalDateTime.now();
+            List<EnrollmentJob> jobs = new ArrayList<>();
+            for (Object[] row : embedded) {
+                if (queued.contains((String) row[0])) {
+                    continue;
+                }
+                jobs.add(EnrollmentJob.builder()
+                        .fingerprintId((String) row[0])
+                        .employeeId((String) row[1])
+                        .status(EnrollmentJob.Status.PENDING)
+                        .attempts(0)
+                        .createdAt(now)
+                        .updatedAt(now)
+                        .nextAttemptAt(now)
+                        .build());
+            }
+            enrollmentJobRepository.saveAll(jobs);
+            System.out.println("Preprocessing pipeline changed from " + previous + " to " + pipeline
+                    + ", queued " + jobs.size() + " templates for re-embedding");
+        }
+        Files.createDirectories(marker.getParent());
+        Files.writeString(marker, pipeline);
+    }
+
+    private void reseedTemplateStore() throws IOException {
+        templateStore.reset();
+        List<FingerprintEmbeddingView> rows = fingerprintSampleRepository.findActiveEmbeddings();
+        for (FingerprintEmbeddingView row : rows) {
+            templateStore.append(row.getId(), row.getEmployeeId(), EmbeddingCodec.fromBytes(row.getEmbedding()));
+        }
+        // Cleared only once every row is in, so a reseed cut short runs again
+        templateStore.clearReseedRequired();
+        System.out.println("Reseeded template store with " + rows.size() + " templates from database");
+    }
+
+    private void backfillMissingEmbeddings() throws Exception {
+        Set<String> missing = new HashSet<>(fingerprintSampleRepository.findIdsWithoutEmbedding());
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        String body = inferenceClient.get(InferenceClient.Stage.MAINTENANCE, "/api/embeddings");
+        JsonNode rootNode = new ObjectMapper().readTree(body);
+        if (rootNode == null || rootNode.has("error")) {
+            return;
+        }
+
+        int backfilled = 0;
+        for (String fingerprintId : missing) {
+            JsonNode entry = rootNode.get(fingerprintId);
+            float[] embedding = entry == null ? null : EmbeddingCodec.fromJson(entry.get("embedding"));
+            if (embedding != null) {
+                fingerprintSampleRepository.updateEmbedding(fingerprintId, EmbeddingCodec.toBytes(embedding));
+                backfilled++;
+            }
+        }
+        System.out.println("Backfilled " + backfilled + " of " + missing.size() + " missing fingerprint embeddings");
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSample;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Lifecycle change of a fingerprint sample. Published by the write paths and applied
+ * to the template store and gallery by {@link GalleryEventListener} once the
+ * surrounding transaction has committed.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class FingerprintSampleEvent {
+
+    public enum Type {
+        REGISTERED,
+        ENABLED,
+        DISABLED,
+        DELETED,
+        EMPLOYEE_DELETED
+    }
+
+    private final Type type;
+    private final String fingerprintId;
+    private final String employeeId;
+    private final float[] embedding;
+
+    public static FingerprintSampleEvent registered(String fingerprintId, String employeeId, float[] embedding) {
+        return new FingerprintSampleEvent(Type.REGISTERED, fingerprintId, employeeId, embedding);
+    }
+
+    public static FingerprintSampleEvent enabled(FingerprintSample sample) {
+        float[] embedding = sample.getEmbedding() == null ? null : EmbeddingCodec.fromBytes(sample.getEmbedding());
+        return new FingerprintSampleEvent(Type.ENABLED, sample.getId(), sample.getEmployee().getId(), embedding);
+    }
+
+    public static FingerprintSampleEvent disabled(String fingerprintId, String employeeId) {
+        return new FingerprintSampleEvent(Type.DISABLED, fingerprintId, employeeId, null);
+    }
+
+    public static FingerprintSampleEvent deleted(String fingerprintId, String employeeId) {
+        return new FingerprintSampleEvent(Type.DELETED, fingerprintId, employeeId, null);
+    }
+
+    public static FingerprintSampleEvent employeeDeleted(String employeeId) {
+        return new FingerprintSampleEvent(Type.EMPLOYEE_DELETED, null, employeeId, null);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Applies {@link FingerprintSampleEvent}s after commit, so the gallery never serves a
+ * template whose database change was rolled back. Events published outside a
+ * transaction are applied immediately.
+ */
+@Component
+@RequiredArgsConstructor
+public class GalleryEventListener {
+
+    private final TemplateLifecycleService templateLifecycleService;
+    private final EmbeddingGallery embeddingGallery;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSampleEvent(FingerprintSampleEvent event) {
+        switch (event.getType()) {
+            case REGISTERED, ENABLED -> {
+                if (event.getEmbedding() != null) {
+                    templateLifecycleService.activate(event.getFingerprintId(), event.getEmployeeId(), event.getEmbedding());
+                }
+            }
+            case DISABLED, DELETED -> templateLifecycleService.deactivate(event.getFingerprintId());
+            case EMPLOYEE_DELETED -> {
+                for (String fingerprintId : embeddingGallery.fingerprintIdsOf(event.getEmployeeId())) {
+                    templateLifecycleService.deactivate(fingerprintId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class GalleryMatch {
+    private final String fingerprintId;
+    private final String employeeId;
+    private final double confidence;
+}
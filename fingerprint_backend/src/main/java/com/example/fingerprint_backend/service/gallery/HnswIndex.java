@@ -0,0 +1,402 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical navigable small world graph over unit-normalised fingerprint
+ * embeddings, keyed by {@code FingerprintSample.id}.
+ *
+ * Removal only tombstones a node: it keeps routing searches but is never
+ * returned. Re-adding the same sample with the same embedding (enable after
+ * disable) revives the node in place. The owner is expected to rebuild the
+ * index once {@link #deletedRatio()} grows too large.
+ *
+ * Built with a {@link TemplateQuantizer}, nodes hold only their int8 or PQ code:
+ * queries are scored against the codes by asymmetric distance, and the rare
+ * node-to-node comparisons while linking decode the codes they need.
+ *
+ * Not thread-safe; {@link EmbeddingGallery} serialises writers against readers.
+ */
+final class HnswIndex {
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+    private final TemplateQuantizer quantizer;
+    private final int codeBytes;
+
+    // Unit vectors without a quantizer, codes (codeBytes per node) with one
+    private float[][] vectors;
+    private byte[] codes;
+    private String[] fingerprintIds = new String[16];
+    private String[] employeeIds = new String[16];
+    private int[][][] links = new int[16][][];
+    private boolean[] deleted = new boolean[16];
+    private final Map<String, Integer> nodeByFingerprintId = new HashMap<>();
+
+    private int nodeCount;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int m, int efConstruction) {
+        this(m, efConstruction, null);
+    }
+
+    HnswIndex(int m, int efConstruction, TemplateQuantizer quantizer) {
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+        this.quantizer = quantizer;
+        this.codeBytes = quantizer == null ? 0 : quantizer.codeBytes();
+        if (quantizer == null) {
+            vectors = new float[16][];
+        } else {
+            codes = new byte[16 * codeBytes];
+        }
+    }
+
+    void add(String fingerprintId, String employeeId, float[] embedding) {
+        float[] vector = SimilarityKernel.normalize(embedding);
+        if (quantizer == null) {
+            insert(fingerprintId, employeeId, vector, null, 0);
+            return;
+        }
+        byte[] code = new byte[codeBytes];
+        quantizer.encode(vector, code, 0);
+        insert(fingerprintId, employeeId, vector, code, 0);
+    }
+
+    /**
+     * Adds a template by its code under this index's quantizer, without the embedding.
+     */
+    void addEncoded(String fingerprintId, String employeeId, byte[] source, int offset) {
+        insert(fingerprintId, employeeId, quantizer.decode(source, offset), source, offset);
+    }
+
+    private void insert(String fingerprintId, String employeeId, float[] vector, byte[] code, int codeOffset) {
+        Integer existing = nodeByFingerprintId.get(fingerprintId);
+        if (existing != null) {
+            boolean same = quantizer == null
+                    ? Arrays.equals(vectors[existing], vector)
+                    : Arrays.equals(codes, existing * codeBytes, (existing + 1) * codeBytes,
+                            code, codeOffset, codeOffset + codeBytes);
+            if (same) {
+                if (deleted[existing]) {
+                    deleted[existing] = false;
+                    deletedCount--;
+                }
+                employeeIds[existing] = employeeId;
+                return;
+            }
+            remove(fingerprintId);
+            nodeByFingerprintId.remove(fingerprintId);
+        }
+
+        int node = nodeCount++;
+        ensureCapacity(nodeCount);
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+
+        if (quantizer == null) {
+            vectors[node] = vector;
+        } else {
+            System.arraycopy(code, codeOffset, codes, node * codeBytes, codeBytes);
+        }
+        fingerprintIds[node] = fingerprintId;
+        employeeIds[node] = employeeId;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        nodeByFingerprintId.put(fingerprintId, node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = prepare(vector);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap found = searchLayer(query, current, efConstruction, l, false, null);
+            int[] candidates = drainBestFirst(found);
+            int[] selected = selectNeighbours(query, candidates, m);
+            for (int neighbour : selected) {
+                addLink(node, neighbour, l);
+                addLink(neighbour, node, l);
+            }
+            current = candidates[0];
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    boolean remove(String fingerprintId) {
+        Integer node = nodeByFingerprintId.get(fingerprintId);
+        if (node == null || deleted[node]) {
+            return false;
+        }
+        deleted[node] = true;
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * Returns up to {@code ef} live candidates, best first. Candidates are ranked by
+     * the graph's normalised dot product and are meant to be rescored exactly.
+     */
+    List<String> search(float[] probe, int ef, Predicate<String> employeeFilter) {
+        if (entryPoint < 0 || liveSize() == 0) {
+            return List.of();
+        }
+        float[] query = prepare(SimilarityKernel.normalize(probe));
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        NodeHeap found = searchLayer(query, current, Math.max(ef, 1), 0, true, employeeFilter);
+        int[] ordered = drainBestFirst(found);
+        List<String> result = new ArrayList<>(ordered.length);
+        for (int node : ordered) {
+            result.add(fingerprintIds[node]);
+        }
+        return result;
+    }
+
+    int liveSize() {
+        return nodeCount - deletedCount;
+    }
+
+    double deletedRatio() {
+        return nodeCount == 0 ? 0.0 : (double) deletedCount / nodeCount;
+    }
+
+    // The unit vector itself, or the quantizer's lookup for scoring codes against it
+    private float[] prepare(float[] unitVector) {
+        return quantizer == null ? unitVector : quantizer.prepare(unitVector);
+    }
+
+    private float score(float[] query, int node) {
+        return quantizer == null
+                ? SimilarityKernel.dot(query, vectors[node])
+                : quantizer.score(query, codes, node * codeBytes);
+    }
+
+    // Unit vector of a node, approximated from its code when quantized
+    private float[] vector(int node) {
+        return quantizer == null ? vectors[node] : quantizer.decode(codes, node * codeBytes);
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentScore = score(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                float score = score(query, candidate);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Standard HNSW layer search. With {@code liveOnly}, deleted nodes and nodes
+     * rejected by the filter are traversed but never enter the result set.
+     */
+    private NodeHeap searchLayer(float[] query, int entry, int ef, int level,
+                                 boolean liveOnly, Predicate<String> employeeFilter) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodeCount);
+        NodeHeap candidates = NodeHeap.best(ef * 2);
+        NodeHeap results = NodeHeap.worst(ef + 1);
+
+        visited.mark(entry);
+        float entryScore = score(query, entry);
+        candidates.push(entry, entryScore);
+        if (accepts(entry, liveOnly, employeeFilter)) {
+            results.push(entry, entryScore);
+        }
+
+        while (!candidates.isEmpty()) {
+            if (results.size() >= ef && candidates.peekScore() < results.peekScore()) {
+                break;
+            }
+            int node = candidates.pop();
+            int[] neighbours = links[node][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (!visited.mark(neighbour)) {
+                    continue;
+                }
+                float score = score(query, neighbour);
+                if (results.size() < ef || score > results.peekScore()) {
+                    candidates.push(neighbour, score);
+                    if (accepts(neighbour, liveOnly, employeeFilter)) {
+                        results.push(neighbour, score);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private boolean accepts(int node, boolean liveOnly, Predicate<String> employeeFilter) {
+        if (!liveOnly) {
+            return true;
+        }
+        return !deleted[node] && (employeeFilter == null || employeeFilter.test(employeeIds[node]));
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: keep a candidate only if it
+     * is closer to the base vector than to any neighbour already kept, then top up
+     * with the pruned candidates so well-clustered regions stay connected.
+     * {@code base} is a prepared query.
+     */
+    private int[] selectNeighbours(float[] base, int[] candidatesBestFirst, int limit) {
+        if (candidatesBestFirst.length <= limit) {
+            return candidatesBestFirst;
+        }
+        int[] selected = new int[limit];
+        float[][] selectedVectors = new float[limit][];
+        int count = 0;
+        int[] pruned = new int[candidatesBestFirst.length];
+        int prunedCount = 0;
+
+        for (int candidate : candidatesBestFirst) {
+            if (count == limit) {
+                break;
+            }
+            float toBase = score(base, candidate);
+            float[] candidateVector = vector(candidate);
+            boolean keep = true;
+            for (int i = 0; i < count; i++) {
+                if (SimilarityKernel.dot(selectedVectors[i], candidateVector) > toBase) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selectedVectors[count] = candidateVector;
+                selected[count++] = candidate;
+            } else {
+                pruned[prunedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < prunedCount && count < limit; i++) {
+            selected[count++] = pruned[i];
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    private void addLink(int from, int to, int level) {
+        int[] neighbours = links[from][level];
+        int capacity = neighbours.length - 1;
+        int count = neighbours[0];
+        for (int i = 1; i <= count; i++) {
+            if (neighbours[i] == to) {
+                return;
+            }
+        }
+        if (count < capacity) {
+            neighbours[++neighbours[0]] = to;
+            return;
+        }
+
+        float[] base = prepare(vector(from));
+        NodeHeap ranked = NodeHeap.best(count + 1);
+        for (int i = 1; i <= count; i++) {
+            ranked.push(neighbours[i], score(base, neighbours[i]));
+        }
+        ranked.push(to, score(base, to));
+        int[] ordered = new int[ranked.size()];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = ranked.pop();
+        }
+        int[] kept = selectNeighbours(base, ordered, capacity);
+        neighbours[0] = kept.length;
+        System.arraycopy(kept, 0, neighbours, 1, kept.length);
+    }
+
+    private static int[] drainBestFirst(NodeHeap worstOnTop) {
+        int[] ordered = new int[worstOnTop.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = worstOnTop.pop();
+        }
+        return ordered;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= fingerprintIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, fingerprintIds.length * 2);
+        if (quantizer == null) {
+            vectors = Arrays.copyOf(vectors, capacity);
+        } else {
+            codes = Arrays.copyOf(codes, capacity * codeBytes);
+        }
+        fingerprintIds = Arrays.copyOf(fingerprintIds, capacity);
+        employeeIds = Arrays.copyOf(employeeIds, capacity);
+        links = Arrays.copyOf(links, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+    }
+
+    /**
+     * Generation-stamped visited marks, reused per thread so concurrent readers do not
+     * allocate a fresh array per query.
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /** Returns true if the node was not visited before. */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
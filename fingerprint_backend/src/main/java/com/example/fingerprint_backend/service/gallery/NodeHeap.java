@@ -0,0 +1,94 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (node, score) pairs backed by primitive arrays, used by the graph
+ * search to avoid boxing a candidate object per visited node.
+ */
+final class NodeHeap {
+
+    private final boolean bestOnTop;
+    private int[] nodes;
+    private float[] scores;
+    private int size;
+
+    private NodeHeap(boolean bestOnTop, int capacity) {
+        this.bestOnTop = bestOnTop;
+        this.nodes = new int[Math.max(capacity, 4)];
+        this.scores = new float[nodes.length];
+    }
+
+    /** Heap whose top is the highest score. */
+    static NodeHeap best(int capacity) {
+        return new NodeHeap(true, capacity);
+    }
+
+    /** Heap whose top is the lowest score. */
+    static NodeHeap worst(int capacity) {
+        return new NodeHeap(false, capacity);
+    }
+
+    void push(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!above(score, scores[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    int pop() {
+        int top = nodes[0];
+        int lastNode = nodes[--size];
+        float lastScore = scores[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && above(scores[right], scores[child])) {
+                child = right;
+            }
+            if (!above(scores[child], lastScore)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        nodes[i] = lastNode;
+        scores[i] = lastScore;
+        return top;
+    }
+
+    int peekNode() {
+        return nodes[0];
+    }
+
+    float peekScore() {
+        return scores[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private boolean above(float a, float b) {
+        return bestOnTop ? a > b : a < b;
+    }
+}
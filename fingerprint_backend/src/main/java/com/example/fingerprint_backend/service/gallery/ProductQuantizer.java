@@ -0,0 +1,152 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Product quantization: the embedding is split into {@code subspaces} slices and
+ * each slice is replaced by the index of its nearest of 256 k-means centroids, one
+ * byte per slice. Probes are scored by asymmetric distance computation: a table of
+ * probe-slice x centroid dot products is built once and each template costs one
+ * lookup per slice.
+ */
+final class ProductQuantizer implements TemplateQuantizer {
+
+    private static final int CENTROIDS = 256;
+    private static final int ITERATIONS = 12;
+
+    private final int subspaces;
+    private final int subDimension;
+    private final float[][][] codebooks;
+
+    private ProductQuantizer(int subspaces, int subDimension, float[][][] codebooks) {
+        this.subspaces = subspaces;
+        this.subDimension = subDimension;
+        this.codebooks = codebooks;
+    }
+
+    static ProductQuantizer train(List<float[]> unitVectors, int dimension, int requestedSubspaces) {
+        int subspaces = Math.max(1, Math.min(requestedSubspaces, dimension));
+        while (dimension % subspaces != 0) {
+            subspaces--;
+        }
+        int subDimension = dimension / subspaces;
+        int k = Math.min(CENTROIDS, unitVectors.size());
+        SplittableRandom random = new SplittableRandom(7);
+
+        float[][][] codebooks = new float[subspaces][][];
+        for (int s = 0; s < subspaces; s++) {
+            codebooks[s] = kMeans(unitVectors, s * subDimension, subDimension, k, random);
+        }
+        return new ProductQuantizer(subspaces, subDimension, codebooks);
+    }
+
+    @Override
+    public String name() {
+        return "pq";
+    }
+
+    @Override
+    public int codeBytes() {
+        return subspaces;
+    }
+
+    @Override
+    public void encode(float[] unitVector, byte[] codes, int offset) {
+        for (int s = 0; s < subspaces; s++) {
+            codes[offset + s] = (byte) nearest(codebooks[s], unitVector, s * subDimension);
+        }
+    }
+
+    @Override
+    public float[] decode(byte[] codes, int offset) {
+        float[] vector = new float[subspaces * subDimension];
+        for (int s = 0; s < subspaces; s++) {
+            System.arraycopy(codebooks[s][codes[offset + s] & 0xFF], 0, vector, s * subDimension, subDimension);
+        }
+        return vector;
+    }
+
+    @Override
+    public float[] prepare(float[] unitProbe) {
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            float[][] centroids = codebooks[s];
+            int start = s * subDimension;
+            for (int c = 0; c < centroids.length; c++) {
+                float dot = 0f;
+                for (int i = 0; i < subDimension; i++) {
+                    dot += unitProbe[start + i] * centroids[c][i];
+                }
+                table[s * CENTROIDS + c] = dot;
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public float score(float[] table, byte[] codes, int offset) {
+        float sum = 0f;
+        for (int s = 0; s < subspaces; s++) {
+            sum += table[s * CENTROIDS + (codes[offset + s] & 0xFF)];
+        }
+        return sum;
+    }
+
+    private static float[][] kMeans(List<float[]> vectors, int start, int length, int k, SplittableRandom random) {
+        float[][] centroids = new float[k][];
+        for (int c = 0; c < k; c++) {
+            float[] source = vectors.get(random.nextInt(vectors.size()));
+            centroids[c] = new float[length];
+            System.arraycopy(source, start, centroids[c], 0, length);
+        }
+
+        int[] assignment = new int[vectors.size()];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            for (int v = 0; v < vectors.size(); v++) {
+                assignment[v] = nearest(centroids, vectors.get(v), start);
+            }
+
+            float[][] sums = new float[k][length];
+            int[] counts = new int[k];
+            for (int v = 0; v < vectors.size(); v++) {
+                float[] vector = vectors.get(v);
+                float[] sum = sums[assignment[v]];
+                for (int i = 0; i < length; i++) {
+                    sum[i] += vector[start + i];
+                }
+                counts[assignment[v]]++;
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    // Re-seed empty clusters from a random training slice
+                    float[] source = vectors.get(random.nextInt(vectors.size()));
+                    System.arraycopy(source, start, centroids[c], 0, length);
+                    continue;
+                }
+                for (int i = 0; i < length; i++) {
+                    centroids[c][i] = sums[c][i] / counts[c];
+                }
+            }
+        }
+        return centroids;
+    }
+
+    private static int nearest(float[][] centroids, float[] vector, int start) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < centroids.length; c++) {
+            float distance = 0f;
+            float[] centroid = centroids[c];
+            for (int i = 0; i < centroid.length; i++) {
+                float diff = vector[start + i] - centroid[i];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Accuracy/size trade-off measured when a quantizer is trained. Recall compares the
+ * compressed search (with rescoring) against an exact scan over the training sample,
+ * using sample templates as probes.
+ */
+@Data
+@AllArgsConstructor
+public class QuantizationReport {
+    private final String mode;
+    private final int trainingSamples;
+    private final int bytesPerTemplate;
+    private final double compressionRatio;
+    private final int probes;
+    private final double recallAt10;
+    private final double candidateRecallAt10;
+    private final LocalDateTime trainedAt;
+}
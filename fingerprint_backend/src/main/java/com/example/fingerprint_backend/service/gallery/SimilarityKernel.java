@@ -0,0 +1,55 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dot product between a probe and a row of the off-heap gallery matrix. Uses the
+ * Vector API when {@code jdk.incubator.vector} is present on the module path and
+ * falls back to a scalar loop otherwise, so the backend still starts without
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+final class SimilarityKernel {
+
+    static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private SimilarityKernel() {
+    }
+
+    static float dot(float[] probe, ByteBuffer matrix, int byteOffset) {
+        if (VECTORIZED) {
+            return VectorizedDot.dot(probe, matrix, byteOffset);
+        }
+        float sum = 0f;
+        for (int i = 0; i < probe.length; i++) {
+            sum += probe[i] * matrix.getFloat(byteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    static float dot(float[] a, float[] b) {
+        if (VECTORIZED) {
+            return VectorizedDot.dot(a, b);
+        }
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static float norm(float[] embedding) {
+        return (float) Math.sqrt(dot(embedding, embedding));
+    }
+
+    static float[] normalize(float[] embedding) {
+        float norm = norm(embedding);
+        float[] unit = new float[embedding.length];
+        if (norm == 0f) {
+            return unit;
+        }
+        for (int i = 0; i < embedding.length; i++) {
+            unit[i] = embedding[i] / norm;
+        }
+        return unit;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * Applies template lifecycle changes, normally driven by {@link GalleryEventListener}.
+ * Keeps the on-disk {@link TemplateStore} and the in-memory {@link EmbeddingGallery}
+ * in step.
+ *
+ * The database embedding column remains the system of record. A failed store write
+ * is logged and marks the store for a reseed, which {@link EmbeddingGalleryLoader}
+ * performs on the next startup; the gallery itself is still updated. A crash between
+ * the database commit and the store write leaves no mark, so it is only repaired when
+ * it changes the number of live templates.
+ *
+ * Activations and deactivations are applied one at a time, and an activation first
+ * re-reads whether the sample is still active. A registration that stored its
+ * embedding just before the sample was disabled therefore cannot re-add it after the
+ * disable was applied: either it sees the sample inactive, or the deactivation waits
+ * for it and runs after it.
+ */
+@Service
+@RequiredArgsConstructor
+public class TemplateLifecycleService {
+
+    private final TemplateStore templateStore;
+    private final EmbeddingGallery embeddingGallery;
+    private final FingerprintSampleRepository fingerprintSampleRepository;
+
+    // Orders lifecycle changes only; identification reads never take it
+    private final Object lifecycleLock = new Object();
+
+    public void activate(String fingerprintId, String employeeId, float[] embedding) {
+        synchronized (lifecycleLock) {
+            // Disabled or deleted after the embedding was stored, and its removal already applied
+            if (!fingerprintSampleRepository.existsByIdAndActiveTrue(fingerprintId)) {
+                return;
+            }
+            try {
+                templateStore.append(fingerprintId, employeeId, embedding);
+            } catch (IOException e) {
+                System.err.println("Failed to append template " + fingerprintId + ": " + e.getMessage());
+                templateStore.markReseedRequired();
+            }
+            embeddingGallery.put(fingerprintId, employeeId, embedding);
+        }
+    }
+
+    public void deactivate(String fingerprintId) {
+        synchronized (lifecycleLock) {
+            try {
+                templateStore.tombstone(fingerprintId);
+            } catch (IOException e) {
+                System.err.println("Failed to tombstone template " + fingerprintId + ": " + e.getMessage());
+                templateStore.markReseedRequired();
+            }
+            embeddingGallery.remove(fingerprintId);
+        }
+    }
+}
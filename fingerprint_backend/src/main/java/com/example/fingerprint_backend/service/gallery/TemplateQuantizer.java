@@ -0,0 +1,23 @@
+package com.example.fingerprint_backend.service.gallery;
+
+/**
+ * Compressed template format for unit-normalised embeddings. Scoring goes through a
+ * probe-specific lookup prepared once per search so the inner loop only reads codes.
+ */
+interface TemplateQuantizer {
+
+    String name();
+
+    int codeBytes();
+
+    void encode(float[] unitVector, byte[] codes, int offset);
+
+    /**
+     * Approximate vector a code stands for, for comparing two coded templates.
+     */
+    float[] decode(byte[] codes, int offset);
+
+    float[] prepare(float[] unitProbe);
+
+    float score(float[] prepared, byte[] codes, int offset);
+}
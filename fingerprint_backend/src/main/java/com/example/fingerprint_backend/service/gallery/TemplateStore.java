@@ -0,0 +1,655 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of fingerprint templates.
+ *
+ * Each segment file holds a fixed number of fixed-width records. A record is either
+ * a PUT carrying the embedding or a TOMBSTONE for a disabled/deleted sample; the
+ * latest record for a fingerprint id wins on replay. The record type byte is written
+ * last and acts as the commit marker, and a CRC over the payload guards against torn
+ * writes in the active segment.
+ *
+ * Reads (rescoring dot products, embedding reads) share a read lock, so they never
+ * wait for each other; appends and tombstones take the write lock.
+ *
+ * Compaction copies live PUT records into fresh segments numbered after the current
+ * ones before deleting the old files, so a crash at any point replays to the same
+ * state. The copy runs without the store lock: the current segments are sealed
+ * first, so appends made meanwhile go to segments numbered after the compacted ones,
+ * and only the final swap takes the write lock. Old segments are unmapped before
+ * they are deleted; where that is not possible (or the platform refuses to delete
+ * the file) the deletion is retried on the next compaction, and a leftover segment
+ * only replays records that the newer segments supersede.
+ *
+ * <pre>
+ * segment header (32 bytes): magic, version, dimension, recordSize, capacity
+ * record: type(1) idLen(1) employeeIdLen(1) reserved(1) crc(4)
+ *         fingerprintId(64) employeeId(64) embedding(dimension * 4)
+ * </pre>
+ */
+@Component
+public class TemplateStore {
+
+    private static final int MAGIC = 0x46505453;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ID_BYTES = 64;
+    private static final int PAYLOAD_OFFSET = 8;
+    private static final int EMBEDDING_OFFSET = PAYLOAD_OFFSET + ID_BYTES * 2;
+
+    private static final byte EMPTY = 0;
+    private static final byte PUT = 1;
+    private static final byte TOMBSTONE = 2;
+
+    private static final int READ_CHUNK = 1024;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.tpl");
+    // Present while the store may disagree with the database after a failed write
+    private static final String RESEED_MARKER = "reseed-required";
+
+    @Value("${fingerprint.store.path:./template_store}")
+    private String storePath;
+
+    @Value("${fingerprint.store.records-per-segment:65536}")
+    private int recordsPerSegment;
+
+    @Value("${fingerprint.store.fsync:false}")
+    private boolean fsync;
+
+    @Value("${fingerprint.store.compaction-dead-ratio:0.3}")
+    private double compactionDeadRatio;
+
+    // sun.misc.Unsafe.invokeCleaner releases a mapping without waiting for GC (jdk.unsupported)
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Mapped template segments cannot be unmapped explicitly: " + e.getMessage());
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serialises compaction, reset and close, which replace segments
+    private final Object maintenanceLock = new Object();
+
+    private Path directory;
+    private int dimension;
+    private int recordSize;
+    private final List<Segment> segments = new ArrayList<>();
+    // fingerprintId -> (segment index << 32 | record index) of its latest PUT
+    private Map<String, Long> live = new LinkedHashMap<>();
+    private long totalRecords;
+    // Appends go to a segment numbered at least this; raised while a compaction copies
+    private int minAppendNumber;
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    @FunctionalInterface
+    public interface TemplateConsumer {
+        void accept(String fingerprintId, String employeeId, float[] embedding);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            openSegments();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openSegments() throws IOException {
+        directory = Paths.get(storePath);
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)))
+                    .toList();
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = mapExisting(files.get(i));
+            segments.add(segment);
+            replay(segment, segments.size() - 1);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (maintenanceLock) {
+            lock.writeLock().lock();
+            try {
+                for (Segment segment : segments) {
+                    segment.buffer.force();
+                    segment.channel.close();
+                }
+                segments.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void append(String fingerprintId, String employeeId, float[] embedding) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (dimension == 0) {
+                dimension = embedding.length;
+                recordSize = EMBEDDING_OFFSET + dimension * Float.BYTES;
+            } else if (embedding.length != dimension) {
+                throw new IllegalArgumentException("Embedding dimension " + embedding.length
+                        + " does not match template store dimension " + dimension);
+            }
+            long location = write(PUT, fingerprintId, employeeId, embedding);
+            live.put(fingerprintId, location);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean tombstone(String fingerprintId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Long location = live.remove(fingerprintId);
+            if (location == null) {
+                return false;
+            }
+            Segment segment = segments.get((int) (location >>> 32));
+            int offset = recordOffset((int) location.longValue());
+            write(TOMBSTONE, fingerprintId, readString(segment, offset + PAYLOAD_OFFSET + ID_BYTES,
+                    segment.buffer.get(offset + 2)), null);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hands every live template to the consumer. Records are read in chunks and the
+     * consumer runs outside the store lock, so it may take other locks (the gallery
+     * rescoring from this store does so in the opposite order).
+     */
+    public void forEachLive(TemplateConsumer consumer) {
+        List<String> ids;
+        lock.readLock().lock();
+        try {
+            ids = new ArrayList<>(live.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int start = 0; start < ids.size(); start += READ_CHUNK) {
+            List<String> chunk = ids.subList(start, Math.min(ids.size(), start + READ_CHUNK));
+            String[] employeeIds = new String[chunk.size()];
+            List<float[]> embeddings;
+            lock.readLock().lock();
+            try {
+                embeddings = read(chunk, employeeIds);
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                // Tombstoned since the listing
+                if (embeddings.get(i) != null) {
+                    consumer.accept(chunk.get(i), employeeIds[i], embeddings.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Latest embeddings of the given templates, {@code null} for those not live.
+     */
+    public List<float[]> read(List<String> fingerprintIds) {
+        lock.readLock().lock();
+        try {
+            return read(fingerprintIds, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<float[]> read(List<String> fingerprintIds, String[] employeeIds) {
+        List<float[]> embeddings = new ArrayList<>(fingerprintIds.size());
+        for (int r = 0; r < fingerprintIds.size(); r++) {
+            Long location = live.get(fingerprintIds.get(r));
+            if (location == null) {
+                embeddings.add(null);
+                continue;
+            }
+            Segment segment = segments.get((int) (location >>> 32));
+            int offset = recordOffset((int) location.longValue());
+            if (employeeIds != null) {
+                employeeIds[r] = readString(segment, offset + PAYLOAD_OFFSET + ID_BYTES, segment.buffer.get(offset + 2));
+            }
+            float[] embedding = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                embedding[i] = segment.buffer.getFloat(offset + EMBEDDING_OFFSET + i * Float.BYTES);
+            }
+            embeddings.add(embedding);
+        }
+        return embeddings;
+    }
+
+    /**
+     * Evenly spaced live embeddings, at most {@code limit} of them.
+     */
+    public List<float[]> sample(int limit) {
+        lock.readLock().lock();
+        try {
+            List<String> ids = new ArrayList<>(Math.min(limit, live.size()));
+            int stride = Math.max(1, live.size() / Math.max(1, limit));
+            int position = 0;
+            for (String fingerprintId : live.keySet()) {
+                if (position++ % stride == 0 && ids.size() < limit) {
+                    ids.add(fingerprintId);
+                }
+            }
+            return read(ids, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dot products of the probe with the first {@code count} templates, read straight
+     * from the mapped segments; {@code NaN} for templates that are not live.
+     */
+    void dot(float[] probe, String[] fingerprintIds, int count, float[] dots) {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                Long location = live.get(fingerprintIds[i]);
+                if (location == null || probe.length != dimension) {
+                    dots[i] = Float.NaN;
+                    continue;
+                }
+                Segment segment = segments.get((int) (location >>> 32));
+                dots[i] = SimilarityKernel.dot(probe, segment.buffer,
+                        recordOffset((int) location.longValue()) + EMBEDDING_OFFSET);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a write for a committed change failed, so the next startup reseeds
+     * the store from the database even when the live count happens to match.
+     */
+    public void markReseedRequired() {
+        try {
+            Path marker = Paths.get(storePath, RESEED_MARKER);
+            Files.createDirectories(marker.getParent());
+            Files.writeString(marker, LocalDateTime.now().toString());
+        } catch (IOException e) {
+            System.err.println("Failed to record that the template store needs a reseed: " + e.getMessage());
+        }
+    }
+
+    public boolean isReseedRequired() {
+        return Files.exists(Paths.get(storePath, RESEED_MARKER));
+    }
+
+    public void clearReseedRequired() throws IOException {
+        Files.deleteIfExists(Paths.get(storePath, RESEED_MARKER));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double deadRatio() {
+        lock.readLock().lock();
+        try {
+            return totalRecords == 0 ? 0.0 : (double) (totalRecords - live.size()) / totalRecords;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every segment. Used when the store has to be reseeded from the database.
+     */
+    public void reset() throws IOException {
+        synchronized (maintenanceLock) {
+            lock.writeLock().lock();
+            try {
+                List<Segment> old = new ArrayList<>(segments);
+                segments.clear();
+                live = new LinkedHashMap<>();
+                totalRecords = 0;
+                dimension = 0;
+                recordSize = 0;
+                minAppendNumber = 0;
+                deletePending();
+                for (Segment segment : old) {
+                    release(segment);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fingerprint.store.compaction-interval-ms:60000}")
+    public void compactIfNeeded() {
+        if (deadRatio() <= compactionDeadRatio) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            System.err.println("Template store compaction failed: " + e.getMessage());
+        }
+    }
+
+    public void compact() throws IOException {
+        synchronized (maintenanceLock) {
+            // Seal the current segments and take the live set to copy
+            int sealed;
+            int nextNumber;
+            List<Segment> sources;
+            List<Map.Entry<String, Long>> snapshot;
+            lock.writeLock().lock();
+            try {
+                if (segments.isEmpty()) {
+                    return;
+                }
+                deletePending();
+                sealed = segments.size();
+                sources = new ArrayList<>(segments);
+                snapshot = new ArrayList<>(live.size());
+                for (Map.Entry<String, Long> entry : live.entrySet()) {
+                    snapshot.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+                nextNumber = segments.get(sealed - 1).number + 1;
+                int needed = (snapshot.size() + recordsPerSegment - 1) / recordsPerSegment;
+                minAppendNumber = nextNumber + needed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Sealed records never change, so they are copied without the lock
+            List<Segment> compacted = new ArrayList<>();
+            Map<String, Long> compactedLive = new HashMap<>();
+            try {
+                for (Map.Entry<String, Long> entry : snapshot) {
+                    long location = entry.getValue();
+                    Segment source = sources.get((int) (location >>> 32));
+                    if (compacted.isEmpty() || compacted.get(compacted.size() - 1).recordCount
+                            == compacted.get(compacted.size() - 1).capacity) {
+                        compacted.add(createSegment(nextNumber++));
+                    }
+                    int target = compacted.size() - 1;
+                    Segment destination = compacted.get(target);
+                    int record = destination.recordCount++;
+                    destination.buffer.put(recordOffset(record), source.buffer, recordOffset((int) location), recordSize);
+                    compactedLive.put(entry.getKey(), ((long) target << 32) | record);
+                }
+                for (Segment segment : compacted) {
+                    segment.buffer.force();
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Segment segment : compacted) {
+                    release(segment);
+                }
+                throw e;
+            }
+
+            // Swap: templates untouched since the snapshot move to their copies, later ones stay put
+            List<Segment> old;
+            lock.writeLock().lock();
+            try {
+                List<Segment> appendedSince = new ArrayList<>(segments.subList(sealed, segments.size()));
+                Map<String, Long> swapped = new LinkedHashMap<>();
+                for (Map.Entry<String, Long> entry : live.entrySet()) {
+                    long location = entry.getValue();
+                    int segment = (int) (location >>> 32);
+                    if (segment < sealed) {
+                        swapped.put(entry.getKey(), compactedLive.get(entry.getKey()));
+                    } else {
+                        swapped.put(entry.getKey(),
+                                ((long) (segment - sealed + compacted.size()) << 32) | (int) location);
+                    }
+                }
+                old = new ArrayList<>(segments.subList(0, sealed));
+                segments.clear();
+                segments.addAll(compacted);
+                segments.addAll(appendedSince);
+                live = swapped;
+                totalRecords = compactedLive.size();
+                for (Segment segment : appendedSince) {
+                    totalRecords += segment.recordCount;
+                }
+                for (Segment segment : old) {
+                    release(segment);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("Compacted template store to " + compactedLive.size() + " records in "
+                    + compacted.size() + " segments");
+        }
+    }
+
+    /**
+     * Unmaps and deletes a segment that is no longer in {@link #segments}. A file that
+     * is still mapped cannot be deleted on Windows, so without the cleaner the deletion
+     * waits for the next compaction.
+     */
+    private void release(Segment segment) throws IOException {
+        segment.channel.close();
+        boolean unmapped = unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            System.err.println("Could not delete template segment " + segment.path
+                    + (unmapped ? "" : " (still mapped)") + ", retrying later: " + e.getMessage());
+            pendingDeletes.add(segment.path);
+        }
+    }
+
+    private void deletePending() {
+        pendingDeletes.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    // Only called on buffers no longer reachable through segments, under the write lock
+    private static boolean unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return false;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private long write(byte type, String fingerprintId, String employeeId, float[] embedding) throws IOException {
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.recordCount == segment.capacity || segment.number < minAppendNumber) {
+            segment = createSegment(Math.max(segment == null ? 1 : segment.number + 1, minAppendNumber));
+            segments.add(segment);
+        }
+        int record = segment.recordCount;
+        int offset = recordOffset(record);
+        MappedByteBuffer buffer = segment.buffer;
+
+        byte[] id = encode(fingerprintId);
+        byte[] employee = encode(employeeId);
+        buffer.put(offset + 1, (byte) id.length);
+        buffer.put(offset + 2, (byte) employee.length);
+        buffer.put(offset + PAYLOAD_OFFSET, new byte[ID_BYTES * 2]);
+        buffer.put(offset + PAYLOAD_OFFSET, id);
+        buffer.put(offset + PAYLOAD_OFFSET + ID_BYTES, employee);
+        for (int i = 0; i < dimension; i++) {
+            buffer.putFloat(offset + EMBEDDING_OFFSET + i * Float.BYTES, embedding == null ? 0f : embedding[i]);
+        }
+        buffer.putInt(offset + 4, crc(buffer, offset));
+        buffer.put(offset, type);
+        if (fsync) {
+            buffer.force(offset, recordSize);
+        }
+
+        segment.recordCount++;
+        totalRecords++;
+        return ((long) (segments.size() - 1) << 32) | record;
+    }
+
+    // Every segment is verified: a compaction cut short can leave a partial copy before later segments
+    private void replay(Segment segment, int segmentIndex) {
+        for (int record = 0; record < segment.capacity; record++) {
+            int offset = recordOffset(record);
+            byte type = segment.buffer.get(offset);
+            if (type == EMPTY || segment.buffer.getInt(offset + 4) != crc(segment.buffer, offset)) {
+                break;
+            }
+            String fingerprintId = readString(segment, offset + PAYLOAD_OFFSET, segment.buffer.get(offset + 1));
+            if (type == PUT) {
+                live.put(fingerprintId, ((long) segmentIndex << 32) | record);
+            } else {
+                live.remove(fingerprintId);
+            }
+            segment.recordCount++;
+            totalRecords++;
+        }
+    }
+
+    private Segment createSegment(int number) throws IOException {
+        Path path = directory.resolve(String.format("segment-%06d.tpl", number));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = HEADER_BYTES + (long) recordsPerSegment * recordSize;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, dimension);
+        buffer.putInt(12, recordSize);
+        buffer.putInt(16, recordsPerSegment);
+        buffer.force(0, HEADER_BYTES);
+        return new Segment(number, path, channel, buffer, recordsPerSegment);
+    }
+
+    private Segment mapExisting(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a template store segment: " + path);
+        }
+        int segmentDimension = buffer.getInt(8);
+        if (dimension == 0) {
+            dimension = segmentDimension;
+            recordSize = buffer.getInt(12);
+        } else if (segmentDimension != dimension) {
+            channel.close();
+            throw new IOException("Template store segment " + path + " has dimension " + segmentDimension
+                    + ", expected " + dimension);
+        }
+        return new Segment(segmentNumber(path), path, channel, buffer, buffer.getInt(16));
+    }
+
+    private int recordOffset(int record) {
+        return HEADER_BYTES + record * recordSize;
+    }
+
+    private int crc(MappedByteBuffer buffer, int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + PAYLOAD_OFFSET, recordSize - PAYLOAD_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    private static String readString(Segment segment, int offset, int length) {
+        byte[] bytes = new byte[length];
+        segment.buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > ID_BYTES) {
+            throw new IllegalArgumentException("Identifier longer than " + ID_BYTES + " bytes: " + value);
+        }
+        return bytes;
+    }
+
+    private static int segmentNumber(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private static final class Segment {
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int recordCount;
+
+        private Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SIMD kernel, only loaded when {@link SimilarityKernel#VECTORIZED} is true.
+ */
+final class VectorizedDot {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorizedDot() {
+    }
+
+    static float dot(float[] probe, ByteBuffer matrix, int byteOffset) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(probe.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector p = FloatVector.fromArray(SPECIES, probe, i);
+            FloatVector g = FloatVector.fromByteBuffer(SPECIES, matrix, byteOffset + i * Float.BYTES, matrix.order());
+            acc = p.fma(g, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < probe.length; i++) {
+            sum += probe[i] * matrix.getFloat(byteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    static float dot(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(a.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            acc = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
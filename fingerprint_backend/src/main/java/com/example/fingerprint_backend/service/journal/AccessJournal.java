@@ -0,0 +1,620 @@
+package com.example.fingerprint_backend.service.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import com.example.fingerprint_backend.service.EmployeeAccessRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind journal for door decisions: {@link AccessJournalEntry}s are appended
+ * to a local log and acknowledged once on disk, and a background flusher moves them
+ * into {@code access_log} and {@code recognition} with batched JDBC inserts. The
+ * flusher has its own thread, so it never waits behind the scheduled tasks.
+ *
+ * Appends are group-committed: a single writer thread drains whatever is queued,
+ * writes it and fsyncs once for the whole group. Rows carry ids assigned at append
+ * time and are inserted with {@code ON DUPLICATE KEY UPDATE}, so replaying entries
+ * that were already flushed is harmless. After each flushed batch the position is
+ * recorded in a checkpoint file and fully flushed segments are deleted; on startup
+ * every entry after the checkpoint is replayed. Appends after a restart go to a new
+ * segment, so a torn record at the end of an old segment is simply where replay
+ * stops. A group write that fails is cut off the segment again (or the segment is
+ * abandoned), so no later record is appended behind torn bytes.
+ *
+ * <pre>
+ * segment header (8 bytes): magic, version
+ * record: length(4) crc(4) payload(length)
+ * </pre>
+ */
+@Component
+@RequiredArgsConstructor
+public class AccessJournal {
+
+    private static final int MAGIC = 0x46504a4c;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+    private static final String CHECKPOINT = "checkpoint";
+
+    private static final String INSERT_ACCESS_LOG = "INSERT INTO access_log "
+            + "(id, access_type, area_id, authorized, employee_id, timestamp) VALUES (?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE id = id";
+    private static final String INSERT_RECOGNITION = "INSERT INTO recognition "
+            + "(id, access_log_id, confidence, employee_id, fingerprint_recognition_model_id, "
+            + "fingerprint_region_model_id, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE id = id";
+
+    @Value("${fingerprint.access-journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${fingerprint.access-journal.path:./access_journal}")
+    private String journalPath;
+
+    @Value("${fingerprint.access-journal.fsync:true}")
+    private boolean fsync;
+
+    @Value("${fingerprint.access-journal.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Value("${fingerprint.access-journal.group-commit-max:256}")
+    private int groupCommitMax;
+
+    @Value("${fingerprint.access-journal.append-timeout-ms:1000}")
+    private long appendTimeoutMs;
+
+    @Value("${fingerprint.access-journal.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${fingerprint.access-journal.batch-size:500}")
+    private int batchSize;
+
+    // Beyond this many unflushed entries (database down), decisions are written directly again
+    @Value("${fingerprint.access-journal.max-pending:200000}")
+    private int maxPending;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final EmployeeAccessRollupService employeeAccessRollupService;
+
+    private Path directory;
+    private FileChannel activeChannel;
+    private int activeSegment;
+    private long activeSize;
+
+    private final LinkedBlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    // Durable entries not yet in the database, in journal order; guarded by itself
+    private final ArrayDeque<Journaled> pending = new ArrayDeque<>();
+    private final Object flushLock = new Object();
+    private Thread writer;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong directWrites = new AtomicLong();
+    private volatile String lastFlushError;
+    private volatile LocalDateTime lastFlushAt;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Paths.get(journalPath);
+        Files.createDirectories(directory);
+
+        int[] checkpoint = readCheckpoint();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)))
+                    .toList();
+        }
+
+        int lastSegment = -1;
+        for (Path file : files) {
+            int number = segmentNumber(file);
+            lastSegment = Math.max(lastSegment, number);
+            if (number < checkpoint[0]) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            int replayed = replay(file, number, number == checkpoint[0] ? checkpoint[1] : HEADER_BYTES);
+            if (replayed == 0) {
+                Files.deleteIfExists(file);
+            }
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("Replaying " + pending.size() + " journaled access decisions");
+        }
+
+        // Numbers only grow, so a segment below the checkpoint is always a flushed one
+        openSegment(Math.max(lastSegment, checkpoint[0]) + 1);
+        running = true;
+        writer = new Thread(this::writeLoop, "access-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        flusher = new Thread(this::flushLoop, "access-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled || writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(5000);
+            flusher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Best effort; whatever is left is replayed on the next start
+        flush();
+        if (activeChannel != null) {
+            activeChannel.force(true);
+            activeChannel.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Journals the decision and returns once it is durable on local disk. If the
+     * journal cannot take it (backlog full, disk error, timeout) the rows are inserted
+     * directly instead. The insert is idempotent and runs under the flush lock, so an
+     * entry that still reaches the journal later is neither inserted nor counted in the
+     * rollup twice.
+     */
+    public void submit(AccessJournalEntry entry) {
+        try {
+            append(entry);
+        } catch (IOException e) {
+            System.err.println("Access journal unavailable, writing access log directly: " + e.getMessage());
+            // The flusher's existence check must see this insert committed, or both count it
+            synchronized (flushLock) {
+                insert(List.of(entry));
+            }
+            directWrites.incrementAndGet();
+        }
+    }
+
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            while (true) {
+                // Only this method removes entries, so the head of the queue is stable
+                List<Journaled> batch = new ArrayList<>(batchSize);
+                synchronized (pending) {
+                    Iterator<Journaled> iterator = pending.iterator();
+                    while (iterator.hasNext() && batch.size() < batchSize) {
+                        batch.add(iterator.next());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                try {
+                    insert(batch.stream().map(journaled -> journaled.entry).toList());
+                } catch (Exception e) {
+                    lastFlushError = e.getMessage();
+                    System.err.println("Failed to flush access journal, retrying later: " + e.getMessage());
+                    return;
+                }
+                synchronized (pending) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        pending.pollFirst();
+                    }
+                }
+                flushed.addAndGet(batch.size());
+                lastFlushAt = LocalDateTime.now();
+                lastFlushError = null;
+
+                Journaled last = batch.get(batch.size() - 1);
+                try {
+                    checkpoint(last.segment, last.end);
+                } catch (IOException e) {
+                    System.err.println("Failed to write access journal checkpoint: " + e.getMessage());
+                }
+                if (batch.size() < batchSize) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("pending", pendingCount());
+        statistics.put("appended", appended.get());
+        statistics.put("flushed", flushed.get());
+        statistics.put("directWrites", directWrites.get());
+        statistics.put("lastFlushAt", lastFlushAt);
+        statistics.put("lastFlushError", lastFlushError);
+        statistics.put("activeSegment", activeSegment);
+        return statistics;
+    }
+
+    private void append(AccessJournalEntry entry) throws IOException {
+        if (!running) {
+            throw new IOException("Access journal is not running");
+        }
+        if (pendingCount() >= maxPending) {
+            throw new IOException("Access journal backlog is full (" + maxPending + " entries)");
+        }
+        Append append = new Append(entry);
+        appends.add(append);
+        try {
+            append.done.get(appendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            // Not picked up by the writer yet: it never reaches the journal
+            appends.remove(append);
+            throw new IOException("Access journal append timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while appending to the access journal");
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.err.println("Access journal flush failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Append> group = new ArrayList<>(groupCommitMax);
+        while (running || !appends.isEmpty()) {
+            try {
+                Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                appends.drainTo(group, groupCommitMax - 1);
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    // One write per record, one fsync for the whole group
+    private void writeGroup(List<Append> group) {
+        List<Journaled> written = new ArrayList<>(group.size());
+        int groupSegment = activeSegment;
+        long groupStart = activeSize;
+        try {
+            if (activeChannel == null) {
+                openSegment(activeSegment + 1);
+                groupSegment = activeSegment;
+                groupStart = activeSize;
+            }
+            for (Append append : group) {
+                byte[] payload = encode(append.entry);
+                if (activeSize + RECORD_HEADER_BYTES + payload.length > segmentBytes && activeSize > HEADER_BYTES) {
+                    activeChannel.force(true);
+                    activeChannel.close();
+                    activeChannel = null;
+                    openSegment(activeSegment + 1);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+                record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+                while (record.hasRemaining()) {
+                    activeChannel.write(record);
+                }
+                activeSize += RECORD_HEADER_BYTES + payload.length;
+                written.add(new Journaled(append.entry, activeSegment, activeSize));
+            }
+            if (fsync) {
+                activeChannel.force(false);
+            }
+        } catch (IOException e) {
+            discardFailedWrite(groupSegment, groupStart);
+            for (Append append : group) {
+                append.done.completeExceptionally(e);
+            }
+            return;
+        }
+        synchronized (pending) {
+            pending.addAll(written);
+        }
+        appended.addAndGet(group.size());
+        for (Append append : group) {
+            append.done.complete(null);
+        }
+    }
+
+    /**
+     * Drops what a failed group left in the segment, so the next record starts where the
+     * last acknowledged one ended and the recorded offsets stay true. If the segment
+     * cannot be cut back, or the group had rolled into a new one, the segment is closed
+     * and the next group starts a fresh one; replay of the old one stops at its torn
+     * tail, after every acknowledged record.
+     */
+    private void discardFailedWrite(int segment, long size) {
+        if (activeChannel != null && activeSegment == segment) {
+            try {
+                activeChannel.truncate(size);
+                activeChannel.position(size);
+                activeSize = size;
+                return;
+            } catch (IOException e) {
+                System.err.println("Failed to truncate access journal segment " + segment + ": " + e.getMessage());
+            }
+        }
+        if (activeChannel != null) {
+            try {
+                activeChannel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close access journal segment: " + e.getMessage());
+            }
+            activeChannel = null;
+        }
+    }
+
+    private void insert(List<AccessJournalEntry> entries) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            // Before the insert, which is how already stored entries are told apart
+            employeeAccessRollupService.recordJournaled(entries);
+            jdbcTemplate.batchUpdate(INSERT_ACCESS_LOG, entries, batchSize, (statement, entry) -> {
+                statement.setString(1, entry.getAccessLogId());
+                statement.setString(2, entry.getAccessType());
+                statement.setString(3, entry.getAreaId());
+                statement.setBoolean(4, entry.isAuthorized());
+                statement.setString(5, entry.getEmployeeId());
+                statement.setTimestamp(6, Timestamp.valueOf(entry.getTimestamp()));
+            });
+            jdbcTemplate.batchUpdate(INSERT_RECOGNITION, entries, batchSize, (statement, entry) -> {
+                statement.setString(1, entry.getRecognitionId());
+                statement.setString(2, entry.getAccessLogId());
+                statement.setFloat(3, entry.getConfidence());
+                statement.setString(4, entry.getRecognitionEmployeeId());
+                statement.setString(5, entry.getRecognitionModelId());
+                statement.setString(6, entry.getSegmentationModelId());
+                statement.setTimestamp(7, Timestamp.valueOf(entry.getTimestamp()));
+            });
+        });
+    }
+
+    private int pendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void openSegment(int number) throws IOException {
+        Path path = segmentPath(number);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        activeSegment = number;
+        activeChannel = channel;
+        activeSize = HEADER_BYTES;
+    }
+
+    /**
+     * Queues the valid records of a segment from the given offset and returns how many
+     * there were. Replay stops at the first short or corrupt record.
+     */
+    private int replay(Path file, int number, long offset) throws IOException {
+        int replayed = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (size < HEADER_BYTES || channel.read(header, 0) < HEADER_BYTES
+                    || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                System.err.println("Skipping access journal segment with invalid header: " + file);
+                return 0;
+            }
+            long position = Math.max(offset, HEADER_BYTES);
+            ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            while (position + RECORD_HEADER_BYTES <= size) {
+                recordHeader.clear();
+                channel.read(recordHeader, position);
+                int length = recordHeader.getInt(0);
+                int crc = recordHeader.getInt(4);
+                if (length <= 0 || length > MAX_RECORD_BYTES || position + RECORD_HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                channel.read(payload, position + RECORD_HEADER_BYTES);
+                CRC32 check = new CRC32();
+                check.update(payload.array());
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                position += RECORD_HEADER_BYTES + length;
+                pending.add(new Journaled(decode(payload.array()), number, position));
+                replayed++;
+            }
+            if (position < size) {
+                System.err.println("Access journal segment " + file.getFileName() + " ends with "
+                        + (size - position) + " unreadable bytes; replay stops there");
+            }
+        }
+        return replayed;
+    }
+
+    // Flushed entries never need replaying: remember the position and drop older segments
+    private void checkpoint(int segment, long offset) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(temp, segment + " " + offset, StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) listing::iterator) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Integer.parseInt(matcher.group(1)) < segment) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private int[] readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return new int[]{0, HEADER_BYTES};
+        }
+        String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(" ");
+        return new int[]{Integer.parseInt(parts[0]), (int) Long.parseLong(parts[1])};
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("journal-%08d.log", number));
+    }
+
+    private static int segmentNumber(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    private static byte[] encode(AccessJournalEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(entry.getAccessLogId());
+            out.writeUTF(entry.getRecognitionId());
+            writeNullable(out, entry.getAreaId());
+            writeNullable(out, entry.getEmployeeId());
+            writeNullable(out, entry.getAccessType());
+            out.writeBoolean(entry.isAuthorized());
+            out.writeUTF(entry.getTimestamp().toString());
+            out.writeFloat(entry.getConfidence());
+            writeNullable(out, entry.getRecognitionEmployeeId());
+            writeNullable(out, entry.getSegmentationModelId());
+            writeNullable(out, entry.getRecognitionModelId());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static AccessJournalEntry decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return new AccessJournalEntry(
+                    in.readUTF(),
+                    in.readUTF(),
+                    readNullable(in),
+                    readNullable(in),
+                    readNullable(in),
+                    in.readBoolean(),
+                    LocalDateTime.parse(in.readUTF()),
+                    in.readFloat(),
+                    readNullable(in),
+                    readNullable(in),
+                    readNullable(in));
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static final class Append {
+        private final AccessJournalEntry entry;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Append(AccessJournalEntry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final class Journaled {
+        private final AccessJournalEntry entry;
+        private final int segment;
+        // Offset just past the record, where replay resumes once it is flushed
+        private final long end;
+
+        private Journaled(AccessJournalEntry entry, int segment, long end) {
+            this.entry = entry;
+            this.segment = segment;
+            this.end = end;
+        }
+    }
+}
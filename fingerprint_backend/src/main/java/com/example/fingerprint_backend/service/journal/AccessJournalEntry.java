@@ -0,0 +1,26 @@
+package com.example.fingerprint_backend.service.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One door decision as it is journaled: the access log row and the recognition row
+ * that reference it, with ids assigned up front so replaying the entry is idempotent.
+ */
+@Data
+@AllArgsConstructor
+public class AccessJournalEntry {
+    private String accessLogId;
+    private String recognitionId;
+    private String areaId;
+    private String employeeId;
+    private String accessType;
+    private boolean authorized;
+    private LocalDateTime timestamp;
+    private float confidence;
+    private String recognitionEmployeeId;
+    private String segmentationModelId;
+    private String recognitionModelId;
+}
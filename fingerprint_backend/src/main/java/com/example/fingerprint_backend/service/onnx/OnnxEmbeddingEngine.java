@@ -0,0 +1,219 @@
+package com.example.fingerprint_backend.service.onnx;
+
+import ai.onnxruntime.OrtEnvironment;
+import com.example.fingerprint_backend.service.preprocess.FingerprintPreprocessor;
+import com.example.fingerprint_backend.service.preprocess.ModelInputShape;
+import com.example.fingerprint_backend.service.preprocess.PreprocessedFingerprint;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.FloatBuffer;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process CPU inference with ONNX Runtime, used instead of the AI service when
+ * {@code fingerprint.inference.engine=local}.
+ *
+ * Models are the ONNX exports of the models named by the entities' {@code pathName}
+ * (see {@code AI-modal-service/export_onnx.py}), laid out like the AI service's
+ * {@code fingerprint_models}: {@code <model-dir>/segmentation/<pathName>.onnx} and
+ * {@code <model-dir>/recognition/<pathName>.onnx}. The recognition export is the
+ * embedding sub-model. Preprocessing is done by {@link FingerprintPreprocessor}.
+ */
+@Component
+@RequiredArgsConstructor
+public class OnnxEmbeddingEngine {
+
+    @Value("${fingerprint.inference.engine:remote}")
+    private String engine;
+
+    @Value("${fingerprint.onnx.model-dir:./onnx_models}")
+    private String modelDir;
+
+    // 0 = one session per group of intra-op threads across all cores
+    @Value("${fingerprint.onnx.pool-size:0}")
+    private int poolSize;
+
+    @Value("${fingerprint.onnx.intra-op-threads:1}")
+    private int intraOpThreads;
+
+    @Value("${fingerprint.onnx.acquire-timeout-ms:1000}")
+    private long acquireTimeoutMs;
+
+    private final FingerprintPreprocessor fingerprintPreprocessor;
+
+    private final Map<String, OnnxSessionPool> pools = new ConcurrentHashMap<>();
+    private final ThreadLocal<float[]> maskBuffers = new ThreadLocal<>();
+    private OrtEnvironment environment;
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        environment = OrtEnvironment.getEnvironment();
+        System.out.println("Local ONNX inference enabled: model-dir=" + modelDir
+                + ", sessions per model=" + sessionsPerModel() + ", intra-op threads=" + intraOpThreads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pools.values().forEach(OnnxSessionPool::close);
+        pools.clear();
+    }
+
+    public boolean isEnabled() {
+        return "local".equalsIgnoreCase(engine);
+    }
+
+    public float[] embed(byte[] image, String segmentationModelPath, String recognitionModelPath) throws Exception {
+        return embed(image, segmentationModelPath, recognitionModelPath, null);
+    }
+
+    /**
+     * As above; when {@code timeout} is given, waiting for a session never runs past it,
+     * and the call fails as soon as no time is left.
+     */
+    public float[] embed(byte[] image, String segmentationModelPath, String recognitionModelPath,
+                         Duration timeout) throws Exception {
+        if (timeout != null && timeout.toMillis() <= 0) {
+            throw new Exception("No time left for local inference");
+        }
+        Long deadline = timeout == null ? null : System.nanoTime() + timeout.toNanos();
+        OnnxSessionPool segmentation = pool("segmentation", segmentationModelPath);
+        OnnxSessionPool recognition = pool("recognition", recognitionModelPath);
+        ModelInputShape shape = new ModelInputShape(
+                segmentation.height(), segmentation.width(), recognition.height(), recognition.width());
+        PreprocessedFingerprint tensor = fingerprintPreprocessor.preprocess(image, shape);
+
+        float[] mask = segmentationMask(segmentation, tensor, deadline);
+
+        OnnxSessionPool.Slot slot = recognition.acquire(acquireWaitMs(deadline));
+        try {
+            FloatBuffer input = slot.input();
+            byte[] pixels = tensor.getRecognitionInput();
+            for (int i = 0; i < pixels.length; i++) {
+                float value = (pixels[i] & 0xFF) / 255f;
+                input.put(mask == null ? value : value * mask[i]);
+            }
+            return slot.run(null);
+        } finally {
+            recognition.release(slot);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("engine", isEnabled() ? "local" : "remote");
+        Map<String, Object> models = new HashMap<>();
+        pools.forEach((file, pool) -> models.put(file, Map.of("sessions", pool.size(), "idle", pool.available())));
+        status.put("models", models);
+        return status;
+    }
+
+    /**
+     * Mirrors preprocess_fingerprint: only a model with several outputs yields a mask
+     * (its first output, thresholded at 0.5); otherwise the mask is all ones, so the
+     * segmentation model is not run at all.
+     */
+    private float[] segmentationMask(OnnxSessionPool segmentation, PreprocessedFingerprint tensor,
+                                     Long deadline) throws Exception {
+        if (segmentation.outputCount() < 2) {
+            return null;
+        }
+
+        int segmentationHeight = segmentation.height();
+        int segmentationWidth = segmentation.width();
+        float[] raw;
+        OnnxSessionPool.Slot slot = segmentation.acquire(acquireWaitMs(deadline));
+        try {
+            FloatBuffer input = slot.input();
+            for (byte pixel : tensor.getSegmentationInput()) {
+                input.put((pixel & 0xFF) / 255f);
+            }
+            raw = slot.run(null);
+        } finally {
+            segmentation.release(slot);
+        }
+
+        // Resize the binary mask to the recognition resolution (bilinear, then rounded)
+        ModelInputShape shape = tensor.getShape();
+        int height = shape.getRecognitionHeight();
+        int width = shape.getRecognitionWidth();
+        float[] mask = maskBuffers.get();
+        if (mask == null || mask.length != height * width) {
+            mask = new float[height * width];
+            maskBuffers.set(mask);
+        }
+        float scaleX = (float) segmentationWidth / width;
+        float scaleY = (float) segmentationHeight / height;
+        for (int y = 0; y < height; y++) {
+            float sy = Math.max((y + 0.5f) * scaleY - 0.5f, 0f);
+            int y0 = Math.min((int) sy, segmentationHeight - 1);
+            int y1 = Math.min(y0 + 1, segmentationHeight - 1);
+            float fy = sy - y0;
+            for (int x = 0; x < width; x++) {
+                float sx = Math.max((x + 0.5f) * scaleX - 0.5f, 0f);
+                int x0 = Math.min((int) sx, segmentationWidth - 1);
+                int x1 = Math.min(x0 + 1, segmentationWidth - 1);
+                float fx = sx - x0;
+                float top = bit(raw, y0 * segmentationWidth + x0) * (1f - fx) + bit(raw, y0 * segmentationWidth + x1) * fx;
+                float bottom = bit(raw, y1 * segmentationWidth + x0) * (1f - fx) + bit(raw, y1 * segmentationWidth + x1) * fx;
+                mask[y * width + x] = Math.round(top * (1f - fy) + bottom * fy);
+            }
+        }
+        return mask;
+    }
+
+    // The acquire timeout, cut down to what is left before the deadline ({@link System#nanoTime()})
+    private long acquireWaitMs(Long deadline) throws Exception {
+        if (deadline == null) {
+            return acquireTimeoutMs;
+        }
+        long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+        if (remainingMs <= 0) {
+            throw new Exception("No time left for local inference");
+        }
+        return Math.min(acquireTimeoutMs, remainingMs);
+    }
+
+    private static float bit(float[] raw, int index) {
+        return raw[index] > 0.5f ? 1f : 0f;
+    }
+
+    private OnnxSessionPool pool(String kind, String modelPath) throws Exception {
+        String modelFile = Paths.get(modelDir, kind, modelPath + ".onnx").toString();
+
+        OnnxSessionPool pool = pools.get(modelFile);
+        if (pool != null) {
+            return pool;
+        }
+        synchronized (pools) {
+            pool = pools.get(modelFile);
+            if (pool == null) {
+                if (!new File(modelFile).isFile()) {
+                    throw new Exception("ONNX model not found: " + modelFile);
+                }
+                pool = new OnnxSessionPool(environment, modelFile, sessionsPerModel(), intraOpThreads);
+                pools.put(modelFile, pool);
+                System.out.println("Loaded ONNX model " + modelFile + " (" + pool.size() + " sessions)");
+            }
+            return pool;
+        }
+    }
+
+    private int sessionsPerModel() {
+        if (poolSize > 0) {
+            return poolSize;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, intraOpThreads));
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.fingerprint_backend.service.onnx;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of sessions for one single-input ONNX model. Each slot owns its session,
+ * a direct input buffer wrapped by a long-lived tensor and, when the output shape is
+ * static, pinned output tensors, so a run copies pixels in and floats out without
+ * allocating native memory.
+ */
+final class OnnxSessionPool implements AutoCloseable {
+
+    private final List<Slot> slots = new ArrayList<>();
+    private final BlockingQueue<Slot> idle;
+    private final int height;
+    private final int width;
+    private final int outputCount;
+
+    OnnxSessionPool(OrtEnvironment environment, String modelFile, int size, int intraOpThreads) throws OrtException {
+        idle = new ArrayBlockingQueue<>(size);
+        int inputHeight = 0;
+        int inputWidth = 0;
+        int outputs = 0;
+        try {
+            for (int i = 0; i < size; i++) {
+                OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+                options.setIntraOpNumThreads(intraOpThreads);
+                options.setInterOpNumThreads(1);
+                options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                OrtSession session = environment.createSession(modelFile, options);
+
+                // Keras exports are NHWC: [batch, height, width, channels]
+                Map.Entry<String, NodeInfo> input = session.getInputInfo().entrySet().iterator().next();
+                long[] inputShape = ((TensorInfo) input.getValue().getInfo()).getShape();
+                inputHeight = (int) inputShape[1];
+                inputWidth = (int) inputShape[2];
+                outputs = (int) session.getNumOutputs();
+
+                Slot slot = new Slot(environment, session, input.getKey(), inputHeight, inputWidth);
+                slots.add(slot);
+                idle.add(slot);
+            }
+        } catch (OrtException e) {
+            close();
+            throw e;
+        }
+        height = inputHeight;
+        width = inputWidth;
+        outputCount = outputs;
+    }
+
+    int height() {
+        return height;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int outputCount() {
+        return outputCount;
+    }
+
+    Slot acquire(long timeoutMs) throws Exception {
+        Slot slot = idle.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (slot == null) {
+            throw new Exception("Local inference engine busy, try again later");
+        }
+        return slot;
+    }
+
+    void release(Slot slot) {
+        idle.add(slot);
+    }
+
+    int available() {
+        return idle.size();
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    @Override
+    public void close() {
+        for (Slot slot : slots) {
+            slot.close();
+        }
+    }
+
+    static final class Slot implements AutoCloseable {
+        private final OrtSession session;
+        private final FloatBuffer input;
+        private final OnnxTensor inputTensor;
+        private final Map<String, OnnxTensor> inputs;
+        private final Map<String, OnnxTensor> pinnedOutputs = new HashMap<>();
+        private final Map<String, FloatBuffer> pinnedBuffers = new HashMap<>();
+        private final String firstOutputName;
+
+        private Slot(OrtEnvironment environment, OrtSession session, String inputName, int height, int width)
+                throws OrtException {
+            this.session = session;
+            this.input = ByteBuffer.allocateDirect(height * width * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            this.inputTensor = OnnxTensor.createTensor(environment, input, new long[]{1, height, width, 1});
+            this.inputs = Map.of(inputName, inputTensor);
+            this.firstOutputName = session.getOutputNames().iterator().next();
+
+            for (Map.Entry<String, NodeInfo> output : session.getOutputInfo().entrySet()) {
+                long[] shape = ((TensorInfo) output.getValue().getInfo()).getShape().clone();
+                shape[0] = 1;
+                long elements = 1;
+                for (long dimension : shape) {
+                    elements = dimension < 0 ? -1 : elements * dimension;
+                    if (elements < 0) {
+                        break;
+                    }
+                }
+                if (elements < 0) {
+                    // Dynamic output: let the runtime allocate it
+                    pinnedOutputs.values().forEach(OnnxTensor::close);
+                    pinnedOutputs.clear();
+                    pinnedBuffers.clear();
+                    break;
+                }
+                FloatBuffer buffer = ByteBuffer.allocateDirect((int) elements * Float.BYTES)
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+                pinnedBuffers.put(output.getKey(), buffer);
+                pinnedOutputs.put(output.getKey(), OnnxTensor.createTensor(environment, buffer, shape));
+            }
+        }
+
+        /**
+         * Input buffer, rewound; fill it with height*width floats before {@link #run}.
+         */
+        FloatBuffer input() {
+            input.clear();
+            return input;
+        }
+
+        /**
+         * Runs the model and copies the first output into {@code reuse} when it has the
+         * exact size, otherwise into a new array, which is returned.
+         */
+        float[] run(float[] reuse) throws OrtException {
+            input.rewind();
+            if (!pinnedOutputs.isEmpty()) {
+                session.run(inputs, pinnedOutputs).close();
+                return copy(pinnedBuffers.get(firstOutputName), reuse);
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                return copy(((OnnxTensor) result.get(0)).getFloatBuffer(), reuse);
+            }
+        }
+
+        private static float[] copy(FloatBuffer values, float[] reuse) {
+            values.rewind();
+            float[] output = reuse != null && reuse.length == values.remaining() ? reuse : new float[values.remaining()];
+            values.get(output);
+            return output;
+        }
+
+        @Override
+        public void close() {
+            pinnedOutputs.values().forEach(OnnxTensor::close);
+            inputTensor.close();
+            try {
+                session.close();
+            } catch (OrtException ignored) {
+                // Shutting down
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.fingerprint_backend.service.preprocess;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * 8-bit grayscale kernels matching the OpenCV calls in the AI service's
+ * {@code preprocess_fingerprint}: {@code IMREAD_GRAYSCALE}, {@code INTER_LINEAR} resize
+ * and {@code createCLAHE}. All scratch memory comes from {@link PreprocessBuffers}.
+ */
+final class GrayImageOps {
+
+    // BT.601 luma in 14-bit fixed point, as OpenCV's RGB2GRAY
+    private static final int R_WEIGHT = 4899;
+    private static final int G_WEIGHT = 9617;
+    private static final int B_WEIGHT = 1868;
+    private static final int HIST_SIZE = 256;
+
+    private GrayImageOps() {
+    }
+
+    /**
+     * Writes the image as one byte per pixel into {@code gray}.
+     */
+    static void toGray(BufferedImage image, byte[] gray, PreprocessBuffers buffers) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = buffers.row(width);
+        Raster raster = image.getRaster();
+
+        boolean singleBandGray = raster.getNumBands() == 1
+                && (image.getType() == BufferedImage.TYPE_BYTE_GRAY || image.getType() == BufferedImage.TYPE_USHORT_GRAY);
+        if (singleBandGray) {
+            int shift = raster.getSampleModel().getSampleSize(0) - 8;
+            for (int y = 0; y < height; y++) {
+                raster.getSamples(0, y, width, 1, 0, row);
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    gray[offset + x] = (byte) (row[x] >> shift);
+                }
+            }
+            return;
+        }
+
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                gray[offset + x] = (byte) ((r * R_WEIGHT + g * G_WEIGHT + b * B_WEIGHT + (1 << 13)) >> 14);
+            }
+        }
+    }
+
+    /**
+     * Bilinear resize with half-pixel centres, as {@code cv2.resize} with {@code INTER_LINEAR}.
+     */
+    static void resize(byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth, int dstHeight,
+                       PreprocessBuffers buffers) {
+        int[] columns = buffers.columnIndex(dstWidth);
+        float[] columnWeights = buffers.columnWeight(dstWidth);
+        float scaleX = (float) srcWidth / dstWidth;
+        float scaleY = (float) srcHeight / dstHeight;
+
+        for (int x = 0; x < dstWidth; x++) {
+            float sx = (x + 0.5f) * scaleX - 0.5f;
+            int ix = (int) Math.floor(sx);
+            float fx = sx - ix;
+            if (ix < 0) {
+                ix = 0;
+                fx = 0f;
+            } else if (ix >= srcWidth - 1) {
+                ix = srcWidth - 1;
+                fx = 0f;
+            }
+            columns[x] = ix;
+            columnWeights[x] = fx;
+        }
+
+        for (int y = 0; y < dstHeight; y++) {
+            float sy = (y + 0.5f) * scaleY - 0.5f;
+            int iy = (int) Math.floor(sy);
+            float fy = sy - iy;
+            if (iy < 0) {
+                iy = 0;
+                fy = 0f;
+            } else if (iy >= srcHeight - 1) {
+                iy = srcHeight - 1;
+                fy = 0f;
+            }
+            int rowA = iy * srcWidth;
+            int rowB = Math.min(iy + 1, srcHeight - 1) * srcWidth;
+            int out = y * dstWidth;
+
+            for (int x = 0; x < dstWidth; x++) {
+                int x0 = columns[x];
+                int x1 = Math.min(x0 + 1, srcWidth - 1);
+                float fx = columnWeights[x];
+                float top = (src[rowA + x0] & 0xFF) * (1f - fx) + (src[rowA + x1] & 0xFF) * fx;
+                float bottom = (src[rowB + x0] & 0xFF) * (1f - fx) + (src[rowB + x1] & 0xFF) * fx;
+                dst[out + x] = (byte) Math.round(top * (1f - fy) + bottom * fy);
+            }
+        }
+    }
+
+    /**
+     * Contrast-limited adaptive histogram equalisation, as OpenCV's CLAHE: per-tile
+     * clipped histograms, then bilinear interpolation between neighbouring tile LUTs.
+     * Images that do not divide evenly into tiles are treated as padded with
+     * {@code BORDER_REFLECT_101}, like OpenCV does.
+     */
+    static void clahe(byte[] src, int width, int height, byte[] dst, double clipLimit, int tiles,
+                      PreprocessBuffers buffers) {
+        int tileWidth = (width + tiles - 1) / tiles;
+        int tileHeight = (height + tiles - 1) / tiles;
+        int tileArea = tileWidth * tileHeight;
+        int tileCount = tiles * tiles;
+
+        int[] histograms = buffers.histograms(tileCount * HIST_SIZE);
+        byte[] luts = buffers.luts(tileCount * HIST_SIZE);
+        Arrays.fill(histograms, 0, tileCount * HIST_SIZE, 0);
+
+        for (int ty = 0; ty < tiles; ty++) {
+            for (int tx = 0; tx < tiles; tx++) {
+                int histogram = (ty * tiles + tx) * HIST_SIZE;
+                for (int py = ty * tileHeight; py < (ty + 1) * tileHeight; py++) {
+                    int row = reflect101(py, height) * width;
+                    for (int px = tx * tileWidth; px < (tx + 1) * tileWidth; px++) {
+                        histograms[histogram + (src[row + reflect101(px, width)] & 0xFF)]++;
+                    }
+                }
+            }
+        }
+
+        int clip = clipLimit > 0 ? Math.max((int) (clipLimit * tileArea / HIST_SIZE), 1) : 0;
+        float lutScale = (float) (HIST_SIZE - 1) / tileArea;
+        for (int tile = 0; tile < tileCount; tile++) {
+            int histogram = tile * HIST_SIZE;
+            if (clip > 0) {
+                int clipped = 0;
+                for (int i = 0; i < HIST_SIZE; i++) {
+                    int count = histograms[histogram + i];
+                    if (count > clip) {
+                        clipped += count - clip;
+                        histograms[histogram + i] = clip;
+                    }
+                }
+                int redistBatch = clipped / HIST_SIZE;
+                int residual = clipped - redistBatch * HIST_SIZE;
+                for (int i = 0; i < HIST_SIZE; i++) {
+                    histograms[histogram + i] += redistBatch;
+                }
+                if (residual != 0) {
+                    int residualStep = Math.max(HIST_SIZE / residual, 1);
+                    for (int i = 0; i < HIST_SIZE && residual > 0; i += residualStep, residual--) {
+                        histograms[histogram + i]++;
+                    }
+                }
+            }
+            int sum = 0;
+            for (int i = 0; i < HIST_SIZE; i++) {
+                sum += histograms[histogram + i];
+                luts[histogram + i] = (byte) Math.min(255, Math.round(sum * lutScale));
+            }
+        }
+
+        int[] columns = buffers.columnIndex(width * 2);
+        float[] columnWeights = buffers.columnWeight(width);
+        float invTileWidth = 1f / tileWidth;
+        for (int x = 0; x < width; x++) {
+            float txf = x * invTileWidth - 0.5f;
+            int tx1 = (int) Math.floor(txf);
+            columnWeights[x] = txf - tx1;
+            columns[2 * x] = Math.max(tx1, 0) * HIST_SIZE;
+            columns[2 * x + 1] = Math.min(tx1 + 1, tiles - 1) * HIST_SIZE;
+        }
+
+        float invTileHeight = 1f / tileHeight;
+        for (int y = 0; y < height; y++) {
+            float tyf = y * invTileHeight - 0.5f;
+            int ty1 = (int) Math.floor(tyf);
+            float ya = tyf - ty1;
+            int lutRow1 = Math.max(ty1, 0) * tiles * HIST_SIZE;
+            int lutRow2 = Math.min(ty1 + 1, tiles - 1) * tiles * HIST_SIZE;
+            int offset = y * width;
+
+            for (int x = 0; x < width; x++) {
+                int value = src[offset + x] & 0xFF;
+                float xa = columnWeights[x];
+                int left = columns[2 * x] + value;
+                int right = columns[2 * x + 1] + value;
+                float top = (luts[lutRow1 + left] & 0xFF) * (1f - xa) + (luts[lutRow1 + right] & 0xFF) * xa;
+                float bottom = (luts[lutRow2 + left] & 0xFF) * (1f - xa) + (luts[lutRow2 + right] & 0xFF) * xa;
+                dst[offset + x] = (byte) Math.min(255, Math.round(top * (1f - ya) + bottom * ya));
+            }
+        }
+    }
+
+    private static int reflect101(int index, int length) {
+        if (index < length) {
+            return index;
+        }
+        return length > 1 ? Math.max(2 * length - 2 - index, 0) : 0;
+    }
+}
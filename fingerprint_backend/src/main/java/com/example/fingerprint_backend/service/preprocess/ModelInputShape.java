@@ -0,0 +1,16 @@
+package com.example.fingerprint_backend.service.preprocess;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Input height and width of a segmentation/recognition model pair.
+ */
+@Data
+@AllArgsConstructor
+public class ModelInputShape {
+    private final int segmentationHeight;
+    private final int segmentationWidth;
+    private final int recognitionHeight;
+    private final int recognitionWidth;
+}
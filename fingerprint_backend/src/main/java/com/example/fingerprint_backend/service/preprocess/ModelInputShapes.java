@@ -0,0 +1,49 @@
+package com.example.fingerprint_backend.service.preprocess;
+
+import com.example.fingerprint_backend.service.InferenceClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Input shapes of model pairs, fetched once from the AI service and kept for the
+ * lifetime of the process (a model file's input shape never changes).
+ */
+@Component
+@RequiredArgsConstructor
+public class ModelInputShapes {
+
+    private final InferenceClient inferenceClient;
+    private final Map<String, ModelInputShape> shapes = new ConcurrentHashMap<>();
+
+    public ModelInputShape resolve(String segmentationModelPath, String recognitionModelPath) throws Exception {
+        String key = segmentationModelPath + '\n' + recognitionModelPath;
+        ModelInputShape shape = shapes.get(key);
+        if (shape != null) {
+            return shape;
+        }
+
+        String path = UriComponentsBuilder.fromPath("/api/model/shapes")
+                .queryParam("segmentation_model_path", segmentationModelPath)
+                .queryParam("recognition_model_path", recognitionModelPath)
+                .build()
+                .toUriString();
+        JsonNode rootNode = new ObjectMapper().readTree(inferenceClient.get(InferenceClient.Stage.RECOGNITION, path));
+        if (rootNode.has("error")) {
+            throw new Exception("Failed to resolve model input shapes: " + rootNode.get("error").asText());
+        }
+
+        JsonNode segmentation = rootNode.get("segmentation_shape");
+        JsonNode recognition = rootNode.get("recognition_shape");
+        shape = new ModelInputShape(
+                segmentation.get(0).asInt(), segmentation.get(1).asInt(),
+                recognition.get(0).asInt(), recognition.get(1).asInt());
+        shapes.put(key, shape);
+        return shape;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.fingerprint_backend.service.preprocess;
+
+/**
+ * Per-thread scratch space for the preprocessing pipeline. Arrays grow to fit, so a
+ * steady stream of same-sized images runs without allocating; {@link #trim} drops any
+ * array above a size limit after use, so one oversized image does not pin its buffers
+ * on every request thread that ever saw one.
+ */
+final class PreprocessBuffers {
+
+    private static final ThreadLocal<PreprocessBuffers> CURRENT = ThreadLocal.withInitial(PreprocessBuffers::new);
+
+    private byte[] gray = new byte[0];
+    private byte[] resized = new byte[0];
+    private int[] row = new int[0];
+    private int[] columnIndex = new int[0];
+    private float[] columnWeight = new float[0];
+    private int[] histograms = new int[0];
+    private byte[] luts = new byte[0];
+
+    private PreprocessBuffers() {
+    }
+
+    static PreprocessBuffers current() {
+        return CURRENT.get();
+    }
+
+    byte[] gray(int size) {
+        if (gray.length < size) {
+            gray = new byte[size];
+        }
+        return gray;
+    }
+
+    byte[] resized(int size) {
+        if (resized.length < size) {
+            resized = new byte[size];
+        }
+        return resized;
+    }
+
+    int[] row(int size) {
+        if (row.length < size) {
+            row = new int[size];
+        }
+        return row;
+    }
+
+    int[] columnIndex(int size) {
+        if (columnIndex.length < size) {
+            columnIndex = new int[size];
+        }
+        return columnIndex;
+    }
+
+    float[] columnWeight(int size) {
+        if (columnWeight.length < size) {
+            columnWeight = new float[size];
+        }
+        return columnWeight;
+    }
+
+    int[] histograms(int size) {
+        if (histograms.length < size) {
+            histograms = new int[size];
+        }
+        return histograms;
+    }
+
+    byte[] luts(int size) {
+        if (luts.length < size) {
+            luts = new byte[size];
+        }
+        return luts;
+    }
+
+    /**
+     * Releases every array larger than {@code maxBytes}; the next image that needs one
+     * allocates it again.
+     */
+    void trim(long maxBytes) {
+        if (gray.length > maxBytes) {
+            gray = new byte[0];
+        }
+        if (resized.length > maxBytes) {
+            resized = new byte[0];
+        }
+        if ((long) row.length * Integer.BYTES > maxBytes) {
+            row = new int[0];
+        }
+        if ((long) columnIndex.length * Integer.BYTES > maxBytes) {
+            columnIndex = new int[0];
+        }
+        if ((long) columnWeight.length * Float.BYTES > maxBytes) {
+            columnWeight = new float[0];
+        }
+        if ((long) histograms.length * Integer.BYTES > maxBytes) {
+            histograms = new int[0];
+        }
+        if (luts.length > maxBytes) {
+            luts = new byte[0];
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.fingerprint_backend.service.preprocess;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Compact model inputs produced by {@link FingerprintPreprocessor}: one byte per pixel,
+ * row-major. The segmentation input is already CLAHE-enhanced; the recognition input
+ * is the plain grayscale image at the recognition model's resolution, to be masked by
+ * the model server.
+ */
+@Data
+@AllArgsConstructor
+public class PreprocessedFingerprint {
+    private final ModelInputShape shape;
+    private final byte[] segmentationInput;
+    private final byte[] recognitionInput;
+
+    public int byteSize() {
+        return segmentationInput.length + recognitionInput.length;
+    }
+}
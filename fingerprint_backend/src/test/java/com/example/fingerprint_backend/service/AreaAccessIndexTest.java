@@ -0,0 +1,217 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.repository.access.AreaAccessRepository;
+import com.example.fingerprint_backend.repository.access.AreaAccessView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copy-on-write snapshots of the area access matrix, and grants and revokes that land
+ * while a reconciliation is loading from the database.
+ */
+class AreaAccessIndexTest {
+
+    private AreaAccessRepository areaAccessRepository;
+    private AreaAccessIndex index;
+
+    @BeforeEach
+    void setUp() {
+        areaAccessRepository = mock(AreaAccessRepository.class);
+        index = new AreaAccessIndex(areaAccessRepository);
+    }
+
+    @Test
+    void reloadLoadsEveryGrant() {
+        when(areaAccessRepository.findAllAccessPairs()).thenReturn(List.of(
+                pair("area-1", "employee-1"), pair("area-1", "employee-2"), pair("area-2", "employee-2"),
+                pair("area-2", "employee-2")));
+
+        index.reload();
+
+        assertTrue(index.isAllowed("employee-1", "area-1"));
+        assertTrue(index.isAllowed("employee-2", "area-2"));
+        assertFalse(index.isAllowed("employee-1", "area-2"));
+        assertFalse(index.isAllowed("employee-3", "area-1"));
+        assertEquals(Set.of("employee-1", "employee-2"), index.employeeIdsFor("area-1"));
+        assertEquals(3, index.getStatistics().get("grants"));
+    }
+
+    @Test
+    void snapshotsTakenBeforeAChangeDoNotSeeIt() {
+        index.grant("area-1", "employee-1");
+        index.grant("area-2", "employee-2");
+        Set<String> area1Before = index.employeeIdsFor("area-1");
+        Set<String> area2Before = index.employeeIdsFor("area-2");
+
+        index.grant("area-1", "employee-3");
+        index.revoke("area-2", "employee-2");
+
+        assertEquals(Set.of("employee-1"), area1Before);
+        assertFalse(area1Before.contains("employee-3"));
+        assertEquals(Set.of("employee-2"), area2Before);
+        assertEquals(Set.of("employee-1", "employee-3"), index.employeeIdsFor("area-1"));
+        assertEquals(Set.of(), index.employeeIdsFor("area-2"));
+        assertTrue(index.isAllowed("employee-3", "area-1"));
+        assertFalse(index.isAllowed("employee-2", "area-2"));
+    }
+
+    @Test
+    void grantsGrowRowsPastOneWord() {
+        for (int i = 0; i < 130; i++) {
+            index.grant("area-1", "employee-" + i);
+        }
+        index.grant("area-2", "employee-129");
+        index.revoke("area-1", "employee-64");
+        // Revoking something never granted changes nothing
+        index.revoke("area-3", "employee-1");
+        index.revoke("area-2", "employee-1");
+
+        Set<String> employees = index.employeeIdsFor("area-1");
+        assertEquals(129, employees.size());
+        assertEquals(129, new ArrayList<>(employees).size());
+        assertFalse(employees.contains("employee-64"));
+        assertTrue(employees.contains("employee-129"));
+        assertEquals(Set.of("employee-129"), index.employeeIdsFor("area-2"));
+        assertEquals(130, index.getStatistics().get("grants"));
+    }
+
+    @Test
+    void readersOnlySeeWholeSnapshotsWhileGrantsAreApplied() throws Exception {
+        int grants = 2000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && failure.get() == null) {
+                // Grants go in order, so every snapshot holds a prefix of them
+                Set<String> employees = index.employeeIdsFor("area-1");
+                List<String> iterated = new ArrayList<>(employees);
+                if (iterated.size() != employees.size()) {
+                    failure.set("Iterated " + iterated.size() + " employees, size says " + employees.size());
+                }
+                for (int i = 0; i < employees.size(); i++) {
+                    if (!employees.contains("employee-" + i)) {
+                        failure.set("Snapshot of " + employees.size() + " grants misses employee-" + i);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < grants; i++) {
+            index.grant("area-1", "employee-" + i);
+        }
+        done.set(true);
+        reader.join(10_000);
+
+        assertNull(failure.get());
+        assertEquals(grants, index.employeeIdsFor("area-1").size());
+    }
+
+    @Test
+    void grantDuringReconcileIsNotOverwrittenByTheLoad() throws Exception {
+        index.grant("area-1", "employee-1");
+        // The load reads the database before the grant of employee-2 was committed
+        ReconcileInProgress reconcile = reconcileLoading(List.of(pair("area-1", "employee-1")));
+
+        index.grant("area-1", "employee-2");
+        reconcile.finish();
+
+        assertTrue(index.isAllowed("employee-2", "area-1"));
+        assertEquals(Set.of("employee-1", "employee-2"), index.employeeIdsFor("area-1"));
+
+        // The next run reads both grants and changes nothing
+        when(areaAccessRepository.findAllAccessPairs()).thenReturn(List.of(
+                pair("area-1", "employee-1"), pair("area-1", "employee-2")));
+        index.reconcile();
+        assertEquals(Set.of("employee-1", "employee-2"), index.employeeIdsFor("area-1"));
+    }
+
+    @Test
+    void revokeDuringReconcileIsNotUndoneByTheLoad() throws Exception {
+        index.grant("area-1", "employee-1");
+        index.grant("area-1", "employee-2");
+        // The load still sees the grant of employee-2 that is being revoked
+        ReconcileInProgress reconcile = reconcileLoading(List.of(
+                pair("area-1", "employee-1"), pair("area-1", "employee-2")));
+
+        index.revoke("area-1", "employee-2");
+        reconcile.finish();
+
+        assertFalse(index.isAllowed("employee-2", "area-1"));
+        assertEquals(Set.of("employee-1"), index.employeeIdsFor("area-1"));
+    }
+
+    @Test
+    void reconcileReplacesGrantsChangedOutsideTheIndex() {
+        index.grant("area-1", "employee-1");
+        index.grant("area-1", "employee-2");
+        long before = index.version();
+        when(areaAccessRepository.findAllAccessPairs()).thenReturn(List.of(
+                pair("area-1", "employee-2"), pair("area-2", "employee-3")));
+
+        index.reconcile();
+
+        assertFalse(index.isAllowed("employee-1", "area-1"));
+        assertTrue(index.isAllowed("employee-3", "area-2"));
+        assertTrue(index.version() > before);
+    }
+
+    // Starts a reconcile whose database load blocks until finish() is called
+    private ReconcileInProgress reconcileLoading(List<AreaAccessView> pairs) throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(areaAccessRepository.findAllAccessPairs()).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return pairs;
+        });
+        Thread thread = new Thread(index::reconcile);
+        thread.start();
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        return new ReconcileInProgress(thread, release);
+    }
+
+    private static final class ReconcileInProgress {
+        private final Thread thread;
+        private final CountDownLatch release;
+
+        private ReconcileInProgress(Thread thread, CountDownLatch release) {
+            this.thread = thread;
+            this.release = release;
+        }
+
+        void finish() throws InterruptedException {
+            release.countDown();
+            thread.join(10_000);
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    private static AreaAccessView pair(String areaId, String employeeId) {
+        return new AreaAccessView() {
+            @Override
+            public String getAreaId() {
+                return areaId;
+            }
+
+            @Override
+            public String getEmployeeId() {
+                return employeeId;
+            }
+        };
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.access.AccessLog;
+import com.example.fingerprint_backend.model.access.Area;
+import com.example.fingerprint_backend.model.analytics.EmployeeStatistics;
+import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.repository.access.AccessLogRepository;
+import com.example.fingerprint_backend.repository.access.AreaRepository;
+import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Statistics summed from daily rollups plus raw partial days, compared with the
+ * aggregation over {@code access_log} that the endpoint ran before the rollup existed.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:access_rollup;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "fingerprint.gallery.backfill-enabled=false",
+        "fingerprint.access-rollup.backfill-on-startup=false",
+        "fingerprint.blob.migrate-legacy=false",
+        "fingerprint.store.path=target/test-template-store-rollup",
+        "fingerprint.blob.path=target/test-blob-store-rollup"
+})
+class EmployeeAccessRollupServiceTest {
+
+    // The query behind /api/employee/statistics before the rollup, per employee
+    private static final String BASELINE = "SELECT e.id, COUNT(DISTINCT al.id), MIN(al.timestamp), MAX(al.timestamp) "
+            + "FROM Employee e LEFT JOIN e.accessLogs al "
+            + "WHERE (:startDate IS NULL OR al.timestamp >= :startDate) "
+            + "AND (:endDate IS NULL OR al.timestamp <= :endDate) "
+            + "GROUP BY e.id, e.fullName";
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    @Autowired
+    private EmployeeAccessRollupService rollupService;
+
+    @Autowired
+    private AccessLogRepository accessLogRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private AreaRepository areaRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Employee first;
+    private Employee second;
+    private Area area;
+
+    @BeforeEach
+    void setUp() {
+        // The JCache manager is shared by every context in the JVM, start from an empty cache
+        entityManagerFactory.getCache().evictAll();
+        jdbcTemplate.update("DELETE FROM employee_access_rollup");
+        accessLogRepository.deleteAll();
+        first = employeeRepository.save(new Employee("employee-1", "Nguyen Van A", "0900000000", null, "Ha Noi", 5));
+        second = employeeRepository.save(new Employee("employee-2", "Tran Thi B", "0900000001", null, "Hue", 5));
+        employeeRepository.save(new Employee("employee-3", "Le Van C", "0900000002", null, "Da Nang", 5));
+        area = areaRepository.save(Area.builder().id("area-1").name("Lobby").securityLevel(1).build());
+
+        // Accesses on every side of the day boundaries, over four days
+        for (int day = 0; day < 4; day++) {
+            for (LocalTime time : List.of(LocalTime.MIDNIGHT, LocalTime.of(0, 0, 1), LocalTime.of(8, 0),
+                    LocalTime.of(10, 30), LocalTime.of(14, 15), LocalTime.of(23, 59, 59))) {
+                LocalDateTime timestamp = DAY.plusDays(day).atTime(time);
+                access(first, timestamp, time.getHour() != 8);
+                if (time.getHour() >= 10) {
+                    access(second, timestamp.plusSeconds(1), true);
+                }
+            }
+        }
+    }
+
+    @Test
+    void midDayBounds() {
+        assertMatchesBaseline(DAY.atTime(10, 30), DAY.plusDays(2).atTime(14, 15));
+        assertMatchesBaseline(DAY.atTime(10, 30, 1), DAY.plusDays(2).atTime(14, 14, 59));
+        assertMatchesBaseline(DAY.atTime(23, 59, 59), DAY.plusDays(3).atTime(0, 0, 1));
+    }
+
+    @Test
+    void midnightBounds() {
+        assertMatchesBaseline(DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay());
+        assertMatchesBaseline(DAY.plusDays(1).atStartOfDay(), DAY.plusDays(3).atTime(23, 59, 59));
+        assertMatchesBaseline(DAY.atStartOfDay(), null);
+        assertMatchesBaseline(null, DAY.plusDays(2).atStartOfDay());
+    }
+
+    @Test
+    void singleDayRange() {
+        assertMatchesBaseline(DAY.plusDays(1).atTime(8, 0), DAY.plusDays(1).atTime(14, 15));
+        assertMatchesBaseline(DAY.plusDays(1).atStartOfDay(), DAY.plusDays(1).atTime(23, 59, 59));
+        assertMatchesBaseline(DAY.plusDays(1).atStartOfDay(), DAY.plusDays(2).atStartOfDay());
+        assertMatchesBaseline(DAY.plusDays(1).atTime(10, 30), DAY.plusDays(1).atTime(10, 30));
+        // No accesses at all in the range
+        assertMatchesBaseline(DAY.plusDays(1).atTime(9, 0), DAY.plusDays(1).atTime(9, 30));
+    }
+
+    private void access(Employee employee, LocalDateTime timestamp, boolean authorized) {
+        AccessLog saved = accessLogRepository.save(AccessLog.builder()
+                .employee(employee).area(area).timestamp(timestamp).authorized(authorized).accessType("FINGERPRINT")
+                .build());
+        rollupService.record(employee.getId(), area.getId(), saved.isAuthorized(), saved.getTimestamp());
+    }
+
+    private void assertMatchesBaseline(LocalDateTime startDate, LocalDateTime endDate) {
+        Map<String, Object[]> expected = new HashMap<>();
+        for (Object[] row : entityManager.createQuery(BASELINE, Object[].class)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getResultList()) {
+            expected.put((String) row[0], row);
+        }
+        Map<String, Long> authorized = new HashMap<>();
+        jdbcTemplate.query("SELECT employee_id, COUNT(*) FROM access_log WHERE authorized "
+                        + "AND `timestamp` >= ? AND `timestamp` <= ? GROUP BY employee_id",
+                rs -> {
+                    authorized.put(rs.getString(1), rs.getLong(2));
+                },
+                startDate == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : startDate,
+                endDate == null ? LocalDateTime.of(9999, 1, 1, 0, 0) : endDate);
+
+        List<EmployeeStatistics> statistics = rollupService.getStatistics(startDate, endDate);
+        String range = startDate + " .. " + endDate;
+        assertEquals(expected.keySet(), statistics.stream().map(EmployeeStatistics::getEmployeeId)
+                .collect(Collectors.toSet()), range);
+        for (EmployeeStatistics actual : statistics) {
+            Object[] row = expected.get(actual.getEmployeeId());
+            assertEquals(((Number) row[1]).longValue(), actual.getTotalAccesses(), range);
+            assertEquals(row[2], actual.getFirstAccessTime(), range);
+            assertEquals(row[3], actual.getLastAccessTime(), range);
+            long authorizedAccesses = authorized.getOrDefault(actual.getEmployeeId(), 0L);
+            assertEquals(authorizedAccesses, actual.getAuthorizedAccesses(), range);
+            assertEquals(actual.getTotalAccesses() - authorizedAccesses, actual.getDeniedAccesses(), range);
+        }
+    }
+}
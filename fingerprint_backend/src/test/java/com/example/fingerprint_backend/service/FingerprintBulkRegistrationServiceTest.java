@@ -0,0 +1,137 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintRecognitionModel;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSegmentationModel;
+import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintRecognitionModelRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSegmentationModelRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bulk registration with asynchronous enrolment off: chunks are embedded in parallel,
+ * and a sample whose embedding failed is deleted instead of taking up the employee's
+ * sample limit.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulk_registration;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "fingerprint.gallery.backfill-enabled=false",
+        "fingerprint.enrollment.async=false",
+        "fingerprint.enrollment.bulk.chunk-size=1",
+        "fingerprint.enrollment.bulk.parallel-chunks=2",
+        "fingerprint.blob.migrate-legacy=false",
+        "fingerprint.store.path=target/test-template-store-bulk",
+        "fingerprint.blob.path=target/test-blob-store-bulk"
+})
+class FingerprintBulkRegistrationServiceTest {
+
+    @MockitoBean
+    private InferenceClient inferenceClient;
+
+    @Autowired
+    private FingerprintBulkRegistrationService bulkRegistrationService;
+
+    @Autowired
+    private FingerprintSegmentationModelRepository segmentationModelRepository;
+
+    @Autowired
+    private FingerprintRecognitionModelRepository recognitionModelRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private FingerprintSampleRepository fingerprintSampleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private String segmentationModelId;
+    private String recognitionModelId;
+
+    @BeforeEach
+    void setUp() {
+        // The JCache manager is shared by every context in the JVM, start from an empty cache
+        entityManagerFactory.getCache().evictAll();
+        segmentationModelId = segmentationModelRepository.save(FingerprintSegmentationModel.builder()
+                .name("segmentation").pathName("segmentation.pth").build()).getId();
+        recognitionModelId = recognitionModelRepository.save(FingerprintRecognitionModel.builder()
+                .name("recognition").pathName("recognition.pth").build()).getId();
+        employeeRepository.save(new Employee("employee-1", "Nguyen Van A", "0900000000", null, "Ha Noi", 3));
+    }
+
+    @Test
+    void chunksRunInParallelAndFailedSamplesAreDeleted() throws Exception {
+        // Each chunk waits until the other one is in flight too
+        CountDownLatch inFlight = new CountDownLatch(2);
+        when(inferenceClient.postMultipart(any(), eq("/api/register/batch"), any())).thenAnswer(invocation -> {
+            inFlight.countDown();
+            boolean overlapped = inFlight.await(5, TimeUnit.SECONDS);
+            MultiValueMap<String, Object> body = invocation.getArgument(2);
+            String item = "LEFT_INDEX".equals(body.getFirst("position"))
+                    ? "{\"error\": \"No fingerprint found\"}"
+                    : "{\"embedding\": [1.0, 0.0, 0.0, 0.0]}";
+            return ResponseEntity.ok(overlapped
+                    ? "{\"results\": [" + item + "]}"
+                    : "{\"error\": \"chunks were embedded one after another\"}");
+        });
+
+        List<Map<String, Object>> results = bulkRegistrationService.registerFingerprints(
+                List.of(image("thumb.png"), image("index.png")), List.of("employee-1"),
+                List.of("LEFT_THUMB", "LEFT_INDEX"), segmentationModelId, recognitionModelId);
+
+        assertEquals(FingerprintBulkRegistrationService.REGISTERED, results.get(0).get("status"), results.toString());
+        assertEquals(FingerprintBulkRegistrationService.FAILED, results.get(1).get("status"), results.toString());
+        assertEquals("No fingerprint found", results.get(1).get("error"));
+        assertFalse(results.get(1).containsKey("fingerprintId"));
+        String registeredId = (String) results.get(0).get("fingerprintId");
+        assertEquals(List.of(registeredId), fingerprintSampleRepository.findByEmployeeId("employee-1").stream()
+                .map(sample -> sample.getId()).toList());
+
+        // The failed sample no longer counts against the limit of 3
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            files.add(image("retry-" + i + ".png"));
+        }
+        List<Map<String, Object>> retry = bulkRegistrationService.registerFingerprints(files,
+                List.of("employee-1"), List.of("RIGHT_THUMB", "RIGHT_INDEX", "RIGHT_MIDDLE"),
+                segmentationModelId, recognitionModelId);
+        assertTrue(retry.subList(0, 2).stream()
+                .allMatch(result -> !FingerprintBulkRegistrationService.REJECTED.equals(result.get("status"))),
+                retry.toString());
+        assertEquals(FingerprintBulkRegistrationService.REJECTED, retry.get(2).get("status"));
+    }
+
+    private static MockMultipartFile image(String name) {
+        return new MockMultipartFile("files", name, "image/png", name.getBytes());
+    }
+}
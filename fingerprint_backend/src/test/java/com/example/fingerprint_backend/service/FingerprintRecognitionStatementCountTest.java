@@ -0,0 +1,137 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.model.access.Area;
+import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintRecognitionModel;
+import com.example.fingerprint_backend.model.biometrics.fingerprint.FingerprintSegmentationModel;
+import com.example.fingerprint_backend.repository.access.AreaRepository;
+import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintRecognitionModelRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSegmentationModelRepository;
+import com.example.fingerprint_backend.service.gallery.EmbeddingGallery;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Holds the database work of one matched recognition to the access log and
+ * recognition inserts plus the employee access rollup upsert, with models, area
+ * and employee served from the second-level cache.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement_count;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "fingerprint.gallery.backfill-enabled=false",
+        "fingerprint.result-cache.enabled=false",
+        "fingerprint.enrollment.async=false",
+        "fingerprint.blob.migrate-legacy=false",
+        "fingerprint.store.path=target/test-template-store",
+        "fingerprint.blob.path=target/test-blob-store"
+})
+class FingerprintRecognitionStatementCountTest {
+
+    private static final int MAX_STATEMENTS_PER_RECOGNITION = 3;
+
+    @MockitoBean
+    private InferenceClient inferenceClient;
+
+    @Autowired
+    private FingerprintRecognitionService recognitionService;
+
+    @Autowired
+    private FingerprintSegmentationModelRepository segmentationModelRepository;
+
+    @Autowired
+    private FingerprintRecognitionModelRepository recognitionModelRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private AreaRepository areaRepository;
+
+    @Autowired
+    private AreaAccessIndex areaAccessIndex;
+
+    @Autowired
+    private EmbeddingGallery embeddingGallery;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String segmentationModelId;
+    private String recognitionModelId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // The JCache manager is shared by every context in the JVM, start from an empty cache
+        entityManagerFactory.getCache().evictAll();
+        segmentationModelId = segmentationModelRepository.save(FingerprintSegmentationModel.builder()
+                .name("segmentation").pathName("segmentation.pth").build()).getId();
+        recognitionModelId = recognitionModelRepository.save(FingerprintRecognitionModel.builder()
+                .name("recognition").pathName("recognition.pth").build()).getId();
+        employeeRepository.save(new Employee("employee-1", "Nguyen Van A", "0900000000", null, "Ha Noi", 5));
+        areaRepository.save(Area.builder().id("area-1").name("Lobby").securityLevel(1).build());
+        areaAccessIndex.grant("area-1", "employee-1");
+
+        // Unit vectors so the match confidence is exactly 1.0
+        embeddingGallery.put("fingerprint-1", "employee-1", new float[]{1f, 0f, 0f, 0f});
+        when(inferenceClient.postMultipart(any(), eq("/api/embed"), any(), any()))
+                .thenReturn(ResponseEntity.ok("{\"embedding\": [1.0, 0.0, 0.0, 0.0]}"));
+    }
+
+    @Test
+    void matchedRecognitionStaysWithinStatementBudget() throws Exception {
+        // First pass fills the second-level cache
+        recognize();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Map<String, Object> response = recognize();
+
+        assertEquals(true, response.get("matched"));
+        assertEquals(true, response.get("accessable"));
+        assertNotNull(response.get("employee"));
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS_PER_RECOGNITION,
+                "Recognition ran " + statistics.getPrepareStatementCount() + " statements");
+        assertEquals(2, statistics.getEntityInsertCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+        assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT access_count FROM employee_access_rollup WHERE employee_id = 'employee-1'", Long.class));
+    }
+
+    private Map<String, Object> recognize() throws Exception {
+        // As FingerprintRecognitionController does: resolve the area, then process
+        Area area = areaRepository.findById("area-1").orElseThrow();
+        MockMultipartFile file = new MockMultipartFile("file", "probe.bmp", "image/bmp", new byte[]{'B', 'M', 1, 2});
+        return recognitionService.processRecognition(file, segmentationModelId, recognitionModelId, area, "ENTRY");
+    }
+}
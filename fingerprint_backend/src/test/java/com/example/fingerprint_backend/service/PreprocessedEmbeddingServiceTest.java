@@ -0,0 +1,68 @@
+package com.example.fingerprint_backend.service;
+
+import com.example.fingerprint_backend.service.onnx.OnnxEmbeddingEngine;
+import com.example.fingerprint_backend.service.preprocess.FingerprintPreprocessor;
+import com.example.fingerprint_backend.service.preprocess.ModelInputShape;
+import com.example.fingerprint_backend.service.preprocess.ModelInputShapes;
+import com.example.fingerprint_backend.service.preprocess.PreprocessedFingerprint;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * An image that cannot be preprocessed fails on its own in a batched embedding; the
+ * other images of the chunk are still posted and embedded.
+ */
+class PreprocessedEmbeddingServiceTest {
+
+    private static final ModelInputShape SHAPE = new ModelInputShape(2, 2, 2, 2);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void undecodableImageFailsAlone() throws Exception {
+        FingerprintPreprocessor preprocessor = mock(FingerprintPreprocessor.class);
+        ModelInputShapes shapes = mock(ModelInputShapes.class);
+        InferenceClient inferenceClient = mock(InferenceClient.class);
+        PreprocessedEmbeddingService service = new PreprocessedEmbeddingService(
+                preprocessor, shapes, mock(OnnxEmbeddingEngine.class), inferenceClient);
+
+        byte[] good = {1};
+        byte[] bad = {2};
+        when(shapes.resolve("seg", "rec")).thenReturn(SHAPE);
+        when(preprocessor.preprocess(good, SHAPE)).thenReturn(new PreprocessedFingerprint(SHAPE, new byte[4], new byte[4]));
+        when(preprocessor.preprocess(bad, SHAPE)).thenThrow(new IOException("Unsupported fingerprint image format"));
+        when(inferenceClient.postMultipart(eq(InferenceClient.Stage.REGISTRATION), eq("/api/embed/tensor"), any(),
+                isNull())).thenReturn(ResponseEntity.ok("{\"embeddings\": [[0.6, 0.8]], \"errors\": [null]}"));
+
+        Map<String, byte[]> images = new LinkedHashMap<>();
+        images.put("bad", bad);
+        images.put("good", good);
+        Map<String, float[]> embeddings = new HashMap<>();
+        Map<String, String> errors = new HashMap<>();
+        service.embedAll(images, "seg", "rec", InferenceClient.Stage.REGISTRATION, embeddings, errors);
+
+        assertArrayEquals(new float[]{0.6f, 0.8f}, embeddings.get("good"));
+        assertEquals("Unsupported fingerprint image format", errors.get("bad"));
+        assertTrue(!embeddings.containsKey("bad") && !errors.containsKey("good"));
+
+        ArgumentCaptor<MultiValueMap<String, Object>> body = ArgumentCaptor.forClass(MultiValueMap.class);
+        verify(inferenceClient).postMultipart(any(), any(), body.capture(), any());
+        assertEquals(1, body.getValue().get("recognition_inputs").size());
+    }
+}
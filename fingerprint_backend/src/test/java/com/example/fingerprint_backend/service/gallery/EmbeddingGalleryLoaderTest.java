@@ -0,0 +1,179 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import com.example.fingerprint_backend.model.biometrics.fingerprint.EnrollmentJob;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.EnrollmentJobRepository;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintEmbeddingView;
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import com.example.fingerprint_backend.service.EnrollmentQueue;
+import com.example.fingerprint_backend.service.InferenceClient;
+import com.example.fingerprint_backend.service.PreprocessedEmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reseeding the template store from the database on startup after a failed store write,
+ * and re-embedding when the preprocessing pipeline changes.
+ */
+class EmbeddingGalleryLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    private TemplateStore templateStore;
+    private FingerprintSampleRepository fingerprintSampleRepository;
+    private EmbeddingGallery embeddingGallery;
+    private PreprocessedEmbeddingService preprocessedEmbeddingService;
+    private EnrollmentJobRepository enrollmentJobRepository;
+    private EnrollmentQueue enrollmentQueue;
+    private EmbeddingGalleryLoader loader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        templateStore = open();
+        fingerprintSampleRepository = mock(FingerprintSampleRepository.class);
+        embeddingGallery = mock(EmbeddingGallery.class);
+        preprocessedEmbeddingService = mock(PreprocessedEmbeddingService.class);
+        enrollmentJobRepository = mock(EnrollmentJobRepository.class);
+        enrollmentQueue = mock(EnrollmentQueue.class);
+        loader = new EmbeddingGalleryLoader(fingerprintSampleRepository, embeddingGallery, templateStore,
+                mock(InferenceClient.class), preprocessedEmbeddingService, enrollmentJobRepository, enrollmentQueue);
+        ReflectionTestUtils.setField(loader, "storePath", directory.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        templateStore.close();
+    }
+
+    @Test
+    void failedStoreWriteForcesReseedEvenWhenTheCountMatches() throws IOException {
+        templateStore.append("fp-1", "emp-1", embedding(1));
+        // The re-embedded template reached the database and the gallery but not the store
+        TemplateStore failing = spy(templateStore);
+        doThrow(new IOException("No space left on device")).when(failing).append(anyString(), anyString(), any());
+        when(fingerprintSampleRepository.existsByIdAndActiveTrue("fp-1")).thenReturn(true);
+        new TemplateLifecycleService(failing, mock(EmbeddingGallery.class), fingerprintSampleRepository)
+                .activate("fp-1", "emp-1", embedding(2));
+        templateStore.close();
+        templateStore = open();
+        ReflectionTestUtils.setField(loader, "templateStore", templateStore);
+        assertTrue(templateStore.isReseedRequired());
+
+        when(fingerprintSampleRepository.countActiveEmbeddings()).thenReturn(1L);
+        when(fingerprintSampleRepository.findActiveEmbeddings()).thenReturn(List.of(row("fp-1", "emp-1", embedding(2))));
+        loader.reload();
+
+        assertFalse(templateStore.isReseedRequired());
+        Map<String, float[]> live = live(templateStore);
+        assertEquals(1, live.size());
+        assertArrayEquals(embedding(2), live.get("fp-1"));
+        verify(embeddingGallery).put("fp-1", "emp-1", live.get("fp-1"));
+    }
+
+    @Test
+    void matchingStoreIsNotReseeded() throws IOException {
+        templateStore.append("fp-1", "emp-1", embedding(1));
+        when(fingerprintSampleRepository.countActiveEmbeddings()).thenReturn(1L);
+
+        loader.reload();
+
+        verify(fingerprintSampleRepository, never()).findActiveEmbeddings();
+        assertArrayEquals(embedding(1), live(templateStore).get("fp-1"));
+    }
+
+    @Test
+    void pipelineSwitchSkipsSamplesAlreadyQueued() throws IOException {
+        when(preprocessedEmbeddingService.pipeline()).thenReturn(PreprocessedEmbeddingService.BACKEND_PIPELINE);
+        when(enrollmentQueue.isAsync()).thenReturn(true);
+        when(fingerprintSampleRepository.findIdsWithEmbedding()).thenReturn(List.of(
+                new Object[]{"fp-1", "emp-1"}, new Object[]{"fp-2", "emp-1"}));
+        // Queued by a start that stopped before recording the new pipeline
+        when(enrollmentJobRepository.findFingerprintIdsByStatusIn(any())).thenReturn(List.of("fp-1"));
+
+        loader.onApplicationReady();
+
+        ArgumentCaptor<List<EnrollmentJob>> jobs = ArgumentCaptor.forClass(List.class);
+        verify(enrollmentJobRepository).saveAll(jobs.capture());
+        assertEquals(List.of("fp-2"), jobs.getValue().stream().map(EnrollmentJob::getFingerprintId).toList());
+        assertEquals(PreprocessedEmbeddingService.BACKEND_PIPELINE, Files.readString(marker()));
+    }
+
+    @Test
+    void pipelineSwitchWithoutAsyncEnrolmentAbortsStartup() {
+        when(preprocessedEmbeddingService.pipeline()).thenReturn(PreprocessedEmbeddingService.BACKEND_PIPELINE);
+        when(enrollmentQueue.isAsync()).thenReturn(false);
+        when(fingerprintSampleRepository.findIdsWithEmbedding()).thenReturn(List.<Object[]>of(new Object[]{"fp-1", "emp-1"}));
+
+        assertThrows(IllegalStateException.class, loader::onApplicationReady);
+
+        verify(enrollmentJobRepository, never()).saveAll(any());
+        assertFalse(Files.exists(marker()));
+    }
+
+    private Path marker() {
+        return directory.resolve("preprocess-pipeline");
+    }
+
+    private TemplateStore open() throws IOException {
+        TemplateStore opened = new TemplateStore();
+        ReflectionTestUtils.setField(opened, "storePath", directory.toString());
+        ReflectionTestUtils.setField(opened, "recordsPerSegment", 8);
+        opened.open();
+        return opened;
+    }
+
+    private static Map<String, float[]> live(TemplateStore store) {
+        Map<String, float[]> live = new LinkedHashMap<>();
+        store.forEachLive((fingerprintId, employeeId, embedding) -> live.put(fingerprintId, embedding));
+        return live;
+    }
+
+    private static FingerprintEmbeddingView row(String id, String employeeId, float[] embedding) {
+        byte[] bytes = EmbeddingCodec.toBytes(embedding);
+        return new FingerprintEmbeddingView() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getEmployeeId() {
+                return employeeId;
+            }
+
+            @Override
+            public byte[] getEmbedding() {
+                return bytes;
+            }
+        };
+    }
+
+    private static float[] embedding(int seed) {
+        return new float[]{seed, seed + 0.5f, -seed, 1f};
+    }
+}
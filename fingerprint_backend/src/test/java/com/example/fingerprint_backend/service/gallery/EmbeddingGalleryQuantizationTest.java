@@ -0,0 +1,277 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recall of the int8 and PQ galleries at the configured rescore depth against a brute
+ * force scan, with only the codes kept in memory and rescoring read from the template
+ * store. With the HNSW index on, the graph is built over the same codes.
+ */
+class EmbeddingGalleryQuantizationTest {
+
+    private static final int DIMENSION = 64;
+    private static final int TEMPLATES = 4000;
+    private static final int CLUSTERS = 100;
+    private static final int PROBES = 200;
+    private static final int K = 10;
+    private static final int RESCORE_CANDIDATES = 32;
+
+    @TempDir
+    Path directory;
+
+    private TemplateStore templateStore;
+    private final List<String> ids = new ArrayList<>();
+    private final List<float[]> templates = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom(11);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        templateStore = new TemplateStore();
+        ReflectionTestUtils.setField(templateStore, "storePath", directory.toString());
+        ReflectionTestUtils.setField(templateStore, "recordsPerSegment", 1024);
+        templateStore.open();
+
+        // Several impressions per finger: templates cluster around a per-finger centre
+        float[][] centres = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centres[c] = gaussian(1.0f);
+        }
+        for (int i = 0; i < TEMPLATES; i++) {
+            float[] template = add(centres[i % CLUSTERS], gaussian(0.5f));
+            ids.add("fp-" + i);
+            templates.add(template);
+            templateStore.append("fp-" + i, "emp-" + (i % CLUSTERS), template);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        templateStore.close();
+    }
+
+    @Test
+    void int8RecallAtRescoreDepth() {
+        EmbeddingGallery gallery = quantizedGallery("int8");
+
+        double recall = recall(gallery);
+        assertTrue(recall >= 0.97, "int8 recall@10 " + recall);
+        QuantizationReport report = gallery.getQuantizationReport();
+        assertEquals(DIMENSION, report.getBytesPerTemplate());
+        assertTrue(report.getRecallAt10() >= 0.97, "reported recall@10 " + report.getRecallAt10());
+    }
+
+    @Test
+    void pqRecallAtRescoreDepth() {
+        EmbeddingGallery gallery = quantizedGallery("pq");
+
+        double recall = recall(gallery);
+        assertTrue(recall >= 0.95, "pq recall@10 " + recall);
+        QuantizationReport report = gallery.getQuantizationReport();
+        assertEquals(16, report.getBytesPerTemplate());
+        assertTrue(report.getRecallAt10() >= 0.9, "reported recall@10 " + report.getRecallAt10());
+    }
+
+    @Test
+    void quantizedGalleryKeepsOnlyCodesAndRescoresFromStore() {
+        EmbeddingGallery gallery = quantizedGallery("int8");
+
+        assertNull(ReflectionTestUtils.getField(gallery, "matrix"));
+        float[] probe = add(templates.get(7), gaussian(0.05f));
+        GalleryMatch best = gallery.search(probe, 1).get(0);
+        assertEquals(cosine(probe, templates.get(Integer.parseInt(best.getFingerprintId().substring(3)))),
+                best.getConfidence(), 1e-5);
+    }
+
+    @Test
+    void templatesChangedAfterTrainingAreScoredExactly() throws Exception {
+        EmbeddingGallery gallery = quantizedGallery("int8");
+
+        float[] added = gaussian(1.0f);
+        templateStore.append("fp-new", "emp-new", added);
+        gallery.put("fp-new", "emp-new", added);
+        GalleryMatch match = gallery.search(added, 1).get(0);
+        assertEquals("fp-new", match.getFingerprintId());
+        assertEquals(1.0f, match.getConfidence(), 1e-5);
+
+        templateStore.tombstone("fp-7");
+        gallery.remove("fp-7");
+        for (GalleryMatch other : gallery.search(templates.get(7), K)) {
+            assertFalse(other.getFingerprintId().equals("fp-7"));
+        }
+        assertNotNull(gallery.verifyEmployee(templates.get(8), "emp-8"));
+    }
+
+    @Test
+    void templateMissingFromStoreIsLeftOutOfResults() throws Exception {
+        EmbeddingGallery gallery = quantizedGallery("int8");
+
+        // Gone from the store but still in the gallery, as after a failed store write
+        templateStore.tombstone("fp-7");
+        for (GalleryMatch match : gallery.search(templates.get(7), K)) {
+            assertFalse(match.getFingerprintId().equals("fp-7"));
+        }
+        assertNull(gallery.verifyTemplate(templates.get(7), "fp-7"));
+        assertTrue(gallery.unscoredTemplates() > 0);
+        assertTrue(templateStore.isReseedRequired());
+    }
+
+    @Test
+    void reloadOrderTrainsBeforeLoading() {
+        EmbeddingGallery gallery = gallery("int8");
+        gallery.trainQuantizer();
+        templateStore.forEachLive(gallery::put);
+
+        assertNull(ReflectionTestUtils.getField(gallery, "matrix"));
+        assertEquals(TEMPLATES, gallery.size());
+        assertTrue(recall(gallery) >= 0.97);
+    }
+
+    @Test
+    void graphOverCodesWhenLoadedAfterTraining() {
+        for (String mode : List.of("int8", "pq")) {
+            EmbeddingGallery gallery = indexedGallery(mode);
+            gallery.trainQuantizer();
+            templateStore.forEachLive(gallery::put);
+
+            assertGraphHoldsOnlyCodes(gallery);
+            double recall = recall(gallery);
+            assertTrue(recall >= 0.95, mode + " graph recall@10 " + recall);
+        }
+    }
+
+    @Test
+    void trainingRebuildsTheGraphOverCodes() throws Exception {
+        for (String mode : List.of("int8", "pq")) {
+            EmbeddingGallery gallery = indexedGallery(mode);
+            for (int i = 0; i < TEMPLATES; i++) {
+                gallery.put(ids.get(i), "emp-" + (i % CLUSTERS), templates.get(i));
+            }
+            assertNotNull(gallery.trainQuantizer());
+
+            assertGraphHoldsOnlyCodes(gallery);
+            HnswIndex index = (HnswIndex) ReflectionTestUtils.getField(gallery, "index");
+            assertEquals(TEMPLATES, index.liveSize());
+            double recall = recall(gallery);
+            assertTrue(recall >= 0.95, mode + " graph recall@10 " + recall);
+
+            // Later puts and removes go through the codes as well
+            float[] added = gaussian(1.0f);
+            templateStore.append("fp-new-" + mode, "emp-new", added);
+            gallery.put("fp-new-" + mode, "emp-new", added);
+            assertEquals("fp-new-" + mode, gallery.search(added, 1).get(0).getFingerprintId());
+            gallery.remove("fp-new-" + mode);
+            assertEquals(TEMPLATES, index.liveSize());
+        }
+    }
+
+    private EmbeddingGallery indexedGallery(String mode) {
+        EmbeddingGallery gallery = gallery(mode);
+        ReflectionTestUtils.setField(gallery, "hnswEnabled", true);
+        ReflectionTestUtils.setField(gallery, "hnswMinSize", 0);
+        return gallery;
+    }
+
+    private static void assertGraphHoldsOnlyCodes(EmbeddingGallery gallery) {
+        HnswIndex index = (HnswIndex) ReflectionTestUtils.getField(gallery, "index");
+        assertNull(ReflectionTestUtils.getField(gallery, "matrix"));
+        assertNull(ReflectionTestUtils.getField(index, "vectors"));
+        assertNotNull(ReflectionTestUtils.getField(index, "codes"));
+    }
+
+    private EmbeddingGallery quantizedGallery(String mode) {
+        EmbeddingGallery gallery = gallery(mode);
+        for (int i = 0; i < TEMPLATES; i++) {
+            gallery.put(ids.get(i), "emp-" + (i % CLUSTERS), templates.get(i));
+        }
+        assertNotNull(gallery.trainQuantizer());
+        return gallery;
+    }
+
+    private EmbeddingGallery gallery(String mode) {
+        EmbeddingGallery gallery = new EmbeddingGallery(templateStore);
+        ReflectionTestUtils.setField(gallery, "quantization", mode);
+        ReflectionTestUtils.setField(gallery, "pqSubspaces", 16);
+        ReflectionTestUtils.setField(gallery, "rescoreCandidates", RESCORE_CANDIDATES);
+        return gallery;
+    }
+
+    private double recall(EmbeddingGallery gallery) {
+        SplittableRandom probes = new SplittableRandom(3);
+        long hits = 0;
+        for (int p = 0; p < PROBES; p++) {
+            float[] probe = add(templates.get(probes.nextInt(TEMPLATES)), gaussian(0.1f));
+            Set<String> expected = bruteForce(probe);
+            for (GalleryMatch match : gallery.search(probe, K)) {
+                if (expected.contains(match.getFingerprintId())) {
+                    hits++;
+                }
+            }
+        }
+        return (double) hits / (PROBES * K);
+    }
+
+    private Set<String> bruteForce(float[] probe) {
+        float[] scores = new float[TEMPLATES];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < TEMPLATES; i++) {
+            scores[i] = cosine(probe, templates.get(i));
+            order.add(i);
+        }
+        order.sort((a, b) -> Float.compare(scores[b], scores[a]));
+        Set<String> top = new HashSet<>();
+        for (int i = 0; i < K; i++) {
+            top.add(ids.get(order.get(i)));
+        }
+        return top;
+    }
+
+    private float[] gaussian(float scale) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) (nextGaussian() * scale);
+        }
+        return vector;
+    }
+
+    private double nextGaussian() {
+        // Box-Muller, SplittableRandom has no nextGaussian on Java 17
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static float[] add(float[] a, float[] b) {
+        float[] sum = new float[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    private static float cosine(float[] a, float[] b) {
+        double dot = 0;
+        double na = 0;
+        double nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return (float) (dot / Math.sqrt(na * nb));
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recall of the HNSW graph against brute force, and tombstone handling: removed nodes
+ * keep routing but are never returned, re-adding revives them in place, and the
+ * gallery rebuilds the graph without blocking searches.
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int NODES = 3000;
+    private static final int PROBES = 200;
+    private static final int K = 10;
+    private static final int EF_SEARCH = 64;
+
+    private final SplittableRandom random = new SplittableRandom(5);
+    private final List<float[]> vectors = new ArrayList<>();
+
+    @Test
+    void recallAgainstBruteForce() {
+        HnswIndex index = build();
+
+        assertTrue(recall(index, Set.of()) >= 0.95, "recall@10 " + recall(index, Set.of()));
+    }
+
+    @Test
+    void tombstonedNodesAreNeverReturned() {
+        HnswIndex index = build();
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < NODES; i += 3) {
+            assertTrue(index.remove("fp-" + i));
+            removed.add("fp-" + i);
+        }
+        assertFalse(index.remove("fp-0"));
+        assertEquals(NODES - removed.size(), index.liveSize());
+        assertEquals((double) removed.size() / NODES, index.deletedRatio(), 1e-9);
+
+        for (int p = 0; p < PROBES; p++) {
+            for (String candidate : index.search(vectors.get(p), EF_SEARCH, null)) {
+                assertFalse(removed.contains(candidate), candidate + " was removed");
+            }
+        }
+        // Deleted nodes still route: recall over the live nodes holds up
+        assertTrue(recall(index, removed) >= 0.95, "recall@10 " + recall(index, removed));
+    }
+
+    @Test
+    void reAddingTheSameEmbeddingRevivesTheNode() {
+        HnswIndex index = build();
+        index.remove("fp-42");
+        assertFalse(index.search(vectors.get(42), K, null).contains("fp-42"));
+
+        index.add("fp-42", "emp-42", vectors.get(42));
+
+        assertEquals(0.0, index.deletedRatio());
+        assertEquals(NODES, index.liveSize());
+        assertEquals("fp-42", index.search(vectors.get(42), K, null).get(0));
+    }
+
+    @Test
+    void reAddingADifferentEmbeddingReplacesTheNode() {
+        HnswIndex index = build();
+        float[] moved = gaussian();
+
+        index.add("fp-42", "emp-42", moved);
+
+        assertEquals(NODES, index.liveSize());
+        assertEquals("fp-42", index.search(moved, K, null).get(0));
+        assertFalse(index.search(vectors.get(42), 1, null).contains("fp-42"));
+    }
+
+    @Test
+    void employeeFilterRestrictsCandidates() {
+        HnswIndex index = build();
+        Set<String> allowed = Set.of("emp-1", "emp-2");
+
+        List<String> candidates = index.search(vectors.get(5), EF_SEARCH, allowed::contains);
+
+        assertFalse(candidates.isEmpty());
+        for (String candidate : candidates) {
+            int node = Integer.parseInt(candidate.substring(3));
+            assertTrue(allowed.contains("emp-" + (node % 10)), candidate);
+        }
+    }
+
+    @Test
+    void galleryRebuildsIndexPastDeletedRatio() {
+        EmbeddingGallery gallery = new EmbeddingGallery(new TemplateStore());
+        ReflectionTestUtils.setField(gallery, "hnswEnabled", true);
+        ReflectionTestUtils.setField(gallery, "hnswMinSize", 0);
+        ReflectionTestUtils.setField(gallery, "hnswMaxDeletedRatio", 0.3);
+        for (int i = 0; i < 500; i++) {
+            vectors.add(gaussian());
+            gallery.put("fp-" + i, "emp-" + (i % 10), vectors.get(i));
+        }
+        for (int i = 0; i < 200; i++) {
+            gallery.remove("fp-" + i);
+        }
+
+        HnswIndex index = (HnswIndex) ReflectionTestUtils.getField(gallery, "index");
+        assertTrue(index.deletedRatio() <= 0.3, "deleted ratio " + index.deletedRatio());
+        assertEquals(300, index.liveSize());
+        assertEquals("fp-250", gallery.search(vectors.get(250), 1).get(0).getFingerprintId());
+    }
+
+    @Test
+    void searchesRunWhileTheGraphIsRebuilt() throws Exception {
+        Map<String, float[]> stored = new ConcurrentHashMap<>();
+        CountDownLatch rebuildReading = new CountDownLatch(1);
+        CountDownLatch releaseRebuild = new CountDownLatch(1);
+        // The float graph is rebuilt from the template store; hold the rebuild there
+        TemplateStore store = new TemplateStore() {
+            @Override
+            public List<float[]> read(List<String> fingerprintIds) {
+                rebuildReading.countDown();
+                try {
+                    releaseRebuild.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                List<float[]> embeddings = new ArrayList<>();
+                for (String fingerprintId : fingerprintIds) {
+                    embeddings.add(stored.get(fingerprintId));
+                }
+                return embeddings;
+            }
+        };
+        EmbeddingGallery gallery = new EmbeddingGallery(store);
+        ReflectionTestUtils.setField(gallery, "hnswEnabled", true);
+        ReflectionTestUtils.setField(gallery, "hnswMinSize", 0);
+        ReflectionTestUtils.setField(gallery, "hnswMaxDeletedRatio", 0.3);
+        for (int i = 0; i < 500; i++) {
+            vectors.add(gaussian());
+            stored.put("fp-" + i, vectors.get(i));
+            gallery.put("fp-" + i, "emp-" + (i % 10), vectors.get(i));
+        }
+        for (int i = 0; i < 150; i++) {
+            gallery.remove("fp-" + i);
+        }
+
+        ExecutorService remover = Executors.newSingleThreadExecutor();
+        try {
+            // Crosses the deleted ratio and starts the rebuild
+            Future<Boolean> removal = remover.submit(() -> gallery.remove("fp-150"));
+            assertTrue(rebuildReading.await(10, TimeUnit.SECONDS));
+
+            HnswIndex tombstoned = (HnswIndex) ReflectionTestUtils.getField(gallery, "index");
+            assertEquals("fp-250", gallery.search(vectors.get(250), 1).get(0).getFingerprintId());
+            vectors.add(gaussian());
+            gallery.put("fp-new", "emp-0", vectors.get(500));
+            gallery.remove("fp-300");
+            assertSame(tombstoned, ReflectionTestUtils.getField(gallery, "index"));
+
+            releaseRebuild.countDown();
+            assertTrue(removal.get(10, TimeUnit.SECONDS));
+        } finally {
+            releaseRebuild.countDown();
+            remover.shutdownNow();
+        }
+
+        HnswIndex index = (HnswIndex) ReflectionTestUtils.getField(gallery, "index");
+        assertEquals(0.0, index.deletedRatio(), 0.01);
+        assertEquals(349, index.liveSize());
+        assertEquals("fp-new", gallery.search(vectors.get(500), 1).get(0).getFingerprintId());
+        assertFalse(gallery.search(vectors.get(300), 5).stream()
+                .anyMatch(match -> match.getFingerprintId().equals("fp-300")));
+    }
+
+    private HnswIndex build() {
+        HnswIndex index = new HnswIndex(16, 200);
+        for (int i = 0; i < NODES; i++) {
+            vectors.add(gaussian());
+            index.add("fp-" + i, "emp-" + (i % 10), vectors.get(i));
+        }
+        return index;
+    }
+
+    private double recall(HnswIndex index, Set<String> removed) {
+        SplittableRandom probes = new SplittableRandom(9);
+        long hits = 0;
+        for (int p = 0; p < PROBES; p++) {
+            float[] probe = gaussian(probes);
+            Set<String> expected = bruteForce(probe, removed);
+            List<String> found = index.search(probe, EF_SEARCH, null);
+            for (String candidate : found.subList(0, Math.min(K, found.size()))) {
+                if (expected.contains(candidate)) {
+                    hits++;
+                }
+            }
+        }
+        return (double) hits / (PROBES * K);
+    }
+
+    private Set<String> bruteForce(float[] probe, Set<String> removed) {
+        float[] unit = SimilarityKernel.normalize(probe);
+        float[] scores = new float[NODES];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            scores[i] = SimilarityKernel.dot(unit, SimilarityKernel.normalize(vectors.get(i)));
+            if (!removed.contains("fp-" + i)) {
+                order.add(i);
+            }
+        }
+        order.sort((a, b) -> Float.compare(scores[b], scores[a]));
+        Set<String> top = new HashSet<>();
+        for (int i = 0; i < K; i++) {
+            top.add("fp-" + order.get(i));
+        }
+        return top;
+    }
+
+    private float[] gaussian() {
+        return gaussian(random);
+    }
+
+    private static float[] gaussian(SplittableRandom source) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            // Box-Muller, SplittableRandom has no nextGaussian on Java 17
+            vector[i] = (float) (Math.sqrt(-2 * Math.log(1 - source.nextDouble()))
+                    * Math.cos(2 * Math.PI * source.nextDouble()));
+        }
+        return vector;
+    }
+}
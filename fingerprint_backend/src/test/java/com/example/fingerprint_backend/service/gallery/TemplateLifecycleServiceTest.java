@@ -0,0 +1,81 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import com.example.fingerprint_backend.repository.biometrics.fingerprint.FingerprintSampleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A registration event for a sample disabled after its embedding was stored must not
+ * put the template back once the disable has been applied.
+ */
+class TemplateLifecycleServiceTest {
+
+    private TemplateStore templateStore;
+    private EmbeddingGallery embeddingGallery;
+    private FingerprintSampleRepository fingerprintSampleRepository;
+    private TemplateLifecycleService service;
+
+    @BeforeEach
+    void setUp() {
+        templateStore = mock(TemplateStore.class);
+        embeddingGallery = mock(EmbeddingGallery.class);
+        fingerprintSampleRepository = mock(FingerprintSampleRepository.class);
+        service = new TemplateLifecycleService(templateStore, embeddingGallery, fingerprintSampleRepository);
+    }
+
+    @Test
+    void registrationArrivingAfterTheDisableIsDropped() throws Exception {
+        // The embedding update committed, then the disable committed and was applied
+        when(fingerprintSampleRepository.existsByIdAndActiveTrue("fp-1")).thenReturn(false);
+        service.deactivate("fp-1");
+
+        service.activate("fp-1", "emp-1", new float[]{1f, 0f});
+
+        verify(templateStore, never()).append(anyString(), anyString(), any());
+        verify(embeddingGallery, never()).put(anyString(), anyString(), any());
+    }
+
+    @Test
+    void disableCommittedDuringTheActivationIsAppliedAfterIt() throws Exception {
+        AtomicBoolean active = new AtomicBoolean(true);
+        CountDownLatch checked = new CountDownLatch(1);
+        CountDownLatch disabled = new CountDownLatch(1);
+        when(fingerprintSampleRepository.existsByIdAndActiveTrue("fp-1")).thenAnswer(invocation -> {
+            boolean result = active.get();
+            checked.countDown();
+            // The disable commits right after the activation read the sample as active
+            disabled.await(10, TimeUnit.SECONDS);
+            return result;
+        });
+
+        Thread registration = new Thread(() -> service.activate("fp-1", "emp-1", new float[]{1f, 0f}));
+        registration.start();
+        assertTrue(checked.await(10, TimeUnit.SECONDS));
+        active.set(false);
+        Thread disable = new Thread(() -> service.deactivate("fp-1"));
+        disable.start();
+        disabled.countDown();
+        registration.join(10_000);
+        disable.join(10_000);
+        assertFalse(registration.isAlive());
+        assertFalse(disable.isAlive());
+
+        var order = inOrder(embeddingGallery);
+        order.verify(embeddingGallery).put("fp-1", "emp-1", new float[]{1f, 0f});
+        order.verify(embeddingGallery).remove("fp-1");
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.fingerprint_backend.service.gallery;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replay of the memory-mapped template log after a torn write, and compaction.
+ */
+class TemplateStoreTest {
+
+    private static final int DIMENSION = 4;
+    // type, lengths, crc, two 64 byte ids, embedding
+    private static final int RECORD_SIZE = 8 + 128 + DIMENSION * Float.BYTES;
+    private static final int HEADER_BYTES = 32;
+
+    @TempDir
+    Path directory;
+
+    private TemplateStore store;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void replaysLatestRecordPerTemplate() throws IOException {
+        store = open(8);
+        store.append("fp-1", "emp-1", embedding(1));
+        store.append("fp-2", "emp-1", embedding(2));
+        store.append("fp-1", "emp-1", embedding(3));
+        store.tombstone("fp-2");
+
+        store = reopen(8);
+
+        Map<String, float[]> live = live(store);
+        assertEquals(1, live.size());
+        assertArrayEquals(embedding(3), live.get("fp-1"));
+    }
+
+    @Test
+    void tornWriteIsDroppedOnReplayAndOverwritten() throws IOException {
+        store = open(8);
+        store.append("fp-1", "emp-1", embedding(1));
+        store.append("fp-2", "emp-1", embedding(2));
+        store.append("fp-3", "emp-1", embedding(3));
+        store.close();
+        store = null;
+
+        // Type byte committed but the embedding only half written
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(HEADER_BYTES + 2L * RECORD_SIZE + RECORD_SIZE - Float.BYTES);
+            file.writeInt(0x7f7f7f7f);
+        }
+
+        store = open(8);
+        Map<String, float[]> live = live(store);
+        assertEquals(2, live.size());
+        assertNull(live.get("fp-3"));
+
+        // The next append reuses the torn slot and survives another replay
+        store.append("fp-4", "emp-2", embedding(4));
+        store = reopen(8);
+        live = live(store);
+        assertEquals(3, live.size());
+        assertArrayEquals(embedding(4), live.get("fp-4"));
+    }
+
+    @Test
+    void compactionKeepsLiveTemplatesAndDeletesOldSegments() throws IOException {
+        store = open(4);
+        for (int i = 0; i < 10; i++) {
+            store.append("fp-" + i, "emp-" + (i % 2), embedding(i));
+        }
+        for (int i = 0; i < 6; i++) {
+            store.tombstone("fp-" + i);
+        }
+        // 16 records in 4 segments of 4
+        assertEquals(4, segments().size());
+        assertTrue(store.deadRatio() > 0.5);
+
+        store.compact();
+
+        assertEquals(0.0, store.deadRatio());
+        assertEquals(1, segments().size());
+        assertEquals(4, store.size());
+        store = reopen(4);
+        Map<String, float[]> live = live(store);
+        assertEquals(List.of("fp-6", "fp-7", "fp-8", "fp-9"), List.copyOf(live.keySet()));
+        assertArrayEquals(embedding(8), live.get("fp-8"));
+    }
+
+    @Test
+    void compactionFillsSegmentsToTheirOwnCapacity() throws IOException {
+        store = open(4);
+        for (int i = 0; i < 8; i++) {
+            store.append("fp-" + i, "emp-1", embedding(i));
+        }
+        store.tombstone("fp-0");
+        // records-per-segment lowered since the segments were written
+        store = reopen(3);
+
+        store.compact();
+
+        assertEquals(3, segments().size());
+        store.append("fp-8", "emp-1", embedding(8));
+        store = reopen(3);
+        Map<String, float[]> live = live(store);
+        assertEquals(8, live.size());
+        assertArrayEquals(embedding(7), live.get("fp-7"));
+        assertArrayEquals(embedding(8), live.get("fp-8"));
+    }
+
+    @Test
+    void writesDuringCompactionSurviveTheSwapAndReplay() throws Exception {
+        store = open(16);
+        Map<String, float[]> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            store.append("fp-" + i, "emp-1", embedding(i));
+            expected.put("fp-" + i, embedding(i));
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            store.tombstone("fp-" + i);
+            expected.remove("fp-" + i);
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread compaction = new Thread(() -> {
+            try {
+                store.compact();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        compaction.start();
+        // Appends, overwrites and tombstones racing the copy
+        float[] dots = new float[1];
+        for (int i = 0; i < 300; i++) {
+            store.append("fp-new-" + i, "emp-2", embedding(i));
+            expected.put("fp-new-" + i, embedding(i));
+            store.append("fp-" + (2 * i + 1), "emp-1", embedding(-i));
+            expected.put("fp-" + (2 * i + 1), embedding(-i));
+            store.tombstone("fp-" + (1999 - 2 * i));
+            expected.remove("fp-" + (1999 - 2 * i));
+            store.dot(embedding(1), new String[]{"fp-new-" + i}, 1, dots);
+            assertEquals(dot(embedding(1), embedding(i)), dots[0], 1e-3);
+        }
+        compaction.join(10_000);
+        assertNull(failure.get());
+
+        assertLive(expected, live(store));
+        store = reopen(16);
+        assertLive(expected, live(store));
+        store.compact();
+        assertEquals(0.0, store.deadRatio());
+        assertLive(expected, live(store));
+    }
+
+    @Test
+    void resetDeletesEverySegment() throws IOException {
+        store = open(2);
+        for (int i = 0; i < 5; i++) {
+            store.append("fp-" + i, "emp-1", embedding(i));
+        }
+
+        store.reset();
+
+        assertEquals(0, segments().size());
+        assertEquals(0, store.size());
+        store.append("fp-9", "emp-1", embedding(9));
+        store = reopen(2);
+        assertEquals(1, store.size());
+    }
+
+    private TemplateStore open(int recordsPerSegment) throws IOException {
+        TemplateStore opened = new TemplateStore();
+        ReflectionTestUtils.setField(opened, "storePath", directory.toString());
+        ReflectionTestUtils.setField(opened, "recordsPerSegment", recordsPerSegment);
+        opened.open();
+        return opened;
+    }
+
+    private TemplateStore reopen(int recordsPerSegment) throws IOException {
+        store.close();
+        return open(recordsPerSegment);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".tpl")).sorted().toList();
+        }
+    }
+
+    private static Map<String, float[]> live(TemplateStore store) {
+        Map<String, float[]> live = new LinkedHashMap<>();
+        store.forEachLive((fingerprintId, employeeId, embedding) -> live.put(fingerprintId, embedding));
+        return live;
+    }
+
+    private static void assertLive(Map<String, float[]> expected, Map<String, float[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, float[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static float[] embedding(int seed) {
+        return new float[]{seed, seed + 0.5f, -seed, 1f};
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.fingerprint_backend.service.journal;
+
+import com.example.fingerprint_backend.model.access.Area;
+import com.example.fingerprint_backend.model.auth.Employee;
+import com.example.fingerprint_backend.repository.access.AreaRepository;
+import com.example.fingerprint_backend.repository.auth.EmployeeRepository;
+import com.example.fingerprint_backend.service.EmployeeAccessRollupService;
+import com.example.fingerprint_backend.service.InferenceClient;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Entries acknowledged by the journal survive a crash before the flush and reach the
+ * database exactly once, also when the crash lands between the insert and the
+ * checkpoint, after a failed write, or when an append times out and is written
+ * directly.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:access_journal_replay;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "fingerprint.gallery.backfill-enabled=false",
+        "fingerprint.enrollment.async=false",
+        "fingerprint.blob.migrate-legacy=false",
+        "fingerprint.store.path=target/test-template-store",
+        "fingerprint.blob.path=target/test-blob-store"
+})
+class AccessJournalReplayTest {
+
+    private static final int ENTRIES = 25;
+
+    @MockitoBean
+    private InferenceClient inferenceClient;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EmployeeAccessRollupService employeeAccessRollupService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private AreaRepository areaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        // The JCache manager is shared by every context in the JVM, start from an empty cache
+        entityManagerFactory.getCache().evictAll();
+        jdbcTemplate.update("DELETE FROM recognition");
+        jdbcTemplate.update("DELETE FROM access_log");
+        jdbcTemplate.update("DELETE FROM employee_access_rollup");
+        employeeRepository.save(new Employee("employee-1", "Nguyen Van A", "0900000000", null, "Ha Noi", 5));
+        areaRepository.save(Area.builder().id("area-1").name("Lobby").securityLevel(1).build());
+    }
+
+    @Test
+    void entriesJournaledBeforeACrashAreFlushedOnceAfterRestart() throws Exception {
+        AccessJournal journal = open();
+        for (int i = 0; i < ENTRIES; i++) {
+            journal.submit(entry());
+        }
+        kill(journal);
+        assertEquals(0, count("access_log"));
+
+        AccessJournal restarted = open();
+        restarted.flush();
+        assertRowsOnce();
+
+        // Everything is behind the checkpoint now, a further restart replays nothing
+        kill(restarted);
+        AccessJournal again = open();
+        assertEquals(0, again.getStatistics().get("pending"));
+        again.flush();
+        assertRowsOnce();
+        again.close();
+    }
+
+    @Test
+    void crashBetweenInsertAndCheckpointDoesNotDuplicateRows() throws Exception {
+        // One segment, so the flush deletes no segment file and only the checkpoint moves
+        AccessJournal journal = open(1 << 20);
+        for (int i = 0; i < ENTRIES; i++) {
+            journal.submit(entry());
+        }
+        journal.flush();
+        kill(journal);
+        // As if the process died before the checkpoint reached disk
+        Files.delete(directory.resolve("checkpoint"));
+
+        AccessJournal restarted = open(1 << 20);
+        assertEquals(ENTRIES, restarted.getStatistics().get("pending"));
+        restarted.flush();
+        assertRowsOnce();
+        restarted.close();
+    }
+
+    @Test
+    void failedWriteDoesNotHideLaterAcknowledgedEntries() throws Exception {
+        AccessJournal journal = open(1 << 20);
+        for (int i = 0; i < 10; i++) {
+            journal.submit(entry());
+        }
+        // The disk fills up halfway through the next record
+        FaultyChannel channel = new FaultyChannel((FileChannel) ReflectionTestUtils.getField(journal, "activeChannel"));
+        ReflectionTestUtils.setField(journal, "activeChannel", channel);
+        channel.failNextWrite = true;
+        journal.submit(entry());
+        assertEquals(1L, journal.getStatistics().get("directWrites"));
+        for (int i = 0; i < ENTRIES - 11; i++) {
+            journal.submit(entry());
+        }
+        kill(journal);
+
+        AccessJournal restarted = open(1 << 20);
+        assertEquals(ENTRIES - 1, restarted.getStatistics().get("pending"));
+        restarted.flush();
+        assertRowsOnce();
+        restarted.close();
+    }
+
+    @Test
+    void timedOutAppendIsWrittenDirectlyAndCountedOnce() throws Exception {
+        AccessJournal journal = open(1 << 20);
+        ReflectionTestUtils.setField(journal, "appendTimeoutMs", 300L);
+        FaultyChannel channel = new FaultyChannel((FileChannel) ReflectionTestUtils.getField(journal, "activeChannel"));
+        ReflectionTestUtils.setField(journal, "activeChannel", channel);
+        channel.blockNextWrite = true;
+
+        // The first append is stuck in the write, the second waits in the queue behind it
+        Thread stuck = new Thread(() -> journal.submit(entry()));
+        stuck.start();
+        assertTrue(channel.writing.await(5, TimeUnit.SECONDS));
+        journal.submit(entry());
+        stuck.join(5000);
+        assertEquals(2, count("access_log"));
+
+        // The stuck append still reaches the journal, the queued one was withdrawn
+        channel.release.countDown();
+        for (int i = 0; i < ENTRIES - 2; i++) {
+            journal.submit(entry());
+        }
+        assertEquals(ENTRIES - 1L, journal.getStatistics().get("appended"));
+        journal.flush();
+        assertRowsOnce();
+        journal.close();
+    }
+
+    private void assertRowsOnce() {
+        assertEquals(ENTRIES, count("access_log"));
+        assertEquals(ENTRIES, count("recognition"));
+        assertEquals((long) ENTRIES, jdbcTemplate.queryForObject(
+                "SELECT access_count FROM employee_access_rollup WHERE employee_id = 'employee-1'", Long.class));
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private AccessJournal open() throws Exception {
+        return open(1024L);
+    }
+
+    private AccessJournal open(long segmentBytes) throws Exception {
+        AccessJournal journal = new AccessJournal(jdbcTemplate, transactionManager, employeeAccessRollupService);
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "journalPath", directory.toString());
+        ReflectionTestUtils.setField(journal, "fsync", true);
+        ReflectionTestUtils.setField(journal, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(journal, "groupCommitMax", 8);
+        ReflectionTestUtils.setField(journal, "appendTimeoutMs", 5000L);
+        // Never flushes on its own; the test decides when
+        ReflectionTestUtils.setField(journal, "flushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(journal, "batchSize", 10);
+        ReflectionTestUtils.setField(journal, "maxPending", 1000);
+        journal.open();
+        return journal;
+    }
+
+    // Stops the threads and drops the file handle without the final flush close() does
+    private static void kill(AccessJournal journal) throws Exception {
+        ReflectionTestUtils.setField(journal, "running", false);
+        Thread writer = (Thread) ReflectionTestUtils.getField(journal, "writer");
+        Thread flusher = (Thread) ReflectionTestUtils.getField(journal, "flusher");
+        flusher.interrupt();
+        writer.join(5000);
+        flusher.join(5000);
+        ((FileChannel) ReflectionTestUtils.getField(journal, "activeChannel")).close();
+    }
+
+    // Delegates to the segment file; can fail a write halfway or hold it until released
+    private static final class FaultyChannel extends FileChannel {
+        private final FileChannel delegate;
+        private volatile boolean failNextWrite;
+        private volatile boolean blockNextWrite;
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private FaultyChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                ByteBuffer half = src.duplicate();
+                half.limit(src.position() + src.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("No space left on device");
+            }
+            if (blockNextWrite) {
+                blockNextWrite = false;
+                writing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static AccessJournalEntry entry() {
+        return new AccessJournalEntry(UUID.randomUUID().toString(), UUID.randomUUID().toString(), "area-1",
+                "employee-1", "ENTRY", true, LocalDateTime.now(), 0.95f, "employee-1", null, null);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.fingerprint_backend.service.preprocess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Scratch arrays are reused up to the retained size and dropped above it.
+ */
+class PreprocessBuffersTest {
+
+    @Test
+    void keepsBuffersWithinTheLimitAndDropsLargerOnes() throws InterruptedException {
+        // A fresh thread, so other tests' images do not affect the sizes
+        Thread thread = new Thread(PreprocessBuffersTest::trimAndReuse);
+        Throwable[] failure = new Throwable[1];
+        thread.setUncaughtExceptionHandler((t, e) -> failure[0] = e);
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+    }
+
+    private static void trimAndReuse() {
+        PreprocessBuffers buffers = PreprocessBuffers.current();
+        byte[] gray = buffers.gray(1024);
+        int[] row = buffers.row(256);
+        byte[] resized = buffers.resized(4096);
+        int[] histograms = buffers.histograms(2048);
+
+        buffers.trim(1024);
+
+        assertSame(gray, buffers.gray(1024));
+        assertSame(row, buffers.row(256));
+        assertNotSame(resized, buffers.resized(4096));
+        assertNotSame(histograms, buffers.histograms(2048));
+    }
+}
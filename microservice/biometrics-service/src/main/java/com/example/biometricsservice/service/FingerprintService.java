@@ -32,25 +32,15 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class FingerprintService {
 
-    @Value("${python.venv.path}")
-    private String VENV_PYTHON;
-
-    @Value("${python.script.dir}")
-    private String SCRIPT_DIR;
-
-    @Value("${python.script.path}")
-    private String PYTHON_SCRIPT_PATH;
-
     @Value("${fingerprint.dataset.path}")
     private String DATASET_BASE_PATH;
 
-    private static final String RECOGNITION_RESULT_FILE = "recognition_result.json";
-
     private final FingerprintSampleRepository fingerprintSampleRepository;
     private final RecognitionRepository recognitionRepository;
     private final UserManagementClient userManagementClient;
     private final AccessControlClient accessControlClient;
     private final ModelManagementClient modelManagementClient;
+    private final PythonWorkerPool pythonWorkerPool;
 
     @Transactional
     public FingerprintSample registerFingerprint(
@@ -239,9 +229,9 @@ public class FingerprintService {
 
         try {
             System.out.println("Calling recognition script for file: " + tempFilePath);
-            executeRecognitionScript(tempFilePath, segmentationModelPath, recognitionModelPath);
+            JsonNode result = executeRecognitionScript(tempFilePath, segmentationModelPath, recognitionModelPath);
 
-            return readRecognitionResultFromFile();
+            return readRecognitionResult(result);
 
         } catch (Exception e) {
             System.err.println("Error in fingerprint recognition process: " + e.getClass().getName() + ": " + e.getMessage());
@@ -303,61 +293,23 @@ public class FingerprintService {
     }
 
     private void updateFingerprintModel(String segmentationModelPath, String recognitionModelPath)
-            throws IOException, InterruptedException {
-
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                VENV_PYTHON,
-                PYTHON_SCRIPT_PATH,
-                "--update-model",
-                "--seg-path-name", segmentationModelPath,
-                "--rec-path-name", recognitionModelPath
-        );
-
-        Process process = processBuilder.start();
-        String errorOutput = new String(process.getErrorStream().readAllBytes());
-
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0) {
-            throw new IOException("Python script execution failed with exit code: "
-                    + exitCode + ", Error: " + errorOutput);
+            throws Exception {
+        JsonNode result = pythonWorkerPool.updateModel(segmentationModelPath, recognitionModelPath);
+        if (result == null || !result.path("updated").asBoolean(false)) {
+            throw new IOException("Fingerprint model update failed");
         }
     }
 
-    private String executeRecognitionScript(String imagePath, String segmentationModelPath, String recognitionModelPath)
-            throws IOException, InterruptedException {
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                VENV_PYTHON,
-                PYTHON_SCRIPT_PATH,
-                "--recognize",
-                imagePath,
-                "--seg-path-name", segmentationModelPath,
-                "--rec-path-name", recognitionModelPath
-        );
-
-        Process process = processBuilder.start();
-
-        String output = new String(process.getInputStream().readAllBytes());
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0) {
-            String errorOutput = new String(process.getErrorStream().readAllBytes());
-            throw new IOException("Python script execution failed: " + errorOutput);
-        }
-
-        return output;
+    private JsonNode executeRecognitionScript(String imagePath, String segmentationModelPath, String recognitionModelPath)
+            throws Exception {
+        return pythonWorkerPool.recognize(imagePath, segmentationModelPath, recognitionModelPath);
     }
 
-    private RecognitionResult readRecognitionResultFromFile() throws IOException {
-        File resultFile = Paths.get(SCRIPT_DIR, RECOGNITION_RESULT_FILE).toFile();
-
-        if (!resultFile.exists()) {
-            throw new IOException("Recognition result file not found");
+    private RecognitionResult readRecognitionResult(JsonNode rootNode) throws IOException {
+        if (rootNode == null) {
+            throw new IOException("Recognition result missing from worker response");
         }
 
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode rootNode = mapper.readTree(resultFile);
-
         if (rootNode.has("error")) {
             throw new IOException("Recognition error: " + rootNode.get("error").asText());
         }
@@ -376,7 +328,7 @@ public class FingerprintService {
             confidence = similarityNode.get("confidence").asDouble();
         }
 
-        System.out.println("Successfully parsed result from file: " +
+        System.out.println("Successfully parsed recognition result: " +
                 "employeeId=" + employeeId +
                 ", confidence=" + confidence);
 
@@ -4,17 +4,26 @@ import com.example.accesscontrolservice.model.AccessLog;
 import com.example.accesscontrolservice.repository.AccessLogRepository;
 import com.example.accesscontrolservice.repository.AreaRepository;
 
+import com.example.accesscontrolservice.service.AccessLogService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/access-log")
@@ -22,12 +31,47 @@ import java.util.stream.Collectors;
 public class AccessLogController {
 
     private final AccessLogRepository accessLogRepository;
+    private final AccessLogService accessLogService;
 
     @GetMapping
     public List<AccessLog> getAllAccessLogs() {
         return accessLogRepository.findAll();
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAccessLogs(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        MediaType mediaType = switch (format) {
+            case "csv" -> new MediaType("text", "csv", StandardCharsets.UTF_8);
+            case "ndjson" -> MediaType.APPLICATION_NDJSON;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        };
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        StreamingResponseBody body = out -> {
+            if (!gzip) {
+                accessLogService.exportAccessLogs(format, start, end, out);
+                return;
+            }
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+            accessLogService.exportAccessLogs(format, start, end, compressed);
+            compressed.finish();
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("access-log." + format).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<AccessLog> getAccessLogById(@PathVariable String id) {
         Optional<AccessLog> accessLog = accessLogRepository.findById(id);
@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = @Index(name = "idx_access_log_timestamp", columnList = "timestamp, id"))
 public class AccessLog {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,19 @@
+package com.example.accesscontrolservice.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class AccessLogExportRow {
+    private String id;
+    private LocalDateTime timestamp;
+    private boolean authorized;
+    private String accessType;
+    private String areaId;
+    private String areaName;
+    private String employeeId;
+    private String recognitionId;
+}
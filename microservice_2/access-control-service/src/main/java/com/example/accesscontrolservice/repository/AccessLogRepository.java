@@ -1,13 +1,17 @@
 package com.example.accesscontrolservice.repository;
 
 import com.example.accesscontrolservice.model.AccessLog;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface AccessLogRepository extends JpaRepository<AccessLog, String> {
@@ -28,4 +32,19 @@ public interface AccessLogRepository extends JpaRepository<AccessLog, String> {
             @Param("accessType") String accessType,
             @Param("areaId") String areaId
     );
-}
\ No newline at end of file
+
+    // Integer.MIN_VALUE makes MySQL Connector/J stream the rows instead of buffering the whole result
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.example.accesscontrolservice.repository.AccessLogExportRow(" +
+            "al.id, al.timestamp, al.authorized, al.accessType, a.id, a.name, al.employeeId, al.recognitionId) " +
+            "FROM AccessLog al LEFT JOIN al.area a " +
+            "WHERE al.timestamp >= :start AND al.timestamp <= :end " +
+            "ORDER BY al.timestamp, al.id")
+    Stream<AccessLogExportRow> streamForExport(
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+}
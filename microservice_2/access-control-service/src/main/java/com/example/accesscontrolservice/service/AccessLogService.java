@@ -1,19 +1,39 @@
 package com.example.accesscontrolservice.service;
 
 import com.example.accesscontrolservice.model.AccessLog;
+import com.example.accesscontrolservice.repository.AccessLogExportRow;
 import com.example.accesscontrolservice.repository.AccessLogRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class AccessLogService {
+    // Bounds used when an export has no start or end
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     @Autowired
     private AccessLogRepository accessLogRepository;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     public List<AccessLog> getAllAccessLogs() {
         return accessLogRepository.findAll();
     }
@@ -41,4 +61,84 @@ public class AccessLogService {
     public void deleteAccessLog(String id) {
         accessLogRepository.deleteById(id);
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the access logs between start and end to {@code out}, oldest first, as
+     * {@code csv} or {@code ndjson}. Rows come from a forward-only MySQL cursor and are
+     * written as they are read, so memory use does not grow with the number of rows.
+     */
+    @Transactional(readOnly = true)
+    public void exportAccessLogs(String format, LocalDateTime start, LocalDateTime end, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try (Stream<AccessLogExportRow> rows = accessLogRepository.streamForExport(
+                start == null ? EARLIEST : start, end == null ? LATEST : end)) {
+            if ("ndjson".equals(format)) {
+                writeNdjson(rows.iterator(), writer);
+            } else {
+                writeCsv(rows.iterator(), writer);
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(Iterator<AccessLogExportRow> rows, Writer writer) throws IOException {
+        writer.write("id,timestamp,authorized,accessType,areaId,areaName,employeeId,recognitionId\r\n");
+        while (rows.hasNext()) {
+            AccessLogExportRow row = rows.next();
+            writer.write(csvField(row.getId()));
+            writer.write(',');
+            writer.write(csvField(format(row.getTimestamp())));
+            writer.write(',');
+            writer.write(String.valueOf(row.isAuthorized()));
+            writer.write(',');
+            writer.write(csvField(row.getAccessType()));
+            writer.write(',');
+            writer.write(csvField(row.getAreaId()));
+            writer.write(',');
+            writer.write(csvField(row.getAreaName()));
+            writer.write(',');
+            writer.write(csvField(row.getEmployeeId()));
+            writer.write(',');
+            writer.write(csvField(row.getRecognitionId()));
+            writer.write("\r\n");
+        }
+    }
+
+    private void writeNdjson(Iterator<AccessLogExportRow> rows, Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // One object per line, without the space Jackson puts between root values
+        generator.setRootValueSeparator(null);
+        while (rows.hasNext()) {
+            AccessLogExportRow row = rows.next();
+            generator.writeStartObject();
+            generator.writeStringField("id", row.getId());
+            generator.writeStringField("timestamp", format(row.getTimestamp()));
+            generator.writeBooleanField("authorized", row.isAuthorized());
+            generator.writeStringField("accessType", row.getAccessType());
+            generator.writeStringField("areaId", row.getAreaId());
+            generator.writeStringField("areaName", row.getAreaName());
+            generator.writeStringField("employeeId", row.getEmployeeId());
+            generator.writeStringField("recognitionId", row.getRecognitionId());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    private static String format(LocalDateTime timestamp) {
+        return timestamp == null ? null : timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    // RFC 4180: quote fields containing a separator, quote or line break
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.biometricsservice.client;
 
+import com.example.biometricsservice.model.ModelMetadata;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,8 +13,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 public interface ModelManagementClient {
 
     @GetMapping("/fingerprint-segmentation-model/{id}")
-    ResponseEntity<Object> getSegmentationModelById(@PathVariable String id);
+    ResponseEntity<ModelMetadata> getSegmentationModelById(@PathVariable String id);
 
     @GetMapping("/fingerprint-recognition-model/{id}")
-    ResponseEntity<Object> getRecognitionModelById(@PathVariable String id);
+    ResponseEntity<ModelMetadata> getRecognitionModelById(@PathVariable String id);
 }
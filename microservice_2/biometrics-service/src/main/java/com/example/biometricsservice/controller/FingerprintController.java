@@ -3,6 +3,7 @@ package com.example.biometricsservice.controller;
 import com.example.biometricsservice.model.FingerprintSample;
 import com.example.biometricsservice.repository.FingerprintSampleRepository;
 import com.example.biometricsservice.service.FingerprintService;
+import com.example.biometricsservice.service.ModelUpdateQueue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -11,6 +12,8 @@ import org.springframework.web.multipart.MultipartFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/fingerprint")
@@ -21,6 +24,9 @@ public class FingerprintController {
 
     @Autowired
     private FingerprintSampleRepository fingerprintSampleRepository;
+
+    @Autowired
+    private ModelUpdateQueue modelUpdateQueue;
     private static final Logger logger = LoggerFactory.getLogger(FingerprintController.class);
 
     @GetMapping
@@ -56,13 +62,49 @@ public class FingerprintController {
                     segmentationModelId,
                     recognitionModelId
             );
-            return ResponseEntity.status(HttpStatus.CREATED).body(sample);
+            // The sample is stored; the model update it triggers runs in the background
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(sample);
         } catch (Exception e) {
             logger.error("Unexpected error during fingerprint recognition", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    @PostMapping("/register/{employeeId}/bulk")
+    public ResponseEntity<List<Map<String, Object>>> registerFingerprints(
+            @PathVariable("employeeId") String employeeId,
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("positions") List<String> positions,
+            @RequestParam("segmentationModelId") String segmentationModelId,
+            @RequestParam("recognitionModelId") String recognitionModelId) {
+
+        try {
+            List<Map<String, Object>> results = fingerprintService.registerFingerprints(
+                    employeeId,
+                    files,
+                    positions,
+                    segmentationModelId,
+                    recognitionModelId
+            );
+            // Samples are stored per item; the model update they trigger runs in the background
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(results);
+        } catch (NoSuchElementException e) {
+            logger.warn("Rejected bulk fingerprint registration: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected bulk fingerprint registration: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Unexpected error during bulk fingerprint registration", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/model-update/status")
+    public ResponseEntity<Map<String, Object>> getModelUpdateStatus() {
+        return ResponseEntity.ok(modelUpdateQueue.getStatus());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteFingerprint(@PathVariable String id) {
         fingerprintSampleRepository.deleteById(id);
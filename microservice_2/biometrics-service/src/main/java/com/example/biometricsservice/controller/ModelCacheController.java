@@ -0,0 +1,36 @@
+package com.example.biometricsservice.controller;
+
+import com.example.biometricsservice.service.ModelMetadataCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Invalidation hook for model-management-service and cache statistics.
+ */
+@RestController
+@RequestMapping("/api/model-cache")
+public class ModelCacheController {
+
+    @Autowired
+    private ModelMetadataCache modelMetadataCache;
+
+    @GetMapping("/statistics")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(modelMetadataCache.getStatistics());
+    }
+
+    @DeleteMapping("/{modelId}")
+    public ResponseEntity<Void> invalidateModel(@PathVariable String modelId) {
+        modelMetadataCache.invalidate(modelId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> invalidateAll() {
+        modelMetadataCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+}
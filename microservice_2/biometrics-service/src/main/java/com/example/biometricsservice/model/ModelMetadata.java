@@ -0,0 +1,18 @@
+package com.example.biometricsservice.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Subset of a model-management-service model that biometrics-service needs.
+ */
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ModelMetadata {
+    private String id;
+    private String name;
+    private String pathName;
+    private String version;
+}
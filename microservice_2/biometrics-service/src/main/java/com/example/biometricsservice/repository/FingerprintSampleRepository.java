@@ -10,6 +10,7 @@ import java.util.List;
 @Repository
 public interface FingerprintSampleRepository extends JpaRepository<FingerprintSample, String> {
     List<FingerprintSample> findByEmployeeId(String employeeId);
+    long countByEmployeeId(String employeeId);
     List<FingerprintSample> findByPosition(String position);
     List<FingerprintSample> findByQualityGreaterThan(Double quality);
     List<FingerprintSample> findByCapturedAtBetween(LocalDateTime start, LocalDateTime end);
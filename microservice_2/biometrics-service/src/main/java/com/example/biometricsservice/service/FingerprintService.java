@@ -1,7 +1,6 @@
 package com.example.biometricsservice.service;
 
 import com.example.biometricsservice.client.AccessControlClient;
-import com.example.biometricsservice.client.ModelManagementClient;
 import com.example.biometricsservice.client.UserManagementClient;
 import com.example.biometricsservice.model.FingerprintSample;
 import com.example.biometricsservice.model.Recognition;
@@ -9,14 +8,14 @@ import com.example.biometricsservice.model.RecognitionResult;
 import com.example.biometricsservice.repository.FingerprintSampleRepository;
 import com.example.biometricsservice.repository.RecognitionRepository;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.File;
@@ -27,33 +26,33 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class FingerprintService {
 
-    // @Value("${python.venv.path}")
-    private String VENV_PYTHON = "../fingerprint_training/env/Scripts/python.exe";
-
-    // @Value("${python.script.dir}")
-    private String SCRIPT_DIR = "../fingerprint_training/reports";
-    
-    // @Value("${python.script.path}")
-    private String PYTHON_SCRIPT_PATH = "../fingerprint_training/fingerprint_recognition.py";
-    
     // @Value("${fingerprint.dataset.path}")
     private String DATASET_BASE_PATH = "../fingerprint_training/fingerprint_adapting_dataset/";
 
-    private static final String RECOGNITION_RESULT_FILE = "recognition_result.json";
+    private static final String REGISTERED = "REGISTERED";
+    private static final String REJECTED = "REJECTED";
+    private static final String FAILED = "FAILED";
+
+    @Value("${fingerprint.max-samples-per-employee:5}")
+    private int maxSamplesPerEmployee;
 
     private final FingerprintSampleRepository fingerprintSampleRepository;
     private final RecognitionRepository recognitionRepository;
     private final UserManagementClient userManagementClient;
     private final AccessControlClient accessControlClient;
-    private final ModelManagementClient modelManagementClient;
+    private final ModelMetadataCache modelMetadataCache;
+    private final PythonWorkerPool pythonWorkerPool;
+    private final ModelUpdateQueue modelUpdateQueue;
     private final Logger logger = LoggerFactory.getLogger(FingerprintService.class);
     
     @Transactional
@@ -73,32 +72,8 @@ public class FingerprintService {
         // }
         // logger.info("Employee details fetched successfully for ID: {}", employeeId);
 
-        var segModelResponse = modelManagementClient.getSegmentationModelById(segmentationModelId);
-        if (segModelResponse.getStatusCode().is4xxClientError()) {
-            logger.error("Segmentation model not found: {}", segmentationModelId);
-            throw new Exception("Segmentation model with ID " + segmentationModelId + " not found");
-        }
-        logger.info("Segmentation model fetched: {}", segmentationModelId);
-
-        var recModelResponse = modelManagementClient.getRecognitionModelById(recognitionModelId);
-        if (recModelResponse.getStatusCode().is4xxClientError()) {
-            logger.error("Recognition model not found: {}", recognitionModelId);
-            throw new Exception("Recognition model with ID " + recognitionModelId + " not found");
-        }
-        logger.info("Recognition model fetched: {}", recognitionModelId);
-
-        String segModelJson = parseResponseToJson(segModelResponse.getBody());
-        String recModelJson = parseResponseToJson(recModelResponse.getBody());
-
-        JsonNode segModelNode = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-            .readTree(segModelJson);
-        JsonNode recModelNode = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-            .readTree(recModelJson);
-
-        String segmentationModelPath = segModelNode.get("pathName").asText();
-        String recognitionModelPath = recModelNode.get("pathName").asText();
+        String segmentationModelPath = modelMetadataCache.getSegmentationModel(segmentationModelId).getPathName();
+        String recognitionModelPath = modelMetadataCache.getRecognitionModel(recognitionModelId).getPathName();
         logger.debug("Segmentation model path: {}", segmentationModelPath);
         logger.debug("Recognition model path: {}", recognitionModelPath);
 
@@ -139,8 +114,9 @@ public class FingerprintService {
             FingerprintSample savedSample = fingerprintSampleRepository.save(sample);
             logger.info("Fingerprint sample saved to database with ID: {}", savedSample.getId());
 
-            updateFingerprintModel(segmentationModelPath, recognitionModelPath);
-            logger.info("Fingerprint models updated successfully");
+            // Cập nhật mô hình chạy nền, gom các lần đăng ký liên tiếp thành một lần cập nhật
+            modelUpdateQueue.requestUpdate(segmentationModelPath, recognitionModelPath);
+            logger.info("Fingerprint model update queued");
 
             return savedSample;
 
@@ -153,46 +129,160 @@ public class FingerprintService {
         }
     }
 
-    public RecognitionResult recognizeFingerprint(
-        MultipartFile fingerprintImage,
-        String segmentationModelId,
-        String recognitionModelId) throws Exception {
+    /**
+     * Registers several fingers of one employee in one request. The employee and the
+     * sample limit are checked once; each file gets its own result entry, in request
+     * order, with status {@code REGISTERED}, {@code REJECTED} or {@code FAILED}. The
+     * registered samples are inserted as one batch. Their images are removed from the
+     * dataset again if the transaction rolls back, and the single background model
+     * update for all of them is queued only once it has committed.
+     */
+    @Transactional
+    public List<Map<String, Object>> registerFingerprints(
+            String employeeId,
+            List<MultipartFile> files,
+            List<String> positions,
+            String segmentationModelId,
+            String recognitionModelId) throws Exception {
 
-        if (fingerprintImage == null || fingerprintImage.isEmpty()) {
-            throw new IllegalArgumentException("Fingerprint image cannot be empty");
+        logger.info("Starting bulk fingerprint registration of {} samples for employeeId: {}", files.size(), employeeId);
+
+        if (files.isEmpty() || positions.size() != files.size()) {
+            throw new IllegalArgumentException("Number of positions must match number of files");
+        }
+
+        try {
+            userManagementClient.getEmployeeById(employeeId);
+        } catch (FeignException.NotFound e) {
+            logger.warn("Employee not found: {}", employeeId);
+            throw new NoSuchElementException("Employee with ID " + employeeId + " not found");
+        }
+
+        String segmentationModelPath = modelMetadataCache.getSegmentationModel(segmentationModelId).getPathName();
+        String recognitionModelPath = modelMetadataCache.getRecognitionModel(recognitionModelId).getPathName();
+
+        String employeeDir = DATASET_BASE_PATH + "/" + employeeId;
+        try {
+            Files.createDirectories(Paths.get(employeeDir));
+        } catch (IOException e) {
+            logger.error("Failed to create directory for employee {}: {}", employeeId, e.getMessage(), e);
+            throw new Exception("Failed to create directory for employee " + employeeId, e);
+        }
+
+        long sampleCount = fingerprintSampleRepository.countByEmployeeId(employeeId);
+        List<Map<String, Object>> results = new ArrayList<>(files.size());
+        List<FingerprintSample> samples = new ArrayList<>();
+        List<Map<String, Object>> sampleResults = new ArrayList<>();
+        List<Path> writtenFiles = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            String position = positions.get(i);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            result.put("employeeId", employeeId);
+            result.put("position", position);
+            results.add(result);
+
+            if (sampleCount >= maxSamplesPerEmployee) {
+                result.put("status", REJECTED);
+                result.put("error", "Maximum number of samples reached for employee: " + employeeId);
+                continue;
+            }
+            if (file.isEmpty()) {
+                result.put("status", REJECTED);
+                result.put("error", "Empty file");
+                continue;
+            }
+
+            String originalFilename = file.getOriginalFilename();
+            String extension = originalFilename != null && originalFilename.contains(".") ?
+                    originalFilename.substring(originalFilename.lastIndexOf(".")) : ".bmp";
+            String filename = employeeId + "_" + position + extension;
+            Path filePath = Paths.get(employeeDir, filename);
+
+            try {
+                byte[] fileBytes = file.getBytes();
+                Files.write(filePath, fileBytes);
+                writtenFiles.add(filePath);
+
+                samples.add(FingerprintSample.builder()
+                        .employeeId(employeeId)
+                        .image(filename)
+                        .imageData(fileBytes)
+                        .position(position)
+                        .capturedAt(LocalDateTime.now())
+                        .segmentationModelId(segmentationModelId)
+                        .recognitionModelId(recognitionModelId)
+                        .quality(1.0)
+                        .build());
+                sampleResults.add(result);
+                sampleCount++;
+            } catch (IOException e) {
+                logger.error("Failed to write fingerprint image {}: {}", filename, e.getMessage(), e);
+                result.put("status", FAILED);
+                result.put("error", "Failed to save fingerprint image: " + e.getMessage());
+            }
         }
 
-        var segModelResponse = modelManagementClient.getSegmentationModelById(segmentationModelId);
-        if (segModelResponse.getStatusCode().is4xxClientError()) {
-            throw new IllegalArgumentException("Segmentation model with ID " + segmentationModelId + " not found");
+        if (samples.isEmpty()) {
+            return results;
         }
 
-        var recModelResponse = modelManagementClient.getRecognitionModelById(recognitionModelId);
-        if (recModelResponse.getStatusCode().is4xxClientError()) {
-            throw new IllegalArgumentException("Recognition model with ID " + recognitionModelId + " not found");
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Cập nhật mô hình chạy nền một lần cho cả lô, chỉ khi các mẫu đã được lưu
+                modelUpdateQueue.requestUpdate(segmentationModelPath, recognitionModelPath);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    deleteDatasetFiles(writtenFiles);
+                }
+            }
+        });
+
+        List<FingerprintSample> savedSamples = fingerprintSampleRepository.saveAll(samples);
+        for (int i = 0; i < savedSamples.size(); i++) {
+            sampleResults.get(i).put("status", REGISTERED);
+            sampleResults.get(i).put("fingerprintId", savedSamples.get(i).getId());
         }
+        logger.info("Saved {} fingerprint samples for employee {}", savedSamples.size(), employeeId);
+        return results;
+    }
 
-        String segModelJson = parseResponseToJson(segModelResponse.getBody());
-        String recModelJson = parseResponseToJson(recModelResponse.getBody());
+    private void deleteDatasetFiles(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to remove fingerprint image {} after rollback: {}", file, e.getMessage());
+            }
+        }
+    }
 
-        JsonNode segModelNode = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-            .readTree(segModelJson);
-        JsonNode recModelNode = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-            .readTree(recModelJson);
+    public RecognitionResult recognizeFingerprint(
+        MultipartFile fingerprintImage,
+        String segmentationModelId,
+        String recognitionModelId) throws Exception {
+
+        if (fingerprintImage == null || fingerprintImage.isEmpty()) {
+            throw new IllegalArgumentException("Fingerprint image cannot be empty");
+        }
 
-        String segmentationModelPath = segModelNode.path("pathName").asText();
-        String recognitionModelPath = recModelNode.path("pathName").asText();
+        String segmentationModelPath = modelMetadataCache.getSegmentationModel(segmentationModelId).getPathName();
+        String recognitionModelPath = modelMetadataCache.getRecognitionModel(recognitionModelId).getPathName();
 
         Path tempPath = Files.createTempFile("fingerprint_", ".bmp");
         try {
             Files.write(tempPath, fingerprintImage.getBytes());
             logger.info("Fingerprint saved temporarily to: {}", tempPath.toAbsolutePath());
 
-            executeRecognitionScript(tempPath.toString(), segmentationModelPath, recognitionModelPath);
+            JsonNode result = executeRecognitionScript(tempPath.toString(), segmentationModelPath, recognitionModelPath);
 
-            return readRecognitionResultFromFile();
+            return readRecognitionResult(result);
         } catch (Exception e) {
             logger.error("Fingerprint recognition failed", e);
             throw new RuntimeException("Failed to recognize fingerprint", e);
@@ -205,14 +295,6 @@ public class FingerprintService {
         }
     }
 
-    private String parseResponseToJson(Object responseBody) {
-        return responseBody.toString()
-            .replace("{", "{\"")
-            .replace("=", "\":\"")
-            .replace(", ", "\", \"")
-            .replace("}", "\"}");
-    }
-
     @Transactional
     public Object createAccessLog(
             String employeeId,
@@ -258,62 +340,16 @@ public class FingerprintService {
         return accessLogResponse.getBody();
     }
 
-    private void updateFingerprintModel(String segmentationModelPath, String recognitionModelPath)
-            throws IOException, InterruptedException {
-
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                VENV_PYTHON,
-                PYTHON_SCRIPT_PATH,
-                "--update-model",
-                "--seg-path-name", segmentationModelPath,
-                "--rec-path-name", recognitionModelPath
-        );
-
-        Process process = processBuilder.start();
-        String errorOutput = new String(process.getErrorStream().readAllBytes());
-
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0) {
-            throw new IOException("Python script execution failed with exit code: "
-                    + exitCode + ", Error: " + errorOutput);
-        }
+    private JsonNode executeRecognitionScript(String imagePath, String segmentationModelPath, String recognitionModelPath)
+            throws Exception {
+        return pythonWorkerPool.recognize(imagePath, segmentationModelPath, recognitionModelPath);
     }
 
-    private String executeRecognitionScript(String imagePath, String segmentationModelPath, String recognitionModelPath)
-            throws IOException, InterruptedException {
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                VENV_PYTHON,
-                PYTHON_SCRIPT_PATH,
-                "--recognize",
-                imagePath,
-                "--seg-path-name", segmentationModelPath,
-                "--rec-path-name", recognitionModelPath
-        );
-
-        Process process = processBuilder.start();
-
-        String output = new String(process.getInputStream().readAllBytes());
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0) {
-            String errorOutput = new String(process.getErrorStream().readAllBytes());
-            throw new IOException("Python script execution failed: " + errorOutput);
+    private RecognitionResult readRecognitionResult(JsonNode rootNode) throws IOException {
+        if (rootNode == null) {
+            throw new IOException("Recognition result missing from worker response");
         }
 
-        return output;
-    }
-
-    private RecognitionResult readRecognitionResultFromFile() throws IOException {
-        File resultFile = Paths.get(SCRIPT_DIR, RECOGNITION_RESULT_FILE).toFile();
-
-        if (!resultFile.exists()) {
-            throw new IOException("Recognition result file not found");
-        }
-
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode rootNode = mapper.readTree(resultFile);
-
         if (rootNode.has("error")) {
             throw new IOException("Recognition error: " + rootNode.get("error").asText());
         }
@@ -332,124 +368,10 @@ public class FingerprintService {
             confidence = similarityNode.get("confidence").asDouble();
         }
 
-        System.out.println("Successfully parsed result from file: " +
+        System.out.println("Successfully parsed recognition result: " +
                 "employeeId=" + employeeId +
                 ", confidence=" + confidence);
 
         return new RecognitionResult(employeeId, confidence);
     }
 }
-
-
-
-// @Transactional
-// public List<FingerprintSample> registerFingerprints(
-//         String employeeId,
-//         List<MultipartFile> files,
-//         List<String> positions,
-//         String segmentationModelId,
-//         String recognitionModelId) throws Exception {
-
-//     logger.info("Starting bulk fingerprint registration for employeeId: {}", employeeId);
-
-//     var employeeResponse = userManagementClient.getEmployeeById(employeeId);
-//     if (employeeResponse.getStatusCode().is4xxClientError()) {
-//         logger.error("Employee not found: {}", employeeId);
-//         throw new Exception("Employee with ID " + employeeId + " not found");
-//     }
-//     logger.info("Employee validated: {}", employeeId);
-
-//     var segModelResponse = modelManagementClient.getSegmentationModelById(segmentationModelId);
-//     if (segModelResponse.getStatusCode().is4xxClientError()) {
-//         logger.error("Segmentation model not found: {}", segmentationModelId);
-//         throw new Exception("Segmentation model with ID " + segmentationModelId + " not found");
-//     }
-
-//     var recModelResponse = modelManagementClient.getRecognitionModelById(recognitionModelId);
-//     if (recModelResponse.getStatusCode().is4xxClientError()) {
-//         logger.error("Recognition model not found: {}", recognitionModelId);
-//         throw new Exception("Recognition model with ID " + recognitionModelId + " not found");
-//     }
-
-    // String segModelJson = parseResponseToJson(segModelResponse.getBody());
-    // String recModelJson = parseResponseToJson(recModelResponse.getBody());
-
-    // JsonNode segModelNode = new ObjectMapper()
-    //     .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-    //     .readTree(segModelJson);
-    // JsonNode recModelNode = new ObjectMapper()
-    //     .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-    //     .readTree(recModelJson);
-
-//     logger.debug("Parsing segmentation model JSON: {}", segModelJson);
-//     logger.debug("Parsing recognition model JSON: {}", recModelJson);
-
-//     String segmentationModelPath = segModelNode.get("pathName").asText();
-//     String recognitionModelPath = recModelNode.get("pathName").asText();
-
-//     logger.info("Segmentation model path: {}", segmentationModelPath);
-//     logger.info("Recognition model path: {}", recognitionModelPath);
-
-//     String employeeDir = DATASET_BASE_PATH + "/" + employeeId;
-//     Path employeePath = Paths.get(employeeDir);
-
-//     try {
-//         Files.createDirectories(employeePath);
-//         logger.info("Created directory for employee: {}", employeePath);
-//     } catch (IOException e) {
-//         logger.error("Failed to create directory for employee {}: {}", employeeId, e.getMessage(), e);
-//         throw new Exception("Failed to create directory for employee " + employeeId, e);
-//     }
-
-//     List<FingerprintSample> samples = new ArrayList<>();
-
-//     for (int i = 0; i < files.size(); i++) {
-//         MultipartFile file = files.get(i);
-//         String position = positions.get(i);
-
-//         String originalFilename = file.getOriginalFilename();
-//         String extension = originalFilename != null ?
-//                 originalFilename.substring(originalFilename.lastIndexOf(".")) : ".bmp";
-
-//         String filename = employeeId + "_" + position + extension;
-//         Path filePath = Paths.get(employeeDir, filename);
-
-//         try {
-//             byte[] fileBytes = file.getBytes();
-//             Files.write(filePath, fileBytes);
-//             logger.info("Saved fingerprint {} for position {} at {}", filename, position, filePath);
-
-//             FingerprintSample sample = FingerprintSample.builder()
-//                     .employeeId(employeeId)
-//                     .image(filename)
-//                     .imageData(fileBytes)
-//                     .position(position)
-//                     .capturedAt(LocalDateTime.now())
-//                     .quality(1.0)
-//                     .build();
-
-//             FingerprintSample savedSample = fingerprintSampleRepository.save(sample);
-//             logger.info("Saved fingerprint sample to DB with ID: {}", savedSample.getId());
-
-//             samples.add(savedSample);
-
-//         } catch (IOException e) {
-//             logger.error("Failed to write fingerprint image {}: {}", filename, e.getMessage(), e);
-//             throw new Exception("Failed to save fingerprint image: " + e.getMessage(), e);
-//         } catch (Exception e) {
-//             logger.error("Unexpected error while saving fingerprint {}: {}", filename, e.getMessage(), e);
-//             throw e;
-//         }
-//     }
-
-//     try {
-//         updateFingerprintModel(segmentationModelPath, recognitionModelPath);
-//         logger.info("Fingerprint models updated successfully");
-//     } catch (Exception e) {
-//         logger.error("Model update failed: {}", e.getMessage(), e);
-//         throw new Exception("Failed to update fingerprint models", e);
-//     }
-
-//     return samples;
-// }
-
@@ -0,0 +1,186 @@
+package com.example.biometricsservice.service;
+
+import com.example.biometricsservice.client.ModelManagementClient;
+import com.example.biometricsservice.model.ModelMetadata;
+import feign.FeignException;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-based cache of model metadata from model-management-service, so the
+ * registration and recognition hot paths resolve model paths without a network call.
+ *
+ * Concurrent misses for the same model share a single load. model-management-service
+ * pushes an invalidation when a model changes; the TTL only bounds staleness if that
+ * push is lost.
+ */
+@Component
+@RequiredArgsConstructor
+public class ModelMetadataCache {
+
+    public enum ModelType {
+        SEGMENTATION,
+        RECOGNITION
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(ModelMetadataCache.class);
+
+    @Value("${model.metadata.cache.max-size:256}")
+    private int maxSize;
+
+    @Value("${model.metadata.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final ModelManagementClient modelManagementClient;
+
+    private final ConcurrentHashMap<String, CachedModel> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<ModelMetadata>> loading = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a load that started earlier cannot re-insert stale data
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    public ModelMetadata getSegmentationModel(String modelId) {
+        return get(ModelType.SEGMENTATION, modelId);
+    }
+
+    public ModelMetadata getRecognitionModel(String modelId) {
+        return get(ModelType.RECOGNITION, modelId);
+    }
+
+    /**
+     * Drops the model from the cache regardless of its type.
+     */
+    public void invalidate(String modelId) {
+        generation.incrementAndGet();
+        for (ModelType type : ModelType.values()) {
+            entries.remove(key(type, modelId));
+        }
+        logger.info("Invalidated cached metadata for model {}", modelId);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("size", entries.size());
+        statistics.put("maxSize", maxSize);
+        statistics.put("ttlSeconds", ttlSeconds);
+        statistics.put("hits", hitCount);
+        statistics.put("misses", missCount);
+        statistics.put("loads", loads.get());
+        statistics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return statistics;
+    }
+
+    private ModelMetadata get(ModelType type, String modelId) {
+        String key = key(type, modelId);
+        CachedModel cached = entries.get(key);
+        if (cached != null && !cached.isExpired()) {
+            hits.incrementAndGet();
+            return cached.metadata;
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<ModelMetadata> ownLoad = new CompletableFuture<>();
+        CompletableFuture<ModelMetadata> inFlight = loading.putIfAbsent(key, ownLoad);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
+
+        try {
+            long startGeneration = generation.get();
+            ModelMetadata metadata = load(type, modelId);
+            if (generation.get() == startGeneration) {
+                put(key, metadata);
+            }
+            ownLoad.complete(metadata);
+            return metadata;
+        } catch (RuntimeException e) {
+            ownLoad.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, ownLoad);
+        }
+    }
+
+    private ModelMetadata load(ModelType type, String modelId) {
+        loads.incrementAndGet();
+        String label = type == ModelType.SEGMENTATION ? "Segmentation" : "Recognition";
+        ResponseEntity<ModelMetadata> response;
+        try {
+            response = type == ModelType.SEGMENTATION
+                    ? modelManagementClient.getSegmentationModelById(modelId)
+                    : modelManagementClient.getRecognitionModelById(modelId);
+        } catch (FeignException.NotFound e) {
+            throw new IllegalArgumentException(label + " model with ID " + modelId + " not found");
+        }
+
+        ModelMetadata metadata = response.getBody();
+        if (!response.getStatusCode().is2xxSuccessful() || metadata == null || metadata.getPathName() == null) {
+            throw new IllegalArgumentException(label + " model with ID " + modelId + " not found");
+        }
+        logger.info("{} model metadata loaded: {}", label, modelId);
+        return metadata;
+    }
+
+    private void put(String key, ModelMetadata metadata) {
+        entries.put(key, new CachedModel(metadata, System.currentTimeMillis() + ttlSeconds * 1000));
+        if (entries.size() > maxSize) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        String oldestKey = null;
+        long oldestExpiry = Long.MAX_VALUE;
+        for (Map.Entry<String, CachedModel> entry : entries.entrySet()) {
+            if (entry.getValue().expiresAt < oldestExpiry) {
+                oldestExpiry = entry.getValue().expiresAt;
+                oldestKey = entry.getKey();
+            }
+        }
+        if (oldestKey != null) {
+            entries.remove(oldestKey);
+        }
+    }
+
+    private static String key(ModelType type, String modelId) {
+        return type.name() + ":" + modelId;
+    }
+
+    private static final class CachedModel {
+        private final ModelMetadata metadata;
+        private final long expiresAt;
+
+        private CachedModel(ModelMetadata metadata, long expiresAt) {
+            this.metadata = metadata;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
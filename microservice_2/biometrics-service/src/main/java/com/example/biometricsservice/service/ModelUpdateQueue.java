@@ -0,0 +1,150 @@
+package com.example.biometricsservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the Python {@code update_model} step in the background after enrolment.
+ *
+ * Enrolments for the same model pair are coalesced: however many samples arrive while
+ * an update is queued or running, at most one more update follows. The enrolled image
+ * is already on disk and in the database before an update is requested, and an update
+ * rebuilds from the whole dataset, so a lost or failed update is repaired by the next
+ * one. Failed updates are retried with exponential backoff.
+ */
+@Component
+@RequiredArgsConstructor
+public class ModelUpdateQueue {
+
+    private final Logger logger = LoggerFactory.getLogger(ModelUpdateQueue.class);
+
+    @Value("${model.update.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${model.update.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    private final PythonWorkerPool pythonWorkerPool;
+
+    private final Map<String, UpdateState> states = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "model-update");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void requestUpdate(String segmentationModelPath, String recognitionModelPath) {
+        UpdateState state = states.computeIfAbsent(segmentationModelPath + "|" + recognitionModelPath,
+                key -> new UpdateState(segmentationModelPath, recognitionModelPath));
+        synchronized (state) {
+            state.dirty = true;
+            if (state.scheduled) {
+                return;
+            }
+            state.scheduled = true;
+            state.attempts = 0;
+        }
+        executor.execute(() -> run(state));
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        states.forEach((key, state) -> {
+            synchronized (state) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("pending", state.dirty);
+                entry.put("scheduled", state.scheduled);
+                entry.put("attempts", state.attempts);
+                entry.put("lastCompletedAt", state.lastCompletedAt);
+                entry.put("lastError", state.lastError);
+                status.put(key, entry);
+            }
+        });
+        return status;
+    }
+
+    private void run(UpdateState state) {
+        synchronized (state) {
+            // Samples enrolled from here on need another update
+            state.dirty = false;
+            state.attempts++;
+        }
+        try {
+            JsonNode result = pythonWorkerPool.updateModel(state.segmentationModelPath, state.recognitionModelPath);
+            if (result == null || !result.path("updated").asBoolean(false)) {
+                throw new IOException("Fingerprint model update failed");
+            }
+            synchronized (state) {
+                state.lastCompletedAt = LocalDateTime.now();
+                state.lastError = null;
+                state.attempts = 0;
+                if (!state.dirty) {
+                    state.scheduled = false;
+                    return;
+                }
+            }
+            logger.info("Samples enrolled during the update, updating models {} again", state.key());
+            executor.execute(() -> run(state));
+        } catch (Exception e) {
+            synchronized (state) {
+                state.lastError = e.getMessage();
+                state.dirty = true;
+                if (state.attempts >= maxAttempts) {
+                    logger.error("Model update for {} failed after {} attempts: {}",
+                            state.key(), state.attempts, e.getMessage());
+                    state.scheduled = false;
+                    return;
+                }
+            }
+            long delay = retryBackoffMs << Math.min(state.attempts - 1, 10);
+            logger.warn("Model update for {} failed, retrying in {} ms: {}", state.key(), delay, e.getMessage());
+            executor.schedule(() -> run(state), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static final class UpdateState {
+        private final String segmentationModelPath;
+        private final String recognitionModelPath;
+        private boolean dirty;
+        private boolean scheduled;
+        private int attempts;
+        private LocalDateTime lastCompletedAt;
+        private String lastError;
+
+        private UpdateState(String segmentationModelPath, String recognitionModelPath) {
+            this.segmentationModelPath = segmentationModelPath;
+            this.recognitionModelPath = recognitionModelPath;
+        }
+
+        private String key() {
+            return segmentationModelPath + "|" + recognitionModelPath;
+        }
+    }
+}
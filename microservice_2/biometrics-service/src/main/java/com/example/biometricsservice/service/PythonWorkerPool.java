@@ -0,0 +1,303 @@
+package com.example.biometricsservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pool of long-lived {@code fingerprint_recognition.py --serve} processes.
+ *
+ * Each worker loads its models once and answers length-prefixed JSON frames on
+ * stdin/stdout, so a request costs preprocessing and inference only instead of
+ * interpreter start-up, TensorFlow import and model load. Every worker has its own
+ * request queue; requests prefer a worker that already holds the requested model
+ * pair, falling back to the shortest queue. Workers are pinged periodically and
+ * restarted when they crash, time out or stop answering.
+ */
+@Component
+public class PythonWorkerPool {
+
+    private final Logger logger = LoggerFactory.getLogger(PythonWorkerPool.class);
+
+    @Value("${python.venv.path:../fingerprint_training/env/Scripts/python.exe}")
+    private String venvPython;
+
+    @Value("${python.script.path:../fingerprint_training/fingerprint_recognition.py}")
+    private String pythonScriptPath;
+
+    @Value("${python.worker.count:2}")
+    private int workerCount;
+
+    @Value("${python.worker.request-timeout-ms:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${python.worker.update-timeout-ms:600000}")
+    private long updateTimeoutMs;
+
+    @Value("${python.worker.health-interval-ms:15000}")
+    private long healthIntervalMs;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final List<Worker> workers = new ArrayList<>();
+    private ScheduledExecutorService healthChecker;
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < workerCount; i++) {
+            Worker worker = new Worker(i);
+            workers.add(worker);
+            try {
+                worker.launch();
+            } catch (IOException e) {
+                logger.error("Failed to start Python worker {}: {}", i, e.getMessage());
+            }
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "python-worker-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, healthIntervalMs, healthIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (Worker worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    public JsonNode recognize(String imagePath, String segmentationModelPath, String recognitionModelPath)
+            throws Exception {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("op", "recognize");
+        request.put("image_path", imagePath);
+        request.put("seg_path_name", segmentationModelPath);
+        request.put("rec_path_name", recognitionModelPath);
+        return call(request, modelKey(segmentationModelPath, recognitionModelPath), requestTimeoutMs);
+    }
+
+    public JsonNode updateModel(String segmentationModelPath, String recognitionModelPath) throws Exception {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("op", "update_model");
+        request.put("seg_path_name", segmentationModelPath);
+        request.put("rec_path_name", recognitionModelPath);
+        return call(request, modelKey(segmentationModelPath, recognitionModelPath), updateTimeoutMs);
+    }
+
+    private JsonNode call(ObjectNode request, String modelKey, long timeoutMs) throws Exception {
+        Worker worker = select(modelKey);
+        request.put("id", requestIds.incrementAndGet());
+        AtomicReference<Process> used = new AtomicReference<>();
+        Future<JsonNode> pending = worker.queue.submit(() -> worker.exchange(request, used));
+        JsonNode response;
+        try {
+            response = pending.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pending.cancel(true);
+            // Still queued behind a stuck request, whose own timeout restarts the worker
+            if (used.get() != null) {
+                worker.restart(used.get(), "request timed out after " + timeoutMs + " ms");
+            }
+            throw new IOException("Python worker timed out after " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            String reason = e.getCause() instanceof EOFException
+                    ? "worker process exited"
+                    : String.valueOf(e.getCause().getMessage());
+            worker.restart(used.get(), reason);
+            throw new IOException("Python worker failed: " + reason, e.getCause());
+        }
+
+        worker.loadedModels.add(modelKey);
+        if (!response.path("ok").asBoolean(false) && !response.has("result")) {
+            throw new IOException("Python worker error: " + response.path("error").asText());
+        }
+        return response.get("result");
+    }
+
+    /**
+     * Prefers the least-loaded live worker that already holds the model pair, then the
+     * least-loaded live worker overall.
+     */
+    private Worker select(String modelKey) throws IOException {
+        Worker best = null;
+        boolean bestHasModel = false;
+        for (Worker worker : workers) {
+            if (!worker.isAlive()) {
+                continue;
+            }
+            boolean hasModel = worker.loadedModels.contains(modelKey);
+            if (best == null
+                    || (hasModel && !bestHasModel)
+                    || (hasModel == bestHasModel && worker.backlog() < best.backlog())) {
+                best = worker;
+                bestHasModel = hasModel;
+            }
+        }
+        if (best == null) {
+            throw new IOException("No Python worker is available");
+        }
+        return best;
+    }
+
+    private void checkHealth() {
+        for (Worker worker : workers) {
+            Process current = worker.process;
+            if (current == null || !current.isAlive()) {
+                worker.restart(current, "process exited");
+                continue;
+            }
+            if (worker.backlog() > 0) {
+                continue;
+            }
+            ObjectNode ping = objectMapper.createObjectNode();
+            ping.put("op", "ping");
+            ping.put("id", requestIds.incrementAndGet());
+            AtomicReference<Process> used = new AtomicReference<>();
+            Future<JsonNode> pending = worker.queue.submit(() -> worker.exchange(ping, used));
+            try {
+                pending.get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                pending.cancel(true);
+                if (used.get() != null) {
+                    worker.restart(used.get(), "health check failed");
+                }
+            }
+        }
+    }
+
+    private static String modelKey(String segmentationModelPath, String recognitionModelPath) {
+        return segmentationModelPath + "|" + recognitionModelPath;
+    }
+
+    private final class Worker {
+        private final int index;
+        private final ThreadPoolExecutor queue = new ThreadPoolExecutor(
+                1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        private final Set<String> loadedModels = ConcurrentHashMap.newKeySet();
+        // Not the worker monitor: a hung exchange holds that until its process is killed
+        private final Object restartLock = new Object();
+        private volatile Process process;
+        private DataOutputStream input;
+        private DataInputStream output;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        private synchronized void launch() throws IOException {
+            ProcessBuilder processBuilder = new ProcessBuilder(venvPython, pythonScriptPath, "--serve");
+            Process started = processBuilder.start();
+            input = new DataOutputStream(started.getOutputStream());
+            output = new DataInputStream(started.getInputStream());
+            loadedModels.clear();
+            process = started;
+
+            Thread stderrPump = new Thread(() -> {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(started.getErrorStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        logger.debug("[python-worker-{}] {}", index, line);
+                    }
+                } catch (IOException ignored) {
+                    // Process ended
+                }
+            }, "python-worker-" + index + "-stderr");
+            stderrPump.setDaemon(true);
+            stderrPump.start();
+            logger.info("Started Python worker {} (pid {})", index, started.pid());
+        }
+
+        // Records the process it talks to, so a failure restarts that process and no later one
+        private synchronized JsonNode exchange(ObjectNode request, AtomicReference<Process> used) throws IOException {
+            used.set(process);
+            byte[] payload = objectMapper.writeValueAsBytes(request);
+            input.writeInt(payload.length);
+            input.write(payload);
+            input.flush();
+
+            int length = output.readInt();
+            byte[] response = new byte[length];
+            output.readFully(response);
+            JsonNode node = objectMapper.readTree(response);
+            // Each request owns its response frame; a mismatched id means the channel is out of step
+            if (node.path("id").asLong(-1) != request.path("id").asLong()) {
+                throw new IOException("Response " + node.path("id") + " does not match request " + request.path("id"));
+            }
+            return node;
+        }
+
+        private boolean isAlive() {
+            Process current = process;
+            return current != null && current.isAlive();
+        }
+
+        private int backlog() {
+            return queue.getQueue().size() + queue.getActiveCount();
+        }
+
+        /**
+         * Replaces {@code failed} with a new process. Several callers can see the same
+         * process fail (a timed-out request, the health check); only the first restarts it,
+         * the others find it already replaced and leave the new process alone.
+         */
+        private void restart(Process failed, String reason) {
+            synchronized (restartLock) {
+                if (process != failed) {
+                    return;
+                }
+                logger.warn("Restarting Python worker {}: {}", index, reason);
+                if (failed != null) {
+                    failed.destroyForcibly();
+                }
+                try {
+                    launch();
+                } catch (IOException e) {
+                    logger.error("Failed to restart Python worker {}: {}", index, e.getMessage());
+                }
+            }
+        }
+
+        private void shutdown() {
+            queue.shutdownNow();
+            Process current = process;
+            if (current != null) {
+                current.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.biometricsservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs 64 recognitions in parallel against a stub worker script and checks that every
+ * caller gets the result for its own image, not one belonging to a concurrent request.
+ */
+class PythonWorkerPoolConcurrencyTest {
+
+    private static final int PARALLEL_REQUESTS = 64;
+
+    // Speaks the same framing as fingerprint_recognition.py --serve; the employee id is
+    // the image file name, after a random delay so responses complete out of order.
+    private static final String STUB_WORKER = String.join("\n",
+            "import json, random, struct, sys, time, os",
+            "inp, out = sys.stdin.buffer, sys.stdout.buffer",
+            "while True:",
+            "    header = inp.read(4)",
+            "    if len(header) < 4:",
+            "        break",
+            "    request = json.loads(inp.read(struct.unpack('>I', header)[0]))",
+            "    if request['op'] == 'recognize':",
+            "        time.sleep(random.random() / 100)",
+            "        employee = os.path.splitext(os.path.basename(request['image_path']))[0]",
+            "        response = {'ok': True, 'result': {'similarity': {'employee_id': employee, 'confidence': 0.99}}}",
+            "    else:",
+            "        response = {'ok': True, 'result': {}}",
+            "    response['id'] = request['id']",
+            "    data = json.dumps(response).encode('utf-8')",
+            "    out.write(struct.pack('>I', len(data)) + data)",
+            "    out.flush()",
+            "");
+
+    @TempDir
+    Path tempDir;
+
+    private PythonWorkerPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String python = findPython();
+        assumeTrue(python != null, "python3 is not available");
+
+        Path script = tempDir.resolve("stub_worker.py");
+        Files.writeString(script, STUB_WORKER);
+
+        pool = new PythonWorkerPool();
+        ReflectionTestUtils.setField(pool, "venvPython", python);
+        ReflectionTestUtils.setField(pool, "pythonScriptPath", script.toString());
+        ReflectionTestUtils.setField(pool, "workerCount", 4);
+        ReflectionTestUtils.setField(pool, "requestTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(pool, "updateTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(pool, "healthIntervalMs", 60000L);
+        pool.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void parallelRecognitionsReceiveTheirOwnResults() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(PARALLEL_REQUESTS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < PARALLEL_REQUESTS; i++) {
+                String employeeId = "employee-" + i;
+                Callable<String> recognition = () -> {
+                    startGate.await();
+                    JsonNode result = pool.recognize(
+                            tempDir.resolve(employeeId + ".png").toString(), "seg", "rec");
+                    return result.path("similarity").path("employee_id").asText();
+                };
+                results.add(callers.submit(recognition));
+            }
+            startGate.countDown();
+
+            for (int i = 0; i < PARALLEL_REQUESTS; i++) {
+                assertEquals("employee-" + i, results.get(i).get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static String findPython() {
+        for (String candidate : new String[]{"python3", "python"}) {
+            try {
+                Process process = new ProcessBuilder(candidate, "--version").redirectErrorStream(true).start();
+                if (process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                    return candidate;
+                }
+            } catch (Exception ignored) {
+                // Try the next candidate
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.biometricsservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.ConfigDataApplicationContextInitializer;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The pool is built from application.properties: the shipped paths match the baseline
+ * layout next to the module directory, and a pool configured through those properties
+ * launches its workers from them.
+ */
+class PythonWorkerPoolConfigurationTest {
+
+    // Answers every request with an empty successful result
+    private static final String STUB_WORKER = String.join("\n",
+            "import json, struct, sys",
+            "inp, out = sys.stdin.buffer, sys.stdout.buffer",
+            "while True:",
+            "    header = inp.read(4)",
+            "    if len(header) < 4:",
+            "        break",
+            "    request = json.loads(inp.read(struct.unpack('>I', header)[0]))",
+            "    data = json.dumps({'id': request['id'], 'ok': True, 'result': {'op': request['op']}}).encode('utf-8')",
+            "    out.write(struct.pack('>I', len(data)) + data)",
+            "    out.flush()",
+            "");
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withInitializer(new ConfigDataApplicationContextInitializer())
+            .withUserConfiguration(PythonWorkerPool.class);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shippedPathsAreRelativeToTheModuleDirectory() {
+        assumeTrue(System.getenv("VENV_PYTHON") == null && System.getenv("PYTHON_SCRIPT_PATH") == null,
+                "worker paths are overridden from the environment");
+
+        contextRunner
+                .withPropertyValues("python.worker.count=0")
+                .run(context -> {
+                    PythonWorkerPool pool = context.getBean(PythonWorkerPool.class);
+                    assertEquals("../fingerprint_training/env/Scripts/python.exe",
+                            ReflectionTestUtils.getField(pool, "venvPython"));
+                    assertEquals("../fingerprint_training/fingerprint_recognition.py",
+                            ReflectionTestUtils.getField(pool, "pythonScriptPath"));
+                });
+    }
+
+    @Test
+    void poolStartsFromConfiguredPaths() throws Exception {
+        String python = findPython();
+        assumeTrue(python != null, "python3 is not available");
+        Path script = tempDir.resolve("stub_worker.py");
+        Files.writeString(script, STUB_WORKER);
+
+        contextRunner
+                .withPropertyValues(
+                        "python.venv.path=" + python,
+                        "python.script.path=" + script,
+                        "python.worker.count=1",
+                        "python.worker.request-timeout-ms=10000")
+                .run(context -> {
+                    JsonNode result = context.getBean(PythonWorkerPool.class)
+                            .recognize(tempDir.resolve("probe.png").toString(), "seg", "rec");
+                    assertEquals("recognize", result.path("op").asText());
+                });
+    }
+
+    private static String findPython() {
+        for (String candidate : new String[]{"python3", "python"}) {
+            try {
+                Process process = new ProcessBuilder(candidate, "--version").redirectErrorStream(true).start();
+                if (process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                    return candidate;
+                }
+            } catch (Exception ignored) {
+                // Try the next candidate
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.biometricsservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A worker stuck on one request, with another request queued behind it: both time out,
+ * but the worker is restarted once and the replacement process keeps serving.
+ */
+class PythonWorkerPoolRestartTest {
+
+    // Logs its pid on start; never answers a recognition of an image named "hang"
+    private static final String STUB_WORKER = String.join("\n",
+            "import json, os, struct, sys, time",
+            "with open(sys.argv[0] + '.starts', 'a') as starts:",
+            "    starts.write(str(os.getpid()) + '\\n')",
+            "inp, out = sys.stdin.buffer, sys.stdout.buffer",
+            "while True:",
+            "    header = inp.read(4)",
+            "    if len(header) < 4:",
+            "        break",
+            "    request = json.loads(inp.read(struct.unpack('>I', header)[0]))",
+            "    employee = os.path.splitext(os.path.basename(request.get('image_path', '')))[0]",
+            "    if employee == 'hang':",
+            "        time.sleep(3600)",
+            "    response = {'ok': True, 'result': {'similarity': {'employee_id': employee, 'confidence': 0.99}}}",
+            "    response['id'] = request['id']",
+            "    data = json.dumps(response).encode('utf-8')",
+            "    out.write(struct.pack('>I', len(data)) + data)",
+            "    out.flush()",
+            "");
+
+    @TempDir
+    Path tempDir;
+
+    private Path starts;
+    private PythonWorkerPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String python = findPython();
+        assumeTrue(python != null, "python3 is not available");
+
+        Path script = tempDir.resolve("stub_worker.py");
+        Files.writeString(script, STUB_WORKER);
+        starts = tempDir.resolve("stub_worker.py.starts");
+
+        pool = new PythonWorkerPool();
+        ReflectionTestUtils.setField(pool, "venvPython", python);
+        ReflectionTestUtils.setField(pool, "pythonScriptPath", script.toString());
+        ReflectionTestUtils.setField(pool, "workerCount", 1);
+        ReflectionTestUtils.setField(pool, "requestTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(pool, "updateTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(pool, "healthIntervalMs", 60000L);
+        pool.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void requestsTimingOutOnTheSameProcessRestartItOnce() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> stuck = callers.submit(() -> pool.recognize(image("hang"), "seg", "rec"));
+            // Queued on the same worker behind the stuck request
+            Thread.sleep(200);
+            Future<?> queued = callers.submit(() -> pool.recognize(image("employee-1"), "seg", "rec"));
+
+            assertFailed(stuck, "timed out");
+            // Depending on when it reaches the killed process it times out or fails on it
+            assertFailed(queued, "");
+
+            assertEquals("employee-1", pool.recognize(image("employee-1"), "seg", "rec")
+                    .path("similarity").path("employee_id").asText());
+            List<String> pids = Files.readAllLines(starts);
+            assertEquals(2, pids.size(), "worker processes started: " + pids);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private String image(String name) {
+        return tempDir.resolve(name + ".png").toString();
+    }
+
+    private static void assertFailed(Future<?> request, String message) {
+        Exception failure = assertThrows(Exception.class, () -> request.get(10, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IOException, String.valueOf(failure));
+        assertTrue(failure.getCause().getMessage().contains(message), failure.getCause().getMessage());
+    }
+
+    private static String findPython() {
+        for (String candidate : new String[]{"python3", "python"}) {
+            try {
+                Process process = new ProcessBuilder(candidate, "--version").redirectErrorStream(true).start();
+                if (process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                    return candidate;
+                }
+            } catch (Exception ignored) {
+                // Try the next candidate
+            }
+        }
+        return null;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.modelmanagementservice.client;
 
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 
@@ -24,4 +25,7 @@ public interface BiometricsClient {
     
     @GetMapping("/fingerprint/by-segmentation-model/{modelId}")
     List<Map<String, Object>> getFingerprintSamplesBySegmentationModelId(@PathVariable String modelId);
+
+    @DeleteMapping("/model-cache/{modelId}")
+    void invalidateModelCache(@PathVariable String modelId);
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(ModelChangeListener.class)
 @Inheritance(strategy = InheritanceType.JOINED)
 @Data
 @NoArgsConstructor
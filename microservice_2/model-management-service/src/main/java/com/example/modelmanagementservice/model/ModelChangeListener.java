@@ -0,0 +1,50 @@
+package com.example.modelmanagementservice.model;
+
+import com.example.modelmanagementservice.client.BiometricsClient;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tells biometrics-service to drop its cached copy of a model once a change to it
+ * has committed. A failed push is only logged; the cache TTL bounds the staleness.
+ */
+@Component
+public class ModelChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(ModelChangeListener.class);
+
+    private final BiometricsClient biometricsClient;
+
+    public ModelChangeListener(@Lazy BiometricsClient biometricsClient) {
+        this.biometricsClient = biometricsClient;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onModelChanged(Model model) {
+        String modelId = model.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pushInvalidation(modelId);
+                }
+            });
+        } else {
+            pushInvalidation(modelId);
+        }
+    }
+
+    private void pushInvalidation(String modelId) {
+        try {
+            biometricsClient.invalidateModelCache(modelId);
+        } catch (Exception e) {
+            logger.warn("Failed to invalidate cached model {} in biometrics-service: {}", modelId, e.getMessage());
+        }
+    }
+}